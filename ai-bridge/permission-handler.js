@@ -145,6 +145,8 @@ export async function requestPermissionFromJava(toolName, input) {
 
     const requestData = {
       requestId,
+      // 发起请求的会话 channel（IDE 中多个会话并行时据此路由弹窗）
+      channelId: process.env.CLAUDE_CHANNEL_ID || '',
       toolName,
       inputs: input,
       timestamp: new Date().toISOString()
@@ -11,6 +11,7 @@ import { setupApiKey, isCustomBaseUrl, loadClaudeSettings } from '../../config/a
 import { selectWorkingDirectory } from '../../utils/path-utils.js';
 import { mapModelIdToSdkName } from '../../utils/model-utils.js';
 import { AsyncStream } from '../../utils/async-stream.js';
+import { createCancelController } from '../../utils/cancel-signal.js';
 import { canUseTool } from '../../permission-handler.js';
 import { persistJsonlMessage, loadSessionHistory } from './session-service.js';
 import { loadAttachments, buildContentBlocks } from './attachment-service.js';
@@ -130,8 +131,40 @@ import { loadAttachments, buildContentBlocks } from './attachment-service.js';
   }
 }
 
+/**
+ * 从真实会话的 init 消息中输出斜杠命令列表
+ * 优先通过 supportedCommands() 获取带 description 的完整列表（短超时），
+ * 拿不到时退回 init 消息里的命令名，避免 Java 侧再单独启动探测进程
+ */
+const SLASH_COMMANDS_HARVEST_TIMEOUT_MS = 2000;
+
+function emitSlashCommandsFromInit(queryResult, commandNames) {
+  const fallback = commandNames.map(name => ({ name, description: '' }));
+
+  if (typeof queryResult?.supportedCommands !== 'function') {
+    console.log('[SLASH_COMMANDS]', JSON.stringify(fallback));
+    return;
+  }
+
+  let timer;
+  const timeout = new Promise(resolve => {
+    timer = setTimeout(() => resolve(null), SLASH_COMMANDS_HARVEST_TIMEOUT_MS);
+  });
+
+  Promise.race([queryResult.supportedCommands(), timeout])
+    .then(commands => {
+      const list = Array.isArray(commands) && commands.length > 0 ? commands : fallback;
+      console.log('[SLASH_COMMANDS]', JSON.stringify(list));
+    })
+    .catch(() => {
+      console.log('[SLASH_COMMANDS]', JSON.stringify(fallback));
+    })
+    .finally(() => clearTimeout(timer));
+}
+
 export async function sendMessage(message, resumeSessionId = null, cwd = null, permissionMode = null, model = null, openedFiles = null) {
 	  let timeoutId;
+	  const cancelController = createCancelController();
 	  try {
     process.env.CLAUDE_CODE_ENTRYPOINT = process.env.CLAUDE_CODE_ENTRYPOINT || 'sdk-ts';
     console.log('[DEBUG] CLAUDE_CODE_ENTRYPOINT:', process.env.CLAUDE_CODE_ENTRYPOINT);
@@ -267,6 +300,9 @@ export async function sendMessage(message, resumeSessionId = null, cwd = null, p
 		// const abortController = new AbortController();
 		// options.abortController = abortController;
 
+		// IDE 中断（标记文件或 SIGTERM）时取消查询，由 SDK 结束 CLI 子进程
+		options.abortController = cancelController;
+
     console.log('[DEBUG] Using SDK built-in Claude CLI (cli.js)');
 
     console.log('[DEBUG] Options:', JSON.stringify(options, null, 2));
@@ -330,9 +366,9 @@ export async function sendMessage(message, resumeSessionId = null, cwd = null, p
         currentSessionId = msg.session_id;
         console.log('[SESSION_ID]', msg.session_id);
 
-        // 输出 slash_commands（如果存在）
+        // 输出 slash_commands（如果存在），供 Java 侧斜杠命令缓存复用
         if (msg.subtype === 'init' && Array.isArray(msg.slash_commands)) {
-          // console.log('[SLASH_COMMANDS]', JSON.stringify(msg.slash_commands));
+          emitSlashCommandsFromInit(result, msg.slash_commands);
         }
       }
 
@@ -376,6 +412,11 @@ export async function sendMessage(message, resumeSessionId = null, cwd = null, p
 	    }));
 	
 	  } catch (error) {
+	    if (cancelController.signal.aborted) {
+	      // 用户中断不是错误，IDE 侧按中断处理
+	      console.log('[DEBUG] Query aborted by IDE interrupt');
+	      return;
+	    }
 	    const payload = buildConfigErrorPayload(error);
 	    console.error('[SEND_ERROR]', JSON.stringify(payload));
 	    console.log(JSON.stringify(payload));
@@ -582,6 +623,7 @@ export async function sendMessageWithAnthropicSDK(message, resumeSessionId, cwd,
  */
 	export async function sendMessageWithAttachments(message, resumeSessionId = null, cwd = null, permissionMode = null, model = null, stdinData = null) {
 	  let timeoutId;
+	  const cancelController = createCancelController();
 	  try {
     process.env.CLAUDE_CODE_ENTRYPOINT = process.env.CLAUDE_CODE_ENTRYPOINT || 'sdk-ts';
 
@@ -760,6 +802,9 @@ export async function sendMessageWithAnthropicSDK(message, resumeSessionId, cwd,
 	    // const abortController = new AbortController();
 	    // options.abortController = abortController;
 
+	    // IDE 中断（标记文件或 SIGTERM）时取消查询，由 SDK 结束 CLI 子进程
+	    options.abortController = cancelController;
+
 	    if (resumeSessionId && resumeSessionId !== '') {
 	      options.resume = resumeSessionId;
 	      console.log('[RESUMING]', resumeSessionId);
@@ -802,6 +847,10 @@ export async function sendMessageWithAnthropicSDK(message, resumeSessionId, cwd,
 	    	      if (msg.type === 'system' && msg.session_id) {
 	    	        currentSessionId = msg.session_id;
 	    	        console.log('[SESSION_ID]', msg.session_id);
+
+	    	        if (msg.subtype === 'init' && Array.isArray(msg.slash_commands)) {
+	    	          emitSlashCommandsFromInit(result, msg.slash_commands);
+	    	        }
 	    	      }
 
 	    	      // 检查是否收到错误结果消息（快速检测 API Key 错误）
@@ -831,6 +880,11 @@ export async function sendMessageWithAnthropicSDK(message, resumeSessionId, cwd,
 	    }));
 
 	  } catch (error) {
+	    if (cancelController.signal.aborted) {
+	      // 用户中断不是错误，IDE 侧按中断处理
+	      console.log('[DEBUG] Query aborted by IDE interrupt');
+	      return;
+	    }
 	    const payload = buildConfigErrorPayload(error);
 	    console.error('[SEND_ERROR]', JSON.stringify(payload));
 	    console.log(JSON.stringify(payload));
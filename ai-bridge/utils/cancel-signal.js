@@ -0,0 +1,66 @@
+/**
+ * 中断信号工具模块
+ *
+ * IDE 中断会话时分阶段停止进程：
+ * 1. 在通信目录写入 cancel-<channelId> 标记文件（带内取消）
+ * 2. 超时未退出时发送 SIGTERM
+ * 3. 仍未退出时强制结束整个进程树
+ * 前两个阶段都通过 AbortController 取消 SDK 查询，由 SDK 结束 CLI 子进程后正常退出。
+ */
+
+import { existsSync, unlinkSync } from 'fs';
+import { join } from 'path';
+import { tmpdir } from 'os';
+
+// 标记文件轮询间隔
+const POLL_INTERVAL_MS = 200;
+// 收到 SIGTERM 后留给 SDK 清理子进程的时间
+const TERM_EXIT_DELAY_MS = 1000;
+
+const CANCEL_DIR = process.env.CLAUDE_PERMISSION_DIR
+  ? process.env.CLAUDE_PERMISSION_DIR
+  : join(tmpdir(), 'claude-permission');
+
+/**
+ * 创建响应 IDE 中断的 AbortController
+ * @returns {AbortController} 传给 SDK query 的 abortController
+ */
+export function createCancelController() {
+  const controller = new AbortController();
+  const channelId = process.env.CLAUDE_CHANNEL_ID;
+  let pollTimer = null;
+
+  const abort = (reason) => {
+    if (pollTimer) {
+      clearInterval(pollTimer);
+      pollTimer = null;
+    }
+    if (!controller.signal.aborted) {
+      console.log('[INTERRUPTED]', reason);
+      controller.abort();
+    }
+  };
+
+  if (channelId) {
+    const cancelFile = join(CANCEL_DIR, `cancel-${channelId}`);
+    pollTimer = setInterval(() => {
+      if (existsSync(cancelFile)) {
+        try {
+          unlinkSync(cancelFile);
+        } catch (e) {
+          // IDE 侧也会清理标记文件
+        }
+        abort('cancel file');
+      }
+    }, POLL_INTERVAL_MS);
+    // 轮询不阻止进程正常退出
+    pollTimer.unref();
+  }
+
+  process.once('SIGTERM', () => {
+    abort('SIGTERM');
+    setTimeout(() => process.exit(143), TERM_EXIT_DELAY_MS).unref();
+  });
+
+  return controller;
+}
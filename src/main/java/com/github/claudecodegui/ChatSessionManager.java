@@ -0,0 +1,95 @@
+package com.github.claudecodegui;
+
+import com.intellij.openapi.project.Project;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 项目内的聊天会话管理
+ *
+ * 工具窗口的每个标签页是一个 ClaudeChatWindow，持有独立的 ClaudeSession 与 SDK 桥接（各自的 channel 和进程），
+ * 同一项目可并行运行多个会话：
+ * 1. 同一项目最多 MAX_SESSIONS 个会话标签页
+ * 2. 当前选中的标签页为活动会话，右键发送代码等外部操作默认发给它
+ * 3. 各会话的 Node 进程共享 ProcessManager 的全局并发上限，按请求先后顺序排队
+ */
+public final class ChatSessionManager {
+
+    static final int MAX_SESSIONS = 3;
+
+    private static final Map<Project, ChatSessionManager> MANAGERS = new ConcurrentHashMap<>();
+
+    private final Project project;
+    private final List<ClaudeSDKToolWindow.ClaudeChatWindow> windows = new CopyOnWriteArrayList<>();
+    private final AtomicInteger tabCounter = new AtomicInteger();
+    private volatile ClaudeSDKToolWindow.ClaudeChatWindow activeWindow;
+
+    private ChatSessionManager(Project project) {
+        this.project = project;
+    }
+
+    public static ChatSessionManager getInstance(Project project) {
+        return MANAGERS.computeIfAbsent(project, ChatSessionManager::new);
+    }
+
+    /**
+     * 获取项目的活动会话窗口（项目没有打开的会话时返回 null，不创建管理器）
+     */
+    public static ClaudeSDKToolWindow.ClaudeChatWindow getActiveWindow(Project project) {
+        ChatSessionManager manager = MANAGERS.get(project);
+        return manager != null ? manager.activeWindow : null;
+    }
+
+    /**
+     * 注册新的会话窗口（第一个窗口自动成为活动会话）
+     */
+    void register(ClaudeSDKToolWindow.ClaudeChatWindow window) {
+        windows.add(window);
+        if (activeWindow == null) {
+            activeWindow = window;
+        }
+        System.out.println("[ChatSessionManager] Registered session window, project=" + project.getName() + ", count=" + windows.size());
+    }
+
+    /**
+     * 注销已关闭的会话窗口（活动会话关闭时切换到剩余的第一个；全部关闭后移除管理器）
+     */
+    void unregister(ClaudeSDKToolWindow.ClaudeChatWindow window) {
+        windows.remove(window);
+        if (activeWindow == window) {
+            activeWindow = windows.isEmpty() ? null : windows.get(0);
+        }
+        if (windows.isEmpty()) {
+            MANAGERS.remove(project, this);
+        }
+        System.out.println("[ChatSessionManager] Unregistered session window, project=" + project.getName() + ", count=" + windows.size());
+    }
+
+    void setActiveWindow(ClaudeSDKToolWindow.ClaudeChatWindow window) {
+        if (windows.contains(window)) {
+            activeWindow = window;
+        }
+    }
+
+    /**
+     * 是否还能打开新的会话标签页
+     */
+    public boolean canOpenSession() {
+        return windows.size() < MAX_SESSIONS;
+    }
+
+    /**
+     * 下一个标签页的序号（从 1 开始，关闭的序号不复用）
+     */
+    int nextTabNumber() {
+        return tabCounter.incrementAndGet();
+    }
+
+    public List<ClaudeSDKToolWindow.ClaudeChatWindow> getWindows() {
+        return List.copyOf(windows);
+    }
+}
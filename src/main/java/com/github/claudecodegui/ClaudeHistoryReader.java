@@ -3,13 +3,18 @@ package com.github.claudecodegui;
 import com.google.gson.Gson;
 import com.google.gson.JsonParser;
 
+import com.github.claudecodegui.cache.HistorySearchIndex;
 import com.github.claudecodegui.util.PathUtils;
+import com.github.claudecodegui.util.JsonCodec;
+import com.github.claudecodegui.util.ReverseLineReader;
+import com.github.claudecodegui.util.UsageRollup;
 
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
@@ -23,7 +28,14 @@ public class ClaudeHistoryReader {
     private static final Path HISTORY_FILE = CLAUDE_DIR.resolve("history.jsonl");
     private static final Path PROJECTS_DIR = CLAUDE_DIR.resolve("projects");
 
-    private final Gson gson = new Gson();
+    // getAllDataAsJson 返回的历史记录条数
+    private static final int HISTORY_PAGE_SIZE = 200;
+    // 项目信息中保留的最近消息条数
+    private static final int PROJECT_RECENT_MESSAGES = 50;
+    // display 字段搜索最多返回的条数
+    private static final int SEARCH_LIMIT = 100;
+
+    private final Gson gson = JsonCodec.gson();
 
     /**
      * 历史记录条目
@@ -75,9 +87,11 @@ public class ClaudeHistoryReader {
         public Boolean isMeta;
         public Boolean isSidechain;
         public String cwd;
+        public String summary; // type 为 summary 时的摘要文本
 
         public static class Message {
             public String role;
+            public String model;
             public Object content; // 可能是 String 或 Array
             public Usage usage;
         }
@@ -94,11 +108,11 @@ public class ClaudeHistoryReader {
      * Token 使用统计数据结构
      */
     public static class UsageData {
-        public int inputTokens;
-        public int outputTokens;
-        public int cacheWriteTokens;
-        public int cacheReadTokens;
-        public int totalTokens;
+        public long inputTokens;
+        public long outputTokens;
+        public long cacheWriteTokens;
+        public long cacheReadTokens;
+        public long totalTokens;
     }
 
     public static class SessionSummary {
@@ -121,11 +135,11 @@ public class ClaudeHistoryReader {
     public static class ModelUsage {
         public String model;
         public double totalCost;
-        public int totalTokens;
-        public int inputTokens;
-        public int outputTokens;
-        public int cacheCreationTokens;
-        public int cacheReadTokens;
+        public long totalTokens;
+        public long inputTokens;
+        public long outputTokens;
+        public long cacheCreationTokens;
+        public long cacheReadTokens;
         public int sessionCount;
     }
 
@@ -137,7 +151,7 @@ public class ClaudeHistoryReader {
         public static class WeekData {
             public int sessions;
             public double cost;
-            public int tokens;
+            public long tokens;
         }
 
         public static class Trends {
@@ -466,112 +480,171 @@ public class ClaudeHistoryReader {
     }
 
     /**
-     * 读取所有历史记录
+     * 倒序遍历 history.jsonl（CLI 只追加写入，倒序即新到旧），visitor 返回 false 时停止
+     * 文件通过 ReverseLineReader 按窗口映射读取，不会一次性加载到内存
      */
-    public List<HistoryEntry> readHistory() throws IOException {
-        List<HistoryEntry> history = new ArrayList<>();
-
+    public void forEachHistoryEntry(Predicate<HistoryEntry> visitor) throws IOException {
         if (!Files.exists(HISTORY_FILE)) {
-            return history;
+            return;
         }
 
-        try (BufferedReader reader = Files.newBufferedReader(HISTORY_FILE)) {
+        try (ReverseLineReader reader = new ReverseLineReader(HISTORY_FILE)) {
             String line;
             while ((line = reader.readLine()) != null) {
-                if (!line.trim().isEmpty()) {
-                    try {
-                        HistoryEntry entry = gson.fromJson(line, HistoryEntry.class);
-                        if (entry != null) {
-                            history.add(entry);
-                        }
-                    } catch (Exception e) {
-                        // 跳过解析失败的行
-                    }
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                HistoryEntry entry;
+                try {
+                    entry = gson.fromJson(line, HistoryEntry.class);
+                } catch (Exception e) {
+                    // 跳过解析失败的行
+                    continue;
+                }
+                if (entry != null && !visitor.test(entry)) {
+                    return;
                 }
             }
         }
+    }
 
-        // 按时间戳排序（最新的在前）
-        history.sort((a, b) -> Long.compare(b.timestamp, a.timestamp));
-
+    /**
+     * 读取最近的历史记录（最新的在前），读够 limit 条后停止
+     */
+    public List<HistoryEntry> readHistory(int limit) throws IOException {
+        List<HistoryEntry> history = new ArrayList<>();
+        if (limit <= 0) {
+            return history;
+        }
+        forEachHistoryEntry(entry -> {
+            history.add(entry);
+            return history.size() < limit;
+        });
         return history;
     }
 
     /**
-     * 获取项目列表
+     * 历史记录流式聚合：逐条累加项目与统计信息，不保留完整列表
+     * 按新到旧的顺序喂入时，每个项目只保留最近 PROJECT_RECENT_MESSAGES 条消息
      */
-    public List<ProjectInfo> getProjects(List<HistoryEntry> history) {
-        Map<String, ProjectInfo> projectsMap = new HashMap<>();
+    public static class HistoryAggregator {
+        private final Map<String, ProjectInfo> projectsMap = new HashMap<>();
+        private final Statistics stats = new Statistics();
+        private final UsageRollup.DayCounter messagesByDay = new UsageRollup.DayCounter();
+
+        public void accept(HistoryEntry entry) {
+            stats.totalMessages++;
+
+            if (stats.firstMessage == null || entry.timestamp < stats.firstMessage.timestamp) {
+                stats.firstMessage = entry;
+            }
+            if (stats.lastMessage == null || entry.timestamp > stats.lastMessage.timestamp) {
+                stats.lastMessage = entry;
+            }
+
+            // 按天统计消息（epoch day 计数，输出时才格式化日期）
+            if (entry.timestamp > 0) {
+                messagesByDay.increment(entry.timestamp);
+            }
 
-        for (HistoryEntry entry : history) {
             if (entry.project != null) {
                 ProjectInfo project = projectsMap.computeIfAbsent(
                     entry.project,
                     ProjectInfo::new
                 );
                 project.count++;
-                project.messages.add(entry);
+                if (project.messages.size() < PROJECT_RECENT_MESSAGES) {
+                    project.messages.add(entry);
+                }
                 if (entry.timestamp > project.lastAccess) {
                     project.lastAccess = entry.timestamp;
                 }
             }
         }
 
-        return projectsMap.values().stream()
-            .sorted((a, b) -> Long.compare(b.lastAccess, a.lastAccess))
-            .collect(Collectors.toList());
+        /**
+         * 项目列表（按最后访问时间倒序）
+         */
+        public List<ProjectInfo> getProjects() {
+            return projectsMap.values().stream()
+                .sorted((a, b) -> Long.compare(b.lastAccess, a.lastAccess))
+                .collect(Collectors.toList());
+        }
+
+        /**
+         * 统计信息
+         */
+        public Statistics getStatistics() {
+            stats.totalProjects = projectsMap.size();
+            stats.messagesByDay.clear();
+            messagesByDay.copyTo(stats.messagesByDay);
+            return stats;
+        }
     }
 
     /**
-     * 获取统计信息
+     * 获取项目列表（流式聚合）
      */
-    public Statistics getStatistics(List<HistoryEntry> history) {
-        Statistics stats = new Statistics();
-        stats.totalMessages = history.size();
-
-        if (!history.isEmpty()) {
-            // 获取第一条和最后一条消息
-            List<HistoryEntry> sorted = new ArrayList<>(history);
-            sorted.sort(Comparator.comparingLong(e -> e.timestamp));
-            stats.firstMessage = sorted.get(0);
-            stats.lastMessage = sorted.get(sorted.size() - 1);
-
-            // 统计项目数
-            Set<String> projects = history.stream()
-                .map(e -> e.project)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
-            stats.totalProjects = projects.size();
-
-            // 按天统计消息
-            for (HistoryEntry entry : history) {
-                if (entry.timestamp > 0) {
-                    Date date = new Date(entry.timestamp);
-                    String dateStr = String.format("%tF", date);
-                    stats.messagesByDay.merge(dateStr, 1, Integer::sum);
-                }
-            }
-        }
+    public List<ProjectInfo> getProjects() throws IOException {
+        HistoryAggregator aggregator = new HistoryAggregator();
+        forEachHistoryEntry(entry -> {
+            aggregator.accept(entry);
+            return true;
+        });
+        return aggregator.getProjects();
+    }
 
-        return stats;
+    /**
+     * 获取统计信息（流式聚合）
+     */
+    public Statistics getStatistics() throws IOException {
+        HistoryAggregator aggregator = new HistoryAggregator();
+        forEachHistoryEntry(entry -> {
+            aggregator.accept(entry);
+            return true;
+        });
+        return aggregator.getStatistics();
     }
 
     /**
-     * 搜索历史记录
+     * 搜索历史记录（按 display 字段，新到旧，最多 SEARCH_LIMIT 条）
      */
-    public List<HistoryEntry> searchHistory(List<HistoryEntry> history, String query) {
+    public List<HistoryEntry> searchHistory(String query) throws IOException {
         if (query == null || query.trim().isEmpty()) {
-            return history;
+            return readHistory(HISTORY_PAGE_SIZE);
         }
 
         String lowerQuery = query.toLowerCase();
-        return history.stream()
-            .filter(entry -> {
-                String display = entry.display != null ? entry.display.toLowerCase() : "";
-                return display.contains(lowerQuery);
-            })
-            .limit(100)
-            .collect(Collectors.toList());
+        List<HistoryEntry> results = new ArrayList<>();
+        forEachHistoryEntry(entry -> {
+            String display = entry.display != null ? entry.display.toLowerCase() : "";
+            if (display.contains(lowerQuery)) {
+                results.add(entry);
+            }
+            return results.size() < SEARCH_LIMIT;
+        });
+        return results;
+    }
+
+    /**
+     * 全文搜索会话内容（倒排索引，覆盖 projects 目录下所有会话的用户/助手消息）
+     * @param projectPath 项目路径，为 null 或空时搜索所有项目
+     * @param query 查询串：空格分隔的词项取交集，"..." 为短语，末尾 * 为前缀
+     */
+    public HistorySearchIndex.SearchResponse searchSessions(String projectPath, String query, int limit) {
+        String projectDir = projectPath == null || projectPath.isEmpty() ? null : PathUtils.sanitizePath(projectPath);
+        return HistorySearchIndex.getInstance().search(query, projectDir, limit);
+    }
+
+    /**
+     * 全文搜索会话内容，返回 JSON 字符串
+     */
+    public String searchSessionsAsJson(String projectPath, String query, int limit) {
+        try {
+            return gson.toJson(ApiResponse.success(searchSessions(projectPath, query, limit)));
+        } catch (Exception e) {
+            return gson.toJson(ApiResponse.error("搜索历史会话失败: " + e.getMessage()));
+        }
     }
 
     /**
@@ -657,16 +730,24 @@ public class ClaudeHistoryReader {
      */
     public String getAllDataAsJson() {
         try {
-            List<HistoryEntry> history = readHistory();
-            List<ProjectInfo> projects = getProjects(history);
-            Statistics stats = getStatistics(history);
+            // 一次倒序遍历：前 HISTORY_PAGE_SIZE 条作为列表，全部条目流式聚合
+            List<HistoryEntry> history = new ArrayList<>();
+            HistoryAggregator aggregator = new HistoryAggregator();
+            forEachHistoryEntry(entry -> {
+                if (history.size() < HISTORY_PAGE_SIZE) {
+                    history.add(entry);
+                }
+                aggregator.accept(entry);
+                return true;
+            });
+            Statistics stats = aggregator.getStatistics();
 
             Map<String, Object> result = new HashMap<>();
             result.put("success", true);
-            result.put("history", history.size() > 200 ? history.subList(0, 200) : history);
-            result.put("projects", projects);
+            result.put("history", history);
+            result.put("projects", aggregator.getProjects());
             result.put("stats", stats);
-            result.put("total", history.size());
+            result.put("total", stats.totalMessages);
 
             return gson.toJson(result);
         } catch (Exception e) {
@@ -823,20 +904,9 @@ public class ClaudeHistoryReader {
                         firstTimestamp = parseTimestamp(msg.timestamp);
                     }
 
-                    // 查找 summary
-                    if ("summary".equals(msg.type) && msg.message != null && msg.message.content instanceof String) { // summary usually in separate field in raw json, but here mapping might be tricky. 
-                        // Wait, ConversationMessage structure defined earlier:
-                        // public String type;
-                        // public Message message;
-                        // In VSCode: data.summary is at top level. 
-                        // My ConversationMessage doesn't have 'summary' field at top level.
-                        // I need to check the raw JSON structure or use a generic map for flexible parsing.
-                        // Let's use a flexible parser for this line to capture 'summary' field.
-                        Map<String, Object> rawMap = gson.fromJson(line, Map.class);
-                        if (rawMap.containsKey("summary")) {
-                            Object s = rawMap.get("summary");
-                            if (s instanceof String) summary = (String) s;
-                        }
+                    // 查找 summary（顶层字段，由 JsonCodec 的适配器一并解析，无需再按 Map 重新解析整行）
+                    if ("summary".equals(msg.type) && msg.summary != null) {
+                        summary = msg.summary;
                     }
 
                     // 查找 usage
@@ -856,19 +926,10 @@ public class ClaudeHistoryReader {
                              usage.cacheWriteTokens += u.cache_creation_input_tokens;
                              usage.cacheReadTokens += u.cache_read_input_tokens;
                              
-                             if (msg.message.role != null && model.equals("unknown")) {
-                                 // message.model is needed. My Message class doesn't have model.
-                                 // It's usually at top level or inside message?
-                                 // VSCode: message.model
-                                 Map<String, Object> rawMap = gson.fromJson(line, Map.class);
-                                 if (rawMap.containsKey("message")) {
-                                     Map m = (Map) rawMap.get("message");
-                                     if (m.containsKey("model")) {
-                                         model = (String) m.get("model");
-                                     }
-                                 }
+                             if (msg.message.model != null && model.equals("unknown")) {
+                                 model = msg.message.model;
                              }
-                             
+
                              // Calculate cost
                              Map<String, Double> pricing = getModelPricing(model);
                              double cost = (u.input_tokens * pricing.get("input") +
@@ -903,19 +964,9 @@ public class ClaudeHistoryReader {
     }
 
     private void processSessions(List<SessionSummary> sessions, ProjectStatistics stats) {
-        Map<String, DailyUsage> dailyMap = new HashMap<>();
-        Map<String, ModelUsage> modelMap = new HashMap<>();
-
-        // 时间范围
-        long now = System.currentTimeMillis();
-        long oneWeekAgo = now - 7L * 24 * 3600 * 1000;
-        long twoWeeksAgo = now - 14L * 24 * 3600 * 1000;
-        
-        WeeklyComparison.WeekData currentWeek = new WeeklyComparison.WeekData();
-        WeeklyComparison.WeekData lastWeek = new WeeklyComparison.WeekData();
-
+        // 1. 总计，同时把每个会话写入按天/按模型的列式汇总
+        UsageRollup rollup = new UsageRollup();
         for (SessionSummary session : sessions) {
-            // 1. 总计
             stats.totalUsage.inputTokens += session.usage.inputTokens;
             stats.totalUsage.outputTokens += session.usage.outputTokens;
             stats.totalUsage.cacheWriteTokens += session.usage.cacheWriteTokens;
@@ -923,55 +974,37 @@ public class ClaudeHistoryReader {
             stats.totalUsage.totalTokens += session.usage.totalTokens;
             stats.estimatedCost += session.cost;
 
-            // 2. 日统计
-            String dateStr = String.format("%tF", new Date(session.timestamp));
-            DailyUsage daily = dailyMap.computeIfAbsent(dateStr, k -> {
-                DailyUsage d = new DailyUsage();
-                d.date = k;
-                d.usage = new UsageData();
-                d.modelsUsed = new ArrayList<>();
-                return d;
-            });
-            daily.sessions++;
-            daily.cost += session.cost;
-            daily.usage.inputTokens += session.usage.inputTokens;
-            daily.usage.outputTokens += session.usage.outputTokens;
-            // ... others
-            if (!daily.modelsUsed.contains(session.model)) {
-                daily.modelsUsed.add(session.model);
-            }
-
-            // 3. 模型统计
-            ModelUsage modelStat = modelMap.computeIfAbsent(session.model, k -> {
-                ModelUsage m = new ModelUsage();
-                m.model = k;
-                return m;
-            });
-            modelStat.sessionCount++;
-            modelStat.totalCost += session.cost;
-            modelStat.totalTokens += session.usage.totalTokens;
-            modelStat.inputTokens += session.usage.inputTokens;
-            modelStat.outputTokens += session.usage.outputTokens;
-            modelStat.cacheCreationTokens += session.usage.cacheWriteTokens;
-            modelStat.cacheReadTokens += session.usage.cacheReadTokens;
-
-            // 4. 周对比
-            if (session.timestamp > oneWeekAgo) {
-                currentWeek.sessions++;
-                currentWeek.cost += session.cost;
-                currentWeek.tokens += session.usage.totalTokens;
-            } else if (session.timestamp > twoWeeksAgo) {
-                lastWeek.sessions++;
-                lastWeek.cost += session.cost;
-                lastWeek.tokens += session.usage.totalTokens;
-            }
+            rollup.add(session.timestamp, session.model, session.cost,
+                session.usage.inputTokens, session.usage.outputTokens,
+                session.usage.cacheWriteTokens, session.usage.cacheReadTokens);
         }
 
-        // Finalize Lists
-        stats.dailyUsage = new ArrayList<>(dailyMap.values());
-        stats.dailyUsage.sort(Comparator.comparing(d -> d.date));
-
-        stats.byModel = new ArrayList<>(modelMap.values());
+        // 2. 日统计（按日期升序，只包含有会话的日期）
+        stats.dailyUsage = new ArrayList<>();
+        rollup.forEachDay((day, totals, modelsUsed) -> {
+            DailyUsage daily = new DailyUsage();
+            daily.date = UsageRollup.formatDay(day);
+            daily.sessions = totals.sessions;
+            daily.cost = totals.cost;
+            daily.usage = toUsageData(totals);
+            daily.modelsUsed = modelsUsed;
+            stats.dailyUsage.add(daily);
+        });
+
+        // 3. 模型统计
+        stats.byModel = new ArrayList<>();
+        rollup.forEachModel((model, totals) -> {
+            ModelUsage modelStat = new ModelUsage();
+            modelStat.model = model;
+            modelStat.sessionCount = totals.sessions;
+            modelStat.totalCost = totals.cost;
+            modelStat.totalTokens = totals.totalTokens();
+            modelStat.inputTokens = totals.inputTokens;
+            modelStat.outputTokens = totals.outputTokens;
+            modelStat.cacheCreationTokens = totals.cacheWriteTokens;
+            modelStat.cacheReadTokens = totals.cacheReadTokens;
+            stats.byModel.add(modelStat);
+        });
         stats.byModel.sort((a, b) -> Double.compare(b.totalCost, a.totalCost));
 
         stats.sessions = sessions;
@@ -980,6 +1013,11 @@ public class ClaudeHistoryReader {
             stats.sessions = stats.sessions.subList(0, 200);
         }
 
+        // 4. 周对比：本周为含今天在内的最近 7 天，上周为再往前的 7 天
+        long today = UsageRollup.epochDay(System.currentTimeMillis());
+        WeeklyComparison.WeekData currentWeek = toWeekData(rollup.range(today - 6, today));
+        WeeklyComparison.WeekData lastWeek = toWeekData(rollup.range(today - 13, today - 7));
+
         // Calculate Trends
         stats.weeklyComparison.currentWeek = currentWeek;
         stats.weeklyComparison.lastWeek = lastWeek;
@@ -989,6 +1027,24 @@ public class ClaudeHistoryReader {
         stats.weeklyComparison.trends.tokens = calculateTrend(currentWeek.tokens, lastWeek.tokens);
     }
 
+    private static UsageData toUsageData(UsageRollup.Totals totals) {
+        UsageData usage = new UsageData();
+        usage.inputTokens = totals.inputTokens;
+        usage.outputTokens = totals.outputTokens;
+        usage.cacheWriteTokens = totals.cacheWriteTokens;
+        usage.cacheReadTokens = totals.cacheReadTokens;
+        usage.totalTokens = totals.totalTokens();
+        return usage;
+    }
+
+    private static WeeklyComparison.WeekData toWeekData(UsageRollup.Totals totals) {
+        WeeklyComparison.WeekData week = new WeeklyComparison.WeekData();
+        week.sessions = totals.sessions;
+        week.cost = totals.cost;
+        week.tokens = totals.totalTokens();
+        return week;
+    }
+
     private double calculateTrend(double current, double last) {
         if (last == 0) return 0;
         return ((current - last) / last) * 100;
@@ -1006,18 +1062,18 @@ public class ClaudeHistoryReader {
                     return getAllDataAsJson();
 
                 case "/stats":
-                    List<HistoryEntry> historyForStats = readHistory();
-                    Statistics stats = getStatistics(historyForStats);
+                    Statistics stats = getStatistics();
                     return gson.toJson(ApiResponse.success(stats));
 
                 case "/search":
                     String query = params.get("q");
-                    List<HistoryEntry> historyForSearch = readHistory();
-                    List<HistoryEntry> searchResults = searchHistory(historyForSearch, query);
+                    List<HistoryEntry> searchResults = searchHistory(query);
                     Map<String, Object> searchResponse = new HashMap<>();
                     searchResponse.put("query", query);
                     searchResponse.put("count", searchResults.size());
                     searchResponse.put("results", searchResults);
+                    // 会话内容全文检索结果
+                    searchResponse.put("sessions", searchSessions(params.get("path"), query, 50));
                     return gson.toJson(ApiResponse.success(searchResponse));
 
                 case "/project":
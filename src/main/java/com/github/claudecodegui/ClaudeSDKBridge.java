@@ -8,7 +8,10 @@ import com.github.claudecodegui.bridge.BridgeDirectoryResolver;
 import com.github.claudecodegui.bridge.EnvironmentConfigurator;
 import com.github.claudecodegui.bridge.NodeDetector;
 import com.github.claudecodegui.bridge.ProcessManager;
+import com.github.claudecodegui.bridge.TurnWatchdog;
 import com.github.claudecodegui.model.NodeDetectionResult;
+import com.github.claudecodegui.util.JsonCodec;
+import com.intellij.util.concurrency.AppExecutorUtil;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -17,7 +20,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -30,7 +33,7 @@ public class ClaudeSDKBridge {
     private static final String NODE_SCRIPT = "simple-query.js";
     private static final String CHANNEL_SCRIPT = "channel-manager.js";
 
-    private final Gson gson = new Gson();
+    private final Gson gson = JsonCodec.gson();
     private final NodeDetector nodeDetector = new NodeDetector();
     private final BridgeDirectoryResolver directoryResolver = new BridgeDirectoryResolver();
     private final ProcessManager processManager = new ProcessManager();
@@ -253,7 +256,7 @@ public class ClaudeSDKBridge {
      * 异步执行查询
      */
     public CompletableFuture<SDKResult> executeQueryAsync(String prompt) {
-        return CompletableFuture.supplyAsync(() -> executeQuerySync(prompt));
+        return CompletableFuture.supplyAsync(() -> executeQuerySync(prompt), AppExecutorUtil.getAppExecutorService());
     }
 
     /**
@@ -265,6 +268,7 @@ public class ClaudeSDKBridge {
             StringBuilder output = new StringBuilder();
             StringBuilder jsonBuffer = new StringBuilder();
             boolean inJson = false;
+            File processTempDir = null;
 
             try {
                 String node = nodeDetector.findNodeExecutable();
@@ -279,8 +283,7 @@ public class ClaudeSDKBridge {
                 command.add(NODE_SCRIPT);
                 // 不再通过命令行参数传递 prompt
 
-                File processTempDir = processManager.prepareClaudeTempDir();
-                Set<String> existingTempMarkers = processManager.snapshotClaudeCwdFiles(processTempDir);
+                processTempDir = processManager.prepareClaudeTempDir(null);
 
                 ProcessBuilder pb = new ProcessBuilder(command);
                 File workDir = directoryResolver.findSdkDir();
@@ -378,7 +381,6 @@ public class ClaudeSDKBridge {
 
                 } finally {
                     processManager.waitForProcessTermination(process);
-                    processManager.cleanupClaudeTempFiles(processTempDir, existingTempMarkers);
                 }
 
             } catch (Exception e) {
@@ -386,10 +388,13 @@ public class ClaudeSDKBridge {
                 result.error = e.getMessage();
                 result.rawOutput = output.toString();
                 callback.onError(e.getMessage());
+            } finally {
+                // 进程启动前失败时也要删除临时目录并取消登记
+                processManager.cleanupClaudeTempDir(processTempDir);
             }
 
             return result;
-        });
+        }, AppExecutorUtil.getAppExecutorService());
     }
 
     /**
@@ -463,7 +468,7 @@ public class ClaudeSDKBridge {
         JsonObject openedFiles,
         MessageCallback callback
     ) {
-        return CompletableFuture.supplyAsync(() -> {
+        CompletableFuture<SDKResult> future = CompletableFuture.supplyAsync(() -> {
             long sendStartTime = System.currentTimeMillis();
             // System.out.println("[ClaudeSDKBridge] ====== 消息发送开始 ======");
             // System.out.println("[ClaudeSDKBridge] 消息内容: " + (message != null ? message.substring(0, Math.min(50, message.length())) + "..." : "null"));
@@ -476,6 +481,8 @@ public class ClaudeSDKBridge {
             final boolean[] hadSendError = {false};
             // 记录 Node.js 进程中最后一条错误日志，方便在 "Process exited with code" 时附加具体原因
             final String[] lastNodeError = {null};
+            boolean slotAcquired = false;
+            File processTempDir = null;
 
             try {
                 // 序列化附件
@@ -500,6 +507,7 @@ public class ClaudeSDKBridge {
 
                 String node = nodeDetector.findNodeExecutable();
                 File workDir = directoryResolver.findSdkDir();
+                long nodeResolvedTime = System.currentTimeMillis();
 
                 // 诊断：打印关键环境信息
                 // System.out.println("[ClaudeSDKBridge] 环境诊断:");
@@ -533,8 +541,19 @@ public class ClaudeSDKBridge {
                 command.add(hasAttachments ? "sendWithAttachments" : "send");
                 // 不再传递 message 等参数到命令行，改用 stdin
 
-                File processTempDir = processManager.prepareClaudeTempDir();
-                Set<String> existingTempMarkers = processManager.snapshotClaudeCwdFiles(processTempDir);
+                long stdinBuiltTime = System.currentTimeMillis();
+                // 全局并发上限：排队等待执行槽位（先到先得），排队期间可被中断
+                if (!processManager.acquireProcessSlot(channelId)) {
+                    processManager.wasInterrupted(channelId);
+                    System.out.println("[ClaudeSDKBridge] Channel interrupted while queued: " + channelId);
+                    result.success = false;
+                    result.error = "User interrupted";
+                    callback.onComplete(result);
+                    return result;
+                }
+                slotAcquired = true;
+                processTempDir = processManager.prepareClaudeTempDir(channelId);
+                long tempDirTime = System.currentTimeMillis();
 
                 ProcessBuilder pb = new ProcessBuilder(command);
 
@@ -555,17 +574,29 @@ public class ClaudeSDKBridge {
                 envConfigurator.configureTempDir(env, processTempDir);
                 // 始终使用 stdin 传递参数
                 env.put("CLAUDE_USE_STDIN", "true");
+                // 权限请求携带 channel，IDE 据此交给发起它的会话
+                if (channelId != null) {
+                    env.put("CLAUDE_CHANNEL_ID", channelId);
+                }
 
                 pb.redirectErrorStream(true);
                 envConfigurator.updateProcessEnvironment(pb, node);
+                // 中断时的带内取消标记写入 Node 侧的通信目录
+                String cancelDir = env.get("CLAUDE_PERMISSION_DIR");
+                processManager.setInBandCancelDir(cancelDir != null ? new File(cancelDir) : null);
+                long envReadyTime = System.currentTimeMillis();
 
                 Process process = null;
                 try {
                     // System.out.println("[ClaudeSDKBridge] 正在启动 Node.js 进程...");
                     // System.out.println("[ClaudeSDKBridge] 命令: " + String.join(" ", command));
                     process = pb.start();
+                    long processStartedTime = System.currentTimeMillis();
                     // System.out.println("[ClaudeSDKBridge] Node.js 进程已启动，PID: " + process.pid());
                     processManager.registerProcess(channelId, process);
+                    // 看门狗：首字节/空闲/总时长超限时停止进程，下方按超时错误结束本轮
+                    TurnWatchdog.Turn watchdogTurn = TurnWatchdog.getInstance()
+                        .start(channelId, error -> processManager.stopChannel(channelId));
 
                     // 通过 stdin 写入所有参数（包括消息和附件）
                     try (java.io.OutputStream stdin = process.getOutputStream()) {
@@ -586,7 +617,18 @@ public class ClaudeSDKBridge {
                             String line;
                             while ((line = reader.readLine()) != null) {
                                 lineCount++;
+                                watchdogTurn.onOutput(line);
                                 long now = System.currentTimeMillis();
+                                if (lineCount == 1) {
+                                    // 启动耗时分解：定位 Node 检测 / 临时目录 / 环境变量 / 进程创建 / 首行输出各阶段的开销
+                                    System.out.println("[ClaudeSDKBridge] Spawn latency: node=" + (nodeResolvedTime - sendStartTime)
+                                        + "ms, stdin=" + (stdinBuiltTime - nodeResolvedTime)
+                                        + "ms, tempDir=" + (tempDirTime - stdinBuiltTime)
+                                        + "ms, env=" + (envReadyTime - tempDirTime)
+                                        + "ms, start=" + (processStartedTime - envReadyTime)
+                                        + "ms, firstOutput=" + (now - processStartedTime)
+                                        + "ms, total=" + (now - sendStartTime) + "ms");
+                                }
                                 // 每 30 秒打印一次状态，或者收到第一行输出时
                                 // if (lineCount == 1 || now - lastOutputTime > 30000) {
                                 //     System.out.println("[ClaudeSDKBridge] 已读取 " + lineCount + " 行输出，耗时 " + (now - sendStartTime) / 1000 + " 秒");
@@ -656,17 +698,8 @@ public class ClaudeSDKBridge {
 
                         // System.out.println("[ClaudeSDKBridge] Node.js 输出读取完毕，共 " + lineCount + " 行");
                         // System.out.println("[ClaudeSDKBridge] 等待进程结束...");
-	                        // 设置60秒超时等待进程结束的逻辑存在严重问题，先恢复为无限等待进程结束
-	                        // boolean finished = process.waitFor(60, TimeUnit.SECONDS);
-	                        // if (!finished) {
-	                        //     System.out.println("[ClaudeSDKBridge] Process timeout after 60 seconds, force killing...");
-	                        //     process.destroyForcibly();
-	                        //     result.success = false;
-	                        //     result.error = "响应超时（60s），已自动终止本次请求，请检查您的配置，或者在终端运行claude 测试是否可以正常使用";
-	                        //     callback.onError("响应超时（60s），已自动终止本次请求，请检查您的配置，或者在终端运行claude 测试是否可以正常使用");
-	                        //     return result;
-	                        // }
-	                        process.waitFor();
+                        // 卡住的轮次由 TurnWatchdog 按首字节/空闲/总时长限制终止，这里只等待进程退出
+                        processManager.awaitExit(channelId, process);
 
                         long totalTime = System.currentTimeMillis() - sendStartTime;
                         // System.out.println("[ClaudeSDKBridge] ====== 消息发送完成 ======");
@@ -674,12 +707,17 @@ public class ClaudeSDKBridge {
 
                         int exitCode = process.exitValue();
                         boolean wasInterrupted = processManager.wasInterrupted(channelId);
+                        String timeoutError = watchdogTurn.getTimeoutError();
 
                         result.finalResult = assistantContent.toString();
                         result.messageCount = result.messages.size();
 
                         if (wasInterrupted) {
                             callback.onComplete(result);
+                        } else if (timeoutError != null) {
+                            result.success = false;
+                            result.error = timeoutError;
+                            callback.onError(timeoutError);
                         } else if (!hadSendError[0]) {
                             result.success = exitCode == 0 && !wasInterrupted;
                             if (result.success) {
@@ -706,26 +744,47 @@ public class ClaudeSDKBridge {
 
                         return result;
                     } finally {
+                        watchdogTurn.close();
                         processManager.unregisterProcess(channelId, process);
                     }
                 } finally {
                     processManager.waitForProcessTermination(process);
-                    processManager.cleanupClaudeTempFiles(processTempDir, existingTempMarkers);
+                    processManager.releaseProcessSlot();
+                    slotAcquired = false;
                 }
 
             } catch (Exception e) {
+                if (slotAcquired) {
+                    processManager.releaseProcessSlot();
+                }
                 result.success = false;
                 result.error = e.getMessage();
                 callback.onError(e.getMessage());
                 return result;
+            } finally {
+                // 进程启动前失败时也要删除临时目录并取消登记
+                processManager.cleanupClaudeTempDir(processTempDir);
             }
-        }).exceptionally(ex -> {
+        }, AppExecutorUtil.getAppExecutorService()).exceptionally(ex -> {
               SDKResult errorResult = new SDKResult();
               errorResult.success = false;
               errorResult.error = ex.getCause() != null ? ex.getCause().getMessage() : ex.getMessage();
               callback.onError(errorResult.error);
               return errorResult;
           });
+        stopOnCancel(future, channelId);
+        return future;
+    }
+
+    /**
+     * 调用方取消返回的 future 时同步停止通道的进程（停止过程可能阻塞数秒，在后台线程执行）
+     */
+    private void stopOnCancel(CompletableFuture<SDKResult> future, String channelId) {
+        future.whenComplete((result, ex) -> {
+            if (ex instanceof CancellationException) {
+                CompletableFuture.runAsync(() -> processManager.interruptChannel(channelId), AppExecutorUtil.getAppExecutorService());
+            }
+        });
     }
 
     /**
@@ -907,7 +966,7 @@ public class ClaudeSDKBridge {
                 // e.printStackTrace();
                 return new ArrayList<>();
             }
-        });
+        }, AppExecutorUtil.getAppExecutorService());
     }
 
     // ============================================================================
@@ -1,12 +1,19 @@
 package com.github.claudecodegui;
 
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.DumbAwareAction;
 import com.intellij.openapi.project.DumbAware;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowFactory;
 import com.intellij.ui.content.Content;
 import com.intellij.ui.content.ContentFactory;
+import com.intellij.ui.content.ContentManagerEvent;
+import com.intellij.ui.content.ContentManagerListener;
+import com.intellij.openapi.util.Key;
 import com.intellij.ui.jcef.JBCefBrowser;
 import com.intellij.ui.jcef.JBCefBrowserBase;
 import com.intellij.ui.jcef.JBCefJSQuery;
@@ -32,9 +39,10 @@ import com.github.claudecodegui.handler.*;
 import com.github.claudecodegui.permission.PermissionRequest;
 import com.github.claudecodegui.permission.PermissionService;
 import com.github.claudecodegui.ui.ErrorPanelBuilder;
-import com.github.claudecodegui.util.HtmlLoader;
+import com.github.claudecodegui.ui.BrowserPool;
 import com.github.claudecodegui.util.JsUtils;
 import com.github.claudecodegui.cache.SlashCommandCache;
+import com.github.claudecodegui.util.JsonCodec;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
@@ -45,9 +53,9 @@ import java.awt.datatransfer.*;
 import java.awt.dnd.*;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.io.File;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Claude SDK 聊天工具窗口
@@ -55,33 +63,82 @@ import java.util.concurrent.CompletableFuture;
  */
 public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
 
-    private static final Map<Project, ClaudeChatWindow> instances = new ConcurrentHashMap<>();
+    private static final String TAB_TITLE = "Claude Claude";
+
+    // 标签页对应的聊天窗口
+    private static final Key<ClaudeChatWindow> CHAT_WINDOW_KEY = Key.create("claude.code.chat.window");
 
     /**
-     * 获取指定项目的聊天窗口实例.
+     * 获取指定项目的聊天窗口实例（有多个会话标签页时为当前选中的）.
      *
      * @param project 项目
      * @return 聊天窗口实例，如果不存在返回 null
      */
     public static ClaudeChatWindow getChatWindow(Project project) {
-        return instances.get(project);
+        return ChatSessionManager.getActiveWindow(project);
+    }
+
+    @Override
+    public void init(@NotNull ToolWindow toolWindow) {
+        // 工具窗口注册时预热聊天页面，首次打开时直接使用
+        ApplicationManager.getApplication().invokeLater(() -> BrowserPool.getInstance().warmUp());
     }
 
     @Override
     public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
-        ClaudeChatWindow chatWindow = new ClaudeChatWindow(project);
-        ContentFactory contentFactory = ContentFactory.getInstance();
-        Content content = contentFactory.createContent(chatWindow.getContent(), "Claude Claude", false);
-        toolWindow.getContentManager().addContent(content);
+        addChatTab(project, toolWindow);
+
+        // 标题栏按钮：在新标签页中开始一个并行会话
+        toolWindow.setTitleActions(List.of(new DumbAwareAction("新建会话标签页", "在新标签页中开始一个并行会话", AllIcons.General.Add) {
+            @Override
+            public void actionPerformed(@NotNull AnActionEvent e) {
+                addChatTab(project, toolWindow);
+            }
 
-        content.setDisposer(() -> {
-            ClaudeChatWindow window = instances.get(project);
-            if (window != null) {
-                window.dispose();
+            @Override
+            public void update(@NotNull AnActionEvent e) {
+                e.getPresentation().setEnabled(ChatSessionManager.getInstance(project).canOpenSession());
+            }
+
+            @Override
+            public @NotNull ActionUpdateThread getActionUpdateThread() {
+                return ActionUpdateThread.EDT;
+            }
+        }));
+
+        // 选中的标签页作为活动会话（右键发送代码等外部操作发给它）
+        toolWindow.getContentManager().addContentManagerListener(new ContentManagerListener() {
+            @Override
+            public void selectionChanged(@NotNull ContentManagerEvent event) {
+                ClaudeChatWindow window = event.getContent().getUserData(CHAT_WINDOW_KEY);
+                if (window != null && event.getOperation() == ContentManagerEvent.ContentOperation.add) {
+                    ChatSessionManager.getInstance(project).setActiveWindow(window);
+                }
             }
         });
     }
 
+    /**
+     * 新建一个会话标签页（每个标签页持有独立的会话与 channel）
+     */
+    private static void addChatTab(Project project, ToolWindow toolWindow) {
+        ChatSessionManager manager = ChatSessionManager.getInstance(project);
+        if (!manager.canOpenSession()) {
+            System.out.println("[ClaudeSDKToolWindow] 已达到会话标签页上限: " + ChatSessionManager.MAX_SESSIONS);
+            return;
+        }
+
+        int tabNumber = manager.nextTabNumber();
+        ClaudeChatWindow chatWindow = new ClaudeChatWindow(project);
+        ContentFactory contentFactory = ContentFactory.getInstance();
+        String title = tabNumber == 1 ? TAB_TITLE : TAB_TITLE + " (" + tabNumber + ")";
+        Content content = contentFactory.createContent(chatWindow.getContent(), title, false);
+        content.putUserData(CHAT_WINDOW_KEY, chatWindow);
+        content.setDisposer(chatWindow::dispose);
+        toolWindow.getContentManager().addContent(content);
+        toolWindow.getContentManager().setSelectedContent(content);
+    }
+
     public static void addSelectionFromExternal(Project project, String selectionInfo) {
         ClaudeChatWindow.addSelectionFromExternalInternal(project, selectionInfo);
     }
@@ -102,13 +159,13 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
         private final CodexSDKBridge codexSDKBridge;
         private final Project project;
         private final CodemossSettingsService settingsService;
-        private final HtmlLoader htmlLoader;
 
         // Editor Event Listeners
         private Alarm contextUpdateAlarm;
         private MessageBusConnection connection;
 
         private JBCefBrowser browser;
+        private BrowserPool.Lease browserLease;
         private ClaudeSession session;
         private String currentModel = "claude-sonnet-4-5";
 
@@ -124,14 +181,19 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
         private HandlerContext handlerContext;
         private MessageDispatcher messageDispatcher;
         private PermissionHandler permissionHandler;
+        private PermissionService.ChannelDialogShower channelDialogShower;
         private HistoryHandler historyHandler;
+        private ConsoleLogHandler consoleLogHandler;
+
+        // 聊天记录窗口化推送（只在 EDT 上访问）
+        private final TranscriptSync transcriptSync =
+            new TranscriptSync((functionName, json) -> callJavaScript(functionName, JsUtils.escapeJs(json)));
 
         public ClaudeChatWindow(Project project) {
             this.project = project;
             this.claudeSDKBridge = new ClaudeSDKBridge();
             this.codexSDKBridge = new CodexSDKBridge();
             this.settingsService = new CodemossSettingsService();
-            this.htmlLoader = new HtmlLoader(getClass());
             this.mainPanel = new JPanel(new BorderLayout());
 
             initializeSession();
@@ -208,8 +270,21 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
         private void setupPermissionService() {
             PermissionService permissionService = PermissionService.getInstance(project);
             permissionService.start();
-            permissionService.setDialogShower((toolName, inputs) ->
-                permissionHandler.showFrontendPermissionDialog(toolName, inputs));
+            // 多个会话并行时，权限请求按 channel 交给发起它的会话窗口
+            channelDialogShower = new PermissionService.ChannelDialogShower() {
+                @Override
+                public boolean ownsChannel(String channelId) {
+                    return session != null && channelId.equals(session.getChannelId());
+                }
+
+                @Override
+                public CompletableFuture<Integer> showPermissionDialog(String toolName, JsonObject inputs) {
+                    return permissionHandler.showFrontendPermissionDialog(toolName, inputs);
+                }
+            };
+            permissionService.addChannelDialogShower(channelDialogShower);
+            // 不带 channel 的请求交给最近打开的窗口（窗口关闭时由 PermissionService 改派）
+            permissionService.setDialogShower(channelDialogShower);
             System.out.println("[ClaudeChatWindow] Started permission service with frontend dialog");
         }
 
@@ -238,6 +313,10 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
             messageDispatcher.registerHandler(new SettingsHandler(handlerContext));
             messageDispatcher.registerHandler(new SessionHandler(handlerContext));
 
+            // 控制台日志处理器（旧格式日志也需要直接调用）
+            this.consoleLogHandler = new ConsoleLogHandler(handlerContext);
+            messageDispatcher.registerHandler(consoleLogHandler);
+
             // 权限处理器（需要特殊回调）
             this.permissionHandler = new PermissionHandler(handlerContext);
             permissionHandler.setPermissionDeniedCallback(this::interruptDueToPermissionDenial);
@@ -336,14 +415,7 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
         }
 
         private void registerInstance() {
-            synchronized (instances) {
-                ClaudeChatWindow oldInstance = instances.get(project);
-                if (oldInstance != null && oldInstance != this) {
-                    System.out.println("[ClaudeChatWindow] 警告: 项目 " + project.getName() + " 已存在窗口实例，将替换旧实例");
-                    oldInstance.dispose();
-                }
-                instances.put(project, this);
-            }
+            ChatSessionManager.getInstance(project).register(this);
         }
 
         private void createUIComponents() {
@@ -353,12 +425,11 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
             }
 
             try {
-                browser = new JBCefBrowser();
+                // 从浏览器池获取（预热的浏览器已加载好聊天页面）
+                browserLease = BrowserPool.getInstance().acquire();
+                browser = browserLease.browser;
                 handlerContext.setBrowser(browser);
 
-                // 启用开发者工具（右键菜单）
-                browser.getJBCefClient().setProperty("allowRunningInsecureContent", true);
-
                 JBCefBrowserBase browserBase = browser;
                 JBCefJSQuery jsQuery = JBCefJSQuery.create(browserBase);
                 jsQuery.addHandler((msg) -> {
@@ -393,8 +464,8 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
                     }
                 });
 
-                String htmlContent = htmlLoader.loadChatHtml();
-
+                // 预热页面可能在注册监听与检查 isPageLoaded 之间加载完成，保证只初始化一次
+                AtomicBoolean pageReadyHandled = new AtomicBoolean(false);
                 browser.getJBCefClient().addLoadHandler(new CefLoadHandlerAdapter() {
                     @Override
                     public void onLoadEnd(CefBrowser cefBrowser, CefFrame frame, int httpStatusCode) {
@@ -405,46 +476,16 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
                             return;
                         }
 
-                        String injection = "window.sendToJava = function(msg) { " + jsQuery.inject("msg") + " };";
-                        cefBrowser.executeJavaScript(injection, cefBrowser.getURL(), 0);
-
-                        // 注入获取剪贴板路径的函数
-                        String clipboardPathInjection =
-                            "window.getClipboardFilePath = function() {" +
-                            "  return new Promise((resolve) => {" +
-                            "    " + getClipboardPathQuery.inject("''",
-                                "function(response) { resolve(response); }",
-                                "function(error_code, error_message) { console.error('Failed to get clipboard path:', error_message); resolve(''); }") +
-                            "  });" +
-                            "};";
-                        cefBrowser.executeJavaScript(clipboardPathInjection, cefBrowser.getURL(), 0);
-
-                        // 将控制台日志转发到 IDEA 控制台
-                        String consoleForward =
-                            "const originalLog = console.log;" +
-                            "const originalError = console.error;" +
-                            "const originalWarn = console.warn;" +
-                            "console.log = function(...args) {" +
-                            "  originalLog.apply(console, args);" +
-                            "  window.sendToJava(JSON.stringify({type: 'console.log', args: args}));" +
-                            "};" +
-                            "console.error = function(...args) {" +
-                            "  originalError.apply(console, args);" +
-                            "  window.sendToJava(JSON.stringify({type: 'console.error', args: args}));" +
-                            "};" +
-                            "console.warn = function(...args) {" +
-                            "  originalWarn.apply(console, args);" +
-                            "  window.sendToJava(JSON.stringify({type: 'console.warn', args: args}));" +
-                            "};";
-                        cefBrowser.executeJavaScript(consoleForward, cefBrowser.getURL(), 0);
-
-                        // 在浏览器加载完成后获取斜杠命令
-                        System.out.println("[ClaudeChatWindow] About to call fetchSlashCommandsOnStartup");
-                        fetchSlashCommandsOnStartup();
+                        if (pageReadyHandled.compareAndSet(false, true)) {
+                            onPageReady(cefBrowser, jsQuery, getClipboardPathQuery);
+                        }
                     }
                 }, browser.getCefBrowser());
 
-                browser.loadHTML(htmlContent);
+                // 预热的页面已加载完成，不会再触发 onLoadEnd
+                if (browserLease.isPageLoaded() && pageReadyHandled.compareAndSet(false, true)) {
+                    onPageReady(browser.getCefBrowser(), jsQuery, getClipboardPathQuery);
+                }
 
                 JComponent browserComponent = browser.getComponent();
 
@@ -492,6 +533,35 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
             }
         }
 
+        /**
+         * 聊天页面加载完成后注入 bridge 并初始化
+         */
+        private void onPageReady(CefBrowser cefBrowser, JBCefJSQuery jsQuery, JBCefJSQuery getClipboardPathQuery) {
+            // 注入后通知页面：预热的页面在注入前可能早已放弃重试
+            String injection = "window.sendToJava = function(msg) { " + jsQuery.inject("msg") + " };"
+                + "window.dispatchEvent(new Event('javaBridgeReady'));";
+            cefBrowser.executeJavaScript(injection, cefBrowser.getURL(), 0);
+
+            // 注入获取剪贴板路径的函数
+            String clipboardPathInjection =
+                "window.getClipboardFilePath = function() {" +
+                "  return new Promise((resolve) => {" +
+                "    " + getClipboardPathQuery.inject("''",
+                    "function(response) { resolve(response); }",
+                    "function(error_code, error_message) { console.error('Failed to get clipboard path:', error_message); resolve(''); }") +
+                "  });" +
+                "};";
+            cefBrowser.executeJavaScript(clipboardPathInjection, cefBrowser.getURL(), 0);
+
+            // 将控制台日志转发到 IDEA 控制台（环形缓冲 + 采样 + 批量投递）
+            String consoleForward = ConsoleLogHandler.buildForwardScript();
+            cefBrowser.executeJavaScript(consoleForward, cefBrowser.getURL(), 0);
+
+            // 在浏览器加载完成后获取斜杠命令
+            System.out.println("[ClaudeChatWindow] About to call fetchSlashCommandsOnStartup");
+            fetchSlashCommandsOnStartup();
+        }
+
         private void showErrorPanel() {
             String message = "无法找到 Node.js\n\n" +
                 "请确保:\n" +
@@ -542,29 +612,9 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
         }
 
         private void handleJavaScriptMessage(String message) {
-            // 处理控制台日志转发
+            // 处理旧格式的单条控制台日志（新脚本使用 console_batch 批量投递）
             if (message.startsWith("{\"type\":\"console.")) {
-                try {
-                    JsonObject json = new Gson().fromJson(message, JsonObject.class);
-                    String logType = json.get("type").getAsString();
-                    JsonArray args = json.getAsJsonArray("args");
-
-                    StringBuilder logMessage = new StringBuilder("[Webview] ");
-                    for (int i = 0; i < args.size(); i++) {
-                        if (i > 0) logMessage.append(" ");
-                        logMessage.append(args.get(i).toString());
-                    }
-
-                    if ("console.error".equals(logType)) {
-                        System.err.println(logMessage);
-                    } else if ("console.warn".equals(logType)) {
-                        System.out.println(logMessage);
-                    } else {
-                        System.out.println(logMessage);
-                    }
-                } catch (Exception e) {
-                    System.err.println("[Backend] 解析控制台日志失败: " + e.getMessage());
-                }
+                consoleLogHandler.handleLegacyMessage(message);
                 return;
             }
 
@@ -587,10 +637,19 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
                 createNewSession();
                 return;
             }
+            // 特殊处理：加载更早的聊天记录（窗口状态在本窗口中维护）
+            if ("load_older_messages".equals(type)) {
+                SwingUtilities.invokeLater(() -> transcriptSync.loadOlder(session.getMessages()));
+                return;
+            }
             // 特殊处理：刷新斜杠命令列表
             if ("refresh_slash_commands".equals(type)) {
                 System.out.println("[Backend] Received refresh_slash_commands request");
-                fetchSlashCommandsOnStartup();
+                if (slashCommandCache != null) {
+                    slashCommandCache.refresh();
+                } else {
+                    fetchSlashCommandsOnStartup();
+                }
                 return;
             }
 
@@ -617,7 +676,12 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
             System.out.println("Loading history session: " + sessionId + " from project: " + projectPath);
 
             callJavaScript("clearMessages");
+            SwingUtilities.invokeLater(transcriptSync::reset);
 
+            // 旧会话排队的提示词不再发送
+            if (session != null) {
+                session.clearQueue();
+            }
             session = new ClaudeSession(project, claudeSDKBridge, codexSDKBridge);
             handlerContext.setSession(session);
             setupSessionCallbacks();
@@ -635,12 +699,15 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
         }
 
         private void setupSessionCallbacks() {
+            ClaudeSession owner = session;
             session.setCallback(new ClaudeSession.SessionCallback() {
                 @Override
                 public void onMessageUpdate(List<ClaudeSession.Message> messages) {
                     SwingUtilities.invokeLater(() -> {
-                        String messagesJson = convertMessagesToJson(messages);
-                        callJavaScript("updateMessages", JsUtils.escapeJs(messagesJson));
+                        // 已被替换的旧会话迟到的更新不再推送
+                        if (owner == session) {
+                            transcriptSync.update(messages);
+                        }
                     });
                     pushUsageUpdateFromMessages(messages);
                 }
@@ -677,19 +744,32 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
                 }
 
                 @Override
-                public void onSlashCommandsReceived(List<String> slashCommands) {
-                    // 不再发送旧格式（字符串数组）的命令到前端
-                    // 原因：
-                    // 1. 初始化时已经从 getSlashCommands() 获取了完整的命令列表（包含 description）
-                    // 2. 这里接收到的是旧格式（只有命令名，没有描述）
-                    // 3. 如果发送到前端会覆盖完整的命令列表，导致 description 丢失
+                public void onSlashCommandsReceived(List<JsonObject> slashCommands) {
+                    // 会话 init 时输出的命令列表写入缓存，由缓存决定是否需要通知前端
+                    // （只有命令名时会与已有列表合并，避免覆盖 description）
                     int incomingCount = slashCommands != null ? slashCommands.size() : 0;
-                    System.out.println("[ClaudeChatWindow] onSlashCommandsReceived called (old format, ignored). incoming=" + incomingCount);
+                    System.out.println("[ClaudeChatWindow] onSlashCommandsReceived from session, incoming=" + incomingCount);
+                    if (slashCommandCache != null) {
+                        slashCommandCache.updateFromSession(slashCommands);
+                    }
+                }
 
-                    // 记录收到命令，但不发送到前端
-                    if (slashCommands != null && !slashCommands.isEmpty() && !slashCommandsFetched) {
-                        System.out.println("[ClaudeChatWindow] Received " + incomingCount + " slash commands (old format), but keeping existing commands with descriptions");
+                @Override
+                public void onQueueChanged(List<ClaudeSession.QueuedPrompt> queue) {
+                    JsonArray items = new JsonArray();
+                    for (ClaudeSession.QueuedPrompt prompt : queue) {
+                        JsonObject item = new JsonObject();
+                        item.addProperty("id", prompt.id);
+                        item.addProperty("text", prompt.text != null ? prompt.text : "");
+                        item.addProperty("attachmentCount", prompt.attachments != null ? prompt.attachments.size() : 0);
+                        items.add(item);
                     }
+                    String queueJson = items.toString();
+                    SwingUtilities.invokeLater(() -> {
+                        if (owner == session) {
+                            callJavaScript("updatePromptQueue", JsUtils.escapeJs(queueJson));
+                        }
+                    });
                 }
             });
         }
@@ -722,7 +802,7 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
                 System.out.println("[ClaudeChatWindow] Slash command cache listener triggered, count=" + commands.size());
                 SwingUtilities.invokeLater(() -> {
                     try {
-                        Gson gson = new Gson();
+                        Gson gson = JsonCodec.gson();
                         String commandsJson = gson.toJson(commands);
                         System.out.println("[ClaudeChatWindow] Calling updateSlashCommands with JSON length=" + commandsJson.length());
                         callJavaScript("updateSlashCommands", JsUtils.escapeJs(commandsJson));
@@ -739,22 +819,6 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
             slashCommandCache.init();
         }
 
-        private String convertMessagesToJson(List<ClaudeSession.Message> messages) {
-            Gson gson = new Gson();
-            JsonArray messagesArray = new JsonArray();
-            for (ClaudeSession.Message msg : messages) {
-                JsonObject msgObj = new JsonObject();
-                msgObj.addProperty("type", msg.type.toString().toLowerCase());
-                msgObj.addProperty("timestamp", msg.timestamp);
-                msgObj.addProperty("content", msg.content != null ? msg.content : "");
-                if (msg.raw != null) {
-                    msgObj.add("raw", msg.raw);
-                }
-                messagesArray.add(msgObj);
-            }
-            return gson.toJson(messagesArray);
-        }
-
         private void pushUsageUpdateFromMessages(List<ClaudeSession.Message> messages) {
             try {
                 JsonObject lastUsage = null;
@@ -784,7 +848,7 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
                 usageUpdate.addProperty("usedTokens", usedTokens);
                 usageUpdate.addProperty("maxTokens", maxTokens);
 
-                String usageJson = new Gson().toJson(usageUpdate);
+                String usageJson = JsonCodec.gson().toJson(usageUpdate);
                 SwingUtilities.invokeLater(() -> {
                     String js = "if (window.onUsageUpdate) { window.onUsageUpdate('" + JsUtils.escapeJs(usageJson) + "'); }";
                     if (browser != null && !disposed) {
@@ -801,6 +865,7 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
 
             // 清空前端消息显示（修复新建会话时消息不清空的bug）
             callJavaScript("clearMessages");
+            SwingUtilities.invokeLater(transcriptSync::reset);
 
             // 先中断旧会话，确保彻底断开旧的连接
             // 使用异步方式等待中断完成，避免竞态条件
@@ -841,7 +906,7 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
                     usageUpdate.addProperty("usedTokens", 0);
                     usageUpdate.addProperty("maxTokens", maxTokens);
 
-                    String usageJson = new Gson().toJson(usageUpdate);
+                    String usageJson = JsonCodec.gson().toJson(usageUpdate);
                     String js = "if (window.onUsageUpdate) { window.onUsageUpdate('" + JsUtils.escapeJs(usageJson) + "'); }";
                     if (browser != null && !disposed) {
                         browser.getCefBrowser().executeJavaScript(js, browser.getCefBrowser().getURL(), 0);
@@ -923,14 +988,13 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
                 return;
             }
 
-            ClaudeChatWindow window = instances.get(project);
+            ClaudeChatWindow window = ChatSessionManager.getActiveWindow(project);
             if (window == null) {
                 System.err.println("[ClaudeSDKToolWindow] 错误: 找不到项目 " + project.getName() + " 的窗口实例");
                 return;
             }
 
             if (window.disposed) {
-                instances.remove(project);
                 return;
             }
 
@@ -978,10 +1042,9 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
             disposed = true;
             handlerContext.setDisposed(true);
 
-            synchronized (instances) {
-                if (instances.get(project) == this) {
-                    instances.remove(project);
-                }
+            ChatSessionManager.getInstance(project).unregister(this);
+            if (channelDialogShower != null) {
+                PermissionService.getInstance(project).removeChannelDialogShower(channelDialogShower);
             }
 
             try {
@@ -991,8 +1054,9 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
             }
 
             try {
-                if (browser != null) {
-                    browser.dispose();
+                if (browserLease != null) {
+                    BrowserPool.getInstance().release(browserLease);
+                    browserLease = null;
                     browser = null;
                 }
             } catch (Exception e) {
@@ -6,42 +6,40 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.github.claudecodegui.permission.PermissionManager;
 import com.github.claudecodegui.permission.PermissionRequest;
+import com.github.claudecodegui.util.ContentHash;
 import com.github.claudecodegui.util.EditorFileUtils;
+import com.github.claudecodegui.util.JsonCodec;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.project.Project;
 import com.intellij.util.concurrency.AppExecutorUtil;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
 /**
  * Claude 会话管理类
  * 负责维护单个对话会话的状态和消息历史
+ *
+ * 会话状态（标识、忙碌/加载/错误、消息列表、斜杠命令等）保存在不可变快照 State 中，
+ * 通过 AtomicReference 发布：bridge 读取线程、EDT 与 CompletableFuture 回调都以 CAS 方式提交新快照，
+ * 读取方拿到的快照可直接遍历和序列化，无需加锁或复制。
  */
 public class ClaudeSession {
 
-    private final Gson gson = new Gson();
+    private final Gson gson = JsonCodec.gson();
 
-    // 会话标识
-    private String sessionId;
-    private String channelId;
-
-    // 会话状态
-    private boolean busy = false;
-    private boolean loading = false;
-    private String error = null;
-
-    // 消息历史
-    private final List<Message> messages = new ArrayList<>();
-
-    // 会话元数据
-    private String summary = null;
-    private long lastModifiedTime = System.currentTimeMillis();
-    private String cwd = null;
+    // 会话状态快照
+    private final AtomicReference<State> state = new AtomicReference<>(State.initial());
 
     // IDEA 项目引用（用于获取打开的文件）
     private final Project project;
@@ -54,39 +52,227 @@ public class ClaudeSession {
     private final PermissionManager permissionManager = new PermissionManager();
 
     // 权限模式（传递给SDK）
-    private String permissionMode = "default";
+    private volatile String permissionMode = "default";
 
     // 模型名称（传递给SDK）
-    private String model = "claude-sonnet-4-5";
+    private volatile String model = "claude-sonnet-4-5";
 
     // AI 提供商（claude 或 codex）
-    private String provider = "claude";
-
-    // 斜杠命令列表（从 SDK 获取）
-    private List<String> slashCommands = new ArrayList<>();
+    private volatile String provider = "claude";
 
     /**
-     * 消息类
+     * 消息类（不可变）
+     * 流式输出时通过 withContent()/finished() 生成同一 id 的新版本，并替换快照中的旧版本
      */
-    public static class Message {
+    public static final class Message {
         public enum Type {
             USER, ASSISTANT, SYSTEM, ERROR
         }
 
-        public Type type;
-        public String content;
-        public long timestamp;
-        public JsonObject raw; // 原始消息数据
+        // 消息编号序列（进程内唯一，用作前端列表的稳定 key）
+        private static final AtomicLong ID_SEQUENCE = new AtomicLong();
+
+        public final long id;
+        public final Type type;
+        public final String content;
+        public final long timestamp;
+        public final JsonObject raw; // 原始消息数据（创建后不再修改）
+        // 修改版本：每生成一个新版本加一，前端推送据此只发送变化的消息
+        public final int revision;
+        // 内容哈希（由 finished() 计算，前端据此缓存渲染结果；为 null 表示内容仍可能变化）
+        public final String[] blockHashes;
+        public final String contentHash;
 
         public Message(Type type, String content) {
-            this.type = type;
-            this.content = content;
-            this.timestamp = System.currentTimeMillis();
+            this(type, content, null);
         }
 
         public Message(Type type, String content, JsonObject raw) {
-            this(type, content);
+            this(ID_SEQUENCE.incrementAndGet(), type, content, System.currentTimeMillis(), raw, 0, null, null);
+        }
+
+        private Message(long id, Type type, String content, long timestamp, JsonObject raw,
+                        int revision, String[] blockHashes, String contentHash) {
+            this.id = id;
+            this.type = type;
+            this.content = content;
+            this.timestamp = timestamp;
             this.raw = raw;
+            this.revision = revision;
+            this.blockHashes = blockHashes;
+            this.contentHash = contentHash;
+        }
+
+        /**
+         * 内容已修改的新版本（内容哈希随之失效）
+         */
+        public Message withContent(String content, JsonObject raw) {
+            return new Message(id, type, content, timestamp, raw, revision + 1, null, null);
+        }
+
+        /**
+         * 已完成的新版本：计算各内容块的哈希
+         */
+        public Message finished() {
+            return new Message(id, type, content, timestamp, raw, revision + 1,
+                ContentHash.ofBlocks(raw),
+                content != null && !content.isEmpty() ? ContentHash.of(content) : null);
+        }
+
+        public boolean isFinished() {
+            return blockHashes != null || contentHash != null;
+        }
+    }
+
+    /**
+     * 会话状态快照（不可变）
+     * 修改通过 with* 方法生成新快照，由 ClaudeSession.update() 以 CAS 发布
+     */
+    public static final class State {
+        public final String sessionId;
+        public final String channelId;
+        public final String cwd;
+        public final boolean busy;
+        public final boolean loading;
+        public final String error;
+        // 消息历史（不可修改的列表）
+        public final List<Message> messages;
+        // 斜杠命令列表（从 SDK 获取）
+        public final List<String> slashCommands;
+        public final String summary;
+        public final long lastModifiedTime;
+        // 等待当前轮次结束后发送的提示词（先进先出，不可修改的列表）
+        public final List<QueuedPrompt> queue;
+
+        private State(String sessionId, String channelId, String cwd, boolean busy, boolean loading, String error,
+                      List<Message> messages, List<String> slashCommands, String summary, long lastModifiedTime,
+                      List<QueuedPrompt> queue) {
+            this.sessionId = sessionId;
+            this.channelId = channelId;
+            this.cwd = cwd;
+            this.busy = busy;
+            this.loading = loading;
+            this.error = error;
+            this.messages = messages;
+            this.slashCommands = slashCommands;
+            this.summary = summary;
+            this.lastModifiedTime = lastModifiedTime;
+            this.queue = queue;
+        }
+
+        static State initial() {
+            return new State(null, null, null, false, false, null,
+                Collections.emptyList(), Collections.emptyList(), null, System.currentTimeMillis(), Collections.emptyList());
+        }
+
+        State withSessionId(String sessionId) {
+            return new State(sessionId, channelId, cwd, busy, loading, error, messages, slashCommands, summary, lastModifiedTime, queue);
+        }
+
+        State withChannelId(String channelId) {
+            return new State(sessionId, channelId, cwd, busy, loading, error, messages, slashCommands, summary, lastModifiedTime, queue);
+        }
+
+        State withCwd(String cwd) {
+            return new State(sessionId, channelId, cwd, busy, loading, error, messages, slashCommands, summary, lastModifiedTime, queue);
+        }
+
+        State withStatus(boolean busy, boolean loading, String error) {
+            return new State(sessionId, channelId, cwd, busy, loading, error, messages, slashCommands, summary, lastModifiedTime, queue);
+        }
+
+        State withError(String error) {
+            return withStatus(busy, loading, error);
+        }
+
+        State withSlashCommands(List<String> slashCommands) {
+            return new State(sessionId, channelId, cwd, busy, loading, error, messages,
+                Collections.unmodifiableList(new ArrayList<>(slashCommands)), summary, lastModifiedTime, queue);
+        }
+
+        State withSummary(String summary) {
+            return new State(sessionId, channelId, cwd, busy, loading, error, messages, slashCommands, summary, lastModifiedTime, queue);
+        }
+
+        State withLastModifiedTime(long lastModifiedTime) {
+            return new State(sessionId, channelId, cwd, busy, loading, error, messages, slashCommands, summary, lastModifiedTime, queue);
+        }
+
+        State withMessages(List<Message> messages) {
+            return new State(sessionId, channelId, cwd, busy, loading, error,
+                Collections.unmodifiableList(new ArrayList<>(messages)), slashCommands, summary, lastModifiedTime, queue);
+        }
+
+        /**
+         * 追加一条消息
+         */
+        State addMessage(Message message) {
+            Message[] next = messages.toArray(new Message[messages.size() + 1]);
+            next[next.length - 1] = message;
+            return new State(sessionId, channelId, cwd, busy, loading, error,
+                Collections.unmodifiableList(Arrays.asList(next)), slashCommands, summary, lastModifiedTime, queue);
+        }
+
+        /**
+         * 用新版本替换同 id 的消息（从末尾查找，流式消息通常是最后一条）；
+         * 消息已不在列表中（会话被重新加载）时保持不变
+         */
+        State replaceMessage(Message message) {
+            for (int i = messages.size() - 1; i >= 0; i--) {
+                if (messages.get(i).id == message.id) {
+                    Message[] next = messages.toArray(new Message[0]);
+                    next[i] = message;
+                    return new State(sessionId, channelId, cwd, busy, loading, error,
+                        Collections.unmodifiableList(Arrays.asList(next)), slashCommands, summary, lastModifiedTime, queue);
+                }
+            }
+            return this;
+        }
+
+        State withQueue(List<QueuedPrompt> queue) {
+            return new State(sessionId, channelId, cwd, busy, loading, error, messages, slashCommands, summary, lastModifiedTime,
+                Collections.unmodifiableList(new ArrayList<>(queue)));
+        }
+
+        /**
+         * 在队尾追加一条待发送的提示词
+         */
+        State enqueue(QueuedPrompt prompt) {
+            List<QueuedPrompt> next = new ArrayList<>(queue);
+            next.add(prompt);
+            return withQueue(next);
+        }
+
+        /**
+         * 移除队首的提示词（队列为空时保持不变）
+         */
+        State pollQueue() {
+            return queue.isEmpty() ? this : withQueue(queue.subList(1, queue.size()));
+        }
+
+        /**
+         * 移除指定 id 的提示词（不存在时保持不变）
+         */
+        State removeQueued(long promptId) {
+            List<QueuedPrompt> next = new ArrayList<>(queue);
+            return next.removeIf(p -> p.id == promptId) ? withQueue(next) : this;
+        }
+    }
+
+    /**
+     * 排队等待发送的提示词（当前轮次进行中时提交的后续输入）
+     */
+    public static final class QueuedPrompt {
+        private static final AtomicLong ID_SEQUENCE = new AtomicLong();
+
+        public final long id;
+        public final String text;
+        public final List<Attachment> attachments;
+
+        QueuedPrompt(String text, List<Attachment> attachments) {
+            this.id = ID_SEQUENCE.incrementAndGet();
+            this.text = text;
+            this.attachments = attachments != null ? Collections.unmodifiableList(new ArrayList<>(attachments)) : null;
         }
     }
 
@@ -99,10 +285,18 @@ public class ClaudeSession {
         void onSessionIdReceived(String sessionId);
         void onPermissionRequested(PermissionRequest request);
         void onThinkingStatusChanged(boolean isThinking);
-        void onSlashCommandsReceived(List<String> slashCommands);
+        /**
+         * 会话 init 时收到的斜杠命令列表
+         * 每个元素为 {"name": "...", "description": "..."}，仅有命令名时 description 为空
+         */
+        void onSlashCommandsReceived(List<JsonObject> slashCommands);
+        /**
+         * 提示词队列变化（排队、取消、开始发送时）
+         */
+        void onQueueChanged(List<QueuedPrompt> queue);
     }
 
-    private SessionCallback callback;
+    private volatile SessionCallback callback;
 
     public ClaudeSession(Project project, ClaudeSDKBridge claudeSDKBridge, CodexSDKBridge codexSDKBridge) {
         this.project = project;
@@ -121,48 +315,56 @@ public class ClaudeSession {
         this.callback = callback;
     }
 
+    /**
+     * 获取当前状态快照（一致的只读视图）
+     */
+    public State getState() {
+        return state.get();
+    }
+
     // Getters
     public String getSessionId() {
-        return sessionId;
+        return state.get().sessionId;
     }
 
     public String getChannelId() {
-        return channelId;
+        return state.get().channelId;
     }
 
     public boolean isBusy() {
-        return busy;
+        return state.get().busy;
     }
 
     public boolean isLoading() {
-        return loading;
+        return state.get().loading;
     }
 
     public String getError() {
-        return error;
+        return state.get().error;
     }
 
+    /**
+     * 获取消息列表（快照中的只读列表，不会再变化）
+     */
     public List<Message> getMessages() {
-        return new ArrayList<>(messages);
+        return state.get().messages;
     }
 
     public String getSummary() {
-        return summary;
+        return state.get().summary;
     }
 
     public long getLastModifiedTime() {
-        return lastModifiedTime;
+        return state.get().lastModifiedTime;
     }
 
     /**
      * 设置会话ID和工作目录（用于恢复会话）
      */
     public void setSessionInfo(String sessionId, String cwd) {
-        this.sessionId = sessionId;
+        update(s -> s.withSessionId(sessionId).withCwd(cwd));
         if (cwd != null) {
-            setCwd(cwd);
-        } else {
-            this.cwd = null;
+            System.out.println("[ClaudeSession] Working directory updated to: " + cwd);
         }
     }
 
@@ -170,36 +372,55 @@ public class ClaudeSession {
      * 获取当前工作目录
      */
     public String getCwd() {
-        return cwd;
+        return state.get().cwd;
     }
 
     /**
      * 设置工作目录
      */
     public void setCwd(String cwd) {
-        this.cwd = cwd;
+        update(s -> s.withCwd(cwd));
         System.out.println("[ClaudeSession] Working directory updated to: " + cwd);
     }
 
+    /**
+     * 以 CAS 方式提交新快照（修改函数可能被重试，必须没有副作用）
+     * @return 提交后的快照
+     */
+    private State update(UnaryOperator<State> modifier) {
+        return state.updateAndGet(modifier);
+    }
+
     /**
      * 启动 Claude Agent
      * 如果已有 channelId 则复用，否则创建新的
      */
     public CompletableFuture<String> launchClaude() {
-        if (channelId != null) {
-            return CompletableFuture.completedFuture(channelId);
+        String existingChannelId = state.get().channelId;
+        if (existingChannelId != null) {
+            return CompletableFuture.completedFuture(existingChannelId);
         }
 
-        this.error = null;
-        this.channelId = UUID.randomUUID().toString();
+        // 并发调用时只有一个调用方能占用新的 channelId，其余复用已占用的
+        String newChannelId = UUID.randomUUID().toString();
+        State launched = update(s -> s.channelId != null ? s : s.withChannelId(newChannelId).withError(null));
+        if (!newChannelId.equals(launched.channelId)) {
+            return CompletableFuture.completedFuture(launched.channelId);
+        }
+        String channelId = newChannelId;
 
         return CompletableFuture.supplyAsync(() -> {
             try {
                 // 检查并清理错误的 sessionId（如果是路径而不是 UUID）
+                String sessionId = getSessionId();
                 if (sessionId != null && (sessionId.contains("/") || sessionId.contains("\\"))) {
                     System.err.println("[ClaudeSession] Warning: sessionId looks like a path, resetting: " + sessionId);
+                    String invalidSessionId = sessionId;
+                    update(s -> invalidSessionId.equals(s.sessionId) ? s.withSessionId(null) : s);
                     sessionId = null;
                 }
+                String cwd = getCwd();
+                String provider = this.provider;
 
                 // 根据 provider 选择 SDK
                 JsonObject result;
@@ -214,9 +435,10 @@ public class ClaudeSession {
                     String newSessionId = result.get("sessionId").getAsString();
                     // 验证 sessionId 格式（应该是 UUID 格式）
                     if (!newSessionId.contains("/") && !newSessionId.contains("\\")) {
-                        this.sessionId = newSessionId;
+                        update(s -> s.withSessionId(newSessionId));
+                        SessionCallback callback = this.callback;
                         if (callback != null) {
-                            callback.onSessionIdReceived(sessionId);
+                            callback.onSessionIdReceived(newSessionId);
                         }
                     } else {
                         System.err.println("[ClaudeSession] Ignoring invalid sessionId: " + newSessionId);
@@ -225,27 +447,31 @@ public class ClaudeSession {
 
                 return channelId;
             } catch (Exception e) {
-                this.error = e.getMessage();
-                this.channelId = null;
-                updateState();
+                failLaunch(channelId, e.getMessage());
                 throw new RuntimeException("Failed to launch: " + e.getMessage(), e);
             }
-        }).orTimeout(com.github.claudecodegui.config.TimeoutConfig.QUICK_OPERATION_TIMEOUT,
+        }, AppExecutorUtil.getAppExecutorService()).orTimeout(com.github.claudecodegui.config.TimeoutConfig.QUICK_OPERATION_TIMEOUT,
                      com.github.claudecodegui.config.TimeoutConfig.QUICK_OPERATION_UNIT)
           .exceptionally(ex -> {
               if (ex instanceof java.util.concurrent.TimeoutException) {
                   String timeoutMsg = "启动 Channel 超时（" +
                       com.github.claudecodegui.config.TimeoutConfig.QUICK_OPERATION_TIMEOUT + "秒），请重试";
                   System.err.println("[ClaudeSession] " + timeoutMsg);
-                  this.error = timeoutMsg;
-                  this.channelId = null;
-                  updateState();
+                  failLaunch(channelId, timeoutMsg);
                   throw new RuntimeException(timeoutMsg);
               }
               throw new RuntimeException(ex.getCause());
           });
     }
 
+    /**
+     * 启动失败：释放本次占用的 channelId（已被重新占用时保留）并记录错误
+     */
+    private void failLaunch(String channelId, String message) {
+        update(s -> (channelId.equals(s.channelId) ? s.withChannelId(null) : s).withError(message));
+        updateState();
+    }
+
     /**
      * 发送消息
      */
@@ -255,12 +481,66 @@ public class ClaudeSession {
 
     /**
      * 发送消息（支持附件）
+     * 当前轮次进行中时提示词进入队列，待本轮结束后按先后顺序发送
      */
     public CompletableFuture<Void> send(String input, List<Attachment> attachments) {
+        QueuedPrompt prompt = new QueuedPrompt(input, attachments);
+        // 空闲时直接占用会话，否则入队（同一次 CAS 决定，避免与本轮结束时的出队交错）
+        AtomicBoolean queued = new AtomicBoolean();
+        update(s -> {
+            // 队列非空说明上一轮刚结束、尚未出队，同样排在队尾以保持顺序
+            boolean mustQueue = s.busy || !s.queue.isEmpty();
+            queued.set(mustQueue);
+            return mustQueue ? s.enqueue(prompt) : s.withStatus(true, true, s.error);
+        });
+        if (queued.get()) {
+            System.out.println("[ClaudeSession] Turn in progress, prompt queued: id=" + prompt.id
+                + ", queueSize=" + state.get().queue.size());
+            notifyQueueUpdate();
+            return CompletableFuture.completedFuture(null);
+        }
+        return dispatch(prompt);
+    }
+
+    /**
+     * 取消一条排队中的提示词
+     * @return 提示词仍在队列中并已移除时返回 true
+     */
+    public boolean cancelQueuedPrompt(long promptId) {
+        State previous = state.getAndUpdate(s -> s.removeQueued(promptId));
+        boolean removed = previous.queue.stream().anyMatch(p -> p.id == promptId);
+        if (removed) {
+            notifyQueueUpdate();
+        }
+        return removed;
+    }
+
+    /**
+     * 清空提示词队列
+     */
+    public void clearQueue() {
+        State previous = state.getAndUpdate(s -> s.withQueue(Collections.emptyList()));
+        if (!previous.queue.isEmpty()) {
+            System.out.println("[ClaudeSession] Cleared " + previous.queue.size() + " queued prompt(s)");
+            notifyQueueUpdate();
+        }
+    }
+
+    public List<QueuedPrompt> getQueuedPrompts() {
+        return state.get().queue;
+    }
+
+    /**
+     * 发送一条提示词（调用方已将会话置为忙碌）
+     */
+    private CompletableFuture<Void> dispatch(QueuedPrompt prompt) {
+        String input = prompt.text;
+        List<Attachment> attachments = prompt.attachments;
         // 规范化用户文本
         String normalizedInput = (input != null) ? input.trim() : "";
-        // 添加用户消息到历史
-        Message userMessage = new Message(Message.Type.USER, normalizedInput);
+        // 用户消息的展示内容与原始数据（带附件时包含图片块）
+        String userContent = normalizedInput;
+        JsonObject userRaw = null;
         try {
             if (attachments != null && !attachments.isEmpty()) {
                 com.google.gson.JsonArray contentArr = new com.google.gson.JsonArray();
@@ -319,26 +599,26 @@ public class ClaudeSession {
                 messageObj.add("content", contentArr);
                 com.google.gson.JsonObject rawUser = new com.google.gson.JsonObject();
                 rawUser.add("message", messageObj);
-                userMessage.raw = rawUser;
-                userMessage.content = userDisplayText;
+                userRaw = rawUser;
+                userContent = userDisplayText;
             }
         } catch (Exception e) {
             System.err.println("[ClaudeSession] Failed to attach raw image blocks: " + e.getMessage());
         }
-        messages.add(userMessage);
+        // 添加用户消息到历史
+        Message userMessage = new Message(Message.Type.USER, userContent, userRaw).finished();
+
+        // 摘要取第一条消息
+        String baseSummary = !userContent.isEmpty() ? userContent : normalizedInput;
+        String firstSummary = baseSummary.length() > 45 ? baseSummary.substring(0, 45) + "..." : baseSummary;
+        long now = System.currentTimeMillis();
+
+        // 设置 busy/loading 状态，前端显示"Claude 正在思考"（从队列发出时会话已是忙碌状态）
+        update(s -> s.addMessage(userMessage)
+            .withSummary(s.summary != null ? s.summary : firstSummary)
+            .withLastModifiedTime(now)
+            .withStatus(true, true, s.error));
         notifyMessageUpdate();
-
-        // 更新摘要（第一条消息）
-        if (summary == null) {
-            String baseSummary = (userMessage.content != null && !userMessage.content.isEmpty())
-                ? userMessage.content
-                : normalizedInput;
-            summary = baseSummary.length() > 45 ? baseSummary.substring(0, 45) + "..." : baseSummary;
-        }
-
-        this.lastModifiedTime = System.currentTimeMillis();
-        this.busy = true;
-        this.loading = true;  // 设置 loading 状态，前端显示"Claude 正在思考"
         updateState();
 
         return launchClaude().thenCompose(chId -> {
@@ -398,6 +678,9 @@ public class ClaudeSession {
 
             return fileInfoFuture.thenCompose(openedFilesJson -> {
             // 根据 provider 选择 SDK
+            State current = state.get();
+            String sessionId = current.sessionId;
+            String cwd = current.cwd;
             CompletableFuture<Void> sendFuture;
             if ("codex".equals(provider)) {
                 sendFuture = codexSDKBridge.sendMessage(
@@ -419,16 +702,17 @@ public class ClaudeSession {
                             assistantContent.append(content);
 
                             if (currentAssistantMessage == null) {
-                                currentAssistantMessage = new Message(Message.Type.ASSISTANT, assistantContent.toString());
-                                messages.add(currentAssistantMessage);
+                                currentAssistantMessage = addMessage(
+                                    new Message(Message.Type.ASSISTANT, assistantContent.toString()));
                             } else {
-                                currentAssistantMessage.content = assistantContent.toString();
+                                currentAssistantMessage = replaceMessage(
+                                    currentAssistantMessage.withContent(assistantContent.toString(), currentAssistantMessage.raw));
                             }
 
                             notifyMessageUpdate();
                         } else if ("message_end".equals(type)) {
-                            busy = false;
-                            loading = false;
+                            currentAssistantMessage = finishMessage(currentAssistantMessage);
+                            update(s -> s.withStatus(false, false, s.error));
                             updateState();
                             System.out.println("[ClaudeSession] Codex message end received");
                         }
@@ -436,21 +720,13 @@ public class ClaudeSession {
 
                     @Override
                     public void onError(String error) {
-                        ClaudeSession.this.error = error;
-                        busy = false;
-                        loading = false;
-                        Message errorMessage = new Message(Message.Type.ERROR, error);
-                        messages.add(errorMessage);
-                        notifyMessageUpdate();
-                        updateState();
+                        failMessage(error);
                     }
 
                     @Override
                     public void onComplete(CodexSDKBridge.SDKResult result) {
-                        busy = false;
-                        loading = false;
-                        lastModifiedTime = System.currentTimeMillis();
-                        updateState();
+                        currentAssistantMessage = finishMessage(currentAssistantMessage);
+                        completeMessage();
                     }
                 }).thenApply(result -> (Void) null);
             } else {
@@ -478,20 +754,19 @@ public class ClaudeSession {
                             JsonObject previousRaw = currentAssistantMessage != null ? currentAssistantMessage.raw : null;
                             JsonObject mergedRaw = mergeAssistantMessage(previousRaw, messageJson);
 
-                            if (currentAssistantMessage == null) {
-                                currentAssistantMessage = new Message(Message.Type.ASSISTANT, "", mergedRaw);
-                                messages.add(currentAssistantMessage);
-                            } else {
-                                currentAssistantMessage.raw = mergedRaw;
-                            }
-
                             String aggregatedText = extractMessageContent(mergedRaw);
                             assistantContent.setLength(0);
                             if (aggregatedText != null) {
                                 assistantContent.append(aggregatedText);
                             }
-                            currentAssistantMessage.content = assistantContent.toString();
-                            currentAssistantMessage.raw = mergedRaw;
+
+                            if (currentAssistantMessage == null) {
+                                currentAssistantMessage = addMessage(
+                                    new Message(Message.Type.ASSISTANT, assistantContent.toString(), mergedRaw));
+                            } else {
+                                currentAssistantMessage = replaceMessage(
+                                    currentAssistantMessage.withContent(assistantContent.toString(), mergedRaw));
+                            }
                             notifyMessageUpdate();
                         } catch (Exception e) {
                             System.err.println("Failed to parse assistant message JSON: " + e.getMessage());
@@ -520,16 +795,17 @@ public class ClaudeSession {
                         assistantContent.append(content);
 
                         if (currentAssistantMessage == null) {
-                            currentAssistantMessage = new Message(Message.Type.ASSISTANT, assistantContent.toString());
-                            messages.add(currentAssistantMessage);
+                            currentAssistantMessage = addMessage(
+                                new Message(Message.Type.ASSISTANT, assistantContent.toString()));
                         } else {
-                            currentAssistantMessage.content = assistantContent.toString();
+                            currentAssistantMessage = replaceMessage(
+                                currentAssistantMessage.withContent(assistantContent.toString(), currentAssistantMessage.raw));
                         }
 
                         notifyMessageUpdate();
                     } else if ("session_id".equals(type)) {
                         // 捕获并保存 session_id
-                        ClaudeSession.this.sessionId = content;
+                        update(s -> s.withSessionId(content));
                         if (callback != null) {
                             callback.onSessionIdReceived(content);
                         }
@@ -542,21 +818,17 @@ public class ClaudeSession {
                                 callback.onThinkingStatusChanged(false);
                             }
                         }
-                        busy = false;
-                        loading = false;
+                        currentAssistantMessage = finishMessage(currentAssistantMessage);
+                        update(s -> s.withStatus(false, false, s.error));
                         updateState();
                         System.out.println("[ClaudeSession] Message end received, loading set to false");
                     } else if ("slash_commands".equals(type)) {
                         // 处理斜杠命令列表
                         try {
-                            JsonArray commandsArray = gson.fromJson(content, JsonArray.class);
-                            slashCommands.clear();
-                            for (int i = 0; i < commandsArray.size(); i++) {
-                                slashCommands.add(commandsArray.get(i).getAsString());
-                            }
-                            System.out.println("[ClaudeSession] Received " + slashCommands.size() + " slash commands");
-                            if (callback != null) {
-                                callback.onSlashCommandsReceived(slashCommands);
+                            JsonArray commandsArray = JsonCodec.parseArray(content);
+                            if (commandsArray != null) {
+                                applySlashCommands(commandsArray);
+                                System.out.println("[ClaudeSession] Received " + getSlashCommands().size() + " slash commands");
                             }
                         } catch (Exception e) {
                             System.err.println("[ClaudeSession] Failed to parse slash commands: " + e.getMessage());
@@ -569,15 +841,8 @@ public class ClaudeSession {
                         try {
                             JsonObject systemObj = gson.fromJson(content, JsonObject.class);
                             if (systemObj.has("slash_commands") && systemObj.get("slash_commands").isJsonArray()) {
-                                JsonArray commandsArray = systemObj.getAsJsonArray("slash_commands");
-                                slashCommands.clear();
-                                for (int i = 0; i < commandsArray.size(); i++) {
-                                    slashCommands.add(commandsArray.get(i).getAsString());
-                                }
-                                System.out.println("[ClaudeSession] Extracted " + slashCommands.size() + " slash commands from system message");
-                                if (callback != null) {
-                                    callback.onSlashCommandsReceived(slashCommands);
-                                }
+                                applySlashCommands(systemObj.getAsJsonArray("slash_commands"));
+                                System.out.println("[ClaudeSession] Extracted " + getSlashCommands().size() + " slash commands from system message");
                             }
                         } catch (Exception e) {
                             System.err.println("[ClaudeSession] Failed to extract slash commands from system message: " + e.getMessage());
@@ -587,21 +852,13 @@ public class ClaudeSession {
 
                 @Override
                 public void onError(String error) {
-                    ClaudeSession.this.error = error;
-                    busy = false;
-                    loading = false;
-                    Message errorMessage = new Message(Message.Type.ERROR, error);
-                    messages.add(errorMessage);
-                    notifyMessageUpdate();
-                    updateState();
+                    failMessage(error);
                 }
 
                 @Override
                 public void onComplete(ClaudeSDKBridge.SDKResult result) {
-                    busy = false;
-                    loading = false;
-                    lastModifiedTime = System.currentTimeMillis();
-                    updateState();
+                    currentAssistantMessage = finishMessage(currentAssistantMessage);
+                    completeMessage();
                 }
             }).thenApply(result -> (Void) null);
             }
@@ -609,18 +866,60 @@ public class ClaudeSession {
             return sendFuture;
             });
         }).exceptionally(ex -> {
-            this.error = ex.getMessage();
-            this.busy = false;
-            this.loading = false;
+            update(s -> s.withStatus(false, false, ex.getMessage()));
             updateState();
             return null;
-        });
+        }).whenComplete((v, ex) -> dispatchNext());
+    }
+
+    /**
+     * 一轮对话出错：追加错误消息并结束忙碌状态
+     */
+    private void failMessage(String error) {
+        Message errorMessage = new Message(Message.Type.ERROR, error);
+        update(s -> s.addMessage(errorMessage).withStatus(false, false, error));
+        notifyMessageUpdate();
+        updateState();
+    }
+
+    /**
+     * 一轮对话完成：结束忙碌状态并更新修改时间
+     */
+    private void completeMessage() {
+        long now = System.currentTimeMillis();
+        update(s -> s.withStatus(false, false, s.error).withLastModifiedTime(now));
+        updateState();
+    }
+
+    /**
+     * 一轮对话的进程退出后发送队首的提示词
+     * 出错回调可能在进程退出前触发，因此不在 onComplete/onError 中出队；
+     * 会话已被其他轮次占用（忙碌）时由那一轮结束后再出队
+     */
+    private void dispatchNext() {
+        State previous = state.getAndUpdate(s -> s.busy || s.queue.isEmpty()
+            ? s
+            : s.pollQueue().withStatus(true, true, s.error));
+        if (previous.busy || previous.queue.isEmpty()) {
+            return;
+        }
+
+        QueuedPrompt prompt = previous.queue.get(0);
+        System.out.println("[ClaudeSession] Dispatching queued prompt: id=" + prompt.id
+            + ", remaining=" + (previous.queue.size() - 1));
+        notifyQueueUpdate();
+        updateState();
+        dispatch(prompt);
     }
 
     /**
      * 中断当前执行
      */
     public CompletableFuture<Void> interrupt() {
+        // 中断即放弃后续排队的提示词，避免本轮结束后继续发送
+        clearQueue();
+
+        String channelId = getChannelId();
         if (channelId == null) {
             return CompletableFuture.completedFuture(null);
         }
@@ -632,13 +931,14 @@ public class ClaudeSession {
                 } else {
                     claudeSDKBridge.interruptChannel(channelId);
                 }
-                this.busy = false;
+                update(s -> s.withStatus(false, s.loading, s.error));
                 updateState();
             } catch (Exception e) {
-                this.error = e.getMessage();
+                String message = e.getMessage();
+                update(s -> s.withError(message));
                 updateState();
             }
-        });
+        }, AppExecutorUtil.getAppExecutorService());
     }
 
     /**
@@ -646,8 +946,7 @@ public class ClaudeSession {
      */
     public CompletableFuture<Void> restart() {
         return interrupt().thenCompose(v -> {
-            this.channelId = null;
-            this.busy = false;
+            update(s -> s.withChannelId(null).withStatus(false, s.loading, s.error));
             updateState();
             return launchClaude().thenApply(chId -> null);
         });
@@ -657,11 +956,14 @@ public class ClaudeSession {
      * 加载服务器端的历史消息
      */
     public CompletableFuture<Void> loadFromServer() {
+        State current = state.get();
+        String sessionId = current.sessionId;
+        String cwd = current.cwd;
         if (sessionId == null) {
             return CompletableFuture.completedFuture(null);
         }
 
-        this.loading = true;
+        update(s -> s.withStatus(s.busy, true, s.error));
         updateState();
 
         return CompletableFuture.runAsync(() -> {
@@ -675,28 +977,32 @@ public class ClaudeSession {
                 }
                 System.out.println("[ClaudeSession] Received " + serverMessages.size() + " messages from server");
 
-                messages.clear();
+                List<Message> loaded = new ArrayList<>(serverMessages.size());
                 for (JsonObject msg : serverMessages) {
                     Message message = parseServerMessage(msg);
                     if (message != null) {
-                        messages.add(message);
+                        // 历史消息不会再变化，加载时即计算内容哈希
+                        loaded.add(message.finished());
                         // System.out.println("[ClaudeSession] Parsed message: type=" + message.type + ", content length=" + message.content.length());
                     } else {
                         // System.out.println("[ClaudeSession] Failed to parse message: " + msg);
                     }
                 }
 
-                System.out.println("[ClaudeSession] Total messages in session: " + messages.size());
+                // 一次性替换整个消息列表，读取方不会看到加载到一半的列表
+                update(s -> s.withMessages(loaded));
+                System.out.println("[ClaudeSession] Total messages in session: " + loaded.size());
                 notifyMessageUpdate();
             } catch (Exception e) {
                 System.err.println("[ClaudeSession] Error loading session: " + e.getMessage());
                 e.printStackTrace();
-                this.error = e.getMessage();
+                String message = e.getMessage();
+                update(s -> s.withError(message));
             } finally {
-                this.loading = false;
+                update(s -> s.withStatus(s.busy, false, s.error));
                 updateState();
             }
-        });
+        }, AppExecutorUtil.getAppExecutorService());
     }
 
     /**
@@ -882,11 +1188,85 @@ public class ClaudeSession {
     }
 
     /**
-     * 通知消息更新
+     * 追加一条消息
+     * @return 追加的消息
+     */
+    private Message addMessage(Message message) {
+        update(s -> s.addMessage(message));
+        return message;
+    }
+
+    /**
+     * 用新版本替换同 id 的消息
+     * @return 新版本
+     */
+    private Message replaceMessage(Message message) {
+        update(s -> s.replaceMessage(message));
+        return message;
+    }
+
+    /**
+     * 标记流式消息已完成并推送（已完成的消息不重复计算）
+     * @return 完成后的新版本
+     */
+    private Message finishMessage(Message message) {
+        if (message == null || message.isFinished()) {
+            return message;
+        }
+        Message finished = replaceMessage(message.finished());
+        notifyMessageUpdate();
+        return finished;
+    }
+
+    /**
+     * 通知提示词队列更新
+     */
+    private void notifyQueueUpdate() {
+        SessionCallback callback = this.callback;
+        if (callback != null) {
+            callback.onQueueChanged(state.get().queue);
+        }
+    }
+
+    /**
+     * 通知消息更新（传递当前快照中的只读列表）
      */
     private void notifyMessageUpdate() {
+        SessionCallback callback = this.callback;
         if (callback != null) {
-            callback.onMessageUpdate(getMessages());
+            callback.onMessageUpdate(state.get().messages);
+        }
+    }
+
+    /**
+     * 解析斜杠命令数组并通知回调
+     * 兼容两种格式：字符串数组（init 消息中的命令名）和对象数组（supportedCommands 结果）
+     */
+    private void applySlashCommands(JsonArray commandsArray) {
+        List<JsonObject> commands = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (JsonElement element : commandsArray) {
+            JsonObject command;
+            if (element.isJsonObject()) {
+                command = element.getAsJsonObject();
+            } else if (element.isJsonPrimitive()) {
+                command = new JsonObject();
+                command.addProperty("name", element.getAsString());
+                command.addProperty("description", "");
+            } else {
+                continue;
+            }
+            if (!command.has("name") || command.get("name").isJsonNull()) {
+                continue;
+            }
+            commands.add(command);
+            names.add(command.get("name").getAsString());
+        }
+
+        update(s -> s.withSlashCommands(names));
+        SessionCallback callback = this.callback;
+        if (callback != null && !commands.isEmpty()) {
+            callback.onSlashCommandsReceived(commands);
         }
     }
 
@@ -894,8 +1274,10 @@ public class ClaudeSession {
      * 通知状态更新
      */
     private void updateState() {
+        SessionCallback callback = this.callback;
         if (callback != null) {
-            callback.onStateChange(busy, loading, error);
+            State current = state.get();
+            callback.onStateChange(current.busy, current.loading, current.error);
         }
     }
 
@@ -969,7 +1351,7 @@ public class ClaudeSession {
      * 获取斜杠命令列表
      */
     public List<String> getSlashCommands() {
-        return new ArrayList<>(slashCommands);
+        return state.get().slashCommands;
     }
 
     /**
@@ -1091,7 +1473,7 @@ public class ClaudeSession {
      * 创建权限请求（供SDK调用）
      */
     public PermissionRequest createPermissionRequest(String toolName, Map<String, Object> inputs, JsonObject suggestions) {
-        return permissionManager.createRequest(channelId, toolName, inputs, suggestions);
+        return permissionManager.createRequest(getChannelId(), toolName, inputs, suggestions);
     }
 
     /**
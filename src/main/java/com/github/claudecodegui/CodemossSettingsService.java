@@ -1,26 +1,38 @@
 package com.github.claudecodegui;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 
 import com.github.claudecodegui.model.DeleteResult;
+import com.github.claudecodegui.util.AtomicFileWriter;
+import com.github.claudecodegui.util.JsonCodec;
+import com.intellij.openapi.util.ShutDownTracker;
+import com.intellij.util.concurrency.AppExecutorUtil;
 
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 
 /**
  * Codemoss 配置文件服务
@@ -31,16 +43,66 @@ public class CodemossSettingsService {
 
     private static final String CONFIG_DIR_NAME = ".codemoss";
     private static final String CONFIG_FILE_NAME = "config.json";
-    private static final String BACKUP_FILE_NAME = "config.json.bak";
+    private static final String BACKUP_DIR_NAME = "backups";
     private static final int CONFIG_VERSION = 2;
 
     private static final String CLAUDE_DIR_NAME = ".claude";
     private static final String CLAUDE_SETTINGS_FILE_NAME = "settings.json";
 
+    // 磁盘写入合并窗口
+    private static final long WRITE_COALESCE_MS = 300;
+    // 每个文件保留的滚动备份数量
+    private static final int MAX_BACKUPS = 10;
+    // 乐观并发冲突时的最大写入次数
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+    // 合并写入失败后的重试间隔（指数退避）与最大重试次数
+    private static final long FLUSH_RETRY_BASE_MS = 1000;
+    private static final int MAX_FLUSH_RETRIES = 5;
+
+    // 进程内共享的配置缓存（多个工具窗口共用同一个配置文件）
+    private static final Object CONFIG_LOCK = new Object();
+    private static final ScheduledExecutorService CONFIG_WRITER =
+        AppExecutorUtil.createBoundedScheduledExecutorService("CodemossConfigWriter", 1);
+    private static JsonObject cachedConfig;
+    private static long cachedConfigMtime = -1;
+    private static long cachedConfigSize = -1;
+    private static long configRevision = 0;
+    private static JsonObject pendingConfig;
+    private static boolean flushScheduled = false;
+    private static int flushFailures = 0;
+
+    // 同步到 ~/.claude.json / ~/.claude/settings.json 的合并窗口与队列
+    private static final long SYNC_COALESCE_MS = 300;
+    // 同步写入失败后的重试间隔（指数退避）与最大重试次数
+    private static final long SYNC_RETRY_BASE_MS = 1000;
+    private static final int MAX_SYNC_RETRIES = 5;
+    private static final Object SYNC_LOCK = new Object();
+    private static final Object SYNC_FLUSH_LOCK = new Object();
+    private static final Map<String, McpChange> pendingMcpChanges = new LinkedHashMap<>();
+    private static JsonArray pendingPlugins;
+    private static boolean syncScheduled = false;
+    private static int syncFailures = 0;
+    // 当前批次的写入结果（批次写入后完成，失败时携带异常）
+    private static CompletableFuture<Void> pendingSyncResult = new CompletableFuture<>();
+
+    // cc-switch 数据库解析结果缓存（按数据库路径 + 修改时间 + 文件大小校验）
+    private static final long CC_SWITCH_TIMEOUT_SECONDS = 60;
+    private static final String CC_SWITCH_TOTAL_PREFIX = "[TOTAL]";
+    private static final String CC_SWITCH_PROVIDER_PREFIX = "[PROVIDER]";
+    private static final Map<String, CcSwitchSnapshot> CC_SWITCH_CACHE = new ConcurrentHashMap<>();
+
+    static {
+        // IDE 退出前写入尚未落盘的配置和同步队列
+        ShutDownTracker.getInstance().registerShutdownTask(() -> {
+            flushQuietly();
+            flushClaudeSyncQuietly();
+        });
+    }
+
     private final Gson gson;
 
     public CodemossSettingsService() {
-        this.gson = new GsonBuilder().setPrettyPrinting().create();
+        this.gson = JsonCodec.prettyGson();
     }
 
     /**
@@ -51,18 +113,10 @@ public class CodemossSettingsService {
         return Paths.get(homeDir, CONFIG_DIR_NAME, CONFIG_FILE_NAME).toString();
     }
 
-    /**
-     * 获取备份文件路径
-     */
-    private String getBackupPath() {
-        String homeDir = System.getProperty("user.home");
-        return Paths.get(homeDir, CONFIG_DIR_NAME, BACKUP_FILE_NAME).toString();
-    }
-
     /**
      * 获取配置目录 Path 对象
      */
-    private Path getConfigDir() {
+    private static Path getConfigDir() {
         String homeDir = System.getProperty("user.home");
         return Paths.get(homeDir, CONFIG_DIR_NAME);
     }
@@ -89,109 +143,538 @@ public class CodemossSettingsService {
      * 读取配置文件
      * 优先读取 ~/.codemoss/config.json
      * 如果不存在，则尝试从 ~/.claude/settings.json 导入
+     *
+     * 配置在进程内缓存，文件的修改时间和大小未变化时不再重新解析；
+     * 返回的是缓存的深拷贝，调用方可以直接修改后交给 {@link #writeConfig(JsonObject)}
      */
     public JsonObject readConfig() throws IOException {
+        synchronized (CONFIG_LOCK) {
+            // 尚未落盘的修改优先
+            if (pendingConfig != null) {
+                return pendingConfig.deepCopy();
+            }
 
-        String configPath = getConfigPath();
-        File configFile = new File(configPath);
+            String configPath = getConfigPath();
+            File configFile = new File(configPath);
 
-        if (!configFile.exists()) {
-            System.out.println("[CodemossSettings] Config file not found, creating default: " + configPath);
-            return createDefaultConfig();
-        }
+            if (!configFile.exists()) {
+                System.out.println("[CodemossSettings] Config file not found, creating default: " + configPath);
+                cachedConfig = null;
+                return createDefaultConfig();
+            }
 
-        try (FileReader reader = new FileReader(configFile)) {
-            JsonObject config = JsonParser.parseReader(reader).getAsJsonObject();
-            System.out.println("[CodemossSettings] Successfully read config from: " + configPath);
-            return config;
-        } catch (Exception e) {
-            System.err.println("[CodemossSettings] Failed to read config: " + e.getMessage());
-            return createDefaultConfig();
+            long mtime = configFile.lastModified();
+            long size = configFile.length();
+            if (cachedConfig != null && mtime == cachedConfigMtime && size == cachedConfigSize) {
+                return cachedConfig.deepCopy();
+            }
+
+            try (FileReader reader = new FileReader(configFile)) {
+                JsonObject config = JsonParser.parseReader(reader).getAsJsonObject();
+                cachedConfig = config;
+                cachedConfigMtime = mtime;
+                cachedConfigSize = size;
+                configRevision++;
+                System.out.println("[CodemossSettings] Successfully read config from: " + configPath);
+                return config.deepCopy();
+            } catch (Exception e) {
+                System.err.println("[CodemossSettings] Failed to read config: " + e.getMessage());
+                return createDefaultConfig();
+            }
         }
     }
 
     /**
-     * 写入配置文件
+     * 写入配置文件（仅用于批量导入）
+     * 立即更新内存中的配置，磁盘写入在 WRITE_COALESCE_MS 内合并为一次；写入失败时按指数退避重试
      */
     public void writeConfig(JsonObject config) throws IOException {
         ensureConfigDirectory();
 
-        // 备份现有配置
-        backupConfig();
+        synchronized (CONFIG_LOCK) {
+            pendingConfig = config.deepCopy();
+            configRevision++;
+            scheduleFlush(WRITE_COALESCE_MS);
+        }
+    }
 
-        String configPath = getConfigPath();
-        try (FileWriter writer = new FileWriter(configPath)) {
-            gson.toJson(config, writer);
-            System.out.println("[CodemossSettings] Successfully wrote config to: " + configPath);
-        } catch (Exception e) {
-            System.err.println("[CodemossSettings] Failed to write config: " + e.getMessage());
-            throw e;
+    /**
+     * 写入配置文件并立即落盘（用户直接触发的修改）
+     * 写入失败时恢复修改前的内存状态，并把异常交给调用方上报
+     */
+    private void writeConfigNow(JsonObject config) throws IOException {
+        ensureConfigDirectory();
+
+        synchronized (CONFIG_LOCK) {
+            JsonObject previous = pendingConfig;
+            pendingConfig = config.deepCopy();
+            configRevision++;
+            try {
+                flushPendingConfig();
+            } catch (IOException e) {
+                pendingConfig = previous;
+                configRevision++;
+                if (previous != null) {
+                    // 之前排队的批量修改仍需落盘
+                    scheduleFlush(WRITE_COALESCE_MS);
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 安排一次合并写入（调用方需持有 CONFIG_LOCK）
+     */
+    private static void scheduleFlush(long delayMs) {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            CONFIG_WRITER.schedule(CodemossSettingsService::flushQuietly, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 立即把尚未落盘的配置写入磁盘
+     */
+    public void flushConfig() throws IOException {
+        flushPendingConfig();
+    }
+
+    /**
+     * 获取配置版本号（每次读取到新内容或写入时递增）
+     */
+    public long getConfigRevision() {
+        synchronized (CONFIG_LOCK) {
+            return configRevision;
         }
     }
 
-    private void backupConfig() {
+    /**
+     * 后台合并写入：失败时保留待写入的修改并按指数退避重新安排，超过最大重试次数后等待下一次写入或 IDE 退出时再落盘
+     */
+    private static void flushQuietly() {
         try {
-            Path configPath = getConfigFilePath();
-            if (Files.exists(configPath)) {
-                Files.copy(configPath, Paths.get(getBackupPath()), StandardCopyOption.REPLACE_EXISTING);
+            flushPendingConfig();
+            synchronized (CONFIG_LOCK) {
+                flushFailures = 0;
             }
         } catch (Exception e) {
-            System.err.println("[CodemossSettings] Failed to backup config: " + e.getMessage());
+            synchronized (CONFIG_LOCK) {
+                if (pendingConfig == null) {
+                    flushFailures = 0;
+                    return;
+                }
+                flushFailures++;
+                if (flushFailures > MAX_FLUSH_RETRIES) {
+                    System.err.println("[CodemossSettings] Failed to write config after " + MAX_FLUSH_RETRIES + " retries, giving up: " + e.getMessage());
+                    flushFailures = 0;
+                    return;
+                }
+                long delay = FLUSH_RETRY_BASE_MS << (flushFailures - 1);
+                System.err.println("[CodemossSettings] Failed to write config, retrying in " + delay + "ms: " + e.getMessage());
+                scheduleFlush(delay);
+            }
         }
     }
 
     /**
-     * 同步 MCP 服务器配置到 Claude settings.json
-     * Claude CLI 在运行时会从 ~/.claude/settings.json 读取MCP配置
+     * 将合并后的配置写入磁盘：先写临时文件再原子重命名，避免读到写了一半的文件
+     * 读取之后配置被其他进程修改时，重新读取外部版本并合并本进程的修改后重试，多次冲突则抛出异常并保留待写入的修改
      */
-    private void syncMcpToClaudeSettings() throws IOException {
-        try {
-            String homeDir = System.getProperty("user.home");
+    private static void flushPendingConfig() throws IOException {
+        synchronized (CONFIG_LOCK) {
+            flushScheduled = false;
+            JsonObject config = pendingConfig;
+            if (config == null) {
+                return;
+            }
 
-            // 读取 ~/.claude.json
-            Path claudeJsonPath = Paths.get(homeDir, ".claude.json");
-            File claudeJsonFile = claudeJsonPath.toFile();
+            Path configDir = Paths.get(System.getProperty("user.home"), CONFIG_DIR_NAME);
+            Path configPath = configDir.resolve(CONFIG_FILE_NAME);
+            JsonObject base = cachedConfig;
+            long expectedMtime = base != null ? cachedConfigMtime : AtomicFileWriter.NO_CHECK;
+
+            for (int attempt = 1; ; attempt++) {
+                // 备份现有配置到滚动日志
+                AtomicFileWriter.backup(configPath, configDir.resolve(BACKUP_DIR_NAME), CONFIG_FILE_NAME, MAX_BACKUPS);
+                try {
+                    AtomicFileWriter.write(configPath, JsonCodec.prettyGson().toJson(config), expectedMtime);
+                    break;
+                } catch (AtomicFileWriter.StaleFileException e) {
+                    if (attempt >= MAX_WRITE_ATTEMPTS) {
+                        // 保留 pendingConfig，下次写入时再合并
+                        System.err.println("[CodemossSettings] Config write conflict not resolved after " + attempt + " attempts: " + e.getMessage());
+                        throw e;
+                    }
+                    // 其他进程（如另一个 IDE 实例）修改过配置：重新读取外部版本，把本进程的修改合并上去后重试
+                    System.out.println("[CodemossSettings] " + e.getMessage() + "，重新读取并合并后重试 (" + attempt + ")");
+                    expectedMtime = AtomicFileWriter.lastModified(configPath);
+                    JsonObject external;
+                    try {
+                        external = readJsonFile(configPath);
+                    } catch (RuntimeException parseError) {
+                        throw new IOException("外部修改后的配置无法解析: " + parseError.getMessage(), parseError);
+                    }
+                    if (external == null) {
+                        external = new JsonObject();
+                    }
+                    mergeChanges(base != null ? base : new JsonObject(), config, external);
+                    base = external.deepCopy();
+                    config = external;
+                    pendingConfig = config;
+                    configRevision++;
+                } catch (IOException e) {
+                    System.err.println("[CodemossSettings] Failed to write config: " + e.getMessage());
+                    throw e;
+                }
+            }
+
+            pendingConfig = null;
+            cachedConfig = config;
+            File configFile = configPath.toFile();
+            cachedConfigMtime = configFile.lastModified();
+            cachedConfigSize = configFile.length();
+            System.out.println("[CodemossSettings] Successfully wrote config to: " + configPath);
+        }
+    }
+
+    /**
+     * 把 base→ours 之间的修改应用到 theirs 上（三方合并）
+     * 嵌套对象逐字段合并，其余字段以本进程的值为准；本进程未修改的字段保留外部版本
+     */
+    private static void mergeChanges(JsonObject base, JsonObject ours, JsonObject theirs) {
+        Set<String> keys = new LinkedHashSet<>(base.keySet());
+        keys.addAll(ours.keySet());
+        for (String key : keys) {
+            JsonElement before = base.get(key);
+            JsonElement after = ours.get(key);
+            if (Objects.equals(before, after)) {
+                continue;
+            }
+            if (after == null) {
+                theirs.remove(key);
+            } else if (before != null && before.isJsonObject() && after.isJsonObject()
+                && theirs.has(key) && theirs.get(key).isJsonObject()) {
+                mergeChanges(before.getAsJsonObject(), after.getAsJsonObject(), theirs.getAsJsonObject(key));
+            } else {
+                theirs.add(key, after.deepCopy());
+            }
+        }
+    }
+
+    // ==================== MCP / Skills 同步（合并写入） ====================
+
+    /**
+     * 将 MCP 变更排入同步队列
+     * 同一服务器在合并窗口内的多次变更只保留最后一次，窗口结束后一次性写入
+     * ~/.claude.json 和 ~/.claude/settings.json，且只在内容确实变化时写入
+     *
+     * @param serverId 服务器 ID
+     * @param serverSpec 服务器规格，null 表示删除
+     * @param enabled 是否启用
+     * @return 所在批次写入磁盘后完成，写入失败时异常完成
+     */
+    private static CompletableFuture<Void> enqueueMcpChange(String serverId, JsonObject serverSpec, boolean enabled) {
+        synchronized (SYNC_LOCK) {
+            // 先移除再放入，保证按最后一次变更的顺序写入
+            pendingMcpChanges.remove(serverId);
+            pendingMcpChanges.put(serverId, new McpChange(serverSpec, enabled));
+            scheduleClaudeSync();
+            return pendingSyncResult;
+        }
+    }
+
+    /**
+     * 将启用的 Skills（plugins 数组）排入同步队列
+     */
+    private static void enqueuePluginsChange(JsonArray plugins) {
+        synchronized (SYNC_LOCK) {
+            pendingPlugins = plugins;
+            scheduleClaudeSync();
+        }
+    }
+
+    private static void scheduleClaudeSync() {
+        scheduleClaudeSync(SYNC_COALESCE_MS);
+    }
 
-            if (!claudeJsonFile.exists()) {
+    /**
+     * 安排一次同步（调用方需持有 SYNC_LOCK）
+     */
+    private static void scheduleClaudeSync(long delayMs) {
+        if (!syncScheduled) {
+            syncScheduled = true;
+            CONFIG_WRITER.schedule(CodemossSettingsService::flushClaudeSyncQuietly, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 查询 MCP 服务器在 ~/.claude.json（叠加尚未写入的变更）中是否存在
+     */
+    private static boolean mcpServerExists(String serverId) throws IOException {
+        synchronized (SYNC_LOCK) {
+            McpChange pending = pendingMcpChanges.get(serverId);
+            if (pending != null) {
+                return pending.serverSpec != null;
+            }
+        }
+        JsonObject claudeJson = readJsonFile(getClaudeJsonPath());
+        return claudeJson != null
+            && claudeJson.has("mcpServers")
+            && claudeJson.get("mcpServers").isJsonObject()
+            && claudeJson.getAsJsonObject("mcpServers").has(serverId);
+    }
+
+    /**
+     * 立即执行排队中的同步（读取 MCP 列表前调用，保证读到最新内容）
+     */
+    public void flushClaudeSync() throws IOException {
+        flushClaudeSyncNow();
+    }
+
+    private static void flushClaudeSyncQuietly() {
+        try {
+            flushClaudeSyncNow();
+        } catch (Exception e) {
+            System.err.println("[CodemossSettings] Failed to sync MCP/Skills to Claude settings: " + e.getMessage());
+        }
+    }
+
+    private static void flushClaudeSyncNow() throws IOException {
+        // 串行执行，避免定时任务与手动 flush 交错
+        synchronized (SYNC_FLUSH_LOCK) {
+            Map<String, McpChange> changes;
+            JsonArray plugins;
+            boolean mirror;
+            CompletableFuture<Void> result;
+            synchronized (SYNC_LOCK) {
+                syncScheduled = false;
+                result = pendingSyncResult;
+                pendingSyncResult = new CompletableFuture<>();
+                changes = new LinkedHashMap<>(pendingMcpChanges);
+                pendingMcpChanges.clear();
+                plugins = pendingPlugins;
+                pendingPlugins = null;
+                mirror = !changes.isEmpty();
+            }
+            if (!mirror && plugins == null) {
+                result.complete(null);
                 return;
             }
 
-            JsonObject claudeJson = JsonParser.parseReader(new FileReader(claudeJsonFile)).getAsJsonObject();
+            try {
+                // 1. 把 MCP 变更写入 ~/.claude.json（内容不变时不写）
+                Path claudeJsonPath = getClaudeJsonPath();
+                JsonObject[] claudeJsonHolder = new JsonObject[1];
+                if (mirror) {
+                    // 排队后文件被删除时重新创建，不丢弃排队中的变更
+                    JsonFileReader claudeJsonReader = () -> {
+                        JsonObject claudeJson = readJsonFile(claudeJsonPath);
+                        return claudeJson != null ? claudeJson : new JsonObject();
+                    };
+                    boolean written = updateJsonFile(claudeJsonPath, claudeJsonReader, claudeJson -> {
+                        claudeJsonHolder[0] = claudeJson;
+                        return applyMcpChanges(claudeJson, changes);
+                    });
+                    System.out.println("[CodemossSettings] Applied " + changes.size() + " MCP change(s) to ~/.claude.json"
+                        + (written ? "" : " (unchanged, skip write)"));
+                }
+                JsonObject claudeJson = claudeJsonHolder[0];
+
+                // 2. 一次性更新 ~/.claude/settings.json（MCP 镜像 + plugins），内容不变时不写
+                boolean written = updateClaudeSettings(settings -> {
+                    boolean changed = false;
+                    if (mirror && claudeJson != null) {
+                        changed |= putIfDifferent(settings, "mcpServers", claudeJson.get("mcpServers"));
+                        changed |= putIfDifferent(settings, "disabledMcpServers", claudeJson.get("disabledMcpServers"));
+                    }
+                    if (plugins != null) {
+                        changed |= putIfDifferent(settings, "plugins", plugins);
+                    }
+                    return changed;
+                });
+                if (!written) {
+                    System.out.println("[CodemossSettings] ~/.claude/settings.json already up to date, skip write");
+                }
+                synchronized (SYNC_LOCK) {
+                    syncFailures = 0;
+                }
+                result.complete(null);
+            } catch (IOException | RuntimeException e) {
+                // 写入失败：把变更放回队列（不覆盖期间的新变更），按指数退避重新安排同步，
+                // 超过最大重试次数后保留在队列中，等下一次变更、读取 MCP 列表或 IDE 退出时再写入
+                synchronized (SYNC_LOCK) {
+                    for (Map.Entry<String, McpChange> entry : changes.entrySet()) {
+                        pendingMcpChanges.putIfAbsent(entry.getKey(), entry.getValue());
+                    }
+                    if (pendingPlugins == null) {
+                        pendingPlugins = plugins;
+                    }
+                    syncFailures++;
+                    if (syncFailures > MAX_SYNC_RETRIES) {
+                        System.err.println("[CodemossSettings] Claude settings sync failed after " + MAX_SYNC_RETRIES + " retries, giving up until next change");
+                        syncFailures = 0;
+                    } else {
+                        long delay = SYNC_RETRY_BASE_MS << (syncFailures - 1);
+                        System.err.println("[CodemossSettings] Claude settings sync failed, retrying in " + delay + "ms");
+                        scheduleClaudeSync(delay);
+                    }
+                }
+                result.completeExceptionally(e);
+                throw e;
+            }
+        }
+    }
 
-            // 读取 ~/.claude/settings.json
-            JsonObject settings = readClaudeSettings();
+    /**
+     * 将排队的 MCP 变更应用到 ~/.claude.json 内容
+     * @return 内容是否发生结构性变化
+     */
+    private static boolean applyMcpChanges(JsonObject claudeJson, Map<String, McpChange> changes) {
+        JsonElement beforeServers = claudeJson.has("mcpServers") ? claudeJson.get("mcpServers").deepCopy() : null;
+        JsonElement beforeDisabled = claudeJson.has("disabledMcpServers") ? claudeJson.get("disabledMcpServers").deepCopy() : null;
+
+        // 确保 mcpServers 对象存在
+        if (!claudeJson.has("mcpServers") || !claudeJson.get("mcpServers").isJsonObject()) {
+            claudeJson.add("mcpServers", new JsonObject());
+        }
+        JsonObject mcpServers = claudeJson.getAsJsonObject("mcpServers");
+
+        // 收集禁用列表（保持原有顺序）
+        Set<String> disabled = new LinkedHashSet<>();
+        if (claudeJson.has("disabledMcpServers") && claudeJson.get("disabledMcpServers").isJsonArray()) {
+            for (JsonElement elem : claudeJson.getAsJsonArray("disabledMcpServers")) {
+                if (elem.isJsonPrimitive()) {
+                    disabled.add(elem.getAsString());
+                }
+            }
+        }
+
+        for (Map.Entry<String, McpChange> entry : changes.entrySet()) {
+            String serverId = entry.getKey();
+            McpChange change = entry.getValue();
+            disabled.remove(serverId);
+            if (change.serverSpec == null) {
+                mcpServers.remove(serverId);
+            } else {
+                mcpServers.add(serverId, change.serverSpec);
+                if (!change.enabled) {
+                    disabled.add(serverId);
+                }
+            }
+        }
+
+        JsonArray newDisabled = new JsonArray();
+        for (String serverId : disabled) {
+            newDisabled.add(serverId);
+        }
+        claudeJson.add("disabledMcpServers", newDisabled);
+
+        return !Objects.equals(beforeServers, claudeJson.get("mcpServers"))
+            || !Objects.equals(beforeDisabled, claudeJson.get("disabledMcpServers"));
+    }
+
+    /**
+     * 字段值与目标不同时才写入（JsonElement.equals 为结构比较）
+     * @return 是否修改
+     */
+    private static boolean putIfDifferent(JsonObject target, String key, JsonElement value) {
+        if (value == null || Objects.equals(target.get(key), value)) {
+            return false;
+        }
+        target.add(key, value.deepCopy());
+        return true;
+    }
+
+    /**
+     * 排队中的单个 MCP 变更
+     */
+    private static final class McpChange {
+        final JsonObject serverSpec;
+        final boolean enabled;
+
+        McpChange(JsonObject serverSpec, boolean enabled) {
+            this.serverSpec = serverSpec;
+            this.enabled = enabled;
+        }
+    }
+
+    private static Path getClaudeJsonPath() {
+        String homeDir = System.getProperty("user.home");
+        return Paths.get(homeDir, ".claude.json");
+    }
+
+    /**
+     * 读取 JSON 文件，文件不存在时返回 null
+     */
+    private static JsonObject readJsonFile(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (FileReader reader = new FileReader(file.toFile())) {
+            return JsonParser.parseReader(reader).getAsJsonObject();
+        }
+    }
 
-            // 同步 mcpServers
-            if (claudeJson.has("mcpServers")) {
-                settings.add("mcpServers", claudeJson.get("mcpServers"));
+    /**
+     * 以乐观并发方式读取-修改-写回 JSON 文件
+     * 写入前比对读取时的修改时间，期间被 Claude CLI 等其他进程修改时重新读取并重试
+     *
+     * @param file 目标文件
+     * @param reader 读取函数（文件不存在时返回 null 表示跳过）
+     * @param mutator 修改函数，返回 false 表示无需写入
+     * @return 是否写入了文件
+     */
+    private static boolean updateJsonFile(Path file, JsonFileReader reader, Predicate<JsonObject> mutator) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            long mtime = AtomicFileWriter.lastModified(file);
+            JsonObject json = reader.read();
+            if (json == null || !mutator.test(json)) {
+                return false;
             }
 
-            // 同步 disabledMcpServers
-            if (claudeJson.has("disabledMcpServers")) {
-                settings.add("disabledMcpServers", claudeJson.get("disabledMcpServers"));
+            AtomicFileWriter.backup(file, getConfigDir().resolve(BACKUP_DIR_NAME), file.getFileName().toString(), MAX_BACKUPS);
+            try {
+                AtomicFileWriter.write(file, JsonCodec.prettyGson().toJson(json), mtime);
+                return true;
+            } catch (AtomicFileWriter.StaleFileException e) {
+                if (attempt >= MAX_WRITE_ATTEMPTS) {
+                    throw e;
+                }
+                System.out.println("[CodemossSettings] " + e.getMessage() + "，重新读取后重试 (" + attempt + ")");
             }
+        }
+    }
 
-            // 写回 settings.json
-            writeClaudeSettings(settings);
+    @FunctionalInterface
+    private interface JsonFileReader {
+        JsonObject read() throws IOException;
+    }
 
-            System.out.println("[CodemossSettings] Synced MCP configuration to ~/.claude/settings.json");
-        } catch (Exception e) {
-            System.err.println("[CodemossSettings] Failed to sync MCP to Claude settings: " + e.getMessage());
+    /**
+     * 读取-修改-写回 ~/.claude/settings.json
+     */
+    private static boolean updateClaudeSettings(Predicate<JsonObject> mutator) throws IOException {
+        Path settingsPath = getClaudeSettingsPath();
+        boolean written = updateJsonFile(settingsPath, CodemossSettingsService::readClaudeSettings, mutator);
+        if (written) {
+            System.out.println("[CodemossSettings] Synced settings to: " + settingsPath);
         }
+        return written;
     }
 
-    private Path getClaudeSettingsPath() {
+    private static Path getClaudeSettingsPath() {
         String homeDir = System.getProperty("user.home");
         return Paths.get(homeDir, CLAUDE_DIR_NAME, CLAUDE_SETTINGS_FILE_NAME);
     }
 
-    private JsonObject createDefaultClaudeSettings() {
+    private static JsonObject createDefaultClaudeSettings() {
         JsonObject settings = new JsonObject();
         settings.add("env", new JsonObject());
         return settings;
     }
 
-    private JsonObject readClaudeSettings() throws IOException {
+    private static JsonObject readClaudeSettings() throws IOException {
         Path settingsPath = getClaudeSettingsPath();
         File settingsFile = settingsPath.toFile();
 
@@ -270,17 +753,6 @@ public class CodemossSettingsService {
         return result;
     }
 
-    private void writeClaudeSettings(JsonObject settings) throws IOException {
-        Path settingsPath = getClaudeSettingsPath();
-        if (!Files.exists(settingsPath.getParent())) {
-            Files.createDirectories(settingsPath.getParent());
-        }
-        try (FileWriter writer = new FileWriter(settingsPath.toFile())) {
-            gson.toJson(settings, writer);
-            System.out.println("[CodemossSettings] Synced settings to: " + settingsPath);
-        }
-    }
-
     /**
      * 创建默认配置（空配置，不从其他地方导入）
      */
@@ -393,23 +865,23 @@ public class CodemossSettingsService {
         }
 
         JsonObject settingsConfig = provider.getAsJsonObject("settingsConfig");
-        JsonObject claudeSettings = readClaudeSettings();
 
-        // 同步所有 settingsConfig 中的字段到 claudeSettings
-        for (String key : settingsConfig.keySet()) {
-            if (settingsConfig.get(key).isJsonNull()) {
-                claudeSettings.remove(key);
-            } else {
-                claudeSettings.add(key, settingsConfig.get(key));
+        updateClaudeSettings(claudeSettings -> {
+            // 同步所有 settingsConfig 中的字段到 claudeSettings
+            for (String key : settingsConfig.keySet()) {
+                if (settingsConfig.get(key).isJsonNull()) {
+                    claudeSettings.remove(key);
+                } else {
+                    claudeSettings.add(key, settingsConfig.get(key));
+                }
             }
-        }
-
-        // 确保 codemossProviderId 字段存在
-        if (provider.has("id") && !provider.get("id").isJsonNull()) {
-            claudeSettings.addProperty("codemossProviderId", provider.get("id").getAsString());
-        }
 
-        writeClaudeSettings(claudeSettings);
+            // 确保 codemossProviderId 字段存在
+            if (provider.has("id") && !provider.get("id").isJsonNull()) {
+                claudeSettings.addProperty("codemossProviderId", provider.get("id").getAsString());
+            }
+            return true;
+        });
     }
 
     public void applyActiveProviderToClaudeSettings() throws IOException {
@@ -457,7 +929,7 @@ public class CodemossSettingsService {
         // 添加供应商（不自动设为 current，用户需要手动点击"启用"按钮来激活）
         providers.add(id, provider);
 
-        writeConfig(config);
+        writeConfigNow(config);
         System.out.println("[CodemossSettings] Added provider: " + id + " (not activated, user needs to manually switch)");
     }
 
@@ -470,7 +942,14 @@ public class CodemossSettingsService {
         }
 
         JsonObject config = readConfig();
+        putProvider(config, provider);
+        writeConfigNow(config);
+    }
 
+    /**
+     * 将供应商写入配置对象（不落盘）
+     */
+    private static void putProvider(JsonObject config, JsonObject provider) {
         // 确保 claude 配置存在
         if (!config.has("claude")) {
             JsonObject claude = new JsonObject();
@@ -502,7 +981,32 @@ public class CodemossSettingsService {
         
         // 覆盖保存
         providers.add(id, provider);
-        writeConfig(config);
+    }
+
+    /**
+     * 导入进度回调（在后台线程中调用）
+     */
+    public interface ImportProgressListener {
+        /**
+         * @param done 已处理数量
+         * @param total 总数量（未知时为 -1）
+         */
+        void onProgress(int done, int total);
+    }
+
+    /**
+     * cc-switch 数据库解析结果快照
+     */
+    private static final class CcSwitchSnapshot {
+        final long mtime;
+        final long size;
+        final List<JsonObject> providers;
+
+        CcSwitchSnapshot(long mtime, long size, List<JsonObject> providers) {
+            this.mtime = mtime;
+            this.size = size;
+            this.providers = providers;
+        }
     }
 
     /**
@@ -512,6 +1016,46 @@ public class CodemossSettingsService {
      * @return 解析出的供应商列表
      */
     public List<JsonObject> parseProvidersFromCcSwitchDb(String dbPath) throws IOException {
+        return parseProvidersFromCcSwitchDb(dbPath, null);
+    }
+
+    /**
+     * 解析 cc-switch.db 中的供应商配置
+     * 1. 数据库修改时间和大小未变时直接返回缓存结果，不再启动 Node.js
+     * 2. 脚本以 --stream 模式逐行输出供应商，边读边解析并回调进度
+     * @param dbPath db文件路径
+     * @param listener 进度回调，可为 null
+     * @return 解析出的供应商列表（副本，调用方可自由修改）
+     */
+    public List<JsonObject> parseProvidersFromCcSwitchDb(String dbPath, ImportProgressListener listener) throws IOException {
+        File dbFile = new File(dbPath);
+        String cacheKey = dbFile.getAbsolutePath();
+        long mtime = dbFile.lastModified();
+        long size = dbFile.length();
+
+        CcSwitchSnapshot cached = CC_SWITCH_CACHE.get(cacheKey);
+        if (cached != null && cached.mtime == mtime && cached.size == size) {
+            System.out.println("[Backend] cc-switch 数据库未变化，使用缓存结果 (" + cached.providers.size() + " 个供应商)");
+            if (listener != null) {
+                listener.onProgress(cached.providers.size(), cached.providers.size());
+            }
+            return copyProviders(cached.providers);
+        }
+
+        List<JsonObject> result = readProvidersWithNode(dbPath, listener);
+        CC_SWITCH_CACHE.put(cacheKey, new CcSwitchSnapshot(mtime, size, copyProviders(result)));
+        return result;
+    }
+
+    private static List<JsonObject> copyProviders(List<JsonObject> providers) {
+        List<JsonObject> copy = new ArrayList<>(providers.size());
+        for (JsonObject provider : providers) {
+            copy.add(provider.deepCopy());
+        }
+        return copy;
+    }
+
+    private List<JsonObject> readProvidersWithNode(String dbPath, ImportProgressListener listener) throws IOException {
         List<JsonObject> result = new ArrayList<>();
 
         System.out.println("[Backend] 正在通过 Node.js 读取 cc-switch 数据库: " + dbPath);
@@ -527,68 +1071,87 @@ public class CodemossSettingsService {
             throw new IOException("读取脚本不存在: " + scriptPath);
         }
 
+        Process process = null;
+        ScheduledFuture<?> watchdog = null;
+        AtomicBoolean timedOut = new AtomicBoolean(false);
         try {
-            // 优先使用用户在设置页面配置的 Node.js 路径
-            String nodePath = null;
-            try {
-                com.intellij.ide.util.PropertiesComponent props = com.intellij.ide.util.PropertiesComponent.getInstance();
-                String savedNodePath = props.getValue("claude.code.node.path");
-                if (savedNodePath != null && !savedNodePath.trim().isEmpty()) {
-                    // 验证用户配置的路径是否有效
-                    File nodeFile = new File(savedNodePath.trim());
-                    if (nodeFile.exists() && nodeFile.canExecute()) {
-                        nodePath = savedNodePath.trim();
-                        System.out.println("[Backend] 使用用户配置的 Node.js 路径: " + nodePath);
-                    } else {
-                        System.out.println("[Backend] 用户配置的 Node.js 路径无效，将自动检测: " + savedNodePath);
-                    }
-                }
-            } catch (Exception e) {
-                System.out.println("[Backend] 读取用户配置的 Node.js 路径失败: " + e.getMessage());
-            }
-
-            // 如果用户没有配置或配置无效，使用 NodeDetector 自动检测
-            if (nodePath == null) {
-                com.github.claudecodegui.bridge.NodeDetector nodeDetector = new com.github.claudecodegui.bridge.NodeDetector();
-                nodePath = nodeDetector.findNodeExecutable();
-                System.out.println("[Backend] 自动检测到的 Node.js 路径: " + nodePath);
-            }
+            String nodePath = resolveNodePath();
 
             // 构建 Node.js 命令
-            ProcessBuilder pb = new ProcessBuilder(nodePath, scriptPath, dbPath);
+            ProcessBuilder pb = new ProcessBuilder(nodePath, scriptPath, dbPath, "--stream");
             pb.directory(new File(aiBridgePath));
             pb.redirectErrorStream(true); // 合并错误输出到标准输出
 
-            System.out.println("[Backend] 执行命令: " + nodePath + " " + scriptPath + " " + dbPath);
+            System.out.println("[Backend] 执行命令: " + nodePath + " " + scriptPath + " " + dbPath + " --stream");
 
             // 启动进程
-            Process process = pb.start();
+            process = pb.start();
+
+            // 读取输出没有超时，进程卡住时由看门狗强制结束，输出流随之关闭，读取循环退出
+            Process started = process;
+            watchdog = AppExecutorUtil.getAppScheduledExecutorService().schedule(() -> {
+                if (started.isAlive()) {
+                    timedOut.set(true);
+                    System.err.println("[Backend] Node.js 脚本执行超时，强制结束进程");
+                    started.descendants().forEach(ProcessHandle::destroyForcibly);
+                    started.destroyForcibly();
+                }
+            }, CC_SWITCH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
-            // 读取输出
-            StringBuilder output = new StringBuilder();
+            // 逐行读取输出：[TOTAL] / [PROVIDER] 行增量解析，其余行（汇总或错误）留作最终响应
+            int total = -1;
+            String summaryLine = null;
+            StringBuilder otherOutput = new StringBuilder();
             try (java.io.BufferedReader reader = new java.io.BufferedReader(
                     new java.io.InputStreamReader(process.getInputStream(), java.nio.charset.StandardCharsets.UTF_8))) {
                 String line;
                 while ((line = reader.readLine()) != null) {
-                    output.append(line);
+                    if (line.startsWith(CC_SWITCH_PROVIDER_PREFIX)) {
+                        JsonObject provider = JsonCodec.parseObject(line.substring(CC_SWITCH_PROVIDER_PREFIX.length()).trim());
+                        if (provider != null) {
+                            result.add(provider);
+                            if (listener != null) {
+                                listener.onProgress(result.size(), total);
+                            }
+                        }
+                    } else if (line.startsWith(CC_SWITCH_TOTAL_PREFIX)) {
+                        try {
+                            total = Integer.parseInt(line.substring(CC_SWITCH_TOTAL_PREFIX.length()).trim());
+                        } catch (NumberFormatException ignored) {
+                            // 忽略异常的总数行，进度按未知总数处理
+                        }
+                        if (listener != null) {
+                            listener.onProgress(0, total);
+                        }
+                    } else if (line.trim().startsWith("{")) {
+                        summaryLine = line.trim();
+                    } else if (!line.trim().isEmpty()) {
+                        otherOutput.append(line).append("\n");
+                    }
                 }
             }
 
-            // 等待进程完成
-            int exitCode = process.waitFor();
+            // 输出已读完，进程应很快退出；仍设置上限避免异常情况下永久阻塞
+            if (!process.waitFor(CC_SWITCH_TIMEOUT_SECONDS, TimeUnit.SECONDS) || timedOut.get()) {
+                throw new IOException("Node.js 脚本执行超时 (" + CC_SWITCH_TIMEOUT_SECONDS + "s)");
+            }
+            int exitCode = process.exitValue();
 
-            String jsonOutput = output.toString();
-            System.out.println("[Backend] Node.js 输出: " + jsonOutput);
+            System.out.println("[Backend] Node.js 输出汇总: " + summaryLine);
+            if (otherOutput.length() > 0) {
+                System.out.println("[Backend] Node.js 其他输出: " + otherOutput.toString().trim());
+            }
 
             if (exitCode != 0) {
-                throw new IOException("Node.js 脚本执行失败 (退出码: " + exitCode + "): " + jsonOutput);
+                throw new IOException("Node.js 脚本执行失败 (退出码: " + exitCode + "): "
+                    + (summaryLine != null ? summaryLine : otherOutput.toString().trim()));
             }
 
-            // 解析 JSON 输出
-            JsonObject response = gson.fromJson(jsonOutput, JsonObject.class);
+            // 解析汇总行
+            JsonObject response = summaryLine != null ? JsonCodec.parseObject(summaryLine) : null;
 
             if (response == null || !response.has("success")) {
-                throw new IOException("无效的 Node.js 脚本响应: " + jsonOutput);
+                throw new IOException("无效的 Node.js 脚本响应: " + summaryLine);
             }
 
             if (!response.get("success").getAsBoolean()) {
@@ -596,8 +1159,8 @@ public class CodemossSettingsService {
                 throw new IOException("Node.js 脚本执行失败: " + errorMsg);
             }
 
-            // 提取供应商列表
-            if (response.has("providers")) {
+            // 兼容旧版脚本：一次性输出 providers 数组
+            if (result.isEmpty() && response.has("providers")) {
                 JsonArray providersArray = response.getAsJsonArray("providers");
                 for (JsonElement element : providersArray) {
                     if (element.isJsonObject()) {
@@ -617,11 +1180,45 @@ public class CodemossSettingsService {
             System.err.println("[Backend] " + errorMsg);
             e.printStackTrace();
             throw new IOException(errorMsg, e);
+        } finally {
+            if (watchdog != null) {
+                watchdog.cancel(false);
+            }
+            if (process != null && process.isAlive()) {
+                process.destroyForcibly();
+            }
         }
 
         return result;
     }
 
+    /**
+     * 优先使用用户在设置页面配置的 Node.js 路径，否则自动检测
+     */
+    public static String resolveNodePath() {
+        try {
+            com.intellij.ide.util.PropertiesComponent props = com.intellij.ide.util.PropertiesComponent.getInstance();
+            String savedNodePath = props.getValue("claude.code.node.path");
+            if (savedNodePath != null && !savedNodePath.trim().isEmpty()) {
+                // 验证用户配置的路径是否有效
+                File nodeFile = new File(savedNodePath.trim());
+                if (nodeFile.exists() && nodeFile.canExecute()) {
+                    System.out.println("[Backend] 使用用户配置的 Node.js 路径: " + savedNodePath.trim());
+                    return savedNodePath.trim();
+                }
+                System.out.println("[Backend] 用户配置的 Node.js 路径无效，将自动检测: " + savedNodePath);
+            }
+        } catch (Exception e) {
+            System.out.println("[Backend] 读取用户配置的 Node.js 路径失败: " + e.getMessage());
+        }
+
+        // 如果用户没有配置或配置无效，使用 NodeDetector 自动检测
+        com.github.claudecodegui.bridge.NodeDetector nodeDetector = new com.github.claudecodegui.bridge.NodeDetector();
+        String nodePath = nodeDetector.findNodeExecutable();
+        System.out.println("[Backend] 自动检测到的 Node.js 路径: " + nodePath);
+        return nodePath;
+    }
+
     /**
      * 获取 ai-bridge 目录路径（使用 BridgeDirectoryResolver 自动处理解压）
      */
@@ -645,19 +1242,41 @@ public class CodemossSettingsService {
      * @return 成功保存的数量
      */
     public int saveProviders(List<JsonObject> providers) throws IOException {
+        return saveProviders(providers, null);
+    }
+
+    /**
+     * 批量保存供应商配置
+     * 所有供应商合并到同一份配置中，只读取和写入一次
+     * @param providers 供应商列表
+     * @param listener 进度回调，可为 null
+     * @return 成功保存的数量
+     */
+    public int saveProviders(List<JsonObject> providers, ImportProgressListener listener) throws IOException {
+        JsonObject config = readConfig();
         int count = 0;
+        int done = 0;
         for (JsonObject provider : providers) {
             try {
-                saveClaudeProvider(provider);
+                if (!provider.has("id")) {
+                    throw new IllegalArgumentException("Provider must have an id");
+                }
+                putProvider(config, provider);
                 count++;
             } catch (Exception e) {
                 System.err.println("Failed to save provider " + provider.get("id") + ": " + e.getMessage());
             }
+            done++;
+            if (listener != null) {
+                listener.onProgress(done, providers.size());
+            }
+        }
+        if (count > 0) {
+            writeConfig(config);
         }
         return count;
     }
 
-
     /**
      * 更新供应商
      */
@@ -692,7 +1311,7 @@ public class CodemossSettingsService {
             }
         }
 
-        writeConfig(config);
+        writeConfigNow(config);
         System.out.println("[CodemossSettings] Updated provider: " + id);
     }
 
@@ -703,12 +1322,10 @@ public class CodemossSettingsService {
      */
     public DeleteResult deleteClaudeProvider(String id) {
         Path configFilePath = null;
-        Path backupFilePath = null;
 
         try {
             JsonObject config = readConfig();
             configFilePath = getConfigFilePath();
-            backupFilePath = getConfigDir().resolve(BACKUP_FILE_NAME);
 
             if (!config.has("claude")) {
                 return DeleteResult.failure(
@@ -731,15 +1348,6 @@ public class CodemossSettingsService {
                 );
             }
 
-            // 创建配置备份（用于回滚）
-            try {
-                Files.copy(configFilePath, backupFilePath, StandardCopyOption.REPLACE_EXISTING);
-                System.out.println("[CodemossSettings] Created backup: " + backupFilePath);
-            } catch (IOException e) {
-                System.err.println("[CodemossSettings] Warning: Failed to create backup: " + e.getMessage());
-                // 备份失败不阻止删除操作，但记录警告
-            }
-
             // 删除供应商
             providers.remove(id);
 
@@ -756,32 +1364,15 @@ public class CodemossSettingsService {
                 }
             }
 
-            // 写入配置
-            writeConfig(config);
+            // 写入配置（立即落盘，以便返回详细的错误信息）
+            // 写入前旧配置已进入滚动备份日志
+            writeConfigNow(config);
             System.out.println("[CodemossSettings] Deleted provider: " + id);
 
-            // 删除成功后移除备份
-            try {
-                Files.deleteIfExists(backupFilePath);
-            } catch (IOException e) {
-                // 忽略备份文件删除失败
-            }
-
             return DeleteResult.success(id);
 
         } catch (IOException e) {
-            // 尝试从备份恢复
-            if (backupFilePath != null && configFilePath != null) {
-                try {
-                    if (Files.exists(backupFilePath)) {
-                        Files.copy(backupFilePath, configFilePath, StandardCopyOption.REPLACE_EXISTING);
-                        System.out.println("[CodemossSettings] Restored from backup after failure");
-                    }
-                } catch (IOException restoreEx) {
-                    System.err.println("[CodemossSettings] Failed to restore backup: " + restoreEx.getMessage());
-                }
-            }
-
+            // 原子写入失败时磁盘上的配置保持不变，writeConfigNow 已回滚内存中的修改
             return DeleteResult.fromException(e, configFilePath != null ? configFilePath.toString() : null);
         }
     }
@@ -816,7 +1407,7 @@ public class CodemossSettingsService {
         }
 
         claude.addProperty("current", id);
-        writeConfig(config);
+        writeConfigNow(config);
         System.out.println("[CodemossSettings] Switched to provider: " + id);
     }
 
@@ -828,6 +1419,13 @@ public class CodemossSettingsService {
     public List<JsonObject> getMcpServers() throws IOException {
         List<JsonObject> result = new ArrayList<>();
 
+        // 先写入排队中的变更，保证读到最新内容
+        try {
+            flushClaudeSync();
+        } catch (Exception e) {
+            System.err.println("[CodemossSettings] Failed to flush pending MCP changes: " + e.getMessage());
+        }
+
         // 1. 尝试从 ~/.claude.json 读取（Claude CLI 标准位置）
         try {
             String homeDir = System.getProperty("user.home");
@@ -928,8 +1526,10 @@ public class CodemossSettingsService {
      * 更新或插入 MCP 服务器
      * 优先更新 ~/.claude.json（Claude CLI 标准位置）
      * 回退到 ~/.codemoss/config.json
+     *
+     * @return 变更写入 ~/.claude.json 后完成（同步失败时异常完成）；写入 config.json 时立即完成
      */
-    public void upsertMcpServer(JsonObject server) throws IOException {
+    public CompletableFuture<Void> upsertMcpServer(JsonObject server) throws IOException {
         if (!server.has("id")) {
             throw new IllegalArgumentException("Server must have an id");
         }
@@ -937,68 +1537,18 @@ public class CodemossSettingsService {
         String serverId = server.get("id").getAsString();
         boolean isEnabled = !server.has("enabled") || server.get("enabled").getAsBoolean();
 
-        // 1. 尝试更新 ~/.claude.json
-        try {
-            String homeDir = System.getProperty("user.home");
-            Path claudeJsonPath = Paths.get(homeDir, ".claude.json");
-            File claudeJsonFile = claudeJsonPath.toFile();
-
-            if (claudeJsonFile.exists()) {
-                try (FileReader reader = new FileReader(claudeJsonFile)) {
-                    JsonObject claudeJson = JsonParser.parseReader(reader).getAsJsonObject();
-
-                    // 确保 mcpServers 对象存在
-                    if (!claudeJson.has("mcpServers") || !claudeJson.get("mcpServers").isJsonObject()) {
-                        claudeJson.add("mcpServers", new JsonObject());
-                    }
-                    JsonObject mcpServers = claudeJson.getAsJsonObject("mcpServers");
-
-                    // 提取 server 规格
-                    JsonObject serverSpec;
-                    if (server.has("server") && server.get("server").isJsonObject()) {
-                        serverSpec = server.getAsJsonObject("server").deepCopy();
-                    } else {
-                        serverSpec = new JsonObject();
-                    }
-
-                    // 更新或添加服务器
-                    mcpServers.add(serverId, serverSpec);
-
-                    // 更新 disabledMcpServers 列表
-                    if (!claudeJson.has("disabledMcpServers") || !claudeJson.get("disabledMcpServers").isJsonArray()) {
-                        claudeJson.add("disabledMcpServers", new JsonArray());
-                    }
-                    JsonArray disabledArray = claudeJson.getAsJsonArray("disabledMcpServers");
-
-                    // 移除旧的禁用状态
-                    JsonArray newDisabled = new JsonArray();
-                    for (JsonElement elem : disabledArray) {
-                        if (!elem.getAsString().equals(serverId)) {
-                            newDisabled.add(elem);
-                        }
-                    }
-
-                    // 如果禁用，添加到禁用列表
-                    if (!isEnabled) {
-                        newDisabled.add(serverId);
-                    }
-
-                    claudeJson.add("disabledMcpServers", newDisabled);
-
-                    // 写回文件
-                    try (FileWriter writer = new FileWriter(claudeJsonFile)) {
-                        gson.toJson(claudeJson, writer);
-                        System.out.println("[CodemossSettings] Upserted MCP server in ~/.claude.json: " + serverId + " (enabled: " + isEnabled + ")");
-
-                        // 同步到 settings.json
-                        syncMcpToClaudeSettings();
-
-                        return;
-                    }
-                }
+        // 1. 优先更新 ~/.claude.json（排入同步队列，合并窗口结束后统一写入并同步到 settings.json）
+        if (Files.exists(getClaudeJsonPath())) {
+            // 提取 server 规格
+            JsonObject serverSpec;
+            if (server.has("server") && server.get("server").isJsonObject()) {
+                serverSpec = server.getAsJsonObject("server").deepCopy();
+            } else {
+                serverSpec = new JsonObject();
             }
-        } catch (Exception e) {
-            System.err.println("[CodemossSettings] Error updating ~/.claude.json: " + e.getMessage());
+            CompletableFuture<Void> synced = enqueueMcpChange(serverId, serverSpec, isEnabled);
+            System.out.println("[CodemossSettings] Queued MCP server upsert for ~/.claude.json: " + serverId + " (enabled: " + isEnabled + ")");
+            return synced;
         }
 
         // 2. 回退到 ~/.codemoss/config.json
@@ -1028,61 +1578,27 @@ public class CodemossSettingsService {
             servers.add(server);
         }
 
-        writeConfig(config);
+        writeConfigNow(config);
         System.out.println("[CodemossSettings] Upserted MCP server in ~/.codemoss/config.json: " + serverId);
+        return CompletableFuture.completedFuture(null);
     }
 
     /**
      * 删除 MCP 服务器
      * 优先从 ~/.claude.json 删除（Claude CLI 标准位置）
      * 回退到 ~/.codemoss/config.json
+     *
+     * @return 服务器是否存在；从 ~/.claude.json 删除时在写入后完成（同步失败时异常完成）
      */
-    public boolean deleteMcpServer(String serverId) throws IOException {
+    public CompletableFuture<Boolean> deleteMcpServer(String serverId) throws IOException {
         boolean removed = false;
 
-        // 1. 尝试从 ~/.claude.json 删除
+        // 1. 尝试从 ~/.claude.json 删除（排入同步队列）
         try {
-            String homeDir = System.getProperty("user.home");
-            Path claudeJsonPath = Paths.get(homeDir, ".claude.json");
-            File claudeJsonFile = claudeJsonPath.toFile();
-
-            if (claudeJsonFile.exists()) {
-                try (FileReader reader = new FileReader(claudeJsonFile)) {
-                    JsonObject claudeJson = JsonParser.parseReader(reader).getAsJsonObject();
-
-                    if (claudeJson.has("mcpServers") && claudeJson.get("mcpServers").isJsonObject()) {
-                        JsonObject mcpServers = claudeJson.getAsJsonObject("mcpServers");
-
-                        if (mcpServers.has(serverId)) {
-                            // 删除服务器
-                            mcpServers.remove(serverId);
-
-                            // 同时从 disabledMcpServers 中移除（如果存在）
-                            if (claudeJson.has("disabledMcpServers") && claudeJson.get("disabledMcpServers").isJsonArray()) {
-                                JsonArray disabledServers = claudeJson.getAsJsonArray("disabledMcpServers");
-                                JsonArray newDisabled = new JsonArray();
-                                for (JsonElement elem : disabledServers) {
-                                    if (!elem.getAsString().equals(serverId)) {
-                                        newDisabled.add(elem);
-                                    }
-                                }
-                                claudeJson.add("disabledMcpServers", newDisabled);
-                            }
-
-                            // 写回文件
-                            try (FileWriter writer = new FileWriter(claudeJsonFile)) {
-                                gson.toJson(claudeJson, writer);
-                                System.out.println("[CodemossSettings] Deleted MCP server from ~/.claude.json: " + serverId);
-
-                                // 同步到 settings.json
-                                syncMcpToClaudeSettings();
-
-                                removed = true;
-                                return true;
-                            }
-                        }
-                    }
-                }
+            if (mcpServerExists(serverId)) {
+                CompletableFuture<Void> synced = enqueueMcpChange(serverId, null, false);
+                System.out.println("[CodemossSettings] Queued MCP server delete for ~/.claude.json: " + serverId);
+                return synced.thenApply(v -> true);
             }
         } catch (Exception e) {
             System.err.println("[CodemossSettings] Error deleting from ~/.claude.json: " + e.getMessage());
@@ -1105,12 +1621,12 @@ public class CodemossSettingsService {
 
             if (removed) {
                 config.add("mcpServers", newServers);
-                writeConfig(config);
+                writeConfigNow(config);
                 System.out.println("[CodemossSettings] Deleted MCP server from ~/.codemoss/config.json: " + serverId);
             }
         }
 
-        return removed;
+        return CompletableFuture.completedFuture(removed);
     }
 
     public Map<String, Object> validateMcpServer(JsonObject server) {
@@ -1211,7 +1727,7 @@ public class CodemossSettingsService {
         skills.add(id, skill);
 
         // 写入配置
-        writeConfig(config);
+        writeConfigNow(config);
 
         // 同步到 Claude settings
         syncSkillsToClaudeSettings();
@@ -1240,7 +1756,7 @@ public class CodemossSettingsService {
         skills.remove(id);
 
         // 写入配置
-        writeConfig(config);
+        writeConfigNow(config);
 
         // 同步到 Claude settings
         syncSkillsToClaudeSettings();
@@ -1300,7 +1816,6 @@ public class CodemossSettingsService {
      */
     public void syncSkillsToClaudeSettings() throws IOException {
         List<JsonObject> skills = getSkills();
-        JsonObject claudeSettings = readClaudeSettings();
 
         // 构建 plugins 数组
         com.google.gson.JsonArray plugins = new com.google.gson.JsonArray();
@@ -1319,12 +1834,9 @@ public class CodemossSettingsService {
             plugins.add(plugin);
         }
 
-        // 更新 plugins 字段
-        claudeSettings.add("plugins", plugins);
-
-        // 写入 Claude settings
-        writeClaudeSettings(claudeSettings);
+        // 排入同步队列，合并窗口结束后与 MCP 变更一起写入 Claude settings（内容不变时不写）
+        enqueuePluginsChange(plugins);
 
-        System.out.println("[CodemossSettings] Synced " + plugins.size() + " enabled skills to Claude settings");
+        System.out.println("[CodemossSettings] Queued " + plugins.size() + " enabled skills for Claude settings sync");
     }
 }
@@ -7,6 +7,9 @@ import com.github.claudecodegui.bridge.BridgeDirectoryResolver;
 import com.github.claudecodegui.bridge.EnvironmentConfigurator;
 import com.github.claudecodegui.bridge.NodeDetector;
 import com.github.claudecodegui.bridge.ProcessManager;
+import com.github.claudecodegui.bridge.TurnWatchdog;
+import com.github.claudecodegui.util.JsonCodec;
+import com.intellij.util.concurrency.AppExecutorUtil;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -15,7 +18,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -27,7 +30,7 @@ public class CodexSDKBridge {
 
     private static final String CHANNEL_SCRIPT = "channel-manager.js";
 
-    private final Gson gson = new Gson();
+    private final Gson gson = JsonCodec.gson();
     private final NodeDetector nodeDetector = new NodeDetector();
     private final ProcessManager processManager = new ProcessManager();
     private final EnvironmentConfigurator envConfigurator = new EnvironmentConfigurator();
@@ -191,11 +194,13 @@ public class CodexSDKBridge {
         String model,
         MessageCallback callback
     ) {
-        return CompletableFuture.supplyAsync(() -> {
+        CompletableFuture<SDKResult> future = CompletableFuture.supplyAsync(() -> {
             SDKResult result = new SDKResult();
             StringBuilder assistantContent = new StringBuilder();
             final String[] lastNodeError = {null};
             final boolean[] hadSendError = {false};
+            boolean slotAcquired = false;
+            File processTempDir = null;
 
             try {
                 String node = nodeDetector.findNodeExecutable();
@@ -222,8 +227,17 @@ public class CodexSDKBridge {
                 command.add("codex");  // provider
                 command.add("send");
 
-                File processTempDir = processManager.prepareClaudeTempDir();
-                Set<String> existingTempMarkers = processManager.snapshotClaudeCwdFiles(processTempDir);
+                // 全局并发上限：排队等待执行槽位（先到先得），排队期间可被中断
+                if (!processManager.acquireProcessSlot(channelId)) {
+                    processManager.wasInterrupted(channelId);
+                    System.out.println("[CodexSDKBridge] Channel interrupted while queued: " + channelId);
+                    result.success = false;
+                    result.error = "User interrupted";
+                    callback.onComplete(result);
+                    return result;
+                }
+                slotAcquired = true;
+                processTempDir = processManager.prepareClaudeTempDir(channelId);
 
                 ProcessBuilder pb = new ProcessBuilder(command);
 
@@ -255,9 +269,13 @@ public class CodexSDKBridge {
                 System.out.println("[CodexSDKBridge] Command: " + String.join(" ", command));
 
                 Process process = null;
+                TurnWatchdog.Turn watchdogTurn = null;
                 try {
                     process = pb.start();
                     processManager.registerProcess(channelId, process);
+                    // 看门狗：首字节/空闲/总时长超限时停止进程，下方按超时错误结束本轮
+                    watchdogTurn = TurnWatchdog.getInstance()
+                        .start(channelId, error -> processManager.stopChannel(channelId));
 
                     // 通过 stdin 写入参数
                     try (java.io.OutputStream stdin = process.getOutputStream()) {
@@ -272,6 +290,7 @@ public class CodexSDKBridge {
 
                         String line;
                         while ((line = reader.readLine()) != null) {
+                            watchdogTurn.onOutput(line);
                             // 捕获 Node.js 错误日志
                             if (line.startsWith("[UNCAUGHT_ERROR]")
                                     || line.startsWith("[UNHANDLED_REJECTION]")
@@ -322,10 +341,11 @@ public class CodexSDKBridge {
                         }
                     }
 
-                    process.waitFor();
+                    processManager.awaitExit(channelId, process);
 
                     int exitCode = process.exitValue();
                     boolean wasInterrupted = processManager.wasInterrupted(channelId);
+                    String timeoutError = watchdogTurn.getTimeoutError();
 
                     result.finalResult = assistantContent.toString();
                     result.messageCount = result.messages.size();
@@ -334,6 +354,10 @@ public class CodexSDKBridge {
                         result.success = false;
                         result.error = "User interrupted";
                         callback.onComplete(result);
+                    } else if (timeoutError != null) {
+                        result.success = false;
+                        result.error = timeoutError;
+                        callback.onError(timeoutError);
                     } else if (!hadSendError[0]) {
                         result.success = exitCode == 0;
                         if (result.success) {
@@ -350,18 +374,35 @@ public class CodexSDKBridge {
 
                     return result;
                 } finally {
+                    if (watchdogTurn != null) {
+                        watchdogTurn.close();
+                    }
                     processManager.unregisterProcess(channelId, process);
                     processManager.waitForProcessTermination(process);
-                    processManager.cleanupClaudeTempFiles(processTempDir, existingTempMarkers);
+                    processManager.releaseProcessSlot();
+                    slotAcquired = false;
                 }
 
             } catch (Exception e) {
+                if (slotAcquired) {
+                    processManager.releaseProcessSlot();
+                }
                 result.success = false;
                 result.error = e.getMessage();
                 callback.onError(e.getMessage());
                 return result;
+            } finally {
+                // 进程启动前失败时也要删除临时目录并取消登记
+                processManager.cleanupClaudeTempDir(processTempDir);
+            }
+        }, AppExecutorUtil.getAppExecutorService());
+        // 调用方取消 future 时停止通道的进程（停止过程可能阻塞数秒，在后台线程执行）
+        future.whenComplete((r, ex) -> {
+            if (ex instanceof CancellationException) {
+                CompletableFuture.runAsync(() -> processManager.interruptChannel(channelId), AppExecutorUtil.getAppExecutorService());
             }
         });
+        return future;
     }
 
     /**
@@ -3,7 +3,13 @@ package com.github.claudecodegui;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.github.claudecodegui.cache.SkillDirectoryCache;
+import com.github.claudecodegui.util.FileTreeCopier;
+import com.github.claudecodegui.util.JsonCodec;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.util.concurrency.AppExecutorUtil;
 
 import java.io.File;
 import java.io.IOException;
@@ -11,6 +17,9 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -29,7 +38,7 @@ import java.util.regex.Pattern;
  */
 public class SkillService {
     private static final Logger LOG = Logger.getInstance(SkillService.class);
-    private static final Gson gson = new Gson();
+    private static final Gson gson = JsonCodec.gson();
 
     // 管理目录根路径
     private static final String CONFIG_DIR_NAME = ".codemoss";
@@ -40,6 +49,14 @@ public class SkillService {
     private static final Pattern FRONTMATTER_PATTERN = Pattern.compile("^---\\s*\\n([\\s\\S]*?)\\n---");
     private static final Pattern DESCRIPTION_PATTERN = Pattern.compile("description:\\s*(.+?)(?:\\n[a-z-]+:|$)", Pattern.DOTALL);
 
+    // 导入/移动 Skills 时的并行复制线程池
+    private static final int COPY_PARALLELISM = 4;
+    private static final ExecutorService COPY_EXECUTOR =
+        AppExecutorUtil.createBoundedApplicationPoolExecutor("SkillCopy", COPY_PARALLELISM);
+
+    // 已注册关闭时释放缓存的项目根目录
+    private static final Set<String> RELEASE_REGISTERED = ConcurrentHashMap.newKeySet();
+
     // ==================== 使用中目录（Claude 读取的目录） ====================
 
     /**
@@ -92,6 +109,21 @@ public class SkillService {
         return Paths.get(getManagementRootDir(), safeDirName).toString();
     }
 
+    /**
+     * 项目关闭时释放其本地 Skills 目录的缓存与文件监听（同一项目只注册一次）
+     */
+    public static void releaseCachesOnClose(Project project) {
+        String workspaceRoot = project.getBasePath();
+        if (workspaceRoot == null || !RELEASE_REGISTERED.add(workspaceRoot)) {
+            return;
+        }
+        Disposer.register(project, () -> {
+            RELEASE_REGISTERED.remove(workspaceRoot);
+            SkillDirectoryCache.getInstance().evict(getLocalSkillsDir(workspaceRoot));
+            SkillDirectoryCache.getInstance().evict(getLocalManagementDir(workspaceRoot));
+        });
+    }
+
     /**
      * 确保目录存在
      */
@@ -161,59 +193,53 @@ public class SkillService {
 
     /**
      * 扫描目录获取 Skills
+     * 结果由 {@link SkillDirectoryCache} 缓存，目录未变化时不再读取 skill.md
      * @param dirPath 目录路径
      * @param scope 作用域 (global/local)
      * @param enabled 是否为启用状态
      */
     private static JsonObject scanSkillsDirectory(String dirPath, String scope, boolean enabled) {
-        JsonObject skills = new JsonObject();
-        File dir = new File(dirPath);
-
-        if (!dir.exists()) {
+        if (!new File(dirPath).exists()) {
             LOG.info("[Skills] " + scope + " Skills 目录不存在: " + dirPath);
-            return skills;
+            return new JsonObject();
         }
 
-        File[] entries = dir.listFiles();
-        if (entries == null) {
-            return skills;
-        }
+        JsonObject skills = SkillDirectoryCache.getInstance().scan(dirPath, scope + "|" + enabled,
+            (entry, attrs) -> buildSkill(entry, attrs, scope, enabled));
 
-        for (File entry : entries) {
-            // 跳过隐藏文件/文件夹
-            if (entry.getName().startsWith(".")) {
-                continue;
-            }
-
-            String type = entry.isDirectory() ? "directory" : "file";
-            // ID 格式包含启用状态标记，便于区分同名的启用/停用 Skill
-            String id = scope + "-" + entry.getName() + (enabled ? "" : "-disabled");
-            String description = extractDescription(entry.getAbsolutePath(), entry.isDirectory());
-
-            JsonObject skill = new JsonObject();
-            skill.addProperty("id", id);
-            skill.addProperty("name", entry.getName());
-            skill.addProperty("type", type);
-            skill.addProperty("scope", scope);
-            skill.addProperty("path", entry.getAbsolutePath());
-            skill.addProperty("enabled", enabled);
-            if (description != null) {
-                skill.addProperty("description", description);
-            }
+        LOG.debug("[Skills] 从 " + scope + " 目录获取到 " + skills.size() + " 个 Skills (enabled=" + enabled + "): " + dirPath);
+        return skills;
+    }
 
-            try {
-                BasicFileAttributes attrs = Files.readAttributes(entry.toPath(), BasicFileAttributes.class);
-                skill.addProperty("createdAt", attrs.creationTime().toString());
-                skill.addProperty("modifiedAt", attrs.lastModifiedTime().toString());
-            } catch (IOException e) {
-                LOG.warn("[Skills] 读取文件属性失败: " + entry.getAbsolutePath());
-            }
+    /**
+     * 构建单个 Skill 的 JSON（只在条目新增或变化时调用）
+     */
+    private static JsonObject buildSkill(File entry, BasicFileAttributes attrs, String scope, boolean enabled) {
+        boolean isDirectory = attrs != null ? attrs.isDirectory() : entry.isDirectory();
+        String type = isDirectory ? "directory" : "file";
+        // ID 格式包含启用状态标记，便于区分同名的启用/停用 Skill
+        String id = scope + "-" + entry.getName() + (enabled ? "" : "-disabled");
+        String description = extractDescription(entry.getAbsolutePath(), isDirectory);
+
+        JsonObject skill = new JsonObject();
+        skill.addProperty("id", id);
+        skill.addProperty("name", entry.getName());
+        skill.addProperty("type", type);
+        skill.addProperty("scope", scope);
+        skill.addProperty("path", entry.getAbsolutePath());
+        skill.addProperty("enabled", enabled);
+        if (description != null) {
+            skill.addProperty("description", description);
+        }
 
-            skills.add(id, skill);
+        if (attrs != null) {
+            skill.addProperty("createdAt", attrs.creationTime().toString());
+            skill.addProperty("modifiedAt", attrs.lastModifiedTime().toString());
+        } else {
+            LOG.warn("[Skills] 读取文件属性失败: " + entry.getAbsolutePath());
         }
 
-        LOG.info("[Skills] 从 " + scope + " 目录获取到 " + skills.size() + " 个 Skills (enabled=" + enabled + "): " + dirPath);
-        return skills;
+        return skill;
     }
 
     /**
@@ -267,6 +293,20 @@ public class SkillService {
      * @return 导入结果
      */
     public static JsonObject importSkills(List<String> sourcePaths, String scope, String workspaceRoot) {
+        return importSkills(sourcePaths, scope, workspaceRoot, null);
+    }
+
+    /**
+     * 导入 Skill（复制文件/文件夹到 Skills 目录）
+     * 文件在 COPY_EXECUTOR 中并行复制；已存在同名 Skill 时增量更新，内容未变化的文件直接跳过
+     * @param sourcePaths 源文件/文件夹路径列表
+     * @param scope 作用域
+     * @param workspaceRoot 工作区根目录
+     * @param listener 进度回调（按所有源的文件总数计算），可为 null
+     * @return 导入结果
+     */
+    public static JsonObject importSkills(List<String> sourcePaths, String scope, String workspaceRoot,
+                                          FileTreeCopier.ProgressListener listener) {
         JsonObject result = new JsonObject();
         JsonArray imported = new JsonArray();
         JsonArray errors = new JsonArray();
@@ -289,6 +329,14 @@ public class SkillService {
             LOG.info("[Skills] 创建 " + scope + " Skills 目录: " + targetDir);
         }
 
+        // 预先统计文件总数，进度按所有源累计
+        int totalFiles = 0;
+        for (String sourcePath : sourcePaths) {
+            totalFiles += countFiles(Paths.get(sourcePath));
+        }
+        final int progressTotal = Math.max(totalFiles, 1);
+        int progressBase = 0;
+
         for (String sourcePath : sourcePaths) {
             File source = new File(sourcePath);
             if (!source.exists()) {
@@ -301,9 +349,10 @@ public class SkillService {
 
             String name = source.getName();
             File targetPath = new File(targetDir, name);
+            boolean updating = targetPath.exists();
 
-            // 检查是否已存在同名 Skill
-            if (targetPath.exists()) {
+            // 已存在同名 Skill 时只允许同类型覆盖（目录对目录、文件对文件）
+            if (updating && targetPath.isDirectory() != source.isDirectory()) {
                 JsonObject err = new JsonObject();
                 err.addProperty("path", sourcePath);
                 err.addProperty("error", "已存在同名 Skill: " + name);
@@ -311,13 +360,13 @@ public class SkillService {
                 continue;
             }
 
+            int sourceFiles = countFiles(source.toPath());
             try {
-                // 复制文件/文件夹
-                if (source.isDirectory()) {
-                    copyDirectory(source.toPath(), targetPath.toPath());
-                } else {
-                    Files.copy(source.toPath(), targetPath.toPath());
-                }
+                // 复制文件/文件夹（并行复制，未变化的文件按校验和跳过）
+                final int base = progressBase;
+                FileTreeCopier.Stats stats = FileTreeCopier.copy(source.toPath(), targetPath.toPath(), COPY_EXECUTOR,
+                    listener == null ? null : (done, total) -> listener.onProgress(base + done, progressTotal));
+                LOG.info("[Skills] 复制 " + name + ": " + stats);
 
                 // 构建导入结果
                 String type = source.isDirectory() ? "directory" : "file";
@@ -333,9 +382,12 @@ public class SkillService {
                 if (description != null) {
                     skill.addProperty("description", description);
                 }
+                skill.addProperty("updated", updating);
+                skill.addProperty("copiedFiles", stats.copied);
+                skill.addProperty("skippedFiles", stats.skipped);
 
                 imported.add(skill);
-                LOG.info("[Skills] 成功导入 " + scope + " Skill: " + name);
+                LOG.info("[Skills] 成功" + (updating ? "更新 " : "导入 ") + scope + " Skill: " + name);
 
             } catch (IOException e) {
                 JsonObject err = new JsonObject();
@@ -344,6 +396,11 @@ public class SkillService {
                 errors.add(err);
                 LOG.error("[Skills] 导入 Skill 失败: " + e.getMessage());
             }
+            progressBase += sourceFiles;
+        }
+
+        if (imported.size() > 0) {
+            SkillDirectoryCache.getInstance().invalidate(targetDir);
         }
 
         result.addProperty("success", errors.size() == 0 || imported.size() > 0);
@@ -390,12 +447,9 @@ public class SkillService {
         }
 
         try {
-            if (targetPath.isDirectory()) {
-                deleteDirectory(targetPath.toPath());
-            } else {
-                Files.delete(targetPath.toPath());
-            }
+            FileTreeCopier.deleteTree(targetPath.toPath());
             result.addProperty("success", true);
+            SkillDirectoryCache.getInstance().invalidate(dir);
             LOG.info("[Skills] 成功删除 " + scope + " Skill: " + name + " (enabled=" + enabled + ")");
         } catch (IOException e) {
             result.addProperty("success", false);
@@ -466,8 +520,8 @@ public class SkillService {
         }
 
         try {
-            // 移动文件/文件夹
-            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            // 同一文件存储上直接原子移动，跨文件系统时并行复制后删除
+            FileTreeCopier.move(source.toPath(), target.toPath(), COPY_EXECUTOR, null);
             result.addProperty("success", true);
             result.addProperty("name", name);
             result.addProperty("scope", scope);
@@ -475,28 +529,14 @@ public class SkillService {
             result.addProperty("path", target.getAbsolutePath());
             LOG.info("[Skills] 成功启用 " + scope + " Skill: " + name);
         } catch (IOException e) {
-            // 如果 ATOMIC_MOVE 失败（跨文件系统），尝试复制后删除
-            try {
-                if (source.isDirectory()) {
-                    copyDirectory(source.toPath(), target.toPath());
-                    deleteDirectory(source.toPath());
-                } else {
-                    Files.copy(source.toPath(), target.toPath());
-                    Files.delete(source.toPath());
-                }
-                result.addProperty("success", true);
-                result.addProperty("name", name);
-                result.addProperty("scope", scope);
-                result.addProperty("enabled", true);
-                result.addProperty("path", target.getAbsolutePath());
-                LOG.info("[Skills] 成功启用 " + scope + " Skill (copy+delete): " + name);
-            } catch (IOException e2) {
-                result.addProperty("success", false);
-                result.addProperty("error", "移动失败: " + e2.getMessage());
-                LOG.error("[Skills] 启用 Skill 失败: " + e2.getMessage());
-            }
+            result.addProperty("success", false);
+            result.addProperty("error", "移动失败: " + e.getMessage());
+            LOG.error("[Skills] 启用 Skill 失败: " + e.getMessage());
         }
 
+        SkillDirectoryCache.getInstance().invalidate(sourceDir);
+        SkillDirectoryCache.getInstance().invalidate(targetDir);
+
         return result;
     }
 
@@ -546,8 +586,8 @@ public class SkillService {
         }
 
         try {
-            // 移动文件/文件夹
-            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            // 同一文件存储上直接原子移动，跨文件系统时并行复制后删除
+            FileTreeCopier.move(source.toPath(), target.toPath(), COPY_EXECUTOR, null);
             result.addProperty("success", true);
             result.addProperty("name", name);
             result.addProperty("scope", scope);
@@ -555,28 +595,14 @@ public class SkillService {
             result.addProperty("path", target.getAbsolutePath());
             LOG.info("[Skills] 成功停用 " + scope + " Skill: " + name);
         } catch (IOException e) {
-            // 如果 ATOMIC_MOVE 失败（跨文件系统），尝试复制后删除
-            try {
-                if (source.isDirectory()) {
-                    copyDirectory(source.toPath(), target.toPath());
-                    deleteDirectory(source.toPath());
-                } else {
-                    Files.copy(source.toPath(), target.toPath());
-                    Files.delete(source.toPath());
-                }
-                result.addProperty("success", true);
-                result.addProperty("name", name);
-                result.addProperty("scope", scope);
-                result.addProperty("enabled", false);
-                result.addProperty("path", target.getAbsolutePath());
-                LOG.info("[Skills] 成功停用 " + scope + " Skill (copy+delete): " + name);
-            } catch (IOException e2) {
-                result.addProperty("success", false);
-                result.addProperty("error", "移动失败: " + e2.getMessage());
-                LOG.error("[Skills] 停用 Skill 失败: " + e2.getMessage());
-            }
+            result.addProperty("success", false);
+            result.addProperty("error", "移动失败: " + e.getMessage());
+            LOG.error("[Skills] 停用 Skill 失败: " + e.getMessage());
         }
 
+        SkillDirectoryCache.getInstance().invalidate(sourceDir);
+        SkillDirectoryCache.getInstance().invalidate(targetDir);
+
         return result;
     }
 
@@ -596,42 +622,16 @@ public class SkillService {
     }
 
     /**
-     * 递归复制目录
+     * 统计文件/目录树中的文件数（用于导入进度）
      */
-    private static void copyDirectory(Path source, Path target) throws IOException {
-        Files.walkFileTree(source, new SimpleFileVisitor<>() {
-            @Override
-            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-                Path targetDir = target.resolve(source.relativize(dir));
-                Files.createDirectories(targetDir);
-                return FileVisitResult.CONTINUE;
-            }
-
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                Path targetFile = target.resolve(source.relativize(file));
-                Files.copy(file, targetFile, StandardCopyOption.REPLACE_EXISTING);
-                return FileVisitResult.CONTINUE;
-            }
-        });
-    }
-
-    /**
-     * 递归删除目录
-     */
-    private static void deleteDirectory(Path dir) throws IOException {
-        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                Files.delete(file);
-                return FileVisitResult.CONTINUE;
-            }
-
-            @Override
-            public FileVisitResult postVisitDirectory(Path d, IOException exc) throws IOException {
-                Files.delete(d);
-                return FileVisitResult.CONTINUE;
-            }
-        });
+    private static int countFiles(Path path) {
+        if (!Files.isDirectory(path)) {
+            return Files.exists(path) ? 1 : 0;
+        }
+        try (java.util.stream.Stream<Path> stream = Files.walk(path)) {
+            return (int) stream.filter(Files::isRegularFile).count();
+        } catch (IOException e) {
+            return 0;
+        }
     }
 }
@@ -0,0 +1,166 @@
+package com.github.claudecodegui;
+
+import com.github.claudecodegui.util.JsonCodec;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 聊天记录窗口化推送
+ *
+ * 前端只持有会话末尾的一段消息（窗口），Java 端记录已推送消息的 id -> revision：
+ * 1. 首次推送（或会话被替换）时发送末尾 WINDOW_SIZE 条：syncMessages({total, start, messages})
+ * 2. 之后每次更新只发送新增或 revision 变化的消息：patchMessages({total, messages})
+ *    流式输出时每次只序列化正在生成的那一条消息，而不是整个会话
+ * 3. 前端滚动到顶部时请求更早的消息，按 PAGE_SIZE 分页补发：prependMessages({start, messages})
+ *
+ * 非线程安全，只在 EDT 上调用。
+ */
+public final class TranscriptSync {
+
+    static final int WINDOW_SIZE = 200;
+    static final int PAGE_SIZE = 100;
+
+    /**
+     * 前端调用接口
+     */
+    public interface Sender {
+        void send(String functionName, String json);
+    }
+
+    private final Sender sender;
+    // 已推送消息的 id -> revision
+    private final Map<Long, Integer> sentRevisions = new HashMap<>();
+    // 前端窗口第一条消息在会话列表中的下标及其 id（-1 表示尚未同步）
+    private int windowStart = 0;
+    private long windowFirstId = -1;
+
+    public TranscriptSync(Sender sender) {
+        this.sender = sender;
+    }
+
+    /**
+     * 前端已清空消息（新建/切换会话），下次更新重新全量同步窗口
+     */
+    public void reset() {
+        sentRevisions.clear();
+        windowStart = 0;
+        windowFirstId = -1;
+    }
+
+    /**
+     * 会话消息变化后推送差量
+     * @param messages 会话消息快照
+     */
+    public void update(List<ClaudeSession.Message> messages) {
+        if (needsFullSync(messages)) {
+            sync(messages);
+            return;
+        }
+
+        JsonArray upserts = new JsonArray();
+        for (int i = windowStart; i < messages.size(); i++) {
+            ClaudeSession.Message msg = messages.get(i);
+            // 消息不可变：每个版本都是新对象，修改只会体现为更高的 revision
+            Integer sent = sentRevisions.get(msg.id);
+            if (sent == null || sent != msg.revision) {
+                upserts.add(toJson(msg));
+                sentRevisions.put(msg.id, msg.revision);
+            }
+        }
+        if (upserts.isEmpty()) {
+            return;
+        }
+
+        JsonObject payload = new JsonObject();
+        payload.addProperty("total", messages.size());
+        payload.add("messages", upserts);
+        sender.send("patchMessages", JsonCodec.gson().toJson(payload));
+    }
+
+    /**
+     * 前端请求窗口之前的一页消息
+     * @param messages 会话消息快照
+     */
+    public void loadOlder(List<ClaudeSession.Message> messages) {
+        if (needsFullSync(messages)) {
+            sync(messages);
+            return;
+        }
+        if (windowStart == 0) {
+            return;
+        }
+
+        int start = Math.max(0, windowStart - PAGE_SIZE);
+        JsonArray older = new JsonArray();
+        for (int i = start; i < windowStart; i++) {
+            ClaudeSession.Message msg = messages.get(i);
+            sentRevisions.put(msg.id, msg.revision);
+            older.add(toJson(msg));
+        }
+        windowStart = start;
+        windowFirstId = messages.get(start).id;
+
+        JsonObject payload = new JsonObject();
+        payload.addProperty("start", start);
+        payload.add("messages", older);
+        sender.send("prependMessages", JsonCodec.gson().toJson(payload));
+        System.out.println("[TranscriptSync] Sent " + older.size() + " older messages, window start=" + start);
+    }
+
+    /**
+     * 尚未同步过，或窗口起点已不在原位置（会话被重新加载）时需要全量同步
+     */
+    private boolean needsFullSync(List<ClaudeSession.Message> messages) {
+        return windowFirstId < 0
+            || windowStart >= messages.size()
+            || messages.get(windowStart).id != windowFirstId;
+    }
+
+    private void sync(List<ClaudeSession.Message> messages) {
+        sentRevisions.clear();
+        windowStart = Math.max(0, messages.size() - WINDOW_SIZE);
+        windowFirstId = windowStart < messages.size() ? messages.get(windowStart).id : -1;
+
+        JsonArray window = new JsonArray();
+        for (int i = windowStart; i < messages.size(); i++) {
+            ClaudeSession.Message msg = messages.get(i);
+            sentRevisions.put(msg.id, msg.revision);
+            window.add(toJson(msg));
+        }
+
+        JsonObject payload = new JsonObject();
+        payload.addProperty("total", messages.size());
+        payload.addProperty("start", windowStart);
+        payload.add("messages", window);
+        sender.send("syncMessages", JsonCodec.gson().toJson(payload));
+    }
+
+    private static JsonObject toJson(ClaudeSession.Message msg) {
+        JsonObject msgObj = new JsonObject();
+        msgObj.addProperty("id", msg.id);
+        msgObj.addProperty("type", msg.type.toString().toLowerCase());
+        msgObj.addProperty("timestamp", msg.timestamp);
+        msgObj.addProperty("content", msg.content != null ? msg.content : "");
+        if (msg.raw != null) {
+            msgObj.add("raw", msg.raw);
+        }
+        // 已完成消息的内容哈希，前端据此缓存渲染结果
+        String[] blockHashes = msg.blockHashes;
+        if (blockHashes != null) {
+            JsonArray hashes = new JsonArray(blockHashes.length);
+            for (String hash : blockHashes) {
+                hashes.add(hash);
+            }
+            msgObj.add("blockHashes", hashes);
+        }
+        String contentHash = msg.contentHash;
+        if (contentHash != null) {
+            msgObj.addProperty("contentHash", contentHash);
+        }
+        return msgObj;
+    }
+}
@@ -7,17 +7,59 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 环境配置器
  * 负责配置进程环境变量
+ *
+ * PATH/HOME/权限目录等覆盖项只与 Node.js 路径和 IDE 环境有关，
+ * 因此按 Node.js 路径预先计算一份环境模板并缓存，每次启动进程时一次性 putAll 到 ProcessBuilder，
+ * 避免每次都重新扫描 PATH。调用 {@link #invalidateTemplates()} 或 {@link #clearCache()} 后重新计算。
  */
 public class EnvironmentConfigurator {
 
     private static final String CLAUDE_PERMISSION_ENV = "CLAUDE_PERMISSION_DIR";
 
+    // 设置版本号：设置变化时递增，所有实例的环境模板随之失效
+    private static final AtomicInteger SETTINGS_REVISION = new AtomicInteger();
+
     private volatile String cachedPermissionDir = null;
+    private volatile EnvironmentTemplate cachedTemplate = null;
+
+    /**
+     * 预先计算好的环境变量覆盖项
+     */
+    private static final class EnvironmentTemplate {
+        final String nodeExecutable;
+        final int revision;
+        final Map<String, String> overrides;
+        final List<String> removals;
+
+        EnvironmentTemplate(String nodeExecutable, int revision, Map<String, String> overrides, List<String> removals) {
+            this.nodeExecutable = nodeExecutable;
+            this.revision = revision;
+            this.overrides = overrides;
+            this.removals = removals;
+        }
+
+        boolean matches(String node, int currentRevision) {
+            return revision == currentRevision && Objects.equals(nodeExecutable, node);
+        }
+    }
+
+    /**
+     * 使所有实例的环境模板失效（Node.js 路径等设置变化时调用）
+     */
+    public static void invalidateTemplates() {
+        SETTINGS_REVISION.incrementAndGet();
+    }
 
     /**
      * 更新进程的环境变量，确保 PATH 包含 Node.js 所在目录
@@ -25,11 +67,42 @@ public class EnvironmentConfigurator {
      */
     public void updateProcessEnvironment(ProcessBuilder pb, String nodeExecutable) {
         Map<String, String> env = pb.environment();
+        EnvironmentTemplate template = getTemplate(nodeExecutable);
+        for (String key : template.removals) {
+            env.remove(key);
+        }
+        env.putAll(template.overrides);
+    }
+
+    /**
+     * 获取（必要时重新计算）环境模板
+     */
+    private EnvironmentTemplate getTemplate(String nodeExecutable) {
+        int revision = SETTINGS_REVISION.get();
+        EnvironmentTemplate template = this.cachedTemplate;
+        if (template != null && template.matches(nodeExecutable, revision)) {
+            return template;
+        }
+
+        long start = System.nanoTime();
+        template = buildTemplate(nodeExecutable, revision);
+        this.cachedTemplate = template;
+        System.out.println("[EnvironmentConfigurator] Environment template built in "
+            + (System.nanoTime() - start) / 1_000_000 + "ms (node=" + nodeExecutable + ")");
+        return template;
+    }
+
+    /**
+     * 根据当前 IDE 环境计算 PATH/HOME/权限目录覆盖项
+     */
+    private EnvironmentTemplate buildTemplate(String nodeExecutable, int revision) {
+        Map<String, String> overrides = new LinkedHashMap<>();
+        List<String> removals = new ArrayList<>();
 
         // 使用 PlatformUtils 获取 PATH 环境变量（大小写不敏感）
         String path = PlatformUtils.isWindows() ?
             PlatformUtils.getEnvIgnoreCase("PATH") :
-            env.get("PATH");
+            System.getenv("PATH");
 
         if (path == null) {
             path = "";
@@ -83,27 +156,34 @@ public class EnvironmentConfigurator {
         String newPathStr = newPath.toString();
         if (PlatformUtils.isWindows()) {
             // 先移除可能存在的旧值，避免重复
-            env.remove("PATH");
-            env.remove("Path");
-            env.remove("path");
+            removals.add("PATH");
+            removals.add("Path");
+            removals.add("path");
             // 同时设置多种大小写形式确保兼容性
-            env.put("PATH", newPathStr);
-            env.put("Path", newPathStr);
+            overrides.put("PATH", newPathStr);
+            overrides.put("Path", newPathStr);
         } else {
-            env.put("PATH", newPathStr);
+            overrides.put("PATH", newPathStr);
         }
 
         // 4. 确保 HOME 环境变量设置正确
         // SDK 需要 HOME 环境变量来找到 ~/.claude/commands/ 目录
-        String home = env.get("HOME");
+        String home = System.getenv("HOME");
         if (home == null || home.isEmpty()) {
             home = System.getProperty("user.home");
             if (home != null && !home.isEmpty()) {
-                env.put("HOME", home);
+                overrides.put("HOME", home);
             }
         }
 
-        configurePermissionEnv(env);
+        // 5. 权限目录（IDE 环境中已设置时保留原值）
+        String permissionDir = getPermissionDirectory();
+        if (permissionDir != null && System.getenv(CLAUDE_PERMISSION_ENV) == null) {
+            overrides.put(CLAUDE_PERMISSION_ENV, permissionDir);
+        }
+
+        return new EnvironmentTemplate(nodeExecutable, revision,
+            Collections.unmodifiableMap(overrides), Collections.unmodifiableList(removals));
     }
 
     /**
@@ -193,5 +273,6 @@ public class EnvironmentConfigurator {
      */
     public void clearCache() {
         this.cachedPermissionDir = null;
+        this.cachedTemplate = null;
     }
 }
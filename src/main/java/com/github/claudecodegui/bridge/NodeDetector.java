@@ -2,11 +2,15 @@ package com.github.claudecodegui.bridge;
 
 import com.github.claudecodegui.model.NodeDetectionResult;
 import com.github.claudecodegui.util.PlatformUtils;
+import com.intellij.ide.util.PropertiesComponent;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -14,6 +18,10 @@ import java.util.concurrent.TimeUnit;
 /**
  * Node.js 检测器
  * 负责在各种平台上查找和验证 Node.js 可执行文件
+ *
+ * 完整检测可能需要启动登录 shell（加载用户 rc 文件），耗时可达数秒。
+ * 检测成功后会把路径、版本、文件修改时间和大小持久化到 PropertiesComponent，
+ * 下次启动（或 clearCache 后）只需对该文件做一次 stat 校验，文件不存在或已变化时才重新完整检测。
  */
 public class NodeDetector {
 
@@ -37,6 +45,12 @@ public class NodeDetector {
         "%LOCALAPPDATA%\\Programs\\nodejs\\node.exe"
     };
 
+    // 持久化的检测结果（跨 IDE 重启）
+    private static final String DETECTED_PATH_KEY = "claude.code.node.detected.path";
+    private static final String DETECTED_VERSION_KEY = "claude.code.node.detected.version";
+    private static final String DETECTED_MTIME_KEY = "claude.code.node.detected.mtime";
+    private static final String DETECTED_SIZE_KEY = "claude.code.node.detected.size";
+
     private String cachedNodeExecutable = null;
 
     /**
@@ -47,6 +61,13 @@ public class NodeDetector {
             return cachedNodeExecutable;
         }
 
+        // 优先使用持久化的检测结果（只做一次 stat 校验）
+        NodeDetectionResult persisted = loadPersistedResult();
+        if (persisted != null) {
+            cachedNodeExecutable = persisted.getNodePath();
+            return cachedNodeExecutable;
+        }
+
         NodeDetectionResult result = detectNodeWithDetails();
         if (result.isFound()) {
             cachedNodeExecutable = result.getNodePath();
@@ -74,18 +95,21 @@ public class NodeDetector {
         // 1. 尝试使用系统命令查找 (where/which)
         NodeDetectionResult cmdResult = detectNodeViaSystemCommand(triedPaths);
         if (cmdResult != null && cmdResult.isFound()) {
+            persistResult(cmdResult);
             return cmdResult;
         }
 
         // 2. 尝试已知安装路径
         NodeDetectionResult knownPathResult = detectNodeViaKnownPaths(triedPaths);
         if (knownPathResult != null && knownPathResult.isFound()) {
+            persistResult(knownPathResult);
             return knownPathResult;
         }
 
         // 3. 尝试 PATH 环境变量
         NodeDetectionResult pathResult = detectNodeViaPath(triedPaths);
         if (pathResult != null && pathResult.isFound()) {
+            persistResult(pathResult);
             return pathResult;
         }
 
@@ -98,6 +122,81 @@ public class NodeDetector {
         return NodeDetectionResult.failure("在所有已知路径中均未找到 Node.js", triedPaths);
     }
 
+    /**
+     * 读取持久化的检测结果，并用一次 stat 校验二进制文件是否仍然存在且未变化
+     * @return 校验通过的结果；没有记录或文件已变化时返回 null
+     */
+    private NodeDetectionResult loadPersistedResult() {
+        try {
+            PropertiesComponent props = PropertiesComponent.getInstance();
+            String path = props.getValue(DETECTED_PATH_KEY);
+            if (path == null || path.isEmpty()) {
+                return null;
+            }
+
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(Paths.get(path), BasicFileAttributes.class);
+            } catch (Exception e) {
+                System.out.println("  上次检测到的 Node.js 已不存在，重新检测: " + path);
+                clearPersistedResult();
+                return null;
+            }
+
+            long mtime = attrs.lastModifiedTime().toMillis();
+            long size = attrs.size();
+            if (!attrs.isRegularFile()
+                || mtime != props.getLong(DETECTED_MTIME_KEY, -1)
+                || size != props.getLong(DETECTED_SIZE_KEY, -1)) {
+                System.out.println("  上次检测到的 Node.js 已变化，重新检测: " + path);
+                clearPersistedResult();
+                return null;
+            }
+
+            String version = props.getValue(DETECTED_VERSION_KEY);
+            System.out.println("✓ 使用上次检测到的 Node.js: " + path + " (" + version + ")");
+            return NodeDetectionResult.success(path, version, NodeDetectionResult.DetectionMethod.CACHED);
+        } catch (Exception e) {
+            // 非 IDE 环境（如单元测试）中 PropertiesComponent 不可用
+            return null;
+        }
+    }
+
+    /**
+     * 持久化检测结果（仅限绝对路径，回退方案 "node" 无法做 stat 校验）
+     */
+    private void persistResult(NodeDetectionResult result) {
+        String path = result.getNodePath();
+        if (path == null || !new File(path).isAbsolute()) {
+            return;
+        }
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(Paths.get(path), BasicFileAttributes.class);
+            PropertiesComponent props = PropertiesComponent.getInstance();
+            props.setValue(DETECTED_PATH_KEY, path);
+            props.setValue(DETECTED_VERSION_KEY, result.getNodeVersion());
+            props.setValue(DETECTED_MTIME_KEY, String.valueOf(attrs.lastModifiedTime().toMillis()));
+            props.setValue(DETECTED_SIZE_KEY, String.valueOf(attrs.size()));
+        } catch (Exception e) {
+            System.out.println("  保存 Node.js 检测结果失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 清除持久化的检测结果
+     */
+    private void clearPersistedResult() {
+        try {
+            PropertiesComponent props = PropertiesComponent.getInstance();
+            props.unsetValue(DETECTED_PATH_KEY);
+            props.unsetValue(DETECTED_VERSION_KEY);
+            props.unsetValue(DETECTED_MTIME_KEY);
+            props.unsetValue(DETECTED_SIZE_KEY);
+        } catch (Exception e) {
+            // 忽略
+        }
+    }
+
     /**
      * 通过系统命令 (where/which) 检测 Node.js
      */
@@ -497,6 +596,7 @@ public class NodeDetector {
 
     /**
      * 清除缓存的 Node.js 路径
+     * 持久化的检测结果保留，下次查找时通过 stat 校验后复用
      */
     public void clearCache() {
         this.cachedNodeExecutable = null;
@@ -1,29 +1,101 @@
 package com.github.claudecodegui.bridge;
 
-import com.github.claudecodegui.util.PlatformUtils;
+import com.github.claudecodegui.config.TimeoutConfig;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 /**
  * 进程管理器
  * 负责管理 Claude SDK 相关的子进程
+ *
+ * 多个会话并行时，所有会话的消息进程共享全局执行槽位（MAX_CONCURRENT_PROCESSES）：
+ * 槽位用公平信号量实现，超过上限的请求按先后顺序排队，不会被后来的请求插队；
+ * 排队中的通道同样可以被中断。
+ * 中断与清理通过 ProcessStopper 分阶段停止进程（带内取消 -> SIGTERM -> 强制结束进程树），每个阶段都有截止时间。
  */
 public class ProcessManager {
 
     private static final String CLAUDE_TEMP_DIR_NAME = "claude-agent-tmp";
 
+    static final int MAX_CONCURRENT_PROCESSES = 4;
+    private static final Semaphore PROCESS_SLOTS = new Semaphore(MAX_CONCURRENT_PROCESSES, true);
+    // 本进程中正在使用的临时目录（所有实例共享，TempDirJanitor 跳过这些目录）
+    private static final Set<Path> ACTIVE_TEMP_DIRS = ConcurrentHashMap.newKeySet();
+
     private final Map<String, Process> activeChannelProcesses = new ConcurrentHashMap<>();
     private final Set<String> interruptedChannels = ConcurrentHashMap.newKeySet();
+    // 正在排队等待执行槽位的通道 -> 等待线程
+    private final Map<String, Thread> waitingChannels = new ConcurrentHashMap<>();
+    // 带内取消标记文件目录（为 null 时中断跳过带内取消阶段）
+    private volatile File cancelDir;
+
+    /**
+     * 设置带内取消目录：中断时先在该目录写入标记文件，由 Node 侧取消 SDK 查询后自行退出（null 表示不使用带内取消）
+     * 目录需与 Node 侧的 CLAUDE_PERMISSION_DIR 一致
+     */
+    public void setInBandCancelDir(File dir) {
+        this.cancelDir = dir;
+    }
+
+    /**
+     * 获取执行槽位（达到全局上限时排队等待，先到先得）
+     * @return 获得槽位返回 true；排队期间通道被中断返回 false（随后 wasInterrupted 返回 true）
+     */
+    public boolean acquireProcessSlot(String channelId) {
+        if (channelId != null) {
+            waitingChannels.put(channelId, Thread.currentThread());
+        }
+        boolean acquired = false;
+        try {
+            if (PROCESS_SLOTS.availablePermits() == 0) {
+                System.out.println("[ProcessManager] Process limit reached (" + MAX_CONCURRENT_PROCESSES + "), channel queued: " + channelId);
+            }
+            PROCESS_SLOTS.acquire();
+            acquired = true;
+        } catch (InterruptedException e) {
+            if (channelId == null || !interruptedChannels.contains(channelId)) {
+                // 不是取消排队引起的中断，保留线程的中断状态
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        } finally {
+            if (channelId != null) {
+                waitingChannels.remove(channelId);
+            }
+        }
+
+        // 移出排队后再检查：取消与移出互斥（见 interruptChannel），刚获得槽位时收到的取消也在这里处理
+        if (channelId != null && interruptedChannels.contains(channelId)) {
+            Thread.interrupted();
+            if (acquired) {
+                PROCESS_SLOTS.release();
+            }
+            return false;
+        }
+        return acquired;
+    }
+
+    /**
+     * 释放执行槽位（与 acquireProcessSlot 成功的调用一一对应）
+     */
+    public void releaseProcessSlot() {
+        PROCESS_SLOTS.release();
+    }
 
     /**
      * 注册活动进程
@@ -32,6 +104,7 @@ public class ProcessManager {
         if (channelId != null && process != null) {
             activeChannelProcesses.put(channelId, process);
             interruptedChannels.remove(channelId);
+            ProcessStopper.deleteCancelFile(cancelDir, channelId);
         }
     }
 
@@ -70,60 +143,62 @@ public class ProcessManager {
 
         Process process = activeChannelProcesses.get(channelId);
         if (process == null) {
+            // 还在排队等待执行槽位：取消排队（computeIfPresent 与排队线程的移出操作互斥）
+            boolean[] cancelled = {false};
+            waitingChannels.computeIfPresent(channelId, (key, waitingThread) -> {
+                interruptedChannels.add(key);
+                waitingThread.interrupt();
+                cancelled[0] = true;
+                return waitingThread;
+            });
+            if (cancelled[0]) {
+                System.out.println("[Interrupt] Cancelled queued channel: " + channelId);
+                return;
+            }
             System.out.println("[Interrupt] No active process found for channel: " + channelId);
             return;
         }
 
         System.out.println("[Interrupt] Attempting to interrupt channel: " + channelId);
         interruptedChannels.add(channelId);
+        stopProcess(channelId, process);
+    }
 
-        // 使用平台感知的进程终止方法
-        // Windows: 使用 taskkill /F /T 终止进程树
-        // Unix: 使用标准的 destroy/destroyForcibly
-        PlatformUtils.terminateProcess(process);
+    /**
+     * 停止通道的进程但不标记为用户中断（看门狗超时等情况，由调用方报告错误）
+     */
+    public void stopChannel(String channelId) {
+        Process process = channelId != null ? activeChannelProcesses.get(channelId) : null;
+        if (process != null) {
+            stopProcess(channelId, process);
+        }
+    }
 
-        // 等待进程完全终止
+    private void stopProcess(String channelId, Process process) {
         try {
-            if (process.isAlive()) {
-                boolean terminated = process.waitFor(3, TimeUnit.SECONDS);
-                if (!terminated) {
-                    System.out.println("[Interrupt] Process still alive, force killing channel: " + channelId);
-                    process.destroyForcibly();
-                    process.waitFor(2, TimeUnit.SECONDS);
-                }
-            }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+            ProcessStopper.stop(Collections.singletonMap(channelId, process), cancelDir);
         } finally {
             activeChannelProcesses.remove(channelId, process);
-            // 验证进程确实已终止
-            if (process.isAlive()) {
-                System.err.println("[Interrupt] Warning: Process may still be alive for channel: " + channelId);
-            } else {
-                System.out.println("[Interrupt] Successfully terminated channel: " + channelId);
-            }
         }
     }
 
     /**
-     * 清理所有活动的子进程
+     * 清理所有活动的子进程（所有进程同时分阶段停止，共用每个阶段的截止时间）
      * 应在插件卸载或 IDEA 关闭时调用
      */
     public void cleanupAllProcesses() {
         System.out.println("[ProcessManager] Cleaning up all active processes...");
+        Map<String, Process> processes = new HashMap<>(activeChannelProcesses);
         int count = 0;
-
-        for (Map.Entry<String, Process> entry : activeChannelProcesses.entrySet()) {
-            String channelId = entry.getKey();
-            Process process = entry.getValue();
-
-            if (process != null && process.isAlive()) {
-                System.out.println("[ProcessManager] Terminating process for channel: " + channelId);
-                PlatformUtils.terminateProcess(process);
+        for (Process process : processes.values()) {
+            if (process.isAlive()) {
                 count++;
             }
         }
 
+        interruptedChannels.addAll(processes.keySet());
+        ProcessStopper.stop(processes, cancelDir);
+
         activeChannelProcesses.clear();
         interruptedChannels.clear();
 
@@ -143,6 +218,18 @@ public class ProcessManager {
         return count;
     }
 
+    /**
+     * 输出结束后等待进程退出，超过 PROCESS_EXIT_GRACE 仍未退出时分阶段停止
+     * （替代无限期的 process.waitFor()，卡住的进程不会一直占用读取线程和执行槽位）
+     */
+    public void awaitExit(String channelId, Process process) throws InterruptedException {
+        if (process.waitFor(TimeoutConfig.PROCESS_EXIT_GRACE, TimeoutConfig.PROCESS_EXIT_GRACE_UNIT)) {
+            return;
+        }
+        System.out.println("[ProcessManager] Process did not exit after output ended, stopping channel: " + channelId);
+        ProcessStopper.stop(Collections.singletonMap(channelId, process), cancelDir);
+    }
+
     /**
      * 等待进程终止
      */
@@ -160,67 +247,79 @@ public class ProcessManager {
     }
 
     /**
-     * 准备 Claude 临时目录
+     * 为一次进程运行创建独立的临时目录（claude-agent-tmp 下按通道区分的子目录）
+     * 并发的通道不再共用同一个目录，进程结束后由 cleanupClaudeTempDir 整体删除
+     * @param channelId 通道 ID（非通道进程传 null）
      */
-    public File prepareClaudeTempDir() {
-        String baseTemp = System.getProperty("java.io.tmpdir");
-        if (baseTemp == null || baseTemp.isEmpty()) {
+    public File prepareClaudeTempDir(String channelId) {
+        Path base = getClaudeTempBase();
+        if (base == null) {
             return null;
         }
 
-        Path tempPath = Paths.get(baseTemp, CLAUDE_TEMP_DIR_NAME);
+        String prefix = channelId != null ? channelId.substring(0, Math.min(8, channelId.length())) : "query";
         try {
-            Files.createDirectories(tempPath);
-            return tempPath.toFile();
+            Files.createDirectories(base);
+            Path dir = Files.createTempDirectory(base, prefix + "-");
+            ACTIVE_TEMP_DIRS.add(dir);
+            TempDirJanitor.getInstance().ensureStarted();
+            return dir.toFile();
         } catch (IOException e) {
-            System.err.println("[ProcessManager] Failed to prepare temp dir: " + tempPath + ", reason: " + e.getMessage());
+            System.err.println("[ProcessManager] Failed to prepare temp dir under: " + base + ", reason: " + e.getMessage());
             return null;
         }
     }
 
     /**
-     * 快照 Claude cwd 文件
+     * 删除进程的临时目录（进程结束后调用）
+     * 不重试：删除失败（Windows 文件锁定）的目录由 TempDirJanitor 稍后回收
      */
-    public Set<String> snapshotClaudeCwdFiles(File tempDir) {
-        if (tempDir == null || !tempDir.exists()) {
-            return Collections.emptySet();
-        }
-        File[] existing = tempDir.listFiles((dir, name) ->
-            name.startsWith("claude-") && name.endsWith("-cwd"));
-        if (existing == null || existing.length == 0) {
-            return Collections.emptySet();
+    public void cleanupClaudeTempDir(File tempDir) {
+        if (tempDir == null) {
+            return;
         }
-        Set<String> snapshot = new HashSet<>();
-        for (File file : existing) {
-            snapshot.add(file.getName());
+        Path dir = tempDir.toPath();
+        ACTIVE_TEMP_DIRS.remove(dir);
+        if (!deleteTree(dir)) {
+            System.err.println("[ProcessManager] Temp dir not fully removed, left for janitor: " + dir);
         }
-        return snapshot;
     }
 
     /**
-     * 清理 Claude 临时文件
+     * 所有进程临时目录的父目录
      */
-    public void cleanupClaudeTempFiles(File tempDir, Set<String> preserved) {
-        if (tempDir == null || !tempDir.exists()) {
-            return;
+    static Path getClaudeTempBase() {
+        String baseTemp = System.getProperty("java.io.tmpdir");
+        if (baseTemp == null || baseTemp.isEmpty()) {
+            return null;
         }
-        File[] leftovers = tempDir.listFiles((dir, name) ->
-            name.startsWith("claude-") && name.endsWith("-cwd"));
-        if (leftovers == null || leftovers.length == 0) {
-            return;
+        return Paths.get(baseTemp, CLAUDE_TEMP_DIR_NAME);
+    }
+
+    static boolean isTempDirActive(Path dir) {
+        return ACTIVE_TEMP_DIRS.contains(dir);
+    }
+
+    /**
+     * 递归删除文件或目录（遇到无法删除的文件继续删除其余部分）
+     * @return 全部删除成功返回 true
+     */
+    static boolean deleteTree(Path root) {
+        if (!Files.exists(root, LinkOption.NOFOLLOW_LINKS)) {
+            return true;
         }
-        for (File file : leftovers) {
-            if (preserved != null && preserved.contains(file.getName())) {
-                continue;
-            }
-            // 使用带重试机制的删除，处理 Windows 文件锁定问题
-            if (!PlatformUtils.deleteWithRetry(file, 3)) {
+        boolean[] success = {true};
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
                 try {
-                    Files.deleteIfExists(file.toPath());
+                    Files.deleteIfExists(path);
                 } catch (IOException e) {
-                    System.err.println("[ProcessManager] Failed to delete temp cwd file: " + file.getAbsolutePath());
+                    success[0] = false;
                 }
-            }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            return false;
         }
+        return success[0];
     }
 }
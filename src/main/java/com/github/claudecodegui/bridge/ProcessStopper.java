@@ -0,0 +1,235 @@
+package com.github.claudecodegui.bridge;
+
+import com.github.claudecodegui.config.TimeoutConfig;
+import com.github.claudecodegui.util.PlatformUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 分阶段停止 Node 子进程
+ *
+ * 每个阶段有独立的等待时间，多个进程同时停止时共用同一组截止时间：
+ * 1. 带内取消：在通信目录写入 cancel-<channelId> 标记文件，Node 侧取消 SDK 查询后正常退出
+ * 2. SIGTERM：Node 侧同样取消查询，并在短暂延迟后退出（Windows 没有 SIGTERM，跳过此阶段）
+ * 3. 强制结束整个进程树
+ * 主进程退出后仍存活的子进程（会占用输出管道，导致读取线程无法结束）一并强制结束。
+ * 停止耗时按结束时所处的阶段累计到全局统计中。
+ */
+public final class ProcessStopper {
+
+    public enum Stage {
+        CANCEL, TERMINATE, KILL, FAILED
+    }
+
+    public static final String CANCEL_FILE_PREFIX = "cancel-";
+
+    private static final AtomicLongArray STAGE_COUNTS = new AtomicLongArray(Stage.values().length);
+    private static final AtomicLong TOTAL_STOP_MILLIS = new AtomicLong();
+    private static final AtomicLong MAX_STOP_MILLIS = new AtomicLong();
+
+    private ProcessStopper() {
+        // 工具类，不允许实例化
+    }
+
+    /**
+     * 待停止的进程
+     */
+    private static final class Target {
+        final String channelId;
+        final Process process;
+        // 停止开始时的子进程快照（主进程退出后子进程会被重新挂到其他父进程下）
+        final List<ProcessHandle> descendants;
+        Stage stoppedAt;
+
+        Target(String channelId, Process process) {
+            this.channelId = channelId;
+            this.process = process;
+            this.descendants = process.descendants().toList();
+        }
+    }
+
+    /**
+     * 分阶段停止进程，最长阻塞各阶段等待时间之和
+     * @param processes channelId -> 进程
+     * @param cancelDir 带内取消标记文件目录（为 null 时跳过带内取消阶段）
+     */
+    public static void stop(Map<String, Process> processes, File cancelDir) {
+        long startNanos = System.nanoTime();
+        List<Target> targets = new ArrayList<>();
+        for (Map.Entry<String, Process> entry : processes.entrySet()) {
+            Process process = entry.getValue();
+            if (process != null && process.isAlive()) {
+                targets.add(new Target(entry.getKey(), process));
+            }
+        }
+        if (targets.isEmpty()) {
+            return;
+        }
+
+        // 调用线程的中断状态在停止结束后恢复，避免等待被提前打断而跳过温和的阶段
+        boolean interrupted = Thread.interrupted();
+
+        if (cancelDir != null) {
+            for (Target target : targets) {
+                writeCancelFile(cancelDir, target.channelId);
+            }
+            interrupted |= awaitStage(targets, Stage.CANCEL, TimeoutConfig.STOP_CANCEL_TIMEOUT);
+        }
+
+        if (!PlatformUtils.isWindows() && hasPending(targets)) {
+            for (Target target : targets) {
+                if (target.stoppedAt == null) {
+                    target.process.destroy();
+                }
+            }
+            interrupted |= awaitStage(targets, Stage.TERMINATE, TimeoutConfig.STOP_TERMINATE_TIMEOUT);
+        }
+
+        if (hasPending(targets)) {
+            for (Target target : targets) {
+                if (target.stoppedAt == null) {
+                    killTree(target);
+                }
+            }
+            interrupted |= awaitStage(targets, Stage.KILL, TimeoutConfig.STOP_KILL_TIMEOUT);
+        }
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        for (Target target : targets) {
+            reapDescendants(target);
+            if (cancelDir != null) {
+                deleteCancelFile(cancelDir, target.channelId);
+            }
+            if (target.stoppedAt == null) {
+                target.stoppedAt = Stage.FAILED;
+                System.err.println("[ProcessStopper] Warning: Process may still be alive for channel: " + target.channelId);
+            } else {
+                System.out.println("[ProcessStopper] Channel " + target.channelId + " stopped at stage "
+                    + target.stoppedAt + " in " + elapsedMillis + "ms");
+            }
+            record(target.stoppedAt, elapsedMillis);
+        }
+        System.out.println("[ProcessStopper] Stop metrics: " + getMetrics());
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 删除通道遗留的带内取消标记文件（新进程启动前调用，避免被上一次的标记误取消）
+     */
+    public static void deleteCancelFile(File cancelDir, String channelId) {
+        if (cancelDir == null || channelId == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(new File(cancelDir, CANCEL_FILE_PREFIX + channelId).toPath());
+        } catch (IOException e) {
+            System.err.println("[ProcessStopper] Failed to delete cancel file for channel: " + channelId);
+        }
+    }
+
+    /**
+     * 累计的停止统计：各阶段结束的次数与停止耗时
+     */
+    public static String getMetrics() {
+        StringBuilder sb = new StringBuilder();
+        long total = 0;
+        for (Stage stage : Stage.values()) {
+            long count = STAGE_COUNTS.get(stage.ordinal());
+            total += count;
+            sb.append(stage.name().toLowerCase()).append('=').append(count).append(' ');
+        }
+        long avg = total > 0 ? TOTAL_STOP_MILLIS.get() / total : 0;
+        sb.append("avg=").append(avg).append("ms max=").append(MAX_STOP_MILLIS.get()).append("ms");
+        return sb.toString();
+    }
+
+    /**
+     * 等待尚未结束的进程，直到本阶段截止
+     * @return 等待期间调用线程是否被中断
+     */
+    private static boolean awaitStage(List<Target> targets, Stage stage, long timeout) {
+        long deadline = System.nanoTime() + TimeoutConfig.STOP_STAGE_UNIT.toNanos(timeout);
+        boolean interrupted = false;
+        for (Target target : targets) {
+            if (target.stoppedAt != null) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            boolean exited;
+            if (interrupted || remaining <= 0) {
+                exited = !target.process.isAlive();
+            } else {
+                try {
+                    exited = target.process.waitFor(remaining, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    exited = !target.process.isAlive();
+                }
+            }
+            if (exited) {
+                target.stoppedAt = stage;
+            }
+        }
+        return interrupted;
+    }
+
+    private static boolean hasPending(List<Target> targets) {
+        for (Target target : targets) {
+            if (target.stoppedAt == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 强制结束进程树
+     * Windows 上使用 taskkill /F /T，其他平台逐个强制结束子进程与主进程
+     */
+    private static void killTree(Target target) {
+        System.out.println("[ProcessStopper] Force killing process tree for channel: " + target.channelId);
+        if (PlatformUtils.isWindows()) {
+            PlatformUtils.terminateProcessTree(target.process.pid());
+        }
+        // 停止期间新启动的子进程也要结束
+        target.process.descendants().forEach(ProcessHandle::destroyForcibly);
+        reapDescendants(target);
+        target.process.destroyForcibly();
+    }
+
+    private static void reapDescendants(Target target) {
+        for (ProcessHandle handle : target.descendants) {
+            if (handle.isAlive()) {
+                handle.destroyForcibly();
+            }
+        }
+    }
+
+    private static void writeCancelFile(File cancelDir, String channelId) {
+        if (channelId == null) {
+            return;
+        }
+        try {
+            Files.writeString(new File(cancelDir, CANCEL_FILE_PREFIX + channelId).toPath(), String.valueOf(System.currentTimeMillis()));
+        } catch (IOException e) {
+            System.err.println("[ProcessStopper] Failed to write cancel file for channel " + channelId + ": " + e.getMessage());
+        }
+    }
+
+    private static void record(Stage stage, long elapsedMillis) {
+        STAGE_COUNTS.incrementAndGet(stage.ordinal());
+        TOTAL_STOP_MILLIS.addAndGet(elapsedMillis);
+        MAX_STOP_MILLIS.accumulateAndGet(elapsedMillis, Math::max);
+    }
+}
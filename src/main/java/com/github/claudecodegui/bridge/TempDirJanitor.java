@@ -0,0 +1,89 @@
+package com.github.claudecodegui.bridge;
+
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Claude 临时目录清理任务
+ *
+ * 每次进程运行使用 claude-agent-tmp 下独立的子目录，正常情况下进程结束后整体删除。
+ * 删除失败（Windows 文件锁定）或 IDE 异常退出时遗留的目录由本任务在共享调度器上定期回收：
+ * 1. 跳过本进程中仍在使用的目录
+ * 2. 只删除超过 STALE_HOURS 未修改的目录（其他 IDE 实例也可能在使用同一个临时目录）
+ * 3. 旧版本直接写在 claude-agent-tmp 下的 claude-*-cwd 文件按同样的规则清理
+ */
+public final class TempDirJanitor {
+
+    private static final long INITIAL_DELAY_MINUTES = 1;
+    private static final long SWEEP_INTERVAL_MINUTES = 30;
+    private static final long STALE_HOURS = 6;
+
+    private static final TempDirJanitor INSTANCE = new TempDirJanitor();
+
+    private ScheduledFuture<?> sweepTask;
+
+    public static TempDirJanitor getInstance() {
+        return INSTANCE;
+    }
+
+    private TempDirJanitor() {
+    }
+
+    /**
+     * 启动定期清理（重复调用无副作用）
+     */
+    public synchronized void ensureStarted() {
+        if (sweepTask == null) {
+            sweepTask = AppExecutorUtil.getAppScheduledExecutorService()
+                .scheduleWithFixedDelay(this::sweep, INITIAL_DELAY_MINUTES, SWEEP_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        }
+    }
+
+    private void sweep() {
+        Path base = ProcessManager.getClaudeTempBase();
+        if (base == null || !Files.isDirectory(base)) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(STALE_HOURS);
+        int reaped = 0;
+        int failed = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(base)) {
+            for (Path entry : entries) {
+                if (ProcessManager.isTempDirActive(entry) || !isStale(entry, cutoff)) {
+                    continue;
+                }
+                boolean legacyMarker = Files.isRegularFile(entry)
+                    && entry.getFileName().toString().startsWith("claude-")
+                    && entry.getFileName().toString().endsWith("-cwd");
+                if (!Files.isDirectory(entry) && !legacyMarker) {
+                    continue;
+                }
+                if (ProcessManager.deleteTree(entry)) {
+                    reaped++;
+                } else {
+                    failed++;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[TempDirJanitor] Failed to list temp dir: " + base + ", reason: " + e.getMessage());
+            return;
+        }
+        if (reaped > 0 || failed > 0) {
+            System.out.println("[TempDirJanitor] Reaped " + reaped + " stale temp entries, failed=" + failed);
+        }
+    }
+
+    private static boolean isStale(Path entry, long cutoff) {
+        try {
+            return Files.getLastModifiedTime(entry).toMillis() < cutoff;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
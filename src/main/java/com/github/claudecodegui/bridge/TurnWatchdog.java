@@ -0,0 +1,157 @@
+package com.github.claudecodegui.bridge;
+
+import com.github.claudecodegui.config.TimeoutConfig;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 对话轮次看门狗
+ *
+ * 监控每一轮消息进程的输出，任一限制超出时判定本轮卡住：
+ * 1. 首字节：进程启动后迟迟没有收到 SDK 消息
+ * 2. 空闲：两次输出之间间隔过长
+ * 3. 总时长：整轮对话超过上限
+ * 所有轮次由共享调度器上的同一个定时任务巡检（没有进行中的轮次时停止），不为每轮单独占用线程。
+ * 超时后回调在后台线程执行，由调用方停止进程并报告错误；限制在每轮开始时从 TimeoutConfig 读取。
+ */
+public final class TurnWatchdog {
+
+    private static final long SWEEP_INTERVAL_MS = 1000;
+
+    private static final TurnWatchdog INSTANCE = new TurnWatchdog();
+
+    private final Set<Turn> turns = ConcurrentHashMap.newKeySet();
+    private ScheduledFuture<?> sweepTask;
+
+    public static TurnWatchdog getInstance() {
+        return INSTANCE;
+    }
+
+    private TurnWatchdog() {
+    }
+
+    /**
+     * 进行中的一轮对话
+     */
+    public static final class Turn {
+        private final String channelId;
+        private final Consumer<String> onTimeout;
+        private final long firstByteTimeoutNanos;
+        private final long idleTimeoutNanos;
+        private final long totalTimeoutNanos;
+        private final long startNanos = System.nanoTime();
+        private volatile long lastOutputNanos = startNanos;
+        private volatile boolean firstByteReceived = false;
+        private volatile String timeoutError;
+
+        private Turn(String channelId, Consumer<String> onTimeout) {
+            this.channelId = channelId;
+            this.onTimeout = onTimeout;
+            this.firstByteTimeoutNanos = TimeUnit.SECONDS.toNanos(TimeoutConfig.getTurnFirstByteTimeout());
+            this.idleTimeoutNanos = TimeUnit.SECONDS.toNanos(TimeoutConfig.getTurnIdleTimeout());
+            this.totalTimeoutNanos = TimeUnit.SECONDS.toNanos(TimeoutConfig.getTurnTotalTimeout());
+        }
+
+        /**
+         * 记录进程输出的一行（SDK 消息行同时标记首字节已到达）
+         */
+        public void onOutput(String line) {
+            lastOutputNanos = System.nanoTime();
+            if (!firstByteReceived && isSdkOutput(line)) {
+                firstByteReceived = true;
+            }
+        }
+
+        /**
+         * 本轮是否因超时被终止
+         * @return 超时的错误信息，未超时返回 null
+         */
+        public String getTimeoutError() {
+            return timeoutError;
+        }
+
+        /**
+         * 本轮结束，停止监控
+         */
+        public void close() {
+            INSTANCE.unregister(this);
+        }
+
+        /**
+         * 检查是否超出限制
+         * @return 超出时返回错误信息
+         */
+        private String check(long now) {
+            if (totalTimeoutNanos > 0 && now - startNanos > totalTimeoutNanos) {
+                return "本轮对话超过 " + TimeUnit.NANOSECONDS.toMinutes(totalTimeoutNanos) + " 分钟上限，已终止本次请求";
+            }
+            if (!firstByteReceived) {
+                if (firstByteTimeoutNanos > 0 && now - startNanos > firstByteTimeoutNanos) {
+                    return "响应超时：" + TimeUnit.NANOSECONDS.toSeconds(firstByteTimeoutNanos)
+                        + " 秒内未收到响应，已终止本次请求，请检查网络与 API 配置";
+                }
+            } else if (idleTimeoutNanos > 0 && now - lastOutputNanos > idleTimeoutNanos) {
+                return "响应停滞：" + TimeUnit.NANOSECONDS.toSeconds(idleTimeoutNanos)
+                    + " 秒内没有新的输出，已终止本次请求";
+            }
+            return null;
+        }
+
+        private static boolean isSdkOutput(String line) {
+            return line.startsWith("[MESSAGE]")
+                || line.startsWith("[CONTENT")
+                || line.startsWith("[THINKING]")
+                || line.startsWith("[SEND_ERROR]");
+        }
+    }
+
+    /**
+     * 开始监控一轮对话（进程启动后调用）
+     * @param onTimeout 超时回调，参数为错误信息（在后台线程执行，负责停止进程）
+     */
+    public Turn start(String channelId, Consumer<String> onTimeout) {
+        Turn turn = new Turn(channelId, onTimeout);
+        turns.add(turn);
+        ensureSweeping();
+        return turn;
+    }
+
+    private void unregister(Turn turn) {
+        turns.remove(turn);
+        stopSweepingIfIdle();
+    }
+
+    private synchronized void ensureSweeping() {
+        if (sweepTask == null) {
+            sweepTask = AppExecutorUtil.getAppScheduledExecutorService()
+                .scheduleWithFixedDelay(this::sweep, SWEEP_INTERVAL_MS, SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void stopSweepingIfIdle() {
+        if (turns.isEmpty() && sweepTask != null) {
+            sweepTask.cancel(false);
+            sweepTask = null;
+        }
+    }
+
+    private void sweep() {
+        long now = System.nanoTime();
+        for (Turn turn : turns) {
+            String error = turn.check(now);
+            if (error == null || !turns.remove(turn)) {
+                continue;
+            }
+            turn.timeoutError = error;
+            System.err.println("[TurnWatchdog] Channel " + turn.channelId + " timed out: " + error);
+            // 停止进程可能阻塞数秒，不占用调度线程
+            AppExecutorUtil.getAppExecutorService().execute(() -> turn.onTimeout.accept(error));
+        }
+        stopSweepingIfIdle();
+    }
+}
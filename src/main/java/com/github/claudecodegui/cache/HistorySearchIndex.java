@@ -0,0 +1,1320 @@
+package com.github.claudecodegui.cache;
+
+import com.github.claudecodegui.ClaudeHistoryReader;
+import com.github.claudecodegui.util.JsonCodec;
+import com.google.gson.Gson;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * 会话历史全文索引
+ *
+ * 索引 ~/.claude/projects/&#42;&#42;/&#42;.jsonl 中用户与助手消息的文本，持久化到 ~/.codemoss/history-index：
+ * 1. 倒排表：词项 -> (消息, 位置) 列表，支持短语查询（"..."）和前缀查询（term*）
+ * 2. 分词：拉丁字母/数字按连续串切分并转小写，中日韩文字按单字切分，多字查询自动按短语匹配
+ * 3. 增量构建：按文件记录 mtime/大小/已索引字节数，CLI 追加写入时只解析新增的行；
+ *    文件被改写或删除时把旧消息标记为已删除，已删除比例过高时整体重建
+ * 4. 查询：BM25 打分后按会话聚合排序，只为返回的结果从文本库读取原文生成摘要片段；
+ *    首次构建在后台进行，期间查询不等待，返回已索引部分的结果并标记 indexing
+ * 5. 内存：只索引最近修改的 MAX_INDEXED_SESSIONS 个会话；超过 IDLE_UNLOAD_MS 没有查询时释放内存中的索引，
+ *    下次查询时再从磁盘加载
+ */
+public final class HistorySearchIndex {
+
+    private static final Path PROJECTS_DIR = Paths.get(System.getProperty("user.home"), ".claude", "projects");
+    private static final Path INDEX_DIR = Paths.get(System.getProperty("user.home"), ".codemoss", "history-index");
+    private static final Path INDEX_FILE = INDEX_DIR.resolve("index.bin");
+    private static final Path TEXT_FILE = INDEX_DIR.resolve("texts.dat");
+
+    private static final int MAGIC = 0x43484958; // "CHIX"
+    private static final int VERSION = 1;
+
+    // 单条消息最多索引的字符数（超长的工具输出等只保留开头部分）
+    private static final int MAX_DOC_CHARS = 16 * 1024;
+    private static final int MAX_TOKEN_LENGTH = 64;
+    private static final int MAX_PREFIX_EXPANSIONS = 256;
+    private static final int MAX_TITLE_LENGTH = 45;
+    private static final int SNIPPET_CONTEXT = 60;
+    private static final int SNIPPET_LENGTH = 200;
+    private static final int DEFAULT_LIMIT = 50;
+    private static final int MAX_LIMIT = 200;
+    // 距上次刷新超过该时间后，查询会在后台触发一次增量刷新
+    private static final long REFRESH_INTERVAL_MS = 10 * 1000;
+    // 已删除消息占比超过该值时整体重建
+    private static final double COMPACT_RATIO = 0.3;
+    private static final int HEAD_HASH_BYTES = 4096;
+    // 最多索引的会话数（按修改时间保留最近的会话）
+    private static final int MAX_INDEXED_SESSIONS = 10000;
+    // 空闲多久后释放内存中的索引
+    private static final long IDLE_UNLOAD_MS = 10 * 60 * 1000;
+
+    private static final double BM25_K1 = 1.2;
+    private static final double BM25_B = 0.75;
+
+    private static final byte ROLE_USER = 0;
+    private static final byte ROLE_ASSISTANT = 1;
+
+    private static final HistorySearchIndex INSTANCE = new HistorySearchIndex();
+
+    private final Gson gson = JsonCodec.gson();
+    private final ExecutorService refreshExecutor =
+        AppExecutorUtil.createBoundedApplicationPoolExecutor("HistorySearchIndex", 1);
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 以下字段受 lock 保护
+    private final Map<String, FileState> files = new HashMap<>();
+    // 文件编号表（消息通过编号引用文件，已移除的文件位置为 null，重建时清空）
+    private final List<FileState> fileTable = new ArrayList<>();
+    private final List<Doc> docs = new ArrayList<>();
+    private final BitSet deleted = new BitSet();
+    private final TreeMap<String, IntList> postings = new TreeMap<>();
+    private long liveTokens = 0;
+    private int liveDocs = 0;
+    private RandomAccessFile textStore;
+
+    private volatile boolean loaded = false;
+    // 磁盘上有可用索引或已完成过一次刷新
+    private volatile boolean built = false;
+    private volatile long lastRefreshTime = 0;
+    private volatile CompletableFuture<Void> pendingRefresh;
+    private ScheduledFuture<?> unloadTask;
+
+    public static HistorySearchIndex getInstance() {
+        return INSTANCE;
+    }
+
+    private HistorySearchIndex() {
+    }
+
+    /**
+     * 已索引的会话文件
+     */
+    private static final class FileState {
+        int id;
+        String path;
+        String projectDir;
+        String sessionId;
+        String title;
+        long mtime;
+        long size;
+        // 已索引到的字节位置（总是落在行尾之后）
+        long indexedBytes;
+        long headHash;
+        int lineCount;
+        final IntList docIds = new IntList();
+    }
+
+    /**
+     * 单条消息
+     */
+    private static final class Doc {
+        int file;
+        int line;
+        long timestamp;
+        byte role;
+        long textOffset;
+        int textLength;
+        int tokenCount;
+    }
+
+    /**
+     * 可增长的 int 数组（倒排表按 [docId, position] 成对存放）
+     */
+    private static final class IntList {
+        int[] data = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+    }
+
+    /**
+     * 查询结果（按会话聚合）
+     */
+    public static class SearchResult {
+        public String sessionId;
+        public String projectDir;
+        public String title;
+        public String snippet;
+        // 摘要中命中的区间 [start, length]
+        public List<int[]> highlights = new ArrayList<>();
+        public String role;
+        public long timestamp;
+        public int matches;
+        public double score;
+    }
+
+    /**
+     * 查询响应
+     */
+    public static class SearchResponse {
+        public String query;
+        public int total;
+        public List<SearchResult> results = new ArrayList<>();
+        public long tookMs;
+        public int indexedSessions;
+        public int indexedMessages;
+        // 首次构建尚未完成，结果只包含已索引的部分
+        public boolean indexing;
+    }
+
+    // ==================== 查询 ====================
+
+    /**
+     * 全文搜索
+     * @param query 查询串：空格分隔的词项取交集，"..." 为短语，末尾 * 为前缀
+     * @param projectDir 只搜索该项目目录（~/.claude/projects 下的目录名），null 表示全部项目
+     * @param limit 最多返回的会话数
+     */
+    public SearchResponse search(String query, String projectDir, int limit) {
+        long start = System.currentTimeMillis();
+        ensureLoaded();
+        requestRefresh(false);
+        scheduleUnload();
+
+        SearchResponse response = new SearchResponse();
+        response.query = query;
+        // 从未构建过（首次使用）时不等待构建完成，返回已索引部分的结果
+        response.indexing = !built;
+        List<Clause> clauses = parseQuery(query);
+        int max = limit <= 0 ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+
+        lock.readLock().lock();
+        try {
+            response.indexedSessions = files.size();
+            response.indexedMessages = liveDocs;
+            if (!clauses.isEmpty()) {
+                rank(clauses, projectDir, max, response);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        response.tookMs = System.currentTimeMillis() - start;
+        return response;
+    }
+
+    /**
+     * 查询子句：一个词项或一个短语，prefix 表示最后一个词项按前缀匹配
+     */
+    private static final class Clause {
+        final List<String> tokens;
+        final boolean prefix;
+
+        Clause(List<String> tokens, boolean prefix) {
+            this.tokens = tokens;
+            this.prefix = prefix;
+        }
+    }
+
+    static List<Clause> parseQuery(String query) {
+        List<Clause> clauses = new ArrayList<>();
+        if (query == null) {
+            return clauses;
+        }
+        int i = 0;
+        int n = query.length();
+        while (i < n) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            int end;
+            String raw;
+            if (c == '"') {
+                end = query.indexOf('"', i + 1);
+                if (end < 0) {
+                    end = n;
+                }
+                raw = query.substring(i + 1, end);
+                i = end + 1;
+            } else {
+                end = i;
+                while (end < n && !Character.isWhitespace(query.charAt(end))) {
+                    end++;
+                }
+                raw = query.substring(i, end);
+                i = end;
+            }
+            boolean prefix = raw.endsWith("*");
+            List<String> tokens = new ArrayList<>();
+            tokenize(raw, (token, s, e) -> tokens.add(token));
+            if (!tokens.isEmpty()) {
+                clauses.add(new Clause(tokens, prefix));
+            }
+        }
+        return clauses;
+    }
+
+    private void rank(List<Clause> clauses, String projectDir, int max, SearchResponse response) {
+        // 逐个子句求命中的消息（按 docId 升序）及命中次数
+        List<Hits> matches = new ArrayList<>(clauses.size());
+        for (Clause clause : clauses) {
+            Hits hits = evaluate(clause, projectDir);
+            if (hits.size == 0) {
+                return;
+            }
+            matches.add(hits);
+        }
+        // 从命中最少的子句开始求交集
+        matches.sort(Comparator.comparingInt(h -> h.size));
+
+        double avgLength = liveDocs > 0 ? (double) liveTokens / liveDocs : 1;
+        double[] idf = new double[matches.size()];
+        for (int c = 0; c < matches.size(); c++) {
+            double df = matches.get(c).size;
+            idf[c] = Math.log(1 + (liveDocs - df + 0.5) / (df + 0.5));
+        }
+
+        // 按会话聚合：取最高分消息，命中消息越多略微加分
+        int fileCount = fileTable.size();
+        int[] bestDoc = new int[fileCount];
+        double[] bestScore = new double[fileCount];
+        int[] matchCount = new int[fileCount];
+        IntList touched = new IntList();
+        int[] cursor = new int[matches.size()];
+        Hits first = matches.get(0);
+        outer:
+        for (int i = 0; i < first.size; i++) {
+            int docId = first.docs[i];
+            Doc doc = docs.get(docId);
+            double norm = BM25_K1 * (1 - BM25_B + BM25_B * doc.tokenCount / avgLength);
+            double score = idf[0] * first.tf[i] * (BM25_K1 + 1) / (first.tf[i] + norm);
+            for (int c = 1; c < matches.size(); c++) {
+                Hits other = matches.get(c);
+                int p = cursor[c];
+                while (p < other.size && other.docs[p] < docId) {
+                    p++;
+                }
+                cursor[c] = p;
+                if (p == other.size || other.docs[p] != docId) {
+                    continue outer;
+                }
+                score += idf[c] * other.tf[p] * (BM25_K1 + 1) / (other.tf[p] + norm);
+            }
+            int file = doc.file;
+            if (matchCount[file]++ == 0) {
+                touched.add(file);
+                bestDoc[file] = docId;
+                bestScore[file] = score;
+            } else if (score > bestScore[file]
+                    || (score == bestScore[file] && doc.timestamp > docs.get(bestDoc[file]).timestamp)) {
+                bestDoc[file] = docId;
+                bestScore[file] = score;
+            }
+        }
+
+        Integer[] order = new Integer[touched.size];
+        double[] sessionScore = new double[fileCount];
+        for (int i = 0; i < touched.size; i++) {
+            int file = touched.data[i];
+            order[i] = file;
+            sessionScore[file] = bestScore[file] + 0.3 * Math.log1p(matchCount[file] - 1);
+        }
+        Arrays.sort(order, (a, b) -> {
+            int cmp = Double.compare(sessionScore[b], sessionScore[a]);
+            return cmp != 0 ? cmp : Long.compare(docs.get(bestDoc[b]).timestamp, docs.get(bestDoc[a]).timestamp);
+        });
+
+        response.total = order.length;
+        for (int i = 0; i < order.length && i < max; i++) {
+            int file = order[i];
+            Doc doc = docs.get(bestDoc[file]);
+            FileState state = fileTable.get(file);
+            SearchResult result = new SearchResult();
+            result.sessionId = state.sessionId;
+            result.projectDir = state.projectDir;
+            result.title = state.title != null ? state.title : state.sessionId;
+            result.role = doc.role == ROLE_USER ? "user" : "assistant";
+            result.timestamp = doc.timestamp;
+            result.matches = matchCount[file];
+            result.score = sessionScore[file];
+            buildSnippet(readText(doc), clauses, result);
+            response.results.add(result);
+        }
+    }
+
+    /**
+     * 子句命中结果：按 docId 升序的消息及各自命中次数
+     */
+    private static final class Hits {
+        int[] docs = new int[16];
+        int[] tf = new int[16];
+        int size;
+
+        void add(int docId) {
+            if (size > 0 && docs[size - 1] == docId) {
+                tf[size - 1]++;
+                return;
+            }
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                tf = Arrays.copyOf(tf, size * 2);
+            }
+            docs[size] = docId;
+            tf[size] = 1;
+            size++;
+        }
+    }
+
+    /**
+     * 求单个子句命中的消息（已删除消息和其他项目的消息被过滤）
+     * 倒排表按 (docId, position) 有序，短语匹配通过有序归并完成，不需要额外的哈希集合
+     */
+    private Hits evaluate(Clause clause, String projectDir) {
+        int n = clause.tokens.size();
+        long[] current = null;
+        for (int i = 0; i < n; i++) {
+            String token = clause.tokens.get(i);
+            List<IntList> lists = new ArrayList<>();
+            if (clause.prefix && i == n - 1) {
+                NavigableMap<String, IntList> range = postings.subMap(token, true, token + Character.MAX_VALUE, true);
+                Iterator<IntList> it = range.values().iterator();
+                while (it.hasNext() && lists.size() < MAX_PREFIX_EXPANSIONS) {
+                    lists.add(it.next());
+                }
+            } else {
+                IntList list = postings.get(token);
+                if (list != null) {
+                    lists.add(list);
+                }
+            }
+            if (lists.isEmpty()) {
+                return new Hits();
+            }
+            if (n == 1 && lists.size() == 1) {
+                // 单个词项：直接遍历倒排表，不需要构建键数组
+                return collect(lists.get(0), projectDir);
+            }
+            long[] keys = keys(lists);
+            current = i == 0 ? keys : followedBy(current, keys);
+            if (current.length == 0) {
+                return new Hits();
+            }
+        }
+
+        Hits hits = new Hits();
+        int lastDoc = -1;
+        boolean accept = false;
+        for (long k : current) {
+            int docId = (int) (k >>> 32);
+            if (docId != lastDoc) {
+                lastDoc = docId;
+                accept = accepts(docId, projectDir);
+            }
+            if (accept) {
+                hits.add(docId);
+            }
+        }
+        return hits;
+    }
+
+    private Hits collect(IntList list, String projectDir) {
+        Hits hits = new Hits();
+        int lastDoc = -1;
+        boolean accept = false;
+        for (int p = 0; p < list.size; p += 2) {
+            int docId = list.data[p];
+            if (docId != lastDoc) {
+                lastDoc = docId;
+                accept = accepts(docId, projectDir);
+            }
+            if (accept) {
+                hits.add(docId);
+            }
+        }
+        return hits;
+    }
+
+    private boolean accepts(int docId, String projectDir) {
+        return !deleted.get(docId)
+            && (projectDir == null || projectDir.equals(fileTable.get(docs.get(docId).file).projectDir));
+    }
+
+    /**
+     * 把一个或多个倒排表合并为有序的 (docId, position) 键数组
+     */
+    private static long[] keys(List<IntList> lists) {
+        int total = 0;
+        for (IntList list : lists) {
+            total += list.size / 2;
+        }
+        long[] keys = new long[total];
+        int k = 0;
+        for (IntList list : lists) {
+            for (int p = 0; p < list.size; p += 2) {
+                keys[k++] = key(list.data[p], list.data[p + 1]);
+            }
+        }
+        if (lists.size() > 1) {
+            Arrays.sort(keys);
+        }
+        return keys;
+    }
+
+    /**
+     * 保留 next 中紧跟在 previous 某个位置之后的键（两者均有序）
+     */
+    private static long[] followedBy(long[] previous, long[] next) {
+        long[] result = new long[Math.min(previous.length, next.length)];
+        int size = 0;
+        int p = 0;
+        for (long k : next) {
+            long expected = k - 1;
+            while (p < previous.length && previous[p] < expected) {
+                p++;
+            }
+            if (p < previous.length && previous[p] == expected) {
+                result[size++] = k;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static long key(int docId, int position) {
+        return ((long) docId << 32) | (position & 0xFFFFFFFFL);
+    }
+
+    /**
+     * 在消息原文中定位命中位置，截取附近文本作为摘要
+     */
+    private static void buildSnippet(String text, List<Clause> clauses, SearchResult result) {
+        if (text == null) {
+            result.snippet = "";
+            return;
+        }
+        List<String> tokens = new ArrayList<>();
+        List<int[]> offsets = new ArrayList<>();
+        tokenize(text, (token, s, e) -> {
+            tokens.add(token);
+            offsets.add(new int[]{s, e});
+        });
+
+        List<int[]> spans = new ArrayList<>();
+        for (int t = 0; t < tokens.size(); t++) {
+            for (Clause clause : clauses) {
+                int len = clause.tokens.size();
+                if (t + len > tokens.size()) {
+                    continue;
+                }
+                boolean match = true;
+                for (int k = 0; k < len && match; k++) {
+                    String expected = clause.tokens.get(k);
+                    String actual = tokens.get(t + k);
+                    match = clause.prefix && k == len - 1 ? actual.startsWith(expected) : actual.equals(expected);
+                }
+                if (match) {
+                    spans.add(new int[]{offsets.get(t)[0], offsets.get(t + len - 1)[1]});
+                    break;
+                }
+            }
+        }
+
+        int from = spans.isEmpty() ? 0 : Math.max(0, spans.get(0)[0] - SNIPPET_CONTEXT);
+        int to = Math.min(text.length(), from + SNIPPET_LENGTH);
+        if (from > 0 && Character.isLowSurrogate(text.charAt(from))) {
+            from++;
+        }
+        if (to < text.length() && Character.isLowSurrogate(text.charAt(to))) {
+            to--;
+        }
+        String prefix = from > 0 ? "…" : "";
+        StringBuilder snippet = new StringBuilder(prefix);
+        // 换行压成空格，保持偏移不变
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            snippet.append(c == '\n' || c == '\r' || c == '\t' ? ' ' : c);
+        }
+        if (to < text.length()) {
+            snippet.append('…');
+        }
+        result.snippet = snippet.toString();
+        for (int[] span : spans) {
+            if (span[0] >= from && span[1] <= to) {
+                result.highlights.add(new int[]{span[0] - from + prefix.length(), span[1] - span[0]});
+            }
+        }
+    }
+
+    private String readText(Doc doc) {
+        if (textStore == null || doc.textLength == 0) {
+            return null;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(doc.textLength);
+            FileChannel channel = textStore.getChannel();
+            long position = doc.textOffset;
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    break;
+                }
+                position += read;
+            }
+            return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // ==================== 分词 ====================
+
+    interface TokenSink {
+        void accept(String token, int start, int end);
+    }
+
+    /**
+     * 分词：连续的字母/数字/下划线为一个词项（转小写），中日韩文字每个字一个词项
+     */
+    static void tokenize(String text, TokenSink sink) {
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            int cp = text.codePointAt(i);
+            int next = i + Character.charCount(cp);
+            if (isCjk(cp)) {
+                sink.accept(new String(Character.toChars(Character.toLowerCase(cp))), i, next);
+                i = next;
+            } else if (Character.isLetterOrDigit(cp) || cp == '_') {
+                int start = i;
+                i = next;
+                while (i < n) {
+                    int c = text.codePointAt(i);
+                    if (isCjk(c) || !(Character.isLetterOrDigit(c) || c == '_')) {
+                        break;
+                    }
+                    i += Character.charCount(c);
+                }
+                String token = text.substring(start, i).toLowerCase(Locale.ROOT);
+                if (token.length() > MAX_TOKEN_LENGTH) {
+                    token = token.substring(0, MAX_TOKEN_LENGTH);
+                }
+                sink.accept(token, start, i);
+            } else {
+                i = next;
+            }
+        }
+    }
+
+    private static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN
+            || script == Character.UnicodeScript.HIRAGANA
+            || script == Character.UnicodeScript.KATAKANA
+            || script == Character.UnicodeScript.HANGUL;
+    }
+
+    // ==================== 增量构建 ====================
+
+    /**
+     * 首次构建是否已完成（或磁盘上已有可用索引）
+     */
+    public boolean isBuilt() {
+        return built;
+    }
+
+    /**
+     * 当前刷新完成时完成（没有进行中的刷新时返回已完成的 Future）
+     */
+    public CompletableFuture<Void> whenRefreshed() {
+        CompletableFuture<Void> pending = pendingRefresh;
+        return pending != null ? pending : CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * 请求一次后台刷新（距上次刷新不足 REFRESH_INTERVAL_MS 且非强制时直接返回已完成的 Future）
+     */
+    public synchronized CompletableFuture<Void> requestRefresh(boolean force) {
+        CompletableFuture<Void> pending = pendingRefresh;
+        if (pending != null && !pending.isDone()) {
+            return pending;
+        }
+        if (!force && lastRefreshTime > 0 && System.currentTimeMillis() - lastRefreshTime < REFRESH_INTERVAL_MS) {
+            return CompletableFuture.completedFuture(null);
+        }
+        pending = CompletableFuture.runAsync(() -> {
+            try {
+                ensureLoaded();
+                refresh();
+            } catch (Exception e) {
+                System.err.println("[HistorySearchIndex] Refresh failed: " + e.getMessage());
+            } finally {
+                built = true;
+                lastRefreshTime = System.currentTimeMillis();
+                scheduleUnload();
+            }
+        }, refreshExecutor);
+        pendingRefresh = pending;
+        return pending;
+    }
+
+    /**
+     * 扫描 projects 目录，索引新增/变化的会话文件，移除已删除的文件
+     */
+    private void refresh() throws IOException {
+        long start = System.currentTimeMillis();
+        Map<String, BasicFileAttributes> current = listSessionFiles();
+
+        List<String> changed = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<String, BasicFileAttributes> e : current.entrySet()) {
+                FileState state = files.get(e.getKey());
+                BasicFileAttributes attrs = e.getValue();
+                if (state == null || state.mtime != attrs.lastModifiedTime().toMillis() || state.size != attrs.size()) {
+                    changed.add(e.getKey());
+                }
+            }
+            for (String path : files.keySet()) {
+                if (!current.containsKey(path)) {
+                    removed.add(path);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (changed.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+
+        if (!removed.isEmpty()) {
+            lock.writeLock().lock();
+            try {
+                for (String path : removed) {
+                    removeFile(path);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        int appended = 0;
+        for (String path : changed) {
+            if (indexFile(Paths.get(path), current.get(path))) {
+                appended++;
+            }
+        }
+
+        if (needsCompaction()) {
+            rebuild(current);
+        }
+
+        save();
+        System.out.println("[HistorySearchIndex] Refreshed: " + changed.size() + " changed (" + appended
+            + " appended), " + removed.size() + " removed, " + files.size() + " sessions, "
+            + liveDocs + " messages in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    private Map<String, BasicFileAttributes> listSessionFiles() {
+        Map<String, BasicFileAttributes> result = new HashMap<>();
+        if (!Files.isDirectory(PROJECTS_DIR)) {
+            return result;
+        }
+        try (DirectoryStream<Path> projects = Files.newDirectoryStream(PROJECTS_DIR, Files::isDirectory)) {
+            for (Path projectDir : projects) {
+                try (DirectoryStream<Path> sessions = Files.newDirectoryStream(projectDir, "*.jsonl")) {
+                    for (Path file : sessions) {
+                        // agent-xxx 为子代理会话，历史列表中也不展示
+                        if (file.getFileName().toString().startsWith("agent-")) {
+                            continue;
+                        }
+                        try {
+                            result.put(file.toString(), Files.readAttributes(file, BasicFileAttributes.class));
+                        } catch (IOException e) {
+                            // 文件在扫描过程中被删除
+                        }
+                    }
+                } catch (IOException e) {
+                    System.err.println("[HistorySearchIndex] Failed to list " + projectDir + ": " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[HistorySearchIndex] Failed to list " + PROJECTS_DIR + ": " + e.getMessage());
+        }
+        if (result.size() > MAX_INDEXED_SESSIONS) {
+            // 只保留最近修改的会话，更早的会话按已删除处理，由压缩从索引中清除
+            List<Map.Entry<String, BasicFileAttributes>> entries = new ArrayList<>(result.entrySet());
+            entries.sort(Comparator.comparing((Map.Entry<String, BasicFileAttributes> e) -> e.getValue().lastModifiedTime()).reversed());
+            Map<String, BasicFileAttributes> recent = new HashMap<>();
+            for (Map.Entry<String, BasicFileAttributes> e : entries.subList(0, MAX_INDEXED_SESSIONS)) {
+                recent.put(e.getKey(), e.getValue());
+            }
+            System.out.println("[HistorySearchIndex] " + result.size() + " sessions found, indexing the latest " + MAX_INDEXED_SESSIONS);
+            return recent;
+        }
+        return result;
+    }
+
+    /**
+     * 解析出的待写入消息
+     */
+    private static final class PendingDoc {
+        int line;
+        long timestamp;
+        byte role;
+        String text;
+    }
+
+    /**
+     * 索引单个文件：只追加了内容时从上次位置继续解析，否则整个文件重新索引
+     * @return 是否为追加索引
+     */
+    private boolean indexFile(Path path, BasicFileAttributes attrs) {
+        String key = path.toString();
+        long headHash;
+        try {
+            headHash = headHash(path);
+        } catch (IOException e) {
+            return false;
+        }
+
+        long fromOffset = 0;
+        int fromLine = 0;
+        String title = null;
+        lock.readLock().lock();
+        try {
+            FileState state = files.get(key);
+            if (state != null && attrs.size() >= state.indexedBytes && state.headHash == headHash) {
+                fromOffset = state.indexedBytes;
+                fromLine = state.lineCount;
+                title = state.title;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        boolean append = fromOffset > 0;
+
+        // 在锁外解析，避免长时间阻塞查询
+        List<PendingDoc> pending = new ArrayList<>();
+        long[] endOffset = {fromOffset};
+        int[] lineCount = {fromLine};
+        String[] titleHolder = {title};
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.position(fromOffset);
+            InputStream in = new BufferedInputStream(Channels.newInputStream(channel), 64 * 1024);
+            ByteArrayOutputStream line = new ByteArrayOutputStream(1024);
+            long offset = fromOffset;
+            int b;
+            while ((b = in.read()) != -1) {
+                offset++;
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                PendingDoc doc = parseLine(line.toString(StandardCharsets.UTF_8), lineCount[0], titleHolder);
+                if (doc != null) {
+                    pending.add(doc);
+                }
+                line.reset();
+                lineCount[0]++;
+                // 只推进到完整行之后，最后一行未写完时下次从行首重新解析
+                endOffset[0] = offset;
+            }
+        } catch (IOException e) {
+            System.err.println("[HistorySearchIndex] Failed to read " + path + ": " + e.getMessage());
+            return false;
+        }
+
+        lock.writeLock().lock();
+        try {
+            FileState state = files.get(key);
+            if (!append) {
+                if (state != null) {
+                    removeFile(key);
+                }
+                state = new FileState();
+                state.path = key;
+                state.projectDir = path.getParent().getFileName().toString();
+                String name = path.getFileName().toString();
+                state.sessionId = name.substring(0, name.length() - ".jsonl".length());
+                state.id = fileTable.size();
+                files.put(key, state);
+                fileTable.add(state);
+            }
+            state.mtime = attrs.lastModifiedTime().toMillis();
+            state.size = attrs.size();
+            state.indexedBytes = endOffset[0];
+            state.headHash = headHash;
+            state.lineCount = lineCount[0];
+            state.title = titleHolder[0];
+            for (PendingDoc doc : pending) {
+                addDoc(state, doc);
+            }
+        } catch (IOException e) {
+            System.err.println("[HistorySearchIndex] Failed to write text store: " + e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return append;
+    }
+
+    private PendingDoc parseLine(String line, int lineNo, String[] title) {
+        if (line.isBlank()) {
+            return null;
+        }
+        ClaudeHistoryReader.ConversationMessage msg;
+        try {
+            msg = gson.fromJson(line, ClaudeHistoryReader.ConversationMessage.class);
+        } catch (Exception e) {
+            return null;
+        }
+        if (msg == null || msg.message == null || Boolean.TRUE.equals(msg.isMeta)) {
+            return null;
+        }
+        boolean user = "user".equals(msg.type);
+        if (!user && !"assistant".equals(msg.type)) {
+            return null;
+        }
+        String text = extractText(msg.message.content);
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+        if (user && title[0] == null) {
+            String summary = text.replace("\n", " ").trim();
+            title[0] = summary.length() > MAX_TITLE_LENGTH ? summary.substring(0, MAX_TITLE_LENGTH) + "..." : summary;
+        }
+        PendingDoc doc = new PendingDoc();
+        doc.line = lineNo;
+        doc.role = user ? ROLE_USER : ROLE_ASSISTANT;
+        doc.text = text.length() > MAX_DOC_CHARS ? text.substring(0, MAX_DOC_CHARS) : text;
+        if (msg.timestamp != null) {
+            try {
+                doc.timestamp = java.time.Instant.parse(msg.timestamp).toEpochMilli();
+            } catch (Exception e) {
+                // 忽略无效的时间戳
+            }
+        }
+        return doc;
+    }
+
+    /**
+     * 只提取文本块（工具调用和工具结果不参与索引）
+     */
+    private static String extractText(Object content) {
+        if (content instanceof String) {
+            return (String) content;
+        }
+        if (!(content instanceof List)) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Object item : (List<?>) content) {
+            if (item instanceof Map) {
+                Map<?, ?> block = (Map<?, ?>) item;
+                Object text = block.get("text");
+                if ("text".equals(block.get("type")) && text instanceof String) {
+                    if (sb.length() > 0) {
+                        sb.append('\n');
+                    }
+                    sb.append((String) text);
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 写入一条消息：原文追加到文本库，词项加入倒排表（调用方持有写锁）
+     */
+    private void addDoc(FileState state, PendingDoc pending) throws IOException {
+        RandomAccessFile store = textStore();
+        byte[] bytes = pending.text.getBytes(StandardCharsets.UTF_8);
+        Doc doc = new Doc();
+        doc.file = state.id;
+        doc.line = pending.line;
+        doc.timestamp = pending.timestamp;
+        doc.role = pending.role;
+        doc.textOffset = store.length();
+        doc.textLength = bytes.length;
+        store.seek(doc.textOffset);
+        store.write(bytes);
+
+        int docId = docs.size();
+        int[] position = {0};
+        tokenize(pending.text, (token, s, e) -> {
+            postings.computeIfAbsent(token, k -> new IntList()).add(docId);
+            postings.get(token).add(position[0]++);
+        });
+        doc.tokenCount = position[0];
+        docs.add(doc);
+        state.docIds.add(docId);
+        liveDocs++;
+        liveTokens += doc.tokenCount;
+    }
+
+    /**
+     * 移除文件并标记其消息为已删除（调用方持有写锁）
+     */
+    private void removeFile(String path) {
+        FileState state = files.remove(path);
+        if (state == null) {
+            return;
+        }
+        for (int i = 0; i < state.docIds.size; i++) {
+            int docId = state.docIds.data[i];
+            if (!deleted.get(docId)) {
+                deleted.set(docId);
+                liveDocs--;
+                liveTokens -= docs.get(docId).tokenCount;
+            }
+        }
+        fileTable.set(state.id, null);
+    }
+
+    private boolean needsCompaction() {
+        lock.readLock().lock();
+        try {
+            int deletedDocs = deleted.cardinality();
+            return deletedDocs > 1000 && deletedDocs > docs.size() * COMPACT_RATIO;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 丢弃所有已删除消息，整体重建
+     */
+    private void rebuild(Map<String, BasicFileAttributes> current) throws IOException {
+        System.out.println("[HistorySearchIndex] Compacting: rebuilding index from " + current.size() + " sessions");
+        lock.writeLock().lock();
+        try {
+            clear();
+            textStore().setLength(0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        for (Map.Entry<String, BasicFileAttributes> e : current.entrySet()) {
+            indexFile(Paths.get(e.getKey()), e.getValue());
+        }
+    }
+
+    private void clear() {
+        files.clear();
+        fileTable.clear();
+        docs.clear();
+        deleted.clear();
+        postings.clear();
+        liveDocs = 0;
+        liveTokens = 0;
+    }
+
+    private static long headHash(Path path) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] head = in.readNBytes(HEAD_HASH_BYTES);
+            crc.update(head);
+        }
+        return crc.getValue();
+    }
+
+    private RandomAccessFile textStore() throws IOException {
+        if (textStore == null) {
+            Files.createDirectories(INDEX_DIR);
+            textStore = new RandomAccessFile(TEXT_FILE.toFile(), "rw");
+        }
+        return textStore;
+    }
+
+    /**
+     * 重新计时：IDLE_UNLOAD_MS 内没有查询时释放内存中的索引
+     */
+    private synchronized void scheduleUnload() {
+        if (unloadTask != null) {
+            unloadTask.cancel(false);
+        }
+        unloadTask = AppExecutorUtil.getAppScheduledExecutorService()
+            .schedule(this::unloadIfIdle, IDLE_UNLOAD_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 释放内存中的倒排表、消息表和文本库句柄（磁盘上的索引保留，下次查询时重新加载）
+     */
+    private void unloadIfIdle() {
+        synchronized (this) {
+            unloadTask = null;
+            CompletableFuture<Void> pending = pendingRefresh;
+            if (pending != null && !pending.isDone()) {
+                // 刷新完成后会保存，稍后再释放
+                scheduleUnload();
+                return;
+            }
+            lock.writeLock().lock();
+            try {
+                if (!loaded) {
+                    return;
+                }
+                int terms = postings.size();
+                clear();
+                if (textStore != null) {
+                    try {
+                        textStore.close();
+                    } catch (IOException ignored) {
+                        // 句柄已失效
+                    }
+                    textStore = null;
+                }
+                loaded = false;
+                // 下次查询重新加载后立即增量刷新
+                lastRefreshTime = 0;
+                System.out.println("[HistorySearchIndex] Idle, released in-memory index (" + terms + " terms)");
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // ==================== 持久化 ====================
+
+    /**
+     * 首次使用时从磁盘加载索引（格式不符或文本库长度对不上时丢弃，重新构建）
+     */
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                return;
+            }
+            loaded = true;
+            if (!Files.exists(INDEX_FILE)) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(INDEX_FILE), 256 * 1024))) {
+                read(in);
+                built = true;
+                System.out.println("[HistorySearchIndex] Loaded " + files.size() + " sessions, " + liveDocs
+                    + " messages, " + postings.size() + " terms in " + (System.currentTimeMillis() - start) + "ms");
+            } catch (Exception e) {
+                System.err.println("[HistorySearchIndex] Discarding index: " + e.getMessage());
+                clear();
+                try {
+                    textStore().setLength(0);
+                } catch (IOException ignored) {
+                    // 下次写入时会重新创建
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("version mismatch");
+        }
+        long textLength = in.readLong();
+        if (textStore().length() != textLength) {
+            throw new IOException("text store length mismatch");
+        }
+
+        int fileCount = readVarInt(in);
+        for (int i = 0; i < fileCount; i++) {
+            if (!in.readBoolean()) {
+                fileTable.add(null);
+                continue;
+            }
+            FileState state = new FileState();
+            state.id = i;
+            state.path = in.readUTF();
+            state.projectDir = in.readUTF();
+            state.sessionId = in.readUTF();
+            state.title = in.readBoolean() ? in.readUTF() : null;
+            state.mtime = in.readLong();
+            state.size = in.readLong();
+            state.indexedBytes = in.readLong();
+            state.headHash = in.readLong();
+            state.lineCount = readVarInt(in);
+            files.put(state.path, state);
+            fileTable.add(state);
+        }
+
+        int docCount = readVarInt(in);
+        for (int i = 0; i < docCount; i++) {
+            Doc doc = new Doc();
+            doc.file = readVarInt(in);
+            doc.line = readVarInt(in);
+            doc.timestamp = in.readLong();
+            doc.role = in.readByte();
+            doc.textOffset = in.readLong();
+            doc.textLength = readVarInt(in);
+            doc.tokenCount = readVarInt(in);
+            docs.add(doc);
+            FileState state = doc.file < fileTable.size() ? fileTable.get(doc.file) : null;
+            if (state == null) {
+                deleted.set(i);
+            } else {
+                state.docIds.add(i);
+                liveDocs++;
+                liveTokens += doc.tokenCount;
+            }
+        }
+
+        int termCount = readVarInt(in);
+        for (int i = 0; i < termCount; i++) {
+            String term = in.readUTF();
+            int pairs = readVarInt(in);
+            IntList list = new IntList();
+            list.data = new int[Math.max(4, pairs * 2)];
+            int docId = 0;
+            int position = 0;
+            for (int p = 0; p < pairs; p++) {
+                int docDelta = readVarInt(in);
+                docId += docDelta;
+                position = docDelta == 0 ? position + readVarInt(in) : readVarInt(in);
+                list.add(docId);
+                list.add(position);
+            }
+            postings.put(term, list);
+        }
+    }
+
+    /**
+     * 写入磁盘：先写临时文件再原子替换，文本库先落盘保证 index.bin 引用的内容都已存在
+     */
+    private void save() {
+        lock.readLock().lock();
+        try {
+            Files.createDirectories(INDEX_DIR);
+            textStore().getChannel().force(false);
+            Path temp = Files.createTempFile(INDEX_DIR, "index.", ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 256 * 1024))) {
+                    write(out);
+                }
+                try {
+                    Files.move(temp, INDEX_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, INDEX_FILE, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            System.err.println("[HistorySearchIndex] Failed to save index: " + e.getMessage());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(textStore().length());
+
+        writeVarInt(out, fileTable.size());
+        for (FileState state : fileTable) {
+            out.writeBoolean(state != null);
+            if (state == null) {
+                continue;
+            }
+            out.writeUTF(state.path);
+            out.writeUTF(state.projectDir);
+            out.writeUTF(state.sessionId);
+            out.writeBoolean(state.title != null);
+            if (state.title != null) {
+                out.writeUTF(state.title);
+            }
+            out.writeLong(state.mtime);
+            out.writeLong(state.size);
+            out.writeLong(state.indexedBytes);
+            out.writeLong(state.headHash);
+            writeVarInt(out, state.lineCount);
+        }
+
+        writeVarInt(out, docs.size());
+        for (int i = 0; i < docs.size(); i++) {
+            Doc doc = docs.get(i);
+            // 已删除消息指向的文件编号为 null，加载时据此恢复删除标记
+            writeVarInt(out, doc.file);
+            writeVarInt(out, doc.line);
+            out.writeLong(doc.timestamp);
+            out.writeByte(doc.role);
+            out.writeLong(doc.textOffset);
+            writeVarInt(out, doc.textLength);
+            writeVarInt(out, doc.tokenCount);
+        }
+
+        writeVarInt(out, postings.size());
+        for (Map.Entry<String, IntList> e : postings.entrySet()) {
+            out.writeUTF(e.getKey());
+            IntList list = e.getValue();
+            writeVarInt(out, list.size / 2);
+            int lastDoc = 0;
+            int lastPosition = 0;
+            for (int p = 0; p < list.size; p += 2) {
+                int docDelta = list.data[p] - lastDoc;
+                writeVarInt(out, docDelta);
+                writeVarInt(out, docDelta == 0 ? list.data[p + 1] - lastPosition : list.data[p + 1]);
+                lastDoc = list.data[p];
+                lastPosition = list.data[p + 1];
+            }
+        }
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readByte() & 0xFF;
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+}
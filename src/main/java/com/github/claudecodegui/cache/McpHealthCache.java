@@ -0,0 +1,432 @@
+package com.github.claudecodegui.cache;
+
+import com.github.claudecodegui.CodemossSettingsService;
+import com.github.claudecodegui.bridge.EnvironmentConfigurator;
+import com.github.claudecodegui.util.JsonCodec;
+import com.github.claudecodegui.util.PlatformUtils;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MCP 服务器健康状态缓存
+ *
+ * 功能：
+ * 1. 并发探测：stdio 服务器启动进程并发送 initialize 请求，http/sse 服务器直接请求端点
+ * 2. 单服务器超时：stdio 首次启动可能需要 npx 下载，超时较长；http/sse 超时较短
+ * 3. 结果缓存：正常状态缓存 HEALTHY_TTL_MS，异常状态缓存 UNHEALTHY_TTL_MS；
+ *    服务器配置变化（指纹不同）时缓存立即失效
+ * 4. 去重：同一服务器同时只有一个探测在进行，重复请求复用同一个 Future
+ *
+ * 状态格式：{"status":"connected|error|checking","latencyMs":123,"error":"...","checkedAt":1700000000000}
+ */
+public final class McpHealthCache {
+
+    public static final String STATUS_CONNECTED = "connected";
+    public static final String STATUS_ERROR = "error";
+    public static final String STATUS_CHECKING = "checking";
+
+    // 缓存策略配置
+    private static final long HEALTHY_TTL_MS = 5 * 60 * 1000; // 正常状态 5 分钟
+    private static final long UNHEALTHY_TTL_MS = 30 * 1000; // 异常状态 30 秒后允许重试
+    private static final long STDIO_TIMEOUT_MS = 15_000;
+    private static final long HTTP_TIMEOUT_MS = 5_000;
+    private static final int MAX_CONCURRENT_PROBES = 8;
+
+    private static final String PROTOCOL_VERSION = "2024-11-05";
+    private static final String INITIALIZE_REQUEST =
+        "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"initialize\",\"params\":{"
+            + "\"protocolVersion\":\"" + PROTOCOL_VERSION + "\",\"capabilities\":{},"
+            + "\"clientInfo\":{\"name\":\"idea-claude-code-gui\",\"version\":\"1.0.0\"}}}";
+
+    private static final ExecutorService PROBE_EXECUTOR =
+        AppExecutorUtil.createBoundedApplicationPoolExecutor("McpHealthProbe", MAX_CONCURRENT_PROBES);
+
+    private static final Map<String, Entry> ENTRIES = new ConcurrentHashMap<>();
+    private static final Map<String, CompletableFuture<JsonObject>> IN_FLIGHT = new ConcurrentHashMap<>();
+    private static final EnvironmentConfigurator ENV_CONFIGURATOR = new EnvironmentConfigurator();
+
+    private static volatile HttpClient httpClient;
+
+    private McpHealthCache() {
+        // 工具类，不允许实例化
+    }
+
+    /**
+     * 缓存条目：配置指纹 + 探测结果
+     */
+    private static final class Entry {
+        final String fingerprint;
+        final JsonObject health;
+        final long expiresAt;
+
+        Entry(String fingerprint, JsonObject health) {
+            this.fingerprint = fingerprint;
+            this.health = health;
+            long ttl = STATUS_CONNECTED.equals(health.get("status").getAsString()) ? HEALTHY_TTL_MS : UNHEALTHY_TTL_MS;
+            this.expiresAt = System.currentTimeMillis() + ttl;
+        }
+
+        boolean isFresh(String currentFingerprint) {
+            return fingerprint.equals(currentFingerprint) && System.currentTimeMillis() < expiresAt;
+        }
+    }
+
+    /**
+     * 获取缓存的健康状态（配置未变化时即使已过期也返回，供界面先行展示）
+     * @return 状态副本，没有可用结果时返回 null
+     */
+    public static JsonObject getCached(JsonObject server) {
+        String id = serverId(server);
+        if (id == null) {
+            return null;
+        }
+        Entry entry = ENTRIES.get(id);
+        if (entry == null || !entry.fingerprint.equals(fingerprint(server))) {
+            return null;
+        }
+        return entry.health.deepCopy();
+    }
+
+    /**
+     * 判断服务器是否需要重新探测（无缓存、已过期或配置变化）
+     */
+    public static boolean needsProbe(JsonObject server) {
+        String id = serverId(server);
+        if (id == null || !isEnabled(server)) {
+            return false;
+        }
+        Entry entry = ENTRIES.get(id);
+        return entry == null || !entry.isFresh(fingerprint(server));
+    }
+
+    /**
+     * 并发探测多个服务器
+     * @param servers 服务器列表（get_mcp_servers 返回的格式）
+     * @param force 为 true 时忽略缓存强制探测
+     * @return 服务器 ID -> 健康状态，所有探测完成后完成
+     */
+    public static CompletableFuture<Map<String, JsonObject>> probeAll(List<JsonObject> servers, boolean force) {
+        Map<String, CompletableFuture<JsonObject>> futures = new LinkedHashMap<>();
+        for (JsonObject server : servers) {
+            String id = serverId(server);
+            if (id == null || !isEnabled(server)) {
+                continue;
+            }
+            if (!force && !needsProbe(server)) {
+                continue;
+            }
+            futures.put(id, probe(server));
+        }
+
+        if (futures.isEmpty()) {
+            return CompletableFuture.completedFuture(new LinkedHashMap<>());
+        }
+
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]))
+            .thenApply(ignored -> {
+                Map<String, JsonObject> result = new LinkedHashMap<>();
+                for (Map.Entry<String, CompletableFuture<JsonObject>> e : futures.entrySet()) {
+                    result.put(e.getKey(), e.getValue().join().deepCopy());
+                }
+                return result;
+            });
+    }
+
+    /**
+     * 探测单个服务器（同一服务器的并发请求共享同一次探测）
+     */
+    public static CompletableFuture<JsonObject> probe(JsonObject server) {
+        String id = serverId(server);
+        String fingerprint = fingerprint(server);
+        JsonObject spec = server.has("server") && server.get("server").isJsonObject()
+            ? server.getAsJsonObject("server").deepCopy()
+            : new JsonObject();
+
+        List<CompletableFuture<JsonObject>> created = new ArrayList<>(1);
+        CompletableFuture<JsonObject> future = IN_FLIGHT.computeIfAbsent(id, key -> {
+            CompletableFuture<JsonObject> probe = CompletableFuture.supplyAsync(() -> {
+                JsonObject health = runProbe(id, spec);
+                ENTRIES.put(id, new Entry(fingerprint, health));
+                return health;
+            }, PROBE_EXECUTOR);
+            created.add(probe);
+            return probe;
+        });
+        // 放入 Map 之后再注册清理，避免探测极快完成时先删后放留下过期的 Future
+        if (!created.isEmpty()) {
+            future.whenComplete((result, error) -> IN_FLIGHT.remove(id, future));
+        }
+        return future;
+    }
+
+    /**
+     * 使某个服务器的缓存失效（配置被修改或删除时调用）
+     */
+    public static void invalidate(String serverId) {
+        if (serverId != null) {
+            ENTRIES.remove(serverId);
+        }
+    }
+
+    /**
+     * 构建"检测中"状态
+     */
+    public static JsonObject checking() {
+        JsonObject health = new JsonObject();
+        health.addProperty("status", STATUS_CHECKING);
+        return health;
+    }
+
+    // ==================== 探测实现 ====================
+
+    private static JsonObject runProbe(String id, JsonObject spec) {
+        String type = spec.has("type") ? spec.get("type").getAsString() : "stdio";
+        long start = System.currentTimeMillis();
+        JsonObject health;
+        try {
+            String error;
+            if ("http".equals(type) || "sse".equals(type)) {
+                error = probeHttp(spec, "sse".equals(type));
+            } else if ("stdio".equals(type)) {
+                error = probeStdio(spec, STDIO_TIMEOUT_MS);
+            } else {
+                error = "不支持的连接类型: " + type;
+            }
+            health = buildHealth(error, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            health = buildHealth(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName(),
+                System.currentTimeMillis() - start);
+        }
+        System.out.println("[McpHealthCache] " + id + " -> " + health.get("status").getAsString()
+            + " (" + health.get("latencyMs").getAsLong() + "ms)"
+            + (health.has("error") ? ": " + health.get("error").getAsString() : ""));
+        return health;
+    }
+
+    private static JsonObject buildHealth(String error, long latencyMs) {
+        JsonObject health = new JsonObject();
+        health.addProperty("status", error == null ? STATUS_CONNECTED : STATUS_ERROR);
+        health.addProperty("latencyMs", latencyMs);
+        if (error != null) {
+            health.addProperty("error", error);
+        }
+        health.addProperty("checkedAt", System.currentTimeMillis());
+        return health;
+    }
+
+    /**
+     * 启动 stdio 服务器并完成 initialize 握手
+     * @param timeoutMs 超时后结束整个进程树
+     * @return 错误信息，成功时返回 null
+     */
+    static String probeStdio(JsonObject spec, long timeoutMs) throws Exception {
+        if (!spec.has("command") || spec.get("command").getAsString().isEmpty()) {
+            return "命令不能为空";
+        }
+
+        List<String> command = new ArrayList<>();
+        if (PlatformUtils.isWindows()) {
+            // npx/uvx 等在 Windows 上是 .cmd 脚本，需要通过 cmd 启动
+            command.add("cmd.exe");
+            command.add("/c");
+        }
+        command.add(spec.get("command").getAsString());
+        if (spec.has("args") && spec.get("args").isJsonArray()) {
+            for (JsonElement arg : spec.getAsJsonArray("args")) {
+                command.add(arg.getAsString());
+            }
+        }
+
+        ProcessBuilder pb = new ProcessBuilder(command);
+        if (spec.has("cwd") && !spec.get("cwd").getAsString().isEmpty()) {
+            pb.directory(new File(spec.get("cwd").getAsString()));
+        }
+        // 与 Claude CLI 启动 MCP 服务器时的环境保持一致：PATH 中包含 Node.js 目录（优先使用用户配置的路径）
+        String nodePath = CodemossSettingsService.resolveNodePath();
+        if (nodePath != null) {
+            ENV_CONFIGURATOR.updateProcessEnvironment(pb, nodePath);
+        }
+        if (spec.has("env") && spec.get("env").isJsonObject()) {
+            for (Map.Entry<String, JsonElement> e : spec.getAsJsonObject("env").entrySet()) {
+                if (!e.getValue().isJsonNull()) {
+                    pb.environment().put(e.getKey(), e.getValue().getAsString());
+                }
+            }
+        }
+        pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+
+        Process process = pb.start();
+        // 超时后结束进程树（Windows 下 cmd 的子进程也持有 stdout），阻塞中的 readLine 随之返回
+        ScheduledFuture<?> killer = AppExecutorUtil.getAppScheduledExecutorService()
+            .schedule(() -> terminateProcessTree(process), timeoutMs, TimeUnit.MILLISECONDS);
+        try {
+            OutputStream stdin = process.getOutputStream();
+            stdin.write((INITIALIZE_REQUEST + "\n").getBytes(StandardCharsets.UTF_8));
+            stdin.flush();
+
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String trimmed = line.trim();
+                    if (!trimmed.startsWith("{")) {
+                        continue; // 部分服务器会向 stdout 打印日志
+                    }
+                    JsonObject response;
+                    try {
+                        response = JsonCodec.parseObject(trimmed);
+                    } catch (Exception e) {
+                        continue;
+                    }
+                    if (response == null || !response.has("id") || response.get("id").isJsonNull()
+                            || !"1".equals(response.get("id").getAsString())) {
+                        continue;
+                    }
+                    if (response.has("result")) {
+                        return null;
+                    }
+                    if (response.has("error") && response.get("error").isJsonObject()) {
+                        JsonObject error = response.getAsJsonObject("error");
+                        return "initialize 失败: " + (error.has("message") ? error.get("message").getAsString() : error.toString());
+                    }
+                    return "initialize 响应无效";
+                }
+            }
+
+            if (killer.isDone()) {
+                return "启动超时 (" + timeoutMs / 1000 + "s)";
+            }
+            process.waitFor(1, TimeUnit.SECONDS);
+            return process.isAlive()
+                ? "服务器关闭了标准输出"
+                : "服务器进程已退出 (退出码: " + process.exitValue() + ")";
+        } finally {
+            killer.cancel(false);
+            terminateProcessTree(process);
+        }
+    }
+
+    /**
+     * 结束探测进程及其子进程
+     * npx / uvx 等启动器会再启动真正的服务器进程，Unix 上只结束启动器时服务器进程会残留，
+     * 因此先强制结束子进程，再结束启动器本身
+     */
+    private static void terminateProcessTree(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        PlatformUtils.terminateProcess(process);
+    }
+
+    /**
+     * 请求 http/sse 端点
+     * http：POST initialize 请求；sse：GET 事件流，只等待响应头
+     * @return 错误信息，成功时返回 null
+     */
+    private static String probeHttp(JsonObject spec, boolean sse) throws Exception {
+        if (!spec.has("url") || spec.get("url").getAsString().isEmpty()) {
+            return "URL 不能为空";
+        }
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(spec.get("url").getAsString()))
+            .timeout(Duration.ofMillis(HTTP_TIMEOUT_MS));
+        if (spec.has("headers") && spec.get("headers").isJsonObject()) {
+            for (Map.Entry<String, JsonElement> e : spec.getAsJsonObject("headers").entrySet()) {
+                if (e.getValue().isJsonNull()) {
+                    continue;
+                }
+                try {
+                    builder.header(e.getKey(), e.getValue().getAsString());
+                } catch (IllegalArgumentException ignored) {
+                    // Host/Connection 等受限请求头由 HttpClient 管理，跳过
+                }
+            }
+        }
+        if (sse) {
+            builder.header("Accept", "text/event-stream").GET();
+        } else {
+            builder.header("Content-Type", "application/json")
+                .header("Accept", "application/json, text/event-stream")
+                .POST(HttpRequest.BodyPublishers.ofString(INITIALIZE_REQUEST));
+        }
+
+        HttpResponse<InputStream> response = getHttpClient()
+            .send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+        // 只关心状态码，事件流不需要继续读取
+        response.body().close();
+
+        int status = response.statusCode();
+        if (status >= 200 && status < 300) {
+            return null;
+        }
+        if (status == 401 || status == 403) {
+            return "认证失败 (HTTP " + status + ")";
+        }
+        return "HTTP " + status;
+    }
+
+    private static HttpClient getHttpClient() {
+        HttpClient client = httpClient;
+        if (client == null) {
+            synchronized (McpHealthCache.class) {
+                client = httpClient;
+                if (client == null) {
+                    client = HttpClient.newBuilder()
+                        .connectTimeout(Duration.ofMillis(HTTP_TIMEOUT_MS))
+                        .followRedirects(HttpClient.Redirect.NORMAL)
+                        .build();
+                    httpClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    // ==================== 辅助方法 ====================
+
+    private static String serverId(JsonObject server) {
+        return server.has("id") && !server.get("id").isJsonNull() ? server.get("id").getAsString() : null;
+    }
+
+    /**
+     * 与前端 isServerEnabled 保持一致：优先 enabled 字段，其次 apps.claude
+     */
+    private static boolean isEnabled(JsonObject server) {
+        if (server.has("enabled") && !server.get("enabled").isJsonNull()) {
+            return server.get("enabled").getAsBoolean();
+        }
+        if (server.has("apps") && server.get("apps").isJsonObject()) {
+            JsonObject apps = server.getAsJsonObject("apps");
+            return !apps.has("claude") || apps.get("claude").getAsBoolean();
+        }
+        return true;
+    }
+
+    /**
+     * 服务器连接规格指纹（规格变化后旧的探测结果不再有效）
+     */
+    private static String fingerprint(JsonObject server) {
+        JsonElement spec = server.get("server");
+        return spec != null ? spec.toString() : "";
+    }
+}
@@ -0,0 +1,319 @@
+package com.github.claudecodegui.cache;
+
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Skills 目录缓存
+ *
+ * 功能：
+ * 1. 懒加载：首次请求某个目录时才扫描，结果按目录缓存
+ * 2. 文件监听：WatchService 监听目录本身及每个 Skill 子目录，有变化时标记目录为脏
+ * 3. 增量重扫：目录变脏后只对修改时间变化的条目重新解析（读取 skill.md、执行正则），
+ *    未变化的条目直接复用上次的结果
+ * 4. 保底校验：超过 REVALIDATE_INTERVAL_MS 未重扫的目录按脏目录处理（防止监听失效，
+ *    例如 macOS 上 WatchService 为轮询实现、事件会延迟）
+ * 5. 释放：重扫时取消已移出目录的子目录监听；项目关闭时调用 {@link #evict(String)} 释放项目目录的快照与监听
+ */
+public final class SkillDirectoryCache {
+
+    private static final long REVALIDATE_INTERVAL_MS = 60 * 1000;
+
+    /**
+     * 条目解析器：根据文件/目录构建 Skill JSON，返回 null 表示跳过
+     */
+    public interface EntryParser {
+        JsonObject parse(File entry, BasicFileAttributes attrs);
+    }
+
+    private static final SkillDirectoryCache INSTANCE = new SkillDirectoryCache();
+
+    // 目录快照（key: 目录路径 + 解析器区分键）
+    private final Map<String, DirectorySnapshot> snapshots = new ConcurrentHashMap<>();
+    // WatchKey -> 顶层 Skills 目录路径
+    private final Map<WatchKey, String> watchKeys = new ConcurrentHashMap<>();
+    private final Map<Path, WatchKey> watchedPaths = new ConcurrentHashMap<>();
+    private volatile WatchService watchService;
+
+    public static SkillDirectoryCache getInstance() {
+        return INSTANCE;
+    }
+
+    private SkillDirectoryCache() {
+    }
+
+    /**
+     * 单个目录的缓存快照
+     */
+    private static final class DirectorySnapshot {
+        final Map<String, CachedEntry> entries = new LinkedHashMap<>();
+        volatile boolean dirty = true;
+        long lastScanTime = 0;
+    }
+
+    /**
+     * 单个条目的缓存：条目修改时间 + skill.md 修改时间 + 解析结果
+     */
+    private static final class CachedEntry {
+        final long mtime;
+        final long markerMtime;
+        final JsonObject skill;
+
+        CachedEntry(long mtime, long markerMtime, JsonObject skill) {
+            this.mtime = mtime;
+            this.markerMtime = markerMtime;
+            this.skill = skill;
+        }
+    }
+
+    /**
+     * 获取目录下的 Skills（key 为 Skill ID）
+     * @param dirPath 目录路径
+     * @param variant 区分同一目录的不同解析方式（如作用域 + 启用状态）
+     * @param parser 条目解析器，只对新增或变化的条目调用
+     * @return Skill 副本，调用方可自由修改
+     */
+    public JsonObject scan(String dirPath, String variant, EntryParser parser) {
+        File dir = new File(dirPath);
+        if (!dir.isDirectory()) {
+            // 不存在的目录不缓存，创建后下次请求自然会扫描
+            snapshots.remove(dirPath + "|" + variant);
+            return new JsonObject();
+        }
+
+        DirectorySnapshot snapshot = snapshots.computeIfAbsent(dirPath + "|" + variant, key -> new DirectorySnapshot());
+        synchronized (snapshot) {
+            long now = System.currentTimeMillis();
+            if (snapshot.dirty || now - snapshot.lastScanTime > REVALIDATE_INTERVAL_MS) {
+                // 先清除脏标记再扫描，扫描期间发生的变化会重新置脏
+                snapshot.dirty = false;
+                rescan(dir, dirPath, snapshot, parser);
+                snapshot.lastScanTime = now;
+                watch(dir.toPath(), dirPath);
+            }
+            return toJson(snapshot);
+        }
+    }
+
+    /**
+     * 标记目录为脏（本插件自己修改目录后调用，不必等待文件监听事件）
+     */
+    public void invalidate(String dirPath) {
+        if (dirPath == null) {
+            return;
+        }
+        String prefix = dirPath + "|";
+        for (Map.Entry<String, DirectorySnapshot> e : snapshots.entrySet()) {
+            if (e.getKey().startsWith(prefix)) {
+                e.getValue().dirty = true;
+            }
+        }
+    }
+
+    /**
+     * 释放目录的快照与全部监听（目录所属项目关闭时调用）
+     */
+    public void evict(String dirPath) {
+        if (dirPath == null) {
+            return;
+        }
+        String prefix = dirPath + "|";
+        snapshots.keySet().removeIf(key -> key.startsWith(prefix));
+        int cancelled = 0;
+        for (Map.Entry<WatchKey, String> e : watchKeys.entrySet()) {
+            if (dirPath.equals(e.getValue())) {
+                cancelWatch(e.getKey());
+                cancelled++;
+            }
+        }
+        if (cancelled > 0) {
+            System.out.println("[SkillDirectoryCache] Evicted " + dirPath + ", cancelled " + cancelled + " watch keys");
+        }
+    }
+
+    /**
+     * 增量重扫：只解析修改时间变化的条目
+     */
+    private void rescan(File dir, String dirPath, DirectorySnapshot snapshot, EntryParser parser) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            snapshot.entries.clear();
+            return;
+        }
+
+        Map<String, CachedEntry> previous = new HashMap<>(snapshot.entries);
+        snapshot.entries.clear();
+        int reparsed = 0;
+        Set<Path> subDirs = new HashSet<>();
+
+        for (File entry : files) {
+            // 跳过隐藏文件/文件夹
+            if (entry.getName().startsWith(".")) {
+                continue;
+            }
+
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(entry.toPath(), BasicFileAttributes.class);
+            } catch (IOException e) {
+                attrs = null;
+            }
+            long mtime = attrs != null ? attrs.lastModifiedTime().toMillis() : entry.lastModified();
+            boolean isDirectory = attrs != null ? attrs.isDirectory() : entry.isDirectory();
+            // 修改 skill.md 内容不会改变目录自身的修改时间，需要单独检查
+            long markerMtime = isDirectory ? markerMtime(entry) : mtime;
+
+            CachedEntry cached = previous.get(entry.getName());
+            if (cached != null && cached.mtime == mtime && cached.markerMtime == markerMtime) {
+                snapshot.entries.put(entry.getName(), cached);
+            } else {
+                JsonObject skill = parser.parse(entry, attrs);
+                reparsed++;
+                if (skill != null) {
+                    snapshot.entries.put(entry.getName(), new CachedEntry(mtime, markerMtime, skill));
+                }
+            }
+
+            if (isDirectory) {
+                subDirs.add(entry.toPath());
+                watch(entry.toPath(), dirPath);
+            }
+        }
+
+        // 取消已移出目录（改名、隐藏、替换为文件）的子目录监听
+        Path dirKey = dir.toPath();
+        for (Map.Entry<Path, WatchKey> e : watchedPaths.entrySet()) {
+            Path path = e.getKey();
+            if (dirKey.equals(path.getParent()) && !subDirs.contains(path) && dirPath.equals(watchKeys.get(e.getValue()))) {
+                cancelWatch(e.getValue());
+            }
+        }
+
+        if (reparsed > 0) {
+            System.out.println("[SkillDirectoryCache] Rescanned " + dir + ": " + snapshot.entries.size()
+                + " entries, " + reparsed + " re-parsed");
+        }
+    }
+
+    private static long markerMtime(File skillDir) {
+        long mtime = new File(skillDir, "skill.md").lastModified();
+        if (mtime == 0) {
+            mtime = new File(skillDir, "SKILL.md").lastModified();
+        }
+        return mtime;
+    }
+
+    private static JsonObject toJson(DirectorySnapshot snapshot) {
+        JsonObject result = new JsonObject();
+        for (CachedEntry entry : snapshot.entries.values()) {
+            JsonObject skill = entry.skill.deepCopy();
+            result.add(skill.get("id").getAsString(), skill);
+        }
+        return result;
+    }
+
+    // ==================== 文件监听 ====================
+
+    /**
+     * 注册目录监听（已注册的目录直接跳过）
+     * @param path 要监听的目录
+     * @param ownerDir 事件发生时需要置脏的顶层 Skills 目录
+     */
+    private void watch(Path path, String ownerDir) {
+        WatchKey existing = watchedPaths.get(path);
+        if (existing != null && existing.isValid()) {
+            return;
+        }
+        WatchService service = getWatchService();
+        if (service == null) {
+            return;
+        }
+        try {
+            WatchKey key = path.register(service,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+            watchKeys.put(key, ownerDir);
+            watchedPaths.put(path, key);
+        } catch (IOException | ClosedWatchServiceException e) {
+            // 监听失败时依赖保底校验
+            System.err.println("[SkillDirectoryCache] Failed to watch " + path + ": " + e.getMessage());
+        }
+    }
+
+    private void cancelWatch(WatchKey key) {
+        key.cancel();
+        watchKeys.remove(key);
+        watchedPaths.values().remove(key);
+    }
+
+    private WatchService getWatchService() {
+        WatchService service = watchService;
+        if (service == null) {
+            synchronized (this) {
+                service = watchService;
+                if (service == null) {
+                    try {
+                        service = FileSystems.getDefault().newWatchService();
+                    } catch (IOException e) {
+                        System.err.println("[SkillDirectoryCache] WatchService unavailable: " + e.getMessage());
+                        return null;
+                    }
+                    watchService = service;
+                    Thread thread = new Thread(() -> pollEvents(watchService), "SkillDirectoryWatcher");
+                    thread.setDaemon(true);
+                    thread.start();
+                }
+            }
+        }
+        return service;
+    }
+
+    private void pollEvents(WatchService service) {
+        while (true) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            String ownerDir = watchKeys.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // 事件丢失，所有目录都需要重扫
+                    for (DirectorySnapshot snapshot : snapshots.values()) {
+                        snapshot.dirty = true;
+                    }
+                    break;
+                }
+            }
+            if (ownerDir != null) {
+                invalidate(ownerDir);
+            }
+
+            if (!key.reset()) {
+                // 目录已被删除
+                watchKeys.remove(key);
+                watchedPaths.values().remove(key);
+            }
+        }
+    }
+}
@@ -11,10 +11,13 @@ import com.github.claudecodegui.ClaudeSDKBridge;
 
 import javax.swing.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
@@ -27,6 +30,8 @@ import java.util.function.Consumer;
  * 2. 文件监听：自动检测 .claude/commands/ 目录变化
  * 3. 定期检查：10分钟保底刷新（防止监听失败）
  * 4. 通知机制：缓存更新时通知前端
+ * 5. 会话复用：真实会话 init 时输出的命令列表直接写入缓存（见 {@link #updateFromSession(List)}），
+ *    按 cwd 在进程内共享，单独启动 Node.js 探测进程只作为冷启动兜底
  */
 public class SlashCommandCache {
     private final Project project;
@@ -43,6 +48,9 @@ public class SlashCommandCache {
     private static final long MIN_REFRESH_INTERVAL = 1000; // 最小刷新间隔 1秒（防抖）
     private static final long LOAD_TIMEOUT_SECONDS = 30; // SDK 调用超时时间 30秒
 
+    // 按 cwd 共享的命令列表（来自会话 init 或探测进程），新建缓存时直接复用
+    private static final Map<String, List<JsonObject>> SHARED_COMMANDS = new ConcurrentHashMap<>();
+
     // 监听器
     private MessageBusConnection messageBusConnection;
     private Timer periodicCheckTimer;
@@ -64,8 +72,16 @@ public class SlashCommandCache {
     public void init() {
         System.out.println("[SlashCommandCache] Initializing cache system");
 
-        // 1. 初始加载
-        loadCommands();
+        // 1. 初始加载：已有会话收集到的命令时直接复用，否则启动探测进程（冷启动兜底）
+        List<JsonObject> shared = cwd != null ? SHARED_COMMANDS.get(cwd) : null;
+        if (shared != null && !shared.isEmpty()) {
+            cachedCommands = new ArrayList<>(shared);
+            lastLoadTime = System.currentTimeMillis();
+            System.out.println("[SlashCommandCache] Reusing " + shared.size() + " commands harvested from session, skip probe");
+            notifyListeners();
+        } else {
+            loadCommands();
+        }
 
         // 2. 设置文件监听
         setupFileWatcher();
@@ -102,6 +118,76 @@ public class SlashCommandCache {
         updateListeners.add(listener);
     }
 
+    /**
+     * 强制重新加载（用户手动刷新时调用），忽略会话收集的结果
+     */
+    public void refresh() {
+        loadCommands();
+    }
+
+    /**
+     * 使用真实会话 init 时输出的命令列表更新缓存
+     *
+     * 带 description 的列表（supportedCommands 结果）直接替换缓存；
+     * 只有命令名的列表与现有缓存合并，保留已知命令的 description，命令集合不变时不通知前端
+     */
+    public void updateFromSession(List<JsonObject> commands) {
+        if (commands == null || commands.isEmpty()) {
+            return;
+        }
+
+        List<JsonObject> merged;
+        if (hasDescriptions(commands)) {
+            merged = new ArrayList<>(commands);
+        } else {
+            Map<String, JsonObject> existing = new HashMap<>();
+            for (JsonObject command : cachedCommands) {
+                existing.put(normalizeName(command), command);
+            }
+            if (existing.size() == commands.size() && containsAll(existing, commands)) {
+                lastLoadTime = System.currentTimeMillis();
+                return;
+            }
+            merged = new ArrayList<>(commands.size());
+            for (JsonObject command : commands) {
+                JsonObject known = existing.get(normalizeName(command));
+                merged.add(known != null ? known : command);
+            }
+        }
+
+        cachedCommands = merged;
+        lastLoadTime = System.currentTimeMillis();
+        if (cwd != null) {
+            SHARED_COMMANDS.put(cwd, merged);
+        }
+        System.out.println("[SlashCommandCache] Updated " + merged.size() + " commands from session");
+        notifyListeners();
+    }
+
+    private static boolean hasDescriptions(List<JsonObject> commands) {
+        for (JsonObject command : commands) {
+            if (command.has("description") && !command.get("description").isJsonNull()
+                    && !command.get("description").getAsString().isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean containsAll(Map<String, JsonObject> existing, List<JsonObject> commands) {
+        for (JsonObject command : commands) {
+            if (!existing.containsKey(normalizeName(command))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String normalizeName(JsonObject command) {
+        String name = command.has("name") && !command.get("name").isJsonNull() ? command.get("name").getAsString() : "";
+        return name.startsWith("/") ? name.substring(1) : name;
+    }
+
     /**
      * 加载命令列表
      */
@@ -132,6 +218,9 @@ public class SlashCommandCache {
                     if (commands != null && !commands.isEmpty()) {
                         cachedCommands = new ArrayList<>(commands);
                         lastLoadTime = System.currentTimeMillis();
+                        if (cwd != null) {
+                            SHARED_COMMANDS.put(cwd, cachedCommands);
+                        }
                         System.out.println("[SlashCommandCache] Loaded " + commands.size() + " commands in " + duration + "ms");
 
                         // 通知所有监听器
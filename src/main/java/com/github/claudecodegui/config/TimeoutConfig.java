@@ -1,5 +1,7 @@
 package com.github.claudecodegui.config;
 
+import com.intellij.ide.util.PropertiesComponent;
+
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -28,7 +30,48 @@ public class TimeoutConfig {
     public static final long LONG_OPERATION_TIMEOUT = 600;
     public static final TimeUnit LONG_OPERATION_UNIT = TimeUnit.SECONDS;
 
+    /**
+     * 中断进程各阶段的等待时间（毫秒）
+     * 带内取消 -> SIGTERM -> 强制结束进程树，阶段超时后进入下一阶段
+     */
+    public static final long STOP_CANCEL_TIMEOUT = 1500;
+    public static final long STOP_TERMINATE_TIMEOUT = 2000;
+    public static final long STOP_KILL_TIMEOUT = 2000;
+    public static final TimeUnit STOP_STAGE_UNIT = TimeUnit.MILLISECONDS;
+
+    /**
+     * 输出结束后等待进程退出：10秒
+     * 超时后按中断流程分阶段停止进程
+     */
+    public static final long PROCESS_EXIT_GRACE = 10;
+    public static final TimeUnit PROCESS_EXIT_GRACE_UNIT = TimeUnit.SECONDS;
+
+    /**
+     * 对话轮次看门狗的限制（秒，<= 0 表示不限制），可通过对应的 PropertiesComponent 键覆盖
+     * 首字节：进程启动到收到第一条 SDK 消息，默认 3 分钟
+     * 空闲：两次输出之间的间隔，默认 10 分钟（长时间运行的工具调用期间没有输出）
+     * 总时长：整轮对话，默认 60 分钟
+     */
+    public static final String TURN_FIRST_BYTE_TIMEOUT_KEY = "claude.code.turn.timeout.firstByte";
+    public static final String TURN_IDLE_TIMEOUT_KEY = "claude.code.turn.timeout.idle";
+    public static final String TURN_TOTAL_TIMEOUT_KEY = "claude.code.turn.timeout.total";
+    public static final long DEFAULT_TURN_FIRST_BYTE_TIMEOUT = 180;
+    public static final long DEFAULT_TURN_IDLE_TIMEOUT = 600;
+    public static final long DEFAULT_TURN_TOTAL_TIMEOUT = 3600;
+
     private TimeoutConfig() {
         // 工具类，不允许实例化
     }
+
+    public static long getTurnFirstByteTimeout() {
+        return PropertiesComponent.getInstance().getLong(TURN_FIRST_BYTE_TIMEOUT_KEY, DEFAULT_TURN_FIRST_BYTE_TIMEOUT);
+    }
+
+    public static long getTurnIdleTimeout() {
+        return PropertiesComponent.getInstance().getLong(TURN_IDLE_TIMEOUT_KEY, DEFAULT_TURN_IDLE_TIMEOUT);
+    }
+
+    public static long getTurnTotalTimeout() {
+        return PropertiesComponent.getInstance().getLong(TURN_TOTAL_TIMEOUT_KEY, DEFAULT_TURN_TOTAL_TIMEOUT);
+    }
 }
@@ -0,0 +1,235 @@
+package com.github.claudecodegui.handler;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.github.claudecodegui.util.JsonCodec;
+
+/**
+ * Webview 控制台日志处理器
+ * 接收前端批量转发的 console 日志，按级别过滤并限流后输出到 IDEA 控制台
+ *
+ * 前端侧（见 {@link #buildForwardScript()}）：
+ * 1. 环形缓冲区：最多缓存 BUFFER_CAPACITY 条，满时覆盖最旧的日志
+ * 2. 采样：单秒内日志超过 SAMPLE_BURST 条后，低于 warn 级别的日志只保留 1/SAMPLE_RATE
+ * 3. 定时投递：每 FLUSH_INTERVAL_MS 最多发送 BATCH_SIZE 条（一次 JS→Java 调用），
+ *    日志产生速度超过投递速度时缓冲区写满，覆盖最旧的日志并计入丢弃数量；页面关闭时一次性发送剩余日志
+ *
+ * Java 侧：每秒最多输出 MAX_LINES_PER_SECOND 行，超出部分只累计数量并输出一条汇总
+ */
+public class ConsoleLogHandler extends BaseMessageHandler {
+
+    private static final String[] SUPPORTED_TYPES = {
+        "console_batch"
+    };
+
+    // 日志级别（与前端脚本中的 LEVELS 保持一致）
+    private static final int LEVEL_DEBUG = 10;
+    private static final int LEVEL_LOG = 20;
+    private static final int LEVEL_WARN = 30;
+    private static final int LEVEL_ERROR = 40;
+
+    // 前端转发策略
+    private static final String MIN_FORWARD_LEVEL = "log";
+    private static final int BUFFER_CAPACITY = 200;
+    private static final int BATCH_SIZE = 50;
+    private static final int FLUSH_INTERVAL_MS = 500;
+    private static final int SAMPLE_BURST = 100;
+    private static final int SAMPLE_RATE = 10;
+    private static final int MAX_ARG_LENGTH = 2000;
+
+    // Java 侧限流
+    private static final int MAX_LINES_PER_SECOND = 200;
+
+    private final Gson gson = JsonCodec.gson();
+
+    private long windowStart = 0;
+    private int windowLines = 0;
+    private long suppressedLines = 0;
+
+    public ConsoleLogHandler(HandlerContext context) {
+        super(context);
+    }
+
+    @Override
+    public String[] getSupportedTypes() {
+        return SUPPORTED_TYPES;
+    }
+
+    @Override
+    public boolean handle(String type, String content) {
+        if ("console_batch".equals(type)) {
+            handleConsoleBatch(content);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 处理旧格式的单条日志：{"type":"console.log","args":[...]}
+     * 页面在注入新脚本前可能仍会发送此格式
+     */
+    public void handleLegacyMessage(String message) {
+        try {
+            JsonObject json = gson.fromJson(message, JsonObject.class);
+            String logType = json.get("type").getAsString();
+            JsonArray args = json.getAsJsonArray("args");
+
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < args.size(); i++) {
+                if (i > 0) text.append(" ");
+                text.append(args.get(i).toString());
+            }
+            String level = logType.startsWith("console.") ? logType.substring("console.".length()) : logType;
+            emit(level, text.toString());
+        } catch (Exception e) {
+            System.err.println("[Backend] 解析控制台日志失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 处理批量日志：{"entries":[{"l":"log","t":0,"m":"..."}],"dropped":0,"sampled":0}
+     */
+    private void handleConsoleBatch(String content) {
+        try {
+            JsonObject batch = gson.fromJson(content, JsonObject.class);
+            if (batch == null) {
+                return;
+            }
+
+            if (batch.has("entries") && batch.get("entries").isJsonArray()) {
+                for (JsonElement element : batch.getAsJsonArray("entries")) {
+                    if (!element.isJsonObject()) continue;
+                    JsonObject entry = element.getAsJsonObject();
+                    String level = entry.has("l") ? entry.get("l").getAsString() : "log";
+                    String text = entry.has("m") && !entry.get("m").isJsonNull() ? entry.get("m").getAsString() : "";
+                    emit(level, text);
+                }
+            }
+
+            int dropped = batch.has("dropped") ? batch.get("dropped").getAsInt() : 0;
+            int sampled = batch.has("sampled") ? batch.get("sampled").getAsInt() : 0;
+            if (dropped > 0 || sampled > 0) {
+                System.out.println("[Webview] (前端丢弃 " + dropped + " 条溢出日志，采样跳过 " + sampled + " 条)");
+            }
+        } catch (Exception e) {
+            System.err.println("[Backend] 解析批量控制台日志失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 按级别过滤并限流输出
+     */
+    private synchronized void emit(String level, String text) {
+        int levelValue = levelOf(level);
+        if (levelValue < levelOf(MIN_FORWARD_LEVEL)) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        if (now - windowStart >= 1000) {
+            if (suppressedLines > 0) {
+                System.out.println("[Webview] (限流跳过 " + suppressedLines + " 条日志)");
+                suppressedLines = 0;
+            }
+            windowStart = now;
+            windowLines = 0;
+        }
+
+        // error 级别不受限流影响
+        if (levelValue < LEVEL_ERROR && windowLines >= MAX_LINES_PER_SECOND) {
+            suppressedLines++;
+            return;
+        }
+        windowLines++;
+
+        String line = "[Webview] " + text;
+        if (levelValue >= LEVEL_ERROR) {
+            System.err.println(line);
+        } else {
+            System.out.println(line);
+        }
+    }
+
+    private static int levelOf(String level) {
+        if (level == null) {
+            return LEVEL_LOG;
+        }
+        switch (level) {
+            case "debug":
+                return LEVEL_DEBUG;
+            case "warn":
+                return LEVEL_WARN;
+            case "error":
+                return LEVEL_ERROR;
+            default:
+                return LEVEL_LOG;
+        }
+    }
+
+    /**
+     * 构建注入到页面中的控制台转发脚本
+     * 需要在 window.sendToJava 注入之后执行
+     */
+    public static String buildForwardScript() {
+        return "(function() {" +
+            "  if (window.__consoleForwarderInstalled) return;" +
+            "  window.__consoleForwarderInstalled = true;" +
+            "  var LEVELS = { debug: " + LEVEL_DEBUG + ", log: " + LEVEL_LOG + ", info: " + LEVEL_LOG +
+                ", warn: " + LEVEL_WARN + ", error: " + LEVEL_ERROR + " };" +
+            "  var MIN_LEVEL = LEVELS['" + MIN_FORWARD_LEVEL + "'];" +
+            "  var CAPACITY = " + BUFFER_CAPACITY + ", BATCH_SIZE = " + BATCH_SIZE +
+                ", FLUSH_MS = " + FLUSH_INTERVAL_MS + ", BURST = " + SAMPLE_BURST +
+                ", SAMPLE_RATE = " + SAMPLE_RATE + ", MAX_ARG = " + MAX_ARG_LENGTH + ";" +
+            "  var ring = new Array(CAPACITY), head = 0, size = 0;" +
+            "  var dropped = 0, sampled = 0, windowStart = 0, windowCount = 0, timer = null;" +
+            "  var original = { debug: console.debug, log: console.log, info: console.info, warn: console.warn, error: console.error };" +
+            "  function serialize(a) {" +
+            "    try {" +
+            "      var s;" +
+            "      if (a instanceof Error) { s = a.stack || String(a); }" +
+            "      else if (a !== null && typeof a === 'object') { s = JSON.stringify(a); }" +
+            "      else { s = String(a); }" +
+            "      return s && s.length > MAX_ARG ? s.slice(0, MAX_ARG) + '...' : s;" +
+            "    } catch (e) { return String(a); }" +
+            "  }" +
+            "  function flush(all) {" +
+            "    if (timer) { clearTimeout(timer); timer = null; }" +
+            "    if (size === 0 && dropped === 0 && sampled === 0) return;" +
+            "    var count = all === true ? size : Math.min(size, BATCH_SIZE);" +
+            "    var entries = new Array(count);" +
+            "    for (var i = 0; i < count; i++) { entries[i] = ring[head]; ring[head] = undefined; head = (head + 1) % CAPACITY; }" +
+            "    size -= count;" +
+            "    var payload = { entries: entries, dropped: dropped, sampled: sampled };" +
+            "    dropped = 0; sampled = 0;" +
+            "    try { if (window.sendToJava) window.sendToJava('console_batch:' + JSON.stringify(payload)); }" +
+            "    catch (e) { original.error.call(console, '[ConsoleForwarder] flush failed', e); }" +
+            "    if (size > 0) { timer = setTimeout(flush, FLUSH_MS); }" +
+            "  }" +
+            "  function push(level, args) {" +
+            "    var value = LEVELS[level];" +
+            "    if (value < MIN_LEVEL) return;" +
+            "    var now = Date.now();" +
+            "    if (now - windowStart >= 1000) { windowStart = now; windowCount = 0; }" +
+            "    windowCount++;" +
+            "    if (windowCount > BURST && value < LEVELS.warn && (windowCount % SAMPLE_RATE) !== 0) { sampled++; return; }" +
+            "    var parts = new Array(args.length);" +
+            "    for (var i = 0; i < args.length; i++) { parts[i] = serialize(args[i]); }" +
+            "    if (size === CAPACITY) { head = (head + 1) % CAPACITY; size--; dropped++; }" +
+            "    ring[(head + size) % CAPACITY] = { l: level, t: now, m: parts.join(' ') };" +
+            "    size++;" +
+            "    if (!timer) { timer = setTimeout(flush, FLUSH_MS); }" +
+            "  }" +
+            "  Object.keys(original).forEach(function(level) {" +
+            "    console[level] = function() {" +
+            "      original[level].apply(console, arguments);" +
+            "      push(level, arguments);" +
+            "    };" +
+            "  });" +
+            "  function flushAll() { flush(true); }" +
+            "  window.addEventListener('pagehide', flushAll);" +
+            "  window.__flushConsoleForwarder = flushAll;" +
+            "})();";
+    }
+}
@@ -2,6 +2,7 @@ package com.github.claudecodegui.handler;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import com.github.claudecodegui.util.JsonCodec;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ModalityState;
 import com.intellij.openapi.application.ReadAction;
@@ -69,7 +70,7 @@ public class FileHandler extends BaseMessageHandler {
 
                 if (content != null && !content.isEmpty()) {
                     try {
-                        Gson gson = new Gson();
+                        Gson gson = JsonCodec.gson();
                         JsonObject json = gson.fromJson(content, JsonObject.class);
                         if (json.has("query")) {
                             query = json.get("query").getAsString();
@@ -105,7 +106,7 @@ public class FileHandler extends BaseMessageHandler {
                 // 排序
                 sortFiles(files);
 
-                Gson gson = new Gson();
+                Gson gson = JsonCodec.gson();
                 JsonObject result = new JsonObject();
                 result.add("files", gson.toJsonTree(files));
                 String resultJson = gson.toJson(result);
@@ -130,7 +131,7 @@ public class FileHandler extends BaseMessageHandler {
                 String query = "";
                 if (content != null && !content.isEmpty()) {
                     try {
-                        Gson gson = new Gson();
+                        Gson gson = JsonCodec.gson();
                         JsonObject json = gson.fromJson(content, JsonObject.class);
                         if (json.has("query")) {
                             query = json.get("query").getAsString();
@@ -155,7 +156,7 @@ public class FileHandler extends BaseMessageHandler {
                 context.getClaudeSDKBridge().getSlashCommands(cwd)
                     .thenAccept(sdkCommands -> {
                         try {
-                            Gson gson = new Gson();
+                            Gson gson = JsonCodec.gson();
                             List<JsonObject> commands = new ArrayList<>();
 
                             // 转换 SDK 返回的命令格式
@@ -208,7 +209,7 @@ public class FileHandler extends BaseMessageHandler {
                         System.err.println("[FileHandler] Failed to get commands from SDK: " + ex.getMessage());
                         // 出错时使用本地默认命令
                         try {
-                            Gson gson = new Gson();
+                            Gson gson = JsonCodec.gson();
                             List<JsonObject> commands = new ArrayList<>();
                             addCommand(commands, "/help", "显示帮助信息", finalQuery);
                             addCommand(commands, "/clear", "清空对话历史", finalQuery);
@@ -1,10 +1,16 @@
 package com.github.claudecodegui.handler;
 
 import com.github.claudecodegui.ClaudeHistoryReader;
+import com.github.claudecodegui.cache.HistorySearchIndex;
 import com.github.claudecodegui.util.JsUtils;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.intellij.util.concurrency.AppExecutorUtil;
 
 import javax.swing.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 历史数据处理器
@@ -15,9 +21,19 @@ public class HistoryHandler extends BaseMessageHandler {
     private static final String[] SUPPORTED_TYPES = {
         "load_history_data",
         "load_session",
-        "delete_session"  // 新增:删除会话
+        "delete_session",  // 新增:删除会话
+        "search_history"   // 全文搜索会话内容
     };
 
+    private static final int SEARCH_LIMIT = 50;
+
+    // 搜索在独立的单线程上执行，首次构建索引期间不占用公共线程池
+    private static final ExecutorService SEARCH_EXECUTOR =
+        AppExecutorUtil.createBoundedApplicationPoolExecutor("HistorySearch", 1);
+
+    // 最新一次搜索的序号，用于放弃过期的重新查询
+    private final AtomicLong searchSequence = new AtomicLong();
+
     // 会话加载回调接口
     public interface SessionLoadCallback {
         void onLoadSession(String sessionId, String projectPath);
@@ -53,6 +69,9 @@ public class HistoryHandler extends BaseMessageHandler {
                 System.out.println("[HistoryHandler] 处理: delete_session, sessionId=" + content);
                 handleDeleteSession(content);
                 return true;
+            case "search_history":
+                handleSearchHistory(content);
+                return true;
             default:
                 return false;
         }
@@ -69,6 +88,8 @@ public class HistoryHandler extends BaseMessageHandler {
                 String projectPath = context.getProject().getBasePath();
                 ClaudeHistoryReader historyReader = new ClaudeHistoryReader();
                 String historyJson = historyReader.getProjectDataAsJson(projectPath);
+                // 预热全文索引，用户打开搜索时多半已增量刷新完毕
+                HistorySearchIndex.getInstance().requestRefresh(false);
 
                 String escapedJson = escapeJs(historyJson);
 
@@ -105,6 +126,48 @@ public class HistoryHandler extends BaseMessageHandler {
         });
     }
 
+    /**
+     * 全文搜索当前项目的会话内容
+     * content: {"query": "...", "limit": 50}，结果通过 window.setHistorySearchResults 返回
+     */
+    private void handleSearchHistory(String content) {
+        String query = "";
+        int limit = SEARCH_LIMIT;
+        try {
+            JsonObject request = JsonParser.parseString(content).getAsJsonObject();
+            if (request.has("query") && !request.get("query").isJsonNull()) {
+                query = request.get("query").getAsString();
+            }
+            if (request.has("limit") && !request.get("limit").isJsonNull()) {
+                limit = request.get("limit").getAsInt();
+            }
+        } catch (Exception e) {
+            // 兼容直接传入查询字符串
+            query = content != null ? content : "";
+        }
+        runSearch(query, limit, searchSequence.incrementAndGet());
+    }
+
+    /**
+     * 在搜索线程上执行查询；首次构建尚未完成时先返回已索引部分的结果，构建完成后重新查询一次
+     * （期间有新的查询则放弃）
+     */
+    private void runSearch(String query, int limit, long sequence) {
+        CompletableFuture.runAsync(() -> {
+            if (sequence != searchSequence.get()) {
+                return;
+            }
+            String projectPath = context.getProject().getBasePath();
+            String resultJson = new ClaudeHistoryReader().searchSessionsAsJson(projectPath, query, limit);
+            callJavaScript("window.setHistorySearchResults", escapeJs(resultJson));
+
+            HistorySearchIndex index = HistorySearchIndex.getInstance();
+            if (!index.isBuilt()) {
+                index.whenRefreshed().thenRun(() -> runSearch(query, limit, sequence));
+            }
+        }, SEARCH_EXECUTOR);
+    }
+
     /**
      * 加载历史会话
      */
@@ -189,6 +252,9 @@ public class HistoryHandler extends BaseMessageHandler {
                 System.out.println("[HistoryHandler] 主会话文件: " + (mainDeleted ? "已删除" : "未找到"));
                 System.out.println("[HistoryHandler] Agent 文件: 删除了 " + agentFilesDeleted + " 个");
 
+                // 已删除的会话不应再出现在搜索结果中
+                HistorySearchIndex.getInstance().requestRefresh(true);
+
             } catch (Exception e) {
                 System.err.println("[HistoryHandler] ❌ 删除会话失败: " + e.getMessage());
                 e.printStackTrace();
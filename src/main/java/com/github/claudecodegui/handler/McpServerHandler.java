@@ -2,13 +2,18 @@ package com.github.claudecodegui.handler;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import com.github.claudecodegui.cache.McpHealthCache;
+import com.github.claudecodegui.util.JsonCodec;
 
 import javax.swing.*;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
 
 /**
  * MCP 服务器管理消息处理器
+ * 服务器列表附带 health 字段（见 {@link McpHealthCache}），过期的服务器在后台并发探测，
+ * 完成后通过 window.updateMcpServerStatus 推送最新状态
  */
 public class McpServerHandler extends BaseMessageHandler {
 
@@ -17,7 +22,8 @@ public class McpServerHandler extends BaseMessageHandler {
         "add_mcp_server",
         "update_mcp_server",
         "delete_mcp_server",
-        "validate_mcp_server"
+        "validate_mcp_server",
+        "probe_mcp_servers"
     };
 
     public McpServerHandler(HandlerContext context) {
@@ -47,6 +53,9 @@ public class McpServerHandler extends BaseMessageHandler {
             case "validate_mcp_server":
                 handleValidateMcpServer(content);
                 return true;
+            case "probe_mcp_servers":
+                handleProbeMcpServers(content);
+                return true;
             default:
                 return false;
         }
@@ -58,31 +67,89 @@ public class McpServerHandler extends BaseMessageHandler {
     private void handleGetMcpServers() {
         try {
             List<JsonObject> servers = context.getSettingsService().getMcpServers();
-            Gson gson = new Gson();
+
+            // 先附带缓存中的状态，需要探测的服务器标记为检测中
+            for (JsonObject server : servers) {
+                JsonObject health = McpHealthCache.getCached(server);
+                if (McpHealthCache.needsProbe(server)) {
+                    health = McpHealthCache.checking();
+                }
+                if (health != null) {
+                    server.add("health", health);
+                }
+            }
+
+            Gson gson = JsonCodec.gson();
             String serversJson = gson.toJson(servers);
 
             SwingUtilities.invokeLater(() -> {
                 callJavaScript("window.updateMcpServers", escapeJs(serversJson));
             });
+
+            probeServers(servers, false);
         } catch (Exception e) {
             System.err.println("[McpServerHandler] Failed to get MCP servers: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
+    /**
+     * 探测 MCP 服务器健康状态
+     * content 可选：{"id":"..."} 只探测指定服务器；始终忽略缓存
+     */
+    private void handleProbeMcpServers(String content) {
+        try {
+            List<JsonObject> servers = context.getSettingsService().getMcpServers();
+            String targetId = null;
+            if (content != null && !content.trim().isEmpty()) {
+                JsonObject request = JsonCodec.gson().fromJson(content, JsonObject.class);
+                if (request != null && request.has("id") && !request.get("id").isJsonNull()) {
+                    targetId = request.get("id").getAsString();
+                }
+            }
+            if (targetId != null) {
+                String id = targetId;
+                servers.removeIf(server -> !server.has("id") || !id.equals(server.get("id").getAsString()));
+            }
+            probeServers(servers, true);
+        } catch (Exception e) {
+            System.err.println("[McpServerHandler] Failed to probe MCP servers: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 后台并发探测，完成后推送状态到前端
+     */
+    private void probeServers(List<JsonObject> servers, boolean force) {
+        McpHealthCache.probeAll(servers, force).thenAccept(statuses -> {
+            if (statuses.isEmpty()) {
+                return;
+            }
+            String statusJson = JsonCodec.gson().toJson(statuses);
+            SwingUtilities.invokeLater(() -> {
+                callJavaScript("window.updateMcpServerStatus", escapeJs(statusJson));
+            });
+        });
+    }
+
     /**
      * 添加 MCP 服务器
      */
     private void handleAddMcpServer(String content) {
         try {
-            Gson gson = new Gson();
+            Gson gson = JsonCodec.gson();
             JsonObject server = gson.fromJson(content, JsonObject.class);
 
-            context.getSettingsService().upsertMcpServer(server);
-
-            SwingUtilities.invokeLater(() -> {
-                callJavaScript("window.mcpServerAdded", escapeJs(content));
-                handleGetMcpServers();
+            context.getSettingsService().upsertMcpServer(server).whenComplete((v, ex) -> {
+                if (ex != null) {
+                    reportSyncFailure("添加", ex);
+                    return;
+                }
+                SwingUtilities.invokeLater(() -> {
+                    callJavaScript("window.mcpServerAdded", escapeJs(content));
+                    handleGetMcpServers();
+                });
             });
         } catch (Exception e) {
             System.err.println("[McpServerHandler] Failed to add MCP server: " + e.getMessage());
@@ -98,14 +165,18 @@ public class McpServerHandler extends BaseMessageHandler {
      */
     private void handleUpdateMcpServer(String content) {
         try {
-            Gson gson = new Gson();
+            Gson gson = JsonCodec.gson();
             JsonObject server = gson.fromJson(content, JsonObject.class);
 
-            context.getSettingsService().upsertMcpServer(server);
-
-            SwingUtilities.invokeLater(() -> {
-                callJavaScript("window.mcpServerUpdated", escapeJs(content));
-                handleGetMcpServers();
+            context.getSettingsService().upsertMcpServer(server).whenComplete((v, ex) -> {
+                if (ex != null) {
+                    reportSyncFailure("更新", ex);
+                    return;
+                }
+                SwingUtilities.invokeLater(() -> {
+                    callJavaScript("window.mcpServerUpdated", escapeJs(content));
+                    handleGetMcpServers();
+                });
             });
         } catch (Exception e) {
             System.err.println("[McpServerHandler] Failed to update MCP server: " + e.getMessage());
@@ -121,22 +192,25 @@ public class McpServerHandler extends BaseMessageHandler {
      */
     private void handleDeleteMcpServer(String content) {
         try {
-            Gson gson = new Gson();
+            Gson gson = JsonCodec.gson();
             JsonObject json = gson.fromJson(content, JsonObject.class);
             String serverId = json.get("id").getAsString();
 
-            boolean success = context.getSettingsService().deleteMcpServer(serverId);
-
-            if (success) {
-                SwingUtilities.invokeLater(() -> {
-                    callJavaScript("window.mcpServerDeleted", escapeJs(serverId));
-                    handleGetMcpServers();
-                });
-            } else {
-                SwingUtilities.invokeLater(() -> {
-                    callJavaScript("window.showError", escapeJs("删除 MCP 服务器失败: 服务器不存在"));
-                });
-            }
+            McpHealthCache.invalidate(serverId);
+            context.getSettingsService().deleteMcpServer(serverId).whenComplete((success, ex) -> {
+                if (ex != null) {
+                    reportSyncFailure("删除", ex);
+                } else if (success) {
+                    SwingUtilities.invokeLater(() -> {
+                        callJavaScript("window.mcpServerDeleted", escapeJs(serverId));
+                        handleGetMcpServers();
+                    });
+                } else {
+                    SwingUtilities.invokeLater(() -> {
+                        callJavaScript("window.showError", escapeJs("删除 MCP 服务器失败: 服务器不存在"));
+                    });
+                }
+            });
         } catch (Exception e) {
             System.err.println("[McpServerHandler] Failed to delete MCP server: " + e.getMessage());
             e.printStackTrace();
@@ -146,12 +220,23 @@ public class McpServerHandler extends BaseMessageHandler {
         }
     }
 
+    /**
+     * 变更未能写入 ~/.claude.json（已放回同步队列，下次同步时重试），提示用户
+     */
+    private void reportSyncFailure(String action, Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        System.err.println("[McpServerHandler] Failed to sync MCP change to ~/.claude.json: " + cause.getMessage());
+        SwingUtilities.invokeLater(() -> {
+            callJavaScript("window.showError", escapeJs(action + " MCP 服务器失败: 写入 ~/.claude.json 出错: " + cause.getMessage()));
+        });
+    }
+
     /**
      * 验证 MCP 服务器配置
      */
     private void handleValidateMcpServer(String content) {
         try {
-            Gson gson = new Gson();
+            Gson gson = JsonCodec.gson();
             JsonObject server = gson.fromJson(content, JsonObject.class);
 
             Map<String, Object> validation = context.getSettingsService().validateMcpServer(server);
@@ -2,6 +2,7 @@ package com.github.claudecodegui.handler;
 
 import com.github.claudecodegui.permission.PermissionRequest;
 import com.github.claudecodegui.permission.PermissionService;
+import com.github.claudecodegui.util.JsonCodec;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.intellij.openapi.project.Project;
@@ -70,7 +71,7 @@ public class PermissionHandler extends BaseMessageHandler {
         pendingPermissionRequests.put(channelId, future);
 
         try {
-            Gson gson = new Gson();
+            Gson gson = JsonCodec.gson();
             JsonObject requestData = new JsonObject();
             requestData.addProperty("channelId", channelId);
             requestData.addProperty("toolName", toolName);
@@ -117,7 +118,7 @@ public class PermissionHandler extends BaseMessageHandler {
         System.out.println("[PermissionHandler] 显示权限请求对话框: " + request.getToolName());
 
         try {
-            Gson gson = new Gson();
+            Gson gson = JsonCodec.gson();
             JsonObject requestData = new JsonObject();
             requestData.addProperty("channelId", request.getChannelId());
             requestData.addProperty("toolName", request.getToolName());
@@ -181,7 +182,7 @@ public class PermissionHandler extends BaseMessageHandler {
     private void handlePermissionDecision(String jsonContent) {
         System.out.println("[PERM_DEBUG][HANDLE_DECISION] Received decision from JS: " + jsonContent);
         try {
-            Gson gson = new Gson();
+            Gson gson = JsonCodec.gson();
             JsonObject decision = gson.fromJson(jsonContent, JsonObject.class);
 
             String channelId = decision.get("channelId").getAsString();
@@ -1,10 +1,13 @@
 package com.github.claudecodegui.handler;
 
+import com.github.claudecodegui.CodemossSettingsService;
 import com.github.claudecodegui.model.DeleteResult;
+import com.github.claudecodegui.util.JsonCodec;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.intellij.util.concurrency.AppExecutorUtil;
 
 import javax.swing.*;
 import java.io.File;
@@ -30,6 +33,9 @@ public class ProviderHandler extends BaseMessageHandler {
         "save_imported_providers"
     };
 
+    // 导入进度推送的最小间隔
+    private static final long PROGRESS_INTERVAL_MS = 100;
+
     public ProviderHandler(HandlerContext context) {
         super(context);
     }
@@ -80,7 +86,7 @@ public class ProviderHandler extends BaseMessageHandler {
     private void handleGetProviders() {
         try {
             List<JsonObject> providers = context.getSettingsService().getClaudeProviders();
-            Gson gson = new Gson();
+            Gson gson = JsonCodec.gson();
             String providersJson = gson.toJson(providers);
 
             SwingUtilities.invokeLater(() -> {
@@ -98,7 +104,7 @@ public class ProviderHandler extends BaseMessageHandler {
     private void handleGetCurrentClaudeConfig() {
         try {
             JsonObject config = context.getSettingsService().getCurrentClaudeConfig();
-            Gson gson = new Gson();
+            Gson gson = JsonCodec.gson();
             String configJson = gson.toJson(config);
 
             SwingUtilities.invokeLater(() -> {
@@ -115,7 +121,7 @@ public class ProviderHandler extends BaseMessageHandler {
      */
     private void handleAddProvider(String content) {
         try {
-            Gson gson = new Gson();
+            Gson gson = JsonCodec.gson();
             JsonObject provider = gson.fromJson(content, JsonObject.class);
             context.getSettingsService().addClaudeProvider(provider);
 
@@ -135,7 +141,7 @@ public class ProviderHandler extends BaseMessageHandler {
      */
     private void handleUpdateProvider(String content) {
         try {
-            Gson gson = new Gson();
+            Gson gson = JsonCodec.gson();
             JsonObject data = gson.fromJson(content, JsonObject.class);
             String id = data.get("id").getAsString();
             JsonObject updates = data.getAsJsonObject("updates");
@@ -171,7 +177,7 @@ public class ProviderHandler extends BaseMessageHandler {
         System.out.println("[ProviderHandler] Received content: " + content);
 
         try {
-            Gson gson = new Gson();
+            Gson gson = JsonCodec.gson();
             JsonObject data = gson.fromJson(content, JsonObject.class);
             System.out.println("[ProviderHandler] Parsed JSON data: " + data);
 
@@ -220,7 +226,7 @@ public class ProviderHandler extends BaseMessageHandler {
      */
     private void handleSwitchProvider(String content) {
         try {
-            Gson gson = new Gson();
+            Gson gson = JsonCodec.gson();
             JsonObject data = gson.fromJson(content, JsonObject.class);
             String id = data.get("id").getAsString();
 
@@ -246,7 +252,7 @@ public class ProviderHandler extends BaseMessageHandler {
     private void handleGetActiveProvider() {
         try {
             JsonObject provider = context.getSettingsService().getActiveClaudeProvider();
-            Gson gson = new Gson();
+            Gson gson = JsonCodec.gson();
             String providerJson = gson.toJson(provider);
 
             SwingUtilities.invokeLater(() -> {
@@ -262,7 +268,8 @@ public class ProviderHandler extends BaseMessageHandler {
      * 预览 cc-switch 导入
      */
     private void handlePreviewCcSwitchImport() {
-        com.intellij.openapi.application.ApplicationManager.getApplication().invokeLater(() -> {
+        // 文件检查、数据库解析都在后台线程执行，不占用 EDT
+        CompletableFuture.runAsync(() -> {
             String userHome = System.getProperty("user.home");
             String osName = System.getProperty("os.name").toLowerCase();
 
@@ -286,38 +293,37 @@ public class ProviderHandler extends BaseMessageHandler {
                 return;
             }
 
-            CompletableFuture.runAsync(() -> {
-                try {
-                    System.out.println("[ProviderHandler] 开始读取数据库文件...");
-                    Gson gson = new Gson();
-                    List<JsonObject> providers = context.getSettingsService().parseProvidersFromCcSwitchDb(dbFile.getPath());
-
-                    if (providers.isEmpty()) {
-                        System.out.println("[ProviderHandler] 数据库中没有找到 Claude 供应商配置");
-                        sendInfoToFrontend("无数据", "未在数据库中找到有效的 Claude 供应商配置。");
-                        return;
-                    }
+            try {
+                System.out.println("[ProviderHandler] 开始读取数据库文件...");
+                Gson gson = JsonCodec.gson();
+                List<JsonObject> providers = context.getSettingsService()
+                    .parseProvidersFromCcSwitchDb(dbFile.getPath(), progressReporter("preview"));
+
+                if (providers.isEmpty()) {
+                    System.out.println("[ProviderHandler] 数据库中没有找到 Claude 供应商配置");
+                    sendInfoToFrontend("无数据", "未在数据库中找到有效的 Claude 供应商配置。");
+                    return;
+                }
 
-                    JsonArray providersArray = new JsonArray();
-                    for (JsonObject p : providers) {
-                        providersArray.add(p);
-                    }
+                JsonArray providersArray = new JsonArray();
+                for (JsonObject p : providers) {
+                    providersArray.add(p);
+                }
 
-                    JsonObject response = new JsonObject();
-                    response.add("providers", providersArray);
+                JsonObject response = new JsonObject();
+                response.add("providers", providersArray);
 
-                    String jsonStr = gson.toJson(response);
-                    System.out.println("[ProviderHandler] 成功读取 " + providers.size() + " 个供应商配置，准备发送到前端");
-                    callJavaScript("import_preview_result", jsonStr);
+                String jsonStr = gson.toJson(response);
+                System.out.println("[ProviderHandler] 成功读取 " + providers.size() + " 个供应商配置，准备发送到前端");
+                callJavaScript("import_preview_result", jsonStr);
 
-                } catch (Exception e) {
-                    String errorDetails = "读取数据库失败: " + e.getMessage();
-                    System.err.println("[ProviderHandler] " + errorDetails);
-                    e.printStackTrace();
-                    sendErrorToFrontend("读取数据库失败", errorDetails);
-                }
-            });
-        });
+            } catch (Exception e) {
+                String errorDetails = "读取数据库失败: " + e.getMessage();
+                System.err.println("[ProviderHandler] " + errorDetails);
+                e.printStackTrace();
+                sendErrorToFrontend("读取数据库失败", errorDetails);
+            }
+        }, AppExecutorUtil.getAppExecutorService());
     }
 
     /**
@@ -326,7 +332,7 @@ public class ProviderHandler extends BaseMessageHandler {
     private void handleSaveImportedProviders(String content) {
         CompletableFuture.runAsync(() -> {
             try {
-                Gson gson = new Gson();
+                Gson gson = JsonCodec.gson();
                 JsonObject request = gson.fromJson(content, JsonObject.class);
                 JsonArray providersArray = request.getAsJsonArray("providers");
 
@@ -341,7 +347,7 @@ public class ProviderHandler extends BaseMessageHandler {
                     }
                 }
 
-                int count = context.getSettingsService().saveProviders(providers);
+                int count = context.getSettingsService().saveProviders(providers, progressReporter("save"));
 
                 SwingUtilities.invokeLater(() -> {
                     handleGetProviders(); // 刷新界面
@@ -352,7 +358,24 @@ public class ProviderHandler extends BaseMessageHandler {
                 e.printStackTrace();
                 sendErrorToFrontend("保存失败", e.getMessage());
             }
-        });
+        }, AppExecutorUtil.getAppExecutorService());
+    }
+
+    /**
+     * 创建导入进度回调：推送到前端 import_progress(stage, done, total)
+     * 同一阶段内最多每 PROGRESS_INTERVAL_MS 推送一次，开始和完成时总是推送
+     */
+    private CodemossSettingsService.ImportProgressListener progressReporter(String stage) {
+        long[] lastSent = {0};
+        return (done, total) -> {
+            long now = System.currentTimeMillis();
+            boolean boundary = done == 0 || (total >= 0 && done >= total);
+            if (!boundary && now - lastSent[0] < PROGRESS_INTERVAL_MS) {
+                return;
+            }
+            lastSent[0] = now;
+            callJavaScript("import_progress", escapeJs(stage), String.valueOf(done), String.valueOf(total));
+        };
     }
 
     /**
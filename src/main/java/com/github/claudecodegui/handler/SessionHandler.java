@@ -2,6 +2,7 @@ package com.github.claudecodegui.handler;
 
 import com.github.claudecodegui.ClaudeSession;
 import com.github.claudecodegui.util.JsUtils;
+import com.github.claudecodegui.util.JsonCodec;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
@@ -22,7 +23,9 @@ public class SessionHandler extends BaseMessageHandler {
         "send_message",
         "send_message_with_attachments",
         "interrupt_session",
-        "restart_session"
+        "restart_session",
+        "cancel_queued_prompt",
+        "clear_prompt_queue"
         // 注意：create_new_session 不应该在这里处理，应该由 ClaudeSDKToolWindow.createNewSession() 处理
     };
 
@@ -54,6 +57,14 @@ public class SessionHandler extends BaseMessageHandler {
                 System.out.println("[SessionHandler] 处理: restart_session");
                 handleRestartSession();
                 return true;
+            case "cancel_queued_prompt":
+                System.out.println("[SessionHandler] 处理: cancel_queued_prompt");
+                handleCancelQueuedPrompt(content);
+                return true;
+            case "clear_prompt_queue":
+                System.out.println("[SessionHandler] 处理: clear_prompt_queue");
+                context.getSession().clearQueue();
+                return true;
             default:
                 return false;
         }
@@ -88,7 +99,7 @@ public class SessionHandler extends BaseMessageHandler {
      */
     private void handleSendMessageWithAttachments(String content) {
         try {
-            Gson gson = new Gson();
+            Gson gson = JsonCodec.gson();
             JsonObject payload = gson.fromJson(content, JsonObject.class);
             String text = payload != null && payload.has("text") && !payload.get("text").isJsonNull()
                 ? payload.get("text").getAsString()
@@ -159,6 +170,20 @@ public class SessionHandler extends BaseMessageHandler {
         });
     }
 
+    /**
+     * 取消排队中的提示词（content 为提示词 id）
+     */
+    private void handleCancelQueuedPrompt(String content) {
+        try {
+            long promptId = Long.parseLong(content != null ? content.trim() : "");
+            if (!context.getSession().cancelQueuedPrompt(promptId)) {
+                System.out.println("[SessionHandler] Queued prompt already dispatched or removed: " + promptId);
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("[SessionHandler] 无效的提示词 id: " + content);
+        }
+    }
+
     /**
      * 确定合适的工作目录
      */
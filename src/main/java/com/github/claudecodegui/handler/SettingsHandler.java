@@ -1,6 +1,8 @@
 package com.github.claudecodegui.handler;
 
 import com.github.claudecodegui.ClaudeHistoryReader;
+import com.github.claudecodegui.bridge.EnvironmentConfigurator;
+import com.github.claudecodegui.util.JsonCodec;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.intellij.ide.util.PropertiesComponent;
@@ -76,7 +78,7 @@ public class SettingsHandler extends BaseMessageHandler {
             String mode = content;
             if (content != null && !content.isEmpty()) {
                 try {
-                    Gson gson = new Gson();
+                    Gson gson = JsonCodec.gson();
                     JsonObject json = gson.fromJson(content, JsonObject.class);
                     if (json.has("mode")) {
                         mode = json.get("mode").getAsString();
@@ -103,7 +105,7 @@ public class SettingsHandler extends BaseMessageHandler {
             String model = content;
             if (content != null && !content.isEmpty()) {
                 try {
-                    Gson gson = new Gson();
+                    Gson gson = JsonCodec.gson();
                     JsonObject json = gson.fromJson(content, JsonObject.class);
                     if (json.has("model")) {
                         model = json.get("model").getAsString();
@@ -141,7 +143,7 @@ public class SettingsHandler extends BaseMessageHandler {
             String provider = content;
             if (content != null && !content.isEmpty()) {
                 try {
-                    Gson gson = new Gson();
+                    Gson gson = JsonCodec.gson();
                     JsonObject json = gson.fromJson(content, JsonObject.class);
                     if (json.has("provider")) {
                         provider = json.get("provider").getAsString();
@@ -194,7 +196,7 @@ public class SettingsHandler extends BaseMessageHandler {
         System.out.println("[SettingsHandler] ========== handleSetNodePath START ==========");
         System.out.println("[SettingsHandler] Received content: " + content);
         try {
-            Gson gson = new Gson();
+            Gson gson = JsonCodec.gson();
             JsonObject json = gson.fromJson(content, JsonObject.class);
             String path = null;
             if (json != null && json.has("path") && !json.get("path").isJsonNull()) {
@@ -223,6 +225,8 @@ public class SettingsHandler extends BaseMessageHandler {
                 System.out.println("[SettingsHandler] Updated manual Node.js path from settings: " + path);
                 effectivePath = path;
             }
+            // Node.js 路径变化后重新计算子进程环境模板
+            EnvironmentConfigurator.invalidateTemplates();
 
             final String finalPath = effectivePath != null ? effectivePath : "";
             SwingUtilities.invokeLater(() -> {
@@ -249,7 +253,7 @@ public class SettingsHandler extends BaseMessageHandler {
 
                 if (content != null && !content.isEmpty() && !content.equals("{}")) {
                     try {
-                        Gson gson = new Gson();
+                        Gson gson = JsonCodec.gson();
                         JsonObject json = gson.fromJson(content, JsonObject.class);
                         if (json.has("scope")) {
                             String scope = json.get("scope").getAsString();
@@ -271,10 +275,10 @@ public class SettingsHandler extends BaseMessageHandler {
                 ClaudeHistoryReader reader = new ClaudeHistoryReader();
                 ClaudeHistoryReader.ProjectStatistics stats = reader.getProjectStatistics(projectPath);
 
-                Gson gson = new Gson();
+                Gson gson = JsonCodec.gson();
                 String json = gson.toJson(stats);
 
-                int totalTokens = 0;
+                long totalTokens = 0;
                 if (stats != null && stats.totalUsage != null) {
                     totalTokens = stats.totalUsage.inputTokens + stats.totalUsage.outputTokens;
                 }
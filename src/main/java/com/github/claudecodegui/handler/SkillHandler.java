@@ -1,6 +1,8 @@
 package com.github.claudecodegui.handler;
 
 import com.github.claudecodegui.SkillService;
+import com.github.claudecodegui.util.FileTreeCopier;
+import com.github.claudecodegui.util.JsonCodec;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.intellij.openapi.application.ApplicationManager;
@@ -15,6 +17,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Skill 管理消息处理器
@@ -29,11 +32,15 @@ public class SkillHandler extends BaseMessageHandler {
         "toggle_skill"
     };
 
+    // 导入进度推送的最小间隔
+    private static final long PROGRESS_INTERVAL_MS = 100;
+
     private final JPanel mainPanel;
 
     public SkillHandler(HandlerContext context, JPanel mainPanel) {
         super(context);
         this.mainPanel = mainPanel;
+        SkillService.releaseCachesOnClose(context.getProject());
     }
 
     @Override
@@ -71,7 +78,7 @@ public class SkillHandler extends BaseMessageHandler {
         try {
             String workspaceRoot = context.getProject().getBasePath();
             JsonObject skills = SkillService.getAllSkills(workspaceRoot);
-            Gson gson = new Gson();
+            Gson gson = JsonCodec.gson();
             String skillsJson = gson.toJson(skills);
 
             SwingUtilities.invokeLater(() -> {
@@ -91,7 +98,7 @@ public class SkillHandler extends BaseMessageHandler {
      */
     private void handleImportSkill(String content) {
         try {
-            Gson gson = new Gson();
+            Gson gson = JsonCodec.gson();
             JsonObject json = gson.fromJson(content, JsonObject.class);
             String scope = json.has("scope") ? json.get("scope").getAsString() : "global";
 
@@ -112,8 +119,8 @@ public class SkillHandler extends BaseMessageHandler {
                     CompletableFuture.runAsync(() -> {
                         try {
                             String workspaceRoot = context.getProject().getBasePath();
-                            JsonObject importResult = SkillService.importSkills(paths, scope, workspaceRoot);
-                            String resultJson = new Gson().toJson(importResult);
+                            JsonObject importResult = SkillService.importSkills(paths, scope, workspaceRoot, importProgressReporter());
+                            String resultJson = JsonCodec.gson().toJson(importResult);
 
                             SwingUtilities.invokeLater(() -> {
                                 callJavaScript("window.skillImportResult", escapeJs(resultJson));
@@ -124,10 +131,10 @@ public class SkillHandler extends BaseMessageHandler {
                             errorResult.addProperty("success", false);
                             errorResult.addProperty("error", e.getMessage());
                             SwingUtilities.invokeLater(() -> {
-                                callJavaScript("window.skillImportResult", escapeJs(new Gson().toJson(errorResult)));
+                                callJavaScript("window.skillImportResult", escapeJs(JsonCodec.gson().toJson(errorResult)));
                             });
                         }
-                    });
+                    }, AppExecutorUtil.getAppExecutorService());
                 }
             });
         } catch (Exception e) {
@@ -136,64 +143,89 @@ public class SkillHandler extends BaseMessageHandler {
         }
     }
 
+    /**
+     * 创建导入进度回调：推送到前端 window.skillImportProgress(done, total)
+     * 复制在多个线程中并行进行，最多每 PROGRESS_INTERVAL_MS 推送一次，完成时总是推送
+     */
+    private FileTreeCopier.ProgressListener importProgressReporter() {
+        AtomicLong lastSent = new AtomicLong();
+        return (done, total) -> {
+            long now = System.currentTimeMillis();
+            long last = lastSent.get();
+            boolean boundary = done == 0 || done >= total;
+            if (boundary) {
+                lastSent.set(now);
+            } else if (now - last < PROGRESS_INTERVAL_MS || !lastSent.compareAndSet(last, now)) {
+                return;
+            }
+            callJavaScript("window.skillImportProgress", String.valueOf(done), String.valueOf(total));
+        };
+    }
+
     /**
      * 删除 Skill
      */
     private void handleDeleteSkill(String content) {
-        try {
-            Gson gson = new Gson();
-            JsonObject json = gson.fromJson(content, JsonObject.class);
-            String skillName = json.get("name").getAsString();
-            String scope = json.has("scope") ? json.get("scope").getAsString() : "global";
-            boolean enabled = json.has("enabled") ? json.get("enabled").getAsBoolean() : true;
-            String workspaceRoot = context.getProject().getBasePath();
+        // 移动/删除整个目录树可能较慢，不占用消息处理线程
+        CompletableFuture.runAsync(() -> {
+            try {
+                Gson gson = JsonCodec.gson();
+                JsonObject json = gson.fromJson(content, JsonObject.class);
+                String skillName = json.get("name").getAsString();
+                String scope = json.has("scope") ? json.get("scope").getAsString() : "global";
+                boolean enabled = json.has("enabled") ? json.get("enabled").getAsBoolean() : true;
+                String workspaceRoot = context.getProject().getBasePath();
 
-            JsonObject result = SkillService.deleteSkill(skillName, scope, enabled, workspaceRoot);
-            String resultJson = gson.toJson(result);
+                JsonObject result = SkillService.deleteSkill(skillName, scope, enabled, workspaceRoot);
+                String resultJson = gson.toJson(result);
 
-            SwingUtilities.invokeLater(() -> {
-                callJavaScript("window.skillDeleteResult", escapeJs(resultJson));
-            });
-        } catch (Exception e) {
-            System.err.println("[SkillHandler] Failed to delete skill: " + e.getMessage());
-            e.printStackTrace();
-            JsonObject errorResult = new JsonObject();
-            errorResult.addProperty("success", false);
-            errorResult.addProperty("error", e.getMessage());
-            SwingUtilities.invokeLater(() -> {
-                callJavaScript("window.skillDeleteResult", escapeJs(new Gson().toJson(errorResult)));
-            });
-        }
+                SwingUtilities.invokeLater(() -> {
+                    callJavaScript("window.skillDeleteResult", escapeJs(resultJson));
+                });
+            } catch (Exception e) {
+                System.err.println("[SkillHandler] Failed to delete skill: " + e.getMessage());
+                e.printStackTrace();
+                JsonObject errorResult = new JsonObject();
+                errorResult.addProperty("success", false);
+                errorResult.addProperty("error", e.getMessage());
+                SwingUtilities.invokeLater(() -> {
+                    callJavaScript("window.skillDeleteResult", escapeJs(JsonCodec.gson().toJson(errorResult)));
+                });
+            }
+        }, AppExecutorUtil.getAppExecutorService());
     }
 
     /**
      * 启用/停用 Skill
      */
     private void handleToggleSkill(String content) {
-        try {
-            Gson gson = new Gson();
-            JsonObject json = gson.fromJson(content, JsonObject.class);
-            String skillName = json.get("name").getAsString();
-            String scope = json.has("scope") ? json.get("scope").getAsString() : "global";
-            boolean currentEnabled = json.has("enabled") ? json.get("enabled").getAsBoolean() : true;
-            String workspaceRoot = context.getProject().getBasePath();
+        // 移动/删除整个目录树可能较慢，不占用消息处理线程
+        CompletableFuture.runAsync(() -> {
+            try {
+                Gson gson = JsonCodec.gson();
+                JsonObject json = gson.fromJson(content, JsonObject.class);
+                String skillName = json.get("name").getAsString();
+                String scope = json.has("scope") ? json.get("scope").getAsString() : "global";
+                boolean currentEnabled = json.has("enabled") ? json.get("enabled").getAsBoolean() : true;
+                String workspaceRoot = context.getProject().getBasePath();
 
-            JsonObject result = SkillService.toggleSkill(skillName, scope, currentEnabled, workspaceRoot);
-            String resultJson = gson.toJson(result);
+                JsonObject result = SkillService.toggleSkill(skillName, scope, currentEnabled, workspaceRoot);
+                String resultJson = gson.toJson(result);
 
-            SwingUtilities.invokeLater(() -> {
-                callJavaScript("window.skillToggleResult", escapeJs(resultJson));
-            });
-        } catch (Exception e) {
-            System.err.println("[SkillHandler] Failed to toggle skill: " + e.getMessage());
-            e.printStackTrace();
-            JsonObject errorResult = new JsonObject();
-            errorResult.addProperty("success", false);
-            errorResult.addProperty("error", e.getMessage());
-            SwingUtilities.invokeLater(() -> {
-                callJavaScript("window.skillToggleResult", escapeJs(new Gson().toJson(errorResult)));
-            });
-        }
+                SwingUtilities.invokeLater(() -> {
+                    callJavaScript("window.skillToggleResult", escapeJs(resultJson));
+                });
+            } catch (Exception e) {
+                System.err.println("[SkillHandler] Failed to toggle skill: " + e.getMessage());
+                e.printStackTrace();
+                JsonObject errorResult = new JsonObject();
+                errorResult.addProperty("success", false);
+                errorResult.addProperty("error", e.getMessage());
+                SwingUtilities.invokeLater(() -> {
+                    callJavaScript("window.skillToggleResult", escapeJs(JsonCodec.gson().toJson(errorResult)));
+                });
+            }
+        }, AppExecutorUtil.getAppExecutorService());
     }
 
     /**
@@ -201,7 +233,7 @@ public class SkillHandler extends BaseMessageHandler {
      */
     private void handleOpenSkill(String content) {
         try {
-            Gson gson = new Gson();
+            Gson gson = JsonCodec.gson();
             JsonObject json = gson.fromJson(content, JsonObject.class);
             String skillPath = json.get("path").getAsString();
 
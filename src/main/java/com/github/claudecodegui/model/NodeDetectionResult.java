@@ -23,7 +23,9 @@ public class NodeDetectionResult {
         /** PATH 环境变量 */
         PATH_VARIABLE,
         /** 直接调用 node（回退方案） */
-        FALLBACK
+        FALLBACK,
+        /** 上次检测结果（二进制文件未变化） */
+        CACHED
     }
 
     private final boolean found;
@@ -221,6 +223,8 @@ public class NodeDetectionResult {
                 return "PATH 环境变量";
             case FALLBACK:
                 return "直接调用 node";
+            case CACHED:
+                return "上次检测结果";
             default:
                 return "未知";
         }
@@ -6,6 +6,7 @@ import com.intellij.ui.jcef.JBCefBrowser;
 import com.intellij.ui.jcef.JBCefBrowserBase;
 import com.intellij.ui.jcef.JBCefJSQuery;
 import com.google.gson.Gson;
+import com.github.claudecodegui.util.JsonCodec;
 import org.cef.browser.CefBrowser;
 import org.cef.browser.CefFrame;
 import org.cef.handler.CefLoadHandlerAdapter;
@@ -30,7 +31,7 @@ public class PermissionDialog extends DialogWrapper {
     private final JBCefJSQuery jsQuery;
     private final PermissionRequest request;
     private Consumer<PermissionDecision> decisionCallback;
-    private final Gson gson = new Gson();
+    private final Gson gson = JsonCodec.gson();
 
     public static class PermissionDecision {
         public final String channelId;
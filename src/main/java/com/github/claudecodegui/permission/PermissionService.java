@@ -2,6 +2,7 @@ package com.github.claudecodegui.permission;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import com.github.claudecodegui.util.JsonCodec;
 import com.intellij.openapi.project.Project;
 
 import javax.swing.*;
@@ -20,7 +21,7 @@ public class PermissionService {
     private static PermissionService instance;
     private final Project project;
     private final Path permissionDir;
-    private final Gson gson = new Gson();
+    private final Gson gson = JsonCodec.gson();
     private WatchService watchService;
     private Thread watchThread;
     private boolean running = false;
@@ -122,7 +123,19 @@ public class PermissionService {
         CompletableFuture<Integer> showPermissionDialog(String toolName, JsonObject inputs);
     }
 
+    /**
+     * 按 channel 路由的对话框显示器：多个会话并行时，请求交给发起它的会话窗口
+     */
+    public interface ChannelDialogShower extends PermissionDialogShower {
+        /**
+         * 该显示器所属会话是否使用此 channel
+         */
+        boolean ownsChannel(String channelId);
+    }
+
     private volatile PermissionDialogShower dialogShower;
+    // 按注册先后排列，默认显示器所属窗口关闭时改用最近注册的窗口
+    private final List<ChannelDialogShower> channelDialogShowers = new CopyOnWriteArrayList<>();
 
     private PermissionService(Project project) {
         this.project = project;
@@ -159,6 +172,40 @@ public class PermissionService {
         debugLog("CONFIG", "Dialog shower set: " + (shower != null));
     }
 
+    /**
+     * 注册按 channel 路由的对话框显示器（每个会话窗口一个）
+     */
+    public void addChannelDialogShower(ChannelDialogShower shower) {
+        channelDialogShowers.add(shower);
+    }
+
+    /**
+     * 注销会话窗口的显示器；它同时是默认显示器时改用最近注册的其他窗口（没有时清空），
+     * 避免不带 channel 的请求发给已关闭的页面而一直等到 Node 侧超时
+     */
+    public void removeChannelDialogShower(ChannelDialogShower shower) {
+        channelDialogShowers.remove(shower);
+        if (dialogShower == shower) {
+            int size = channelDialogShowers.size();
+            dialogShower = size > 0 ? channelDialogShowers.get(size - 1) : null;
+            debugLog("CONFIG", "Default dialog shower reassigned: " + (dialogShower != null));
+        }
+    }
+
+    /**
+     * 选择请求对应的对话框显示器：优先交给拥有该 channel 的会话，找不到时使用默认显示器
+     */
+    private PermissionDialogShower resolveDialogShower(String channelId) {
+        if (channelId != null && !channelId.isEmpty()) {
+            for (ChannelDialogShower shower : channelDialogShowers) {
+                if (shower.ownsChannel(channelId)) {
+                    return shower;
+                }
+            }
+        }
+        return dialogShower;
+    }
+
     /**
      * 启动权限服务
      */
@@ -254,6 +301,9 @@ public class PermissionService {
             String requestId = request.get("requestId").getAsString();
             String toolName = request.get("toolName").getAsString();
             JsonObject inputs = request.get("inputs").getAsJsonObject();
+            String channelId = request.has("channelId") && !request.get("channelId").isJsonNull()
+                ? request.get("channelId").getAsString()
+                : null;
 
             debugLog("REQUEST_PARSED", String.format("requestId=%s, toolName=%s", requestId, toolName));
 
@@ -286,7 +336,8 @@ public class PermissionService {
             }
 
             // 如果有前端弹窗显示器，使用异步方式
-            if (dialogShower != null) {
+            PermissionDialogShower shower = resolveDialogShower(channelId);
+            if (shower != null) {
                 debugLog("DIALOG_SHOWER", "Using frontend dialog for: " + toolName);
 
                 // 立即删除请求文件，避免重复处理
@@ -303,7 +354,7 @@ public class PermissionService {
 
                 // 异步调用前端弹窗
                 debugLog("DIALOG_SHOW", "Calling dialogShower.showPermissionDialog for: " + toolName);
-                CompletableFuture<Integer> future = dialogShower.showPermissionDialog(toolName, inputs);
+                CompletableFuture<Integer> future = shower.showPermissionDialog(toolName, inputs);
 
                 // 异步处理结果
                 future.thenAccept(response -> {
@@ -0,0 +1,179 @@
+package com.github.claudecodegui.ui;
+
+import com.github.claudecodegui.util.HtmlLoader;
+import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.ui.jcef.JBCefApp;
+import com.intellij.ui.jcef.JBCefBrowser;
+import com.intellij.ui.jcef.JBCefClient;
+import org.cef.browser.CefBrowser;
+import org.cef.browser.CefFrame;
+import org.cef.handler.CefLoadHandlerAdapter;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 聊天界面浏览器池
+ *
+ * 每个聊天窗口都要创建 JBCefBrowser 并完整启动一次 React 应用，打开项目时要等待这段时间。
+ * 浏览器池在后台保留一个已加载好聊天页面的隐藏浏览器：
+ * 1. 新窗口直接取走预热的浏览器，页面已就绪，只需注入 bridge
+ * 2. 取走后在 EDT 空闲时预热下一个
+ * 3. 池中与窗口持有的池化浏览器总数不超过上限（MAX_BROWSERS_PROPERTY_KEY，默认 DEFAULT_MAX_BROWSERS）：
+ *    达到上限后不再预热，新窗口改为创建不计入池的浏览器，不会因为上限而无法使用
+ * 4. 浏览器只交给一个窗口使用，窗口关闭后直接销毁，不回收复用（页面状态与 JSQuery 都属于原窗口）
+ *
+ * 可通过 ENABLED_PROPERTY_KEY 关闭预热，关闭后每个窗口按原方式创建浏览器。
+ * 所有方法只在 EDT 上调用。
+ */
+public final class BrowserPool {
+
+    public static final String ENABLED_PROPERTY_KEY = "claude.code.browser.pool.enabled";
+    public static final String MAX_BROWSERS_PROPERTY_KEY = "claude.code.browser.pool.max";
+
+    private static final int DEFAULT_MAX_BROWSERS = 4;
+    // 浏览器创建后还要为窗口创建 JSQuery，需要预留 JSQuery 槽位
+    private static final int JS_QUERY_POOL_SIZE = 8;
+
+    private static final BrowserPool INSTANCE = new BrowserPool();
+
+    private final HtmlLoader htmlLoader = new HtmlLoader(BrowserPool.class);
+    // 预热的浏览器（没有时为 null）
+    private Lease spare;
+    // 预热中与窗口持有的池化浏览器总数
+    private int liveCount = 0;
+
+    public static BrowserPool getInstance() {
+        return INSTANCE;
+    }
+
+    private BrowserPool() {
+    }
+
+    /**
+     * 窗口持有的浏览器
+     */
+    public static final class Lease {
+        public final JBCefBrowser browser;
+        private final JBCefClient client;
+        private final AtomicBoolean pageLoaded = new AtomicBoolean(false);
+        // 达到上限后创建的浏览器不计入池
+        private final boolean pooled;
+        private boolean released = false;
+
+        private Lease(JBCefBrowser browser, JBCefClient client, boolean pooled) {
+            this.browser = browser;
+            this.client = client;
+            this.pooled = pooled;
+        }
+
+        /**
+         * 聊天页面主框架是否已加载完成（预热的浏览器通常已完成，窗口需自行执行加载完成后的初始化）
+         */
+        public boolean isPageLoaded() {
+            return pageLoaded.get();
+        }
+    }
+
+    /**
+     * 获取一个已开始加载聊天页面的浏览器：优先取预热的实例，没有时新建
+     * 池化浏览器已达上限时创建不计入池的浏览器
+     */
+    public Lease acquire() {
+        Lease lease = spare;
+        spare = null;
+        if (lease != null) {
+            System.out.println("[BrowserPool] Using pre-warmed browser, pageLoaded=" + lease.isPageLoaded());
+        } else if (liveCount >= getMaxBrowsers()) {
+            System.out.println("[BrowserPool] Browser limit reached (" + getMaxBrowsers() + "), creating unpooled browser");
+            lease = create(false);
+        } else {
+            lease = create(true);
+        }
+        ApplicationManager.getApplication().invokeLater(this::warmUp);
+        return lease;
+    }
+
+    /**
+     * 窗口关闭时归还浏览器（直接销毁）
+     */
+    public void release(Lease lease) {
+        if (lease == null || lease.released) {
+            return;
+        }
+        lease.released = true;
+        if (lease.pooled) {
+            liveCount--;
+        }
+        Disposer.dispose(lease.client);
+        System.out.println("[BrowserPool] Released browser, live=" + liveCount);
+    }
+
+    /**
+     * 预热一个浏览器（已关闭预热时销毁现有的预热实例）
+     */
+    public void warmUp() {
+        if (!isEnabled()) {
+            if (spare != null) {
+                release(spare);
+                spare = null;
+            }
+            return;
+        }
+        if (spare != null || liveCount >= getMaxBrowsers() || !JBCefApp.isSupported()) {
+            return;
+        }
+        try {
+            spare = create(true);
+            System.out.println("[BrowserPool] Pre-warmed browser, live=" + liveCount);
+        } catch (Exception e) {
+            System.err.println("[BrowserPool] Failed to pre-warm browser: " + e.getMessage());
+        }
+    }
+
+    public static boolean isEnabled() {
+        return PropertiesComponent.getInstance().getBoolean(ENABLED_PROPERTY_KEY, true);
+    }
+
+    /**
+     * 池化浏览器数量上限（至少为 1）
+     */
+    public static int getMaxBrowsers() {
+        return Math.max(1, PropertiesComponent.getInstance().getInt(MAX_BROWSERS_PROPERTY_KEY, DEFAULT_MAX_BROWSERS));
+    }
+
+    private Lease create(boolean pooled) {
+        JBCefClient client = JBCefApp.getInstance().createClient();
+        client.setProperty(JBCefClient.Properties.JS_QUERY_POOL_SIZE, JS_QUERY_POOL_SIZE);
+        // 启用开发者工具（右键菜单）
+        client.setProperty("allowRunningInsecureContent", true);
+
+        JBCefBrowser browser = JBCefBrowser.createBuilder()
+            .setClient(client)
+            .setCreateImmediately(true)
+            .build();
+        // 客户端销毁时一并销毁浏览器；IDE 退出时销毁尚未释放的客户端
+        Disposer.register(client, browser);
+        Disposer.register(ApplicationManager.getApplication(), client);
+
+        Lease lease = new Lease(browser, client, pooled);
+        client.addLoadHandler(new CefLoadHandlerAdapter() {
+            @Override
+            public void onLoadEnd(CefBrowser cefBrowser, CefFrame frame, int httpStatusCode) {
+                if (frame.isMain()) {
+                    lease.pageLoaded.set(true);
+                }
+            }
+        }, browser.getCefBrowser());
+
+        // 页面与库文件由资源处理器从进程级缓存提供
+        client.addRequestHandler(new WebviewResourceHandler(htmlLoader), browser.getCefBrowser());
+        browser.loadURL(HtmlLoader.CHAT_URL);
+
+        if (pooled) {
+            liveCount++;
+        }
+        return lease;
+    }
+}
@@ -0,0 +1,145 @@
+package com.github.claudecodegui.ui;
+
+import com.github.claudecodegui.util.HtmlLoader;
+import org.cef.browser.CefBrowser;
+import org.cef.browser.CefFrame;
+import org.cef.callback.CefCallback;
+import org.cef.handler.CefRequestHandlerAdapter;
+import org.cef.handler.CefResourceHandler;
+import org.cef.handler.CefResourceHandlerAdapter;
+import org.cef.handler.CefResourceRequestHandler;
+import org.cef.handler.CefResourceRequestHandlerAdapter;
+import org.cef.misc.BoolRef;
+import org.cef.misc.IntRef;
+import org.cef.misc.StringRef;
+import org.cef.network.CefRequest;
+import org.cef.network.CefResponse;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Webview 资源请求处理器
+ *
+ * 拦截 HtmlLoader.BASE_URL 下的请求，直接从 HtmlLoader 的进程级缓存返回字节：
+ * - 响应带 ETag + Cache-Control: no-cache，重新验证（If-None-Match 命中）时返回 304
+ * - 其他地址的请求不处理，按默认方式加载
+ */
+public class WebviewResourceHandler extends CefRequestHandlerAdapter {
+
+    private final HtmlLoader htmlLoader;
+
+    public WebviewResourceHandler(HtmlLoader htmlLoader) {
+        this.htmlLoader = htmlLoader;
+    }
+
+    @Override
+    public CefResourceRequestHandler getResourceRequestHandler(CefBrowser browser, CefFrame frame, CefRequest request,
+                                                               boolean isNavigation, boolean isDownload,
+                                                               String requestInitiator, BoolRef disableDefaultHandling) {
+        if (request.getURL() == null || !request.getURL().startsWith(HtmlLoader.BASE_URL)) {
+            return null;
+        }
+        return new CefResourceRequestHandlerAdapter() {
+            @Override
+            public CefResourceHandler getResourceHandler(CefBrowser browser, CefFrame frame, CefRequest request) {
+                return new ResourceHandler(htmlLoader);
+            }
+        };
+    }
+
+    /**
+     * 单个请求的响应
+     */
+    private static final class ResourceHandler extends CefResourceHandlerAdapter {
+        private final HtmlLoader htmlLoader;
+        private HtmlLoader.Resource resource;
+        private boolean notModified;
+        private int offset;
+
+        ResourceHandler(HtmlLoader htmlLoader) {
+            this.htmlLoader = htmlLoader;
+        }
+
+        @Override
+        public boolean processRequest(CefRequest request, CefCallback callback) {
+            resource = htmlLoader.getResource(toPath(request.getURL()));
+            if (resource != null) {
+                Map<String, String> headers = new HashMap<>();
+                request.getHeaderMap(headers);
+                notModified = resource.etag.equals(findHeader(headers, "If-None-Match"));
+            }
+            callback.Continue();
+            return true;
+        }
+
+        @Override
+        public void getResponseHeaders(CefResponse response, IntRef responseLength, StringRef redirectUrl) {
+            if (resource == null) {
+                response.setStatus(404);
+                response.setStatusText("Not Found");
+                responseLength.set(0);
+                return;
+            }
+
+            Map<String, String> headers = new HashMap<>();
+            headers.put("ETag", resource.etag);
+            headers.put("Cache-Control", "no-cache");
+            if (resource.charset != null) {
+                headers.put("Content-Type", resource.mimeType + "; charset=" + resource.charset);
+            }
+            response.setHeaderMap(headers);
+            response.setMimeType(resource.mimeType);
+
+            if (notModified) {
+                response.setStatus(304);
+                response.setStatusText("Not Modified");
+                responseLength.set(0);
+                return;
+            }
+            response.setStatus(200);
+            response.setStatusText("OK");
+            responseLength.set(resource.bytes.length);
+        }
+
+        @Override
+        public boolean readResponse(byte[] dataOut, int bytesToRead, IntRef bytesRead, CefCallback callback) {
+            int remaining = resource == null || notModified ? 0 : resource.bytes.length - offset;
+            if (remaining <= 0) {
+                bytesRead.set(0);
+                return false;
+            }
+            int length = Math.min(bytesToRead, remaining);
+            System.arraycopy(resource.bytes, offset, dataOut, 0, length);
+            offset += length;
+            bytesRead.set(length);
+            return true;
+        }
+
+        /**
+         * URL 转为相对 BASE_URL 的路径（去掉查询参数和锚点）
+         */
+        private static String toPath(String url) {
+            String path = url.substring(HtmlLoader.BASE_URL.length());
+            int end = path.length();
+            int query = path.indexOf('?');
+            if (query >= 0) {
+                end = query;
+            }
+            int hash = path.indexOf('#');
+            if (hash >= 0 && hash < end) {
+                end = hash;
+            }
+            return path.substring(0, end);
+        }
+
+        private static String findHeader(Map<String, String> headers, String name) {
+            for (Map.Entry<String, String> e : headers.entrySet()) {
+                if (e.getKey().equalsIgnoreCase(name)) {
+                    return e.getValue();
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.github.claudecodegui.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 原子文件写入工具类
+ *
+ * 配置文件（~/.codemoss/config.json、~/.claude/settings.json、~/.claude.json）会被 Claude CLI 并发读取，
+ * 直接用 FileWriter 覆盖时崩溃或并发写入会留下被截断的 JSON。这里统一采用：
+ * 1. 写入同目录临时文件并 fsync
+ * 2. 原子重命名覆盖目标文件（不支持时退回普通替换）；目标是符号链接时写入链接指向的文件，并保留原文件的权限
+ * 3. 可选的乐观并发检查：写入前比对读取时记录的修改时间，不一致则抛出 {@link StaleFileException}
+ * 4. 滚动备份日志：每次写入前把旧内容复制到备份目录，只保留最近若干份
+ */
+public final class AtomicFileWriter {
+
+    /**
+     * 不做修改时间检查
+     */
+    public static final long NO_CHECK = -1;
+
+    private AtomicFileWriter() {
+        // 工具类，不允许实例化
+    }
+
+    /**
+     * 目标文件在读取之后被其他进程修改
+     */
+    public static class StaleFileException extends IOException {
+        public StaleFileException(Path file, long expected, long actual) {
+            super("文件已被其他进程修改: " + file + " (expected mtime=" + expected + ", actual=" + actual + ")");
+        }
+    }
+
+    /**
+     * 获取文件修改时间，文件不存在时返回 0（与 File.lastModified 一致）
+     */
+    public static long lastModified(Path file) {
+        return file.toFile().lastModified();
+    }
+
+    /**
+     * 原子写入文件（不做并发检查）
+     */
+    public static void write(Path target, String content) throws IOException {
+        write(target, content, NO_CHECK);
+    }
+
+    /**
+     * 原子写入文件
+     *
+     * @param target 目标文件
+     * @param content 文件内容（UTF-8）
+     * @param expectedMtime 读取时记录的修改时间（文件不存在时为 0），传 {@link #NO_CHECK} 跳过检查
+     * @throws StaleFileException 目标文件在读取之后被修改
+     */
+    public static void write(Path target, String content, long expectedMtime) throws IOException {
+        // 重命名会把符号链接替换成普通文件，因此写入链接指向的真实文件
+        boolean exists = Files.exists(target);
+        Path realTarget = exists ? target.toRealPath() : target.toAbsolutePath();
+        Path dir = realTarget.getParent();
+        if (dir != null && !Files.exists(dir)) {
+            Files.createDirectories(dir);
+        }
+
+        Path tempFile = Files.createTempFile(dir, realTarget.getFileName().toString() + ".", ".tmp");
+        try {
+            if (exists) {
+                copyPermissions(realTarget, tempFile);
+            }
+            try (FileChannel channel = FileChannel.open(tempFile,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+
+            // 临时文件写好后再检查，尽量缩短检查与重命名之间的窗口
+            if (expectedMtime != NO_CHECK) {
+                long actual = lastModified(target);
+                if (actual != expectedMtime) {
+                    throw new StaleFileException(target, expectedMtime, actual);
+                }
+            }
+
+            try {
+                Files.move(tempFile, realTarget, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, realTarget, StandardCopyOption.REPLACE_EXISTING);
+            }
+            syncDirectory(dir);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * 将文件当前内容追加到滚动备份日志，只保留最近 maxEntries 份
+     * 备份文件名：{prefix}.{yyyyMMdd-HHmmss-SSS}.bak
+     */
+    public static void backup(Path source, Path journalDir, String prefix, int maxEntries) {
+        try {
+            if (!Files.exists(source)) {
+                return;
+            }
+            Files.createDirectories(journalDir);
+            String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+            Files.copy(source, journalDir.resolve(prefix + "." + stamp + ".bak"), StandardCopyOption.REPLACE_EXISTING);
+            pruneJournal(journalDir, prefix, maxEntries);
+        } catch (Exception e) {
+            System.err.println("[AtomicFileWriter] Failed to backup " + source + ": " + e.getMessage());
+        }
+    }
+
+    private static void pruneJournal(Path journalDir, String prefix, int maxEntries) {
+        List<Path> entries = listJournal(journalDir, prefix);
+        for (int i = 0; i < entries.size() - maxEntries; i++) {
+            PlatformUtils.deleteWithRetry(entries.get(i).toFile(), 2);
+        }
+    }
+
+    /**
+     * 按时间戳升序列出备份（时间戳格式保证字典序即时间序）
+     */
+    private static List<Path> listJournal(Path journalDir, String prefix) {
+        List<Path> entries = new ArrayList<>();
+        if (!Files.isDirectory(journalDir)) {
+            return entries;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(journalDir, prefix + ".*.bak")) {
+            for (Path entry : stream) {
+                entries.add(entry);
+            }
+        } catch (IOException e) {
+            System.err.println("[AtomicFileWriter] Failed to list backups in " + journalDir + ": " + e.getMessage());
+        }
+        entries.sort((a, b) -> a.getFileName().toString().compareTo(b.getFileName().toString()));
+        return entries;
+    }
+
+    /**
+     * 临时文件创建时权限为 0600，重命名前复制原文件的 POSIX 权限（Windows 等不支持时忽略）
+     */
+    private static void copyPermissions(Path source, Path tempFile) {
+        try {
+            Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(source);
+            Files.setPosixFilePermissions(tempFile, permissions);
+        } catch (UnsupportedOperationException | IOException e) {
+            // 文件系统不支持 POSIX 权限，保持默认
+        }
+    }
+
+    /**
+     * fsync 目录，确保重命名本身落盘（Windows 不支持打开目录，直接忽略）
+     */
+    private static void syncDirectory(Path dir) {
+        if (dir == null || PlatformUtils.isWindows()) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // 部分文件系统不支持目录 fsync，忽略
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.claudecodegui.util;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 内容哈希工具类
+ *
+ * 为已完成（不再变化）的消息内容块计算哈希，前端以哈希为 key 缓存渲染结果
+ * （Markdown HTML、编辑 diff），同样的内容在重新推送或重新加载会话后直接复用；
+ * 也用作 Webview 资源的 ETag。
+ * 取 SHA-256 的前 8 字节（16 位十六进制），只用于缓存命中判断。
+ */
+public final class ContentHash {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int HASH_BYTES = 8;
+
+    private ContentHash() {
+        // 工具类，不允许实例化
+    }
+
+    /**
+     * 计算字符串的内容哈希
+     */
+    public static String of(String text) {
+        return of(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 计算字节内容的哈希
+     */
+    public static String of(byte[] bytes) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] hash = digest.digest(bytes);
+        char[] out = new char[HASH_BYTES * 2];
+        for (int i = 0; i < HASH_BYTES; i++) {
+            out[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+            out[i * 2 + 1] = HEX[hash[i] & 0xF];
+        }
+        return new String(out);
+    }
+
+    /**
+     * 按原始消息的内容块计算哈希（与前端取内容的顺序一致：raw.message.content 优先，其次 raw.content）
+     * @return 与内容块一一对应的哈希；内容为字符串时只有一个元素；没有内容时返回 null
+     */
+    public static String[] ofBlocks(JsonObject raw) {
+        if (raw == null) {
+            return null;
+        }
+        JsonElement content = null;
+        if (raw.has("message") && raw.get("message").isJsonObject()) {
+            content = raw.getAsJsonObject("message").get("content");
+        }
+        if (content == null || content.isJsonNull()) {
+            content = raw.get("content");
+        }
+        if (content == null || content.isJsonNull()) {
+            return null;
+        }
+
+        if (content.isJsonArray()) {
+            JsonArray blocks = content.getAsJsonArray();
+            String[] hashes = new String[blocks.size()];
+            for (int i = 0; i < blocks.size(); i++) {
+                hashes[i] = of(blocks.get(i).toString());
+            }
+            return hashes;
+        }
+        if (content.isJsonPrimitive()) {
+            return new String[] { of(content.getAsString()) };
+        }
+        return null;
+    }
+}
@@ -0,0 +1,263 @@
+package com.github.claudecodegui.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileStore;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 文件树复制/移动工具类
+ *
+ * 1. 并行复制：先遍历目录树创建目录，再把文件复制任务分发到调用方提供的线程池
+ * 2. 校验跳过：目标文件已存在且大小、SHA-256 均一致时跳过（重复导入时只复制变化的文件）
+ * 3. 原子替换：文件先写入同目录临时文件再重命名，复制中途失败不会留下半截文件
+ * 4. 移动：源和目标在同一文件存储上时直接 ATOMIC_MOVE，否则退回并行复制 + 删除
+ */
+public final class FileTreeCopier {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private FileTreeCopier() {
+        // 工具类，不允许实例化
+    }
+
+    /**
+     * 进度回调（可能在多个线程中并发调用）
+     */
+    public interface ProgressListener {
+        /**
+         * @param done 已处理的文件数（包含跳过的文件）
+         * @param total 文件总数
+         */
+        void onProgress(int done, int total);
+    }
+
+    /**
+     * 复制统计
+     */
+    public static final class Stats {
+        public final int copied;
+        public final int skipped;
+        public final long bytes;
+
+        Stats(int copied, int skipped, long bytes) {
+            this.copied = copied;
+            this.skipped = skipped;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public String toString() {
+            return "copied=" + copied + ", skipped=" + skipped + ", bytes=" + bytes;
+        }
+    }
+
+    /**
+     * 复制文件或目录树到目标位置（目标已存在时增量更新）
+     * @param source 源文件/目录
+     * @param target 目标文件/目录
+     * @param executor 复制任务线程池
+     * @param listener 进度回调，可为 null
+     */
+    public static Stats copy(Path source, Path target, Executor executor, ProgressListener listener) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (Files.isDirectory(source)) {
+            Files.walkFileTree(source, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    files.add(file);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } else {
+            Path parent = target.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+        }
+
+        int total = files.isEmpty() ? 1 : files.size();
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger copied = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+        AtomicLong bytes = new AtomicLong();
+        if (listener != null) {
+            listener.onProgress(0, total);
+        }
+
+        if (files.isEmpty()) {
+            // 单个文件
+            long size = copyFile(source, target);
+            record(size, copied, skipped, bytes);
+            if (listener != null) {
+                listener.onProgress(done.incrementAndGet(), total);
+            }
+            return new Stats(copied.get(), skipped.get(), bytes.get());
+        }
+
+        List<CompletableFuture<Void>> tasks = new ArrayList<>(files.size());
+        for (Path file : files) {
+            Path targetFile = target.resolve(source.relativize(file).toString());
+            tasks.add(CompletableFuture.runAsync(() -> {
+                try {
+                    record(copyFile(file, targetFile), copied, skipped, bytes);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+                if (listener != null) {
+                    listener.onProgress(done.incrementAndGet(), total);
+                }
+            }, executor));
+        }
+
+        try {
+            CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause != null ? cause.getMessage() : e.getMessage(), cause);
+        }
+        return new Stats(copied.get(), skipped.get(), bytes.get());
+    }
+
+    /**
+     * 移动文件或目录树（目标不能已存在）
+     * 同一文件存储上直接原子重命名，否则并行复制后删除源
+     */
+    public static void move(Path source, Path target, Executor executor, ProgressListener listener) throws IOException {
+        if (isSameFileStore(source, target)) {
+            try {
+                Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+                if (listener != null) {
+                    listener.onProgress(1, 1);
+                }
+                return;
+            } catch (AtomicMoveNotSupportedException e) {
+                // 继续走复制 + 删除
+            }
+        }
+        copy(source, target, executor, listener);
+        deleteTree(source);
+    }
+
+    /**
+     * 递归删除文件或目录
+     */
+    public static void deleteTree(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            Files.deleteIfExists(path);
+            return;
+        }
+        Files.walkFileTree(path, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path d, IOException exc) throws IOException {
+                Files.delete(d);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * 复制单个文件
+     * @return 复制的字节数，内容未变化而跳过时返回 -1
+     */
+    private static long copyFile(Path source, Path target) throws IOException {
+        long size = Files.size(source);
+        if (Files.isRegularFile(target) && Files.size(target) == size
+                && Arrays.equals(sha256(source), sha256(target))) {
+            return -1;
+        }
+
+        Path tempFile = Files.createTempFile(target.toAbsolutePath().getParent(), "." + target.getFileName() + ".", ".tmp");
+        try {
+            Files.copy(source, tempFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+            try {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        return size;
+    }
+
+    private static void record(long size, AtomicInteger copied, AtomicInteger skipped, AtomicLong bytes) {
+        if (size < 0) {
+            skipped.incrementAndGet();
+        } else {
+            copied.incrementAndGet();
+            bytes.addAndGet(size);
+        }
+    }
+
+    /**
+     * 计算文件 SHA-256
+     */
+    public static byte[] sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * 判断源和目标（目标可能不存在，取其最近的已存在父目录）是否在同一文件存储上
+     */
+    private static boolean isSameFileStore(Path source, Path target) {
+        try {
+            Path existing = target.toAbsolutePath();
+            while (existing != null && !Files.exists(existing)) {
+                existing = existing.getParent();
+            }
+            if (existing == null) {
+                return false;
+            }
+            FileStore sourceStore = Files.getFileStore(source);
+            FileStore targetStore = Files.getFileStore(existing);
+            return sourceStore.equals(targetStore);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
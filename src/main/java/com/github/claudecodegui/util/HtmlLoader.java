@@ -2,14 +2,42 @@ package com.github.claudecodegui.util;
 
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * HTML 加载器
  * 处理 HTML 文件加载和本地库注入
+ *
+ * 聊天界面通过 WebviewResourceHandler 以虚拟地址 CHAT_URL 提供，不再用 loadHTML 传输整段 HTML：
+ * 1. 进程级缓存：页面和库文件的字节只从 jar 读取一次，所有项目窗口共享
+ * 2. 旧版页面的库文件改为 script/link 引用（同样由资源处理器提供），不再内联到 HTML、字体不再 Base64
+ * 3. 每个资源带 ETag，浏览器重新验证时返回 304
  */
 public class HtmlLoader {
 
+    /**
+     * 聊天界面的虚拟来源（请求由资源处理器直接响应，不经过网络）
+     */
+    public static final String BASE_URL = "http://claude-code-gui.local/";
+    public static final String CHAT_PAGE = "chat.html";
+    public static final String CHAT_URL = BASE_URL + CHAT_PAGE;
+
+    private static final String INJECTION_POINT = "<!-- LOCAL_LIBRARY_INJECTION_POINT -->";
+
+    // 可通过资源处理器访问的库文件（路径 -> Content-Type）
+    private static final Map<String, String> LIBRARY_TYPES = Map.of(
+        "libs/react.production.min.js", "text/javascript",
+        "libs/react-dom.production.min.js", "text/javascript",
+        "libs/babel.min.js", "text/javascript",
+        "libs/marked.min.js", "text/javascript",
+        "libs/codicon.css", "text/css",
+        "libs/codicon.ttf", "font/ttf"
+    );
+
+    // 进程级资源缓存（key: 相对 BASE_URL 的路径）
+    private static final Map<String, Resource> RESOURCE_CACHE = new ConcurrentHashMap<>();
+
     private final Class<?> resourceClass;
 
     public HtmlLoader(Class<?> resourceClass) {
@@ -17,29 +45,83 @@ public class HtmlLoader {
     }
 
     /**
-     * 加载聊天界面 HTML
-     * @return HTML 内容，如果加载失败返回备用 HTML
+     * 已加载的资源
+     */
+    public static final class Resource {
+        public final byte[] bytes;
+        public final String mimeType;
+        public final String charset;
+        public final String etag;
+
+        Resource(byte[] bytes, String mimeType, String charset) {
+            this.bytes = bytes;
+            this.mimeType = mimeType;
+            this.charset = charset;
+            this.etag = "\"" + ContentHash.of(bytes) + "\"";
+        }
+    }
+
+    /**
+     * 获取虚拟地址下的资源（首次访问时加载并缓存）
+     * @param path 相对 BASE_URL 的路径
+     * @return 资源，不存在时返回 null
+     */
+    public Resource getResource(String path) {
+        if (CHAT_PAGE.equals(path)) {
+            Resource cached = RESOURCE_CACHE.get(path);
+            if (cached != null) {
+                return cached;
+            }
+            String html = buildChatHtml();
+            if (html == null) {
+                // 备用页面不缓存，下次请求时重新读取
+                return new Resource(generateFallbackHtml().getBytes(StandardCharsets.UTF_8), "text/html", "utf-8");
+            }
+            return RESOURCE_CACHE.computeIfAbsent(path, key ->
+                new Resource(html.getBytes(StandardCharsets.UTF_8), "text/html", "utf-8"));
+        }
+        String mimeType = LIBRARY_TYPES.get(path);
+        if (mimeType == null) {
+            return null;
+        }
+        return RESOURCE_CACHE.computeIfAbsent(path, key -> {
+            try {
+                byte[] bytes = loadResourceBytes("/" + key);
+                return new Resource(bytes, mimeType, mimeType.startsWith("text/") ? "utf-8" : null);
+            } catch (Exception e) {
+                System.err.println("✗ 无法加载资源 " + key + ": " + e.getMessage());
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 读取聊天界面 HTML
+     * @return HTML 内容，读取失败时返回 null
      */
-    public String loadChatHtml() {
+    private String buildChatHtml() {
+        long start = System.currentTimeMillis();
         try {
             InputStream is = resourceClass.getResourceAsStream("/html/claude-chat.html");
             if (is != null) {
                 String html = new String(is.readAllBytes(), StandardCharsets.UTF_8);
                 is.close();
 
-                if (html.contains("<!-- LOCAL_LIBRARY_INJECTION_POINT -->")) {
+                if (html.contains(INJECTION_POINT)) {
                     html = injectLocalLibraries(html);
                 } else {
                     System.out.println("✓ 检测到打包好的现代前端资源，无需额外注入库文件");
                 }
 
+                System.out.println("✓ 聊天界面已加载并缓存 (" + html.length() + " 字符, "
+                    + (System.currentTimeMillis() - start) + "ms)");
                 return html;
             }
         } catch (Exception e) {
             System.err.println("无法加载 claude-chat.html: " + e.getMessage());
         }
 
-        return generateFallbackHtml();
+        return null;
     }
 
     /**
@@ -69,63 +151,30 @@ public class HtmlLoader {
     }
 
     /**
-     * 将本地库文件内容注入到 HTML 中
+     * 在 HTML 中引用本地库文件（由资源处理器按需提供，codicon.css 中的字体使用相对路径即可）
      */
     private String injectLocalLibraries(String html) {
-        try {
-            String reactJs = loadResourceAsString("/libs/react.production.min.js");
-            String reactDomJs = loadResourceAsString("/libs/react-dom.production.min.js");
-            String babelJs = loadResourceAsString("/libs/babel.min.js");
-            String markedJs = loadResourceAsString("/libs/marked.min.js");
-            String codiconCss = loadResourceAsString("/libs/codicon.css");
-
-            String fontBase64 = loadResourceAsBase64("/libs/codicon.ttf");
-            codiconCss = codiconCss.replaceAll(
-                "url\\(\"\\./codicon\\.ttf\\?[^\"]*\"\\)",
-                "url(\"data:font/truetype;base64," + fontBase64 + "\")"
-            );
-
-            StringBuilder injectedLibs = new StringBuilder();
-            injectedLibs.append("\n    <!-- React 和相关库 (本地版本) -->\n");
-            injectedLibs.append("    <script>/* React 18 */\n").append(reactJs).append("\n    </script>\n");
-            injectedLibs.append("    <script>/* ReactDOM 18 */\n").append(reactDomJs).append("\n    </script>\n");
-            injectedLibs.append("    <script>/* Babel Standalone */\n").append(babelJs).append("\n    </script>\n");
-            injectedLibs.append("    <script>/* Marked */\n").append(markedJs).append("\n    </script>\n");
-            injectedLibs.append("    <style>/* VS Code Codicons (含内嵌字体) */\n").append(codiconCss).append("\n    </style>");
-
-            html = html.replace("<!-- LOCAL_LIBRARY_INJECTION_POINT -->", injectedLibs.toString());
-
-            System.out.println("✓ 成功注入本地库文件 (React + ReactDOM + Babel + Codicons)");
-        } catch (Exception e) {
-            System.err.println("✗ 注入本地库文件失败: " + e.getMessage());
-        }
-
-        return html;
+        StringBuilder injectedLibs = new StringBuilder();
+        injectedLibs.append("\n    <!-- React 和相关库 (本地版本) -->\n");
+        injectedLibs.append("    <script src=\"libs/react.production.min.js\"></script>\n");
+        injectedLibs.append("    <script src=\"libs/react-dom.production.min.js\"></script>\n");
+        injectedLibs.append("    <script src=\"libs/babel.min.js\"></script>\n");
+        injectedLibs.append("    <script src=\"libs/marked.min.js\"></script>\n");
+        injectedLibs.append("    <link rel=\"stylesheet\" href=\"libs/codicon.css\">");
+
+        System.out.println("✓ 成功注入本地库文件引用 (React + ReactDOM + Babel + Codicons)");
+        return html.replace(INJECTION_POINT, injectedLibs.toString());
     }
 
     /**
-     * 加载资源文件为字符串
+     * 加载资源文件为字节
      */
-    private String loadResourceAsString(String resourcePath) throws Exception {
-        InputStream is = resourceClass.getResourceAsStream(resourcePath);
-        if (is == null) {
-            throw new Exception("无法找到资源: " + resourcePath);
-        }
-        String content = new String(is.readAllBytes(), StandardCharsets.UTF_8);
-        is.close();
-        return content;
-    }
-
-    /**
-     * 加载资源文件为 Base64 字符串
-     */
-    private String loadResourceAsBase64(String resourcePath) throws Exception {
-        InputStream is = resourceClass.getResourceAsStream(resourcePath);
-        if (is == null) {
-            throw new Exception("无法找到资源: " + resourcePath);
+    private byte[] loadResourceBytes(String resourcePath) throws Exception {
+        try (InputStream is = resourceClass.getResourceAsStream(resourcePath)) {
+            if (is == null) {
+                throw new Exception("无法找到资源: " + resourcePath);
+            }
+            return is.readAllBytes();
         }
-        byte[] bytes = is.readAllBytes();
-        is.close();
-        return Base64.getEncoder().encodeToString(bytes);
     }
 }
@@ -0,0 +1,368 @@
+package com.github.claudecodegui.util;
+
+import com.github.claudecodegui.ClaudeHistoryReader;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * 共享的 JSON 编解码器
+ *
+ * Gson 实例是线程安全的，但每次 new Gson() 都会重新构建类型适配器缓存，
+ * 因此全局只保留两个实例（紧凑 / 格式化），所有调用方复用同一份适配器缓存。
+ *
+ * 预注册的适配器：
+ * 1. ConversationMessage：流式读取会话 jsonl，跳过未使用的字段（如 toolUseResult）
+ * 2. SessionInfo：流式写出历史会话列表
+ * 3. ProjectStatistics 及桥接协议使用的 JsonObject/JsonArray：启动时预热反射适配器
+ */
+public final class JsonCodec {
+
+    private static final Gson GSON = configure(new GsonBuilder()).create();
+    private static final Gson PRETTY_GSON = configure(new GsonBuilder()).setPrettyPrinting().create();
+
+    static {
+        // 预热常用类型的适配器，避免首次序列化时在热路径上构建
+        for (Gson gson : new Gson[]{GSON, PRETTY_GSON}) {
+            gson.getAdapter(ClaudeHistoryReader.ProjectStatistics.class);
+            gson.getAdapter(ClaudeHistoryReader.ApiResponse.class);
+            gson.getAdapter(JsonObject.class);
+            gson.getAdapter(JsonArray.class);
+        }
+    }
+
+    private JsonCodec() {
+        // 工具类，不允许实例化
+    }
+
+    private static GsonBuilder configure(GsonBuilder builder) {
+        return builder
+            .registerTypeAdapter(ClaudeHistoryReader.ConversationMessage.class, new ConversationMessageAdapter())
+            .registerTypeAdapter(ClaudeHistoryReader.SessionInfo.class, new SessionInfoAdapter());
+    }
+
+    /**
+     * 获取共享的紧凑格式 Gson 实例
+     */
+    public static Gson gson() {
+        return GSON;
+    }
+
+    /**
+     * 获取共享的格式化输出 Gson 实例（用于写配置文件）
+     */
+    public static Gson prettyGson() {
+        return PRETTY_GSON;
+    }
+
+    /**
+     * 序列化对象为 JSON 字符串
+     */
+    public static String toJson(Object value) {
+        return GSON.toJson(value);
+    }
+
+    /**
+     * 反序列化 JSON 字符串
+     */
+    public static <T> T fromJson(String json, Class<T> type) {
+        return GSON.fromJson(json, type);
+    }
+
+    /**
+     * 解析桥接协议中的 JSON 对象（如 [MESSAGE] 行），不经过反射适配器
+     */
+    public static JsonObject parseObject(String json) {
+        JsonElement element = JsonParser.parseString(json);
+        return element.isJsonObject() ? element.getAsJsonObject() : null;
+    }
+
+    /**
+     * 解析桥接协议中的 JSON 数组（如 [SLASH_COMMANDS] 行）
+     */
+    public static JsonArray parseArray(String json) {
+        JsonElement element = JsonParser.parseString(json);
+        return element.isJsonArray() ? element.getAsJsonArray() : null;
+    }
+
+    /**
+     * ConversationMessage 流式适配器
+     * 只读取 ClaudeHistoryReader 用到的字段，其余字段直接 skipValue，避免构建无用的对象树
+     */
+    private static final class ConversationMessageAdapter extends TypeAdapter<ClaudeHistoryReader.ConversationMessage> {
+
+        @Override
+        public void write(JsonWriter out, ClaudeHistoryReader.ConversationMessage value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("uuid").value(value.uuid);
+            out.name("sessionId").value(value.sessionId);
+            out.name("parentUuid").value(value.parentUuid);
+            out.name("timestamp").value(value.timestamp);
+            out.name("type").value(value.type);
+            if (value.message != null) {
+                ClaudeHistoryReader.ConversationMessage.Message message = value.message;
+                out.name("message").beginObject();
+                out.name("role").value(message.role);
+                out.name("content");
+                GSON.toJson(message.content, Object.class, out);
+                if (message.model != null) {
+                    out.name("model").value(message.model);
+                }
+                if (message.usage != null) {
+                    ClaudeHistoryReader.ConversationMessage.Usage usage = message.usage;
+                    out.name("usage").beginObject();
+                    out.name("input_tokens").value(usage.input_tokens);
+                    out.name("output_tokens").value(usage.output_tokens);
+                    out.name("cache_creation_input_tokens").value(usage.cache_creation_input_tokens);
+                    out.name("cache_read_input_tokens").value(usage.cache_read_input_tokens);
+                    out.endObject();
+                }
+                out.endObject();
+            }
+            if (value.isMeta != null) {
+                out.name("isMeta").value(value.isMeta);
+            }
+            if (value.isSidechain != null) {
+                out.name("isSidechain").value(value.isSidechain);
+            }
+            out.name("cwd").value(value.cwd);
+            if (value.summary != null) {
+                out.name("summary").value(value.summary);
+            }
+            out.endObject();
+        }
+
+        @Override
+        public ClaudeHistoryReader.ConversationMessage read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            ClaudeHistoryReader.ConversationMessage msg = new ClaudeHistoryReader.ConversationMessage();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                switch (name) {
+                    case "uuid":
+                        msg.uuid = nextStringOrNull(in);
+                        break;
+                    case "sessionId":
+                        msg.sessionId = nextStringOrNull(in);
+                        break;
+                    case "parentUuid":
+                        msg.parentUuid = nextStringOrNull(in);
+                        break;
+                    case "timestamp":
+                        msg.timestamp = nextStringOrNull(in);
+                        break;
+                    case "type":
+                        msg.type = nextStringOrNull(in);
+                        break;
+                    case "cwd":
+                        msg.cwd = nextStringOrNull(in);
+                        break;
+                    case "summary":
+                        msg.summary = nextStringOrNull(in);
+                        break;
+                    case "isMeta":
+                        msg.isMeta = nextBooleanOrNull(in);
+                        break;
+                    case "isSidechain":
+                        msg.isSidechain = nextBooleanOrNull(in);
+                        break;
+                    case "message":
+                        msg.message = readMessage(in);
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return msg;
+        }
+
+        private ClaudeHistoryReader.ConversationMessage.Message readMessage(JsonReader in) throws IOException {
+            if (in.peek() != JsonToken.BEGIN_OBJECT) {
+                in.skipValue();
+                return null;
+            }
+            ClaudeHistoryReader.ConversationMessage.Message message = new ClaudeHistoryReader.ConversationMessage.Message();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                switch (name) {
+                    case "role":
+                        message.role = nextStringOrNull(in);
+                        break;
+                    case "model":
+                        message.model = nextStringOrNull(in);
+                        break;
+                    case "content":
+                        // 与反射适配器保持一致：String 或 List<Map<String, Object>>
+                        message.content = GSON.getAdapter(Object.class).read(in);
+                        break;
+                    case "usage":
+                        message.usage = readUsage(in);
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return message;
+        }
+
+        private ClaudeHistoryReader.ConversationMessage.Usage readUsage(JsonReader in) throws IOException {
+            if (in.peek() != JsonToken.BEGIN_OBJECT) {
+                in.skipValue();
+                return null;
+            }
+            ClaudeHistoryReader.ConversationMessage.Usage usage = new ClaudeHistoryReader.ConversationMessage.Usage();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                switch (name) {
+                    case "input_tokens":
+                        usage.input_tokens = nextIntOrZero(in);
+                        break;
+                    case "output_tokens":
+                        usage.output_tokens = nextIntOrZero(in);
+                        break;
+                    case "cache_creation_input_tokens":
+                        usage.cache_creation_input_tokens = nextIntOrZero(in);
+                        break;
+                    case "cache_read_input_tokens":
+                        usage.cache_read_input_tokens = nextIntOrZero(in);
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return usage;
+        }
+    }
+
+    /**
+     * SessionInfo 流式适配器（历史会话列表会频繁推送到前端）
+     */
+    private static final class SessionInfoAdapter extends TypeAdapter<ClaudeHistoryReader.SessionInfo> {
+
+        @Override
+        public void write(JsonWriter out, ClaudeHistoryReader.SessionInfo value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("sessionId").value(value.sessionId);
+            out.name("title").value(value.title);
+            out.name("messageCount").value(value.messageCount);
+            out.name("lastTimestamp").value(value.lastTimestamp);
+            out.name("firstTimestamp").value(value.firstTimestamp);
+            out.endObject();
+        }
+
+        @Override
+        public ClaudeHistoryReader.SessionInfo read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            ClaudeHistoryReader.SessionInfo info = new ClaudeHistoryReader.SessionInfo();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                switch (name) {
+                    case "sessionId":
+                        info.sessionId = nextStringOrNull(in);
+                        break;
+                    case "title":
+                        info.title = nextStringOrNull(in);
+                        break;
+                    case "messageCount":
+                        info.messageCount = nextIntOrZero(in);
+                        break;
+                    case "lastTimestamp":
+                        info.lastTimestamp = nextLongOrZero(in);
+                        break;
+                    case "firstTimestamp":
+                        info.firstTimestamp = nextLongOrZero(in);
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return info;
+        }
+    }
+
+    // ==================== 流式读取辅助方法 ====================
+
+    private static String nextStringOrNull(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER || token == JsonToken.BOOLEAN) {
+            return token == JsonToken.BOOLEAN ? String.valueOf(in.nextBoolean()) : in.nextString();
+        }
+        in.skipValue();
+        return null;
+    }
+
+    private static Boolean nextBooleanOrNull(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.BOOLEAN) {
+            return in.nextBoolean();
+        }
+        if (token == JsonToken.STRING) {
+            return Boolean.parseBoolean(in.nextString());
+        }
+        in.skipValue();
+        return null;
+    }
+
+    private static int nextIntOrZero(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NUMBER || in.peek() == JsonToken.STRING) {
+            try {
+                return (int) Double.parseDouble(in.nextString());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        in.skipValue();
+        return 0;
+    }
+
+    private static long nextLongOrZero(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NUMBER || in.peek() == JsonToken.STRING) {
+            try {
+                return (long) Double.parseDouble(in.nextString());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        in.skipValue();
+        return 0;
+    }
+}
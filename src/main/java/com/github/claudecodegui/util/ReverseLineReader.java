@@ -0,0 +1,132 @@
+package com.github.claudecodegui.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 倒序行读取器：从文件末尾开始逐行向前读取
+ *
+ * 用于只追加写入的 JSONL 文件（如 ~/.claude/history.jsonl），最新的记录在末尾，
+ * 倒序读取即可按新到旧返回，读够需要的条数后直接停止，不必加载整个文件。
+ *
+ * 1. 按窗口映射文件（MappedByteBuffer），每次只映射 WINDOW_SIZE 字节
+ * 2. Windows 上映射会锁住文件直到被 GC 回收（CLI 无法截断/替换），改用 FileChannel 定位读取到复用的堆缓冲区
+ * 3. 只读取打开时的文件长度，读取过程中追加的内容被忽略
+ */
+public final class ReverseLineReader implements Closeable {
+
+    private static final int WINDOW_SIZE = 8 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final boolean mapped;
+    private ByteBuffer window;
+    // 当前窗口在文件中的起始位置与长度
+    private long windowStart = -1;
+    private int windowLength = 0;
+    // 尚未读取部分的结束位置（不含）
+    private long position;
+
+    public ReverseLineReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.mapped = !PlatformUtils.isWindows();
+        this.position = channel.size();
+        if (position == 0) {
+            // 空文件
+            position = -1;
+        } else if (byteAt(position - 1) == '\n') {
+            // 忽略末尾的换行符，避免第一行读到空行
+            position--;
+        }
+    }
+
+    /**
+     * 读取上一行（不含换行符），到达文件开头时返回 null
+     */
+    public String readLine() throws IOException {
+        if (position < 0) {
+            return null;
+        }
+        long end = position;
+        long i = end - 1;
+        while (i >= 0 && byteAt(i) != '\n') {
+            i--;
+        }
+        long start = i + 1;
+        // i 为换行符位置，下一行在它之前结束；i < 0 表示已到文件开头
+        position = i;
+
+        if (end > start && byteAt(end - 1) == '\r') {
+            end--;
+        }
+        return new String(readRange(start, end), StandardCharsets.UTF_8);
+    }
+
+    private byte byteAt(long offset) throws IOException {
+        if (offset < windowStart || offset >= windowStart + windowLength) {
+            loadWindow(offset);
+        }
+        return window.get((int) (offset - windowStart));
+    }
+
+    /**
+     * 加载包含 offset 的窗口（倒序读取，窗口以 offset 结尾）
+     */
+    private void loadWindow(long offset) throws IOException {
+        long start = Math.max(0, offset + 1 - WINDOW_SIZE);
+        int length = (int) (offset + 1 - start);
+        if (mapped) {
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        } else {
+            if (window == null || window.capacity() < length) {
+                window = ByteBuffer.allocate(WINDOW_SIZE);
+            }
+            window.clear();
+            window.limit(length);
+            long read = start;
+            while (window.hasRemaining()) {
+                int n = channel.read(window, read);
+                if (n < 0) {
+                    throw new IOException("文件在读取过程中被截断");
+                }
+                read += n;
+            }
+        }
+        windowStart = start;
+        windowLength = length;
+    }
+
+    private byte[] readRange(long start, long end) throws IOException {
+        int length = (int) (end - start);
+        if (length == 0) {
+            return new byte[0];
+        }
+        // 整行都在当前窗口内（绝大多数情况）
+        if (start >= windowStart && end <= windowStart + windowLength) {
+            byte[] bytes = new byte[length];
+            window.duplicate().position((int) (start - windowStart)).get(bytes);
+            return bytes;
+        }
+        // 跨窗口的长行直接定位读取
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        long offset = start;
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, offset);
+            if (n < 0) {
+                throw new IOException("文件在读取过程中被截断");
+            }
+            offset += n;
+        }
+        return buffer.array();
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
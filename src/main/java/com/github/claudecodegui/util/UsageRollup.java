@@ -0,0 +1,293 @@
+package com.github.claudecodegui.util;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * 按天汇总的列式用量存储
+ *
+ * 以本地时区的 epoch day 为下标，每个模型一组基本类型数组（会话数、费用、各类 token），
+ * 写入为 O(1)（数组按需向两端扩展），按天/按模型/按日期区间查询为 O(天数 × 模型数)，
+ * 日期字符串只在输出时按天生成一次，不再对每条记录格式化。
+ */
+public final class UsageRollup {
+
+    private static final long MILLIS_PER_DAY = 24L * 3600 * 1000;
+    private static final int INITIAL_DAYS = 64;
+
+    // 模型 -> 编号，编号即 series 下标（按首次出现顺序）
+    private final Map<String, Integer> modelIds = new HashMap<>();
+    private final List<String> models = new ArrayList<>();
+    private final List<Series> series = new ArrayList<>();
+
+    // 所有模型共用的日期范围：数组下标 0 对应 baseDay
+    private long baseDay = Long.MIN_VALUE;
+    private int capacity = 0;
+    private long minDay = Long.MAX_VALUE;
+    private long maxDay = Long.MIN_VALUE;
+
+    /**
+     * 单个模型的按天数据
+     */
+    private static final class Series {
+        int[] sessions;
+        double[] cost;
+        long[] input;
+        long[] output;
+        long[] cacheWrite;
+        long[] cacheRead;
+
+        Series(int capacity) {
+            sessions = new int[capacity];
+            cost = new double[capacity];
+            input = new long[capacity];
+            output = new long[capacity];
+            cacheWrite = new long[capacity];
+            cacheRead = new long[capacity];
+        }
+
+        /**
+         * 扩容并整体右移 shift 个位置（日期范围向前扩展时）
+         */
+        void resize(int newCapacity, int shift) {
+            sessions = grow(sessions, newCapacity, shift);
+            cost = grow(cost, newCapacity, shift);
+            input = grow(input, newCapacity, shift);
+            output = grow(output, newCapacity, shift);
+            cacheWrite = grow(cacheWrite, newCapacity, shift);
+            cacheRead = grow(cacheRead, newCapacity, shift);
+        }
+
+        private static int[] grow(int[] a, int n, int shift) {
+            int[] b = new int[n];
+            System.arraycopy(a, 0, b, shift, a.length);
+            return b;
+        }
+
+        private static double[] grow(double[] a, int n, int shift) {
+            double[] b = new double[n];
+            System.arraycopy(a, 0, b, shift, a.length);
+            return b;
+        }
+
+        private static long[] grow(long[] a, int n, int shift) {
+            long[] b = new long[n];
+            System.arraycopy(a, 0, b, shift, a.length);
+            return b;
+        }
+    }
+
+    /**
+     * 某一天（或日期区间）的汇总
+     */
+    public static final class Totals {
+        public int sessions;
+        public double cost;
+        public long inputTokens;
+        public long outputTokens;
+        public long cacheWriteTokens;
+        public long cacheReadTokens;
+
+        public long totalTokens() {
+            return inputTokens + outputTokens + cacheWriteTokens + cacheReadTokens;
+        }
+    }
+
+    /**
+     * 按天遍历的回调
+     */
+    public interface DayVisitor {
+        /**
+         * @param day epoch day
+         * @param totals 当天所有模型的汇总
+         * @param modelsUsed 当天有会话的模型（按首次出现顺序）
+         */
+        void visit(long day, Totals totals, List<String> modelsUsed);
+    }
+
+    /**
+     * 按模型遍历的回调
+     */
+    public interface ModelVisitor {
+        void visit(String model, Totals totals);
+    }
+
+    /**
+     * 毫秒时间戳对应的本地时区 epoch day（与 String.format("%tF") 使用同一时区）
+     */
+    public static long epochDay(long timestamp) {
+        return Math.floorDiv(timestamp + TimeZone.getDefault().getOffset(timestamp), MILLIS_PER_DAY);
+    }
+
+    /**
+     * epoch day 格式化为 yyyy-MM-dd
+     */
+    public static String formatDay(long day) {
+        return LocalDate.ofEpochDay(day).toString();
+    }
+
+    /**
+     * 记录一个会话的用量
+     */
+    public void add(long timestamp, String model, double cost,
+                    long input, long output, long cacheWrite, long cacheRead) {
+        long day = epochDay(timestamp);
+        int index = ensureDay(day);
+        Series s = seriesOf(model);
+        s.sessions[index]++;
+        s.cost[index] += cost;
+        s.input[index] += input;
+        s.output[index] += output;
+        s.cacheWrite[index] += cacheWrite;
+        s.cacheRead[index] += cacheRead;
+    }
+
+    /**
+     * 按日期升序遍历有会话的日期
+     */
+    public void forEachDay(DayVisitor visitor) {
+        for (long day = minDay; day <= maxDay; day++) {
+            int index = (int) (day - baseDay);
+            Totals totals = new Totals();
+            List<String> used = null;
+            for (int m = 0; m < series.size(); m++) {
+                Series s = series.get(m);
+                if (s.sessions[index] == 0) {
+                    continue;
+                }
+                accumulate(s, index, totals);
+                if (used == null) {
+                    used = new ArrayList<>(2);
+                }
+                used.add(models.get(m));
+            }
+            if (used != null) {
+                visitor.visit(day, totals, used);
+            }
+        }
+    }
+
+    /**
+     * 遍历各模型在全部日期上的汇总
+     */
+    public void forEachModel(ModelVisitor visitor) {
+        for (int m = 0; m < series.size(); m++) {
+            Totals totals = new Totals();
+            Series s = series.get(m);
+            for (long day = minDay; day <= maxDay; day++) {
+                accumulate(s, (int) (day - baseDay), totals);
+            }
+            visitor.visit(models.get(m), totals);
+        }
+    }
+
+    /**
+     * 日期区间 [fromDay, toDay] 内所有模型的汇总
+     */
+    public Totals range(long fromDay, long toDay) {
+        Totals totals = new Totals();
+        long from = Math.max(fromDay, minDay);
+        long to = Math.min(toDay, maxDay);
+        for (Series s : series) {
+            for (long day = from; day <= to; day++) {
+                accumulate(s, (int) (day - baseDay), totals);
+            }
+        }
+        return totals;
+    }
+
+    private static void accumulate(Series s, int index, Totals totals) {
+        totals.sessions += s.sessions[index];
+        totals.cost += s.cost[index];
+        totals.inputTokens += s.input[index];
+        totals.outputTokens += s.output[index];
+        totals.cacheWriteTokens += s.cacheWrite[index];
+        totals.cacheReadTokens += s.cacheRead[index];
+    }
+
+    private Series seriesOf(String model) {
+        Integer id = modelIds.get(model);
+        if (id == null) {
+            id = series.size();
+            modelIds.put(model, id);
+            models.add(model);
+            series.add(new Series(capacity));
+        }
+        return series.get(id);
+    }
+
+    /**
+     * 确保 day 在数组范围内，返回其下标
+     */
+    private int ensureDay(long day) {
+        if (capacity == 0) {
+            // 以首个日期为中心分配，前后都留有余量
+            capacity = INITIAL_DAYS;
+            baseDay = day - INITIAL_DAYS / 2;
+        } else if (day < baseDay || day >= baseDay + capacity) {
+            long newBase = Math.min(baseDay, day);
+            long newEnd = Math.max(baseDay + capacity, day + 1);
+            // 按倍数扩容，连续向同一方向扩展时摊还 O(1)
+            int newCapacity = (int) Math.max(newEnd - newBase, capacity * 2L);
+            if (day < baseDay) {
+                newBase = newEnd - newCapacity;
+            }
+            int shift = (int) (baseDay - newBase);
+            for (Series s : series) {
+                s.resize(newCapacity, shift);
+            }
+            baseDay = newBase;
+            capacity = newCapacity;
+        }
+        minDay = Math.min(minDay, day);
+        maxDay = Math.max(maxDay, day);
+        return (int) (day - baseDay);
+    }
+
+    /**
+     * 按天计数（用于消息数等只需要计数的统计）
+     */
+    public static final class DayCounter {
+        private int[] counts = new int[INITIAL_DAYS];
+        private long baseDay = Long.MIN_VALUE;
+        private long minDay = Long.MAX_VALUE;
+        private long maxDay = Long.MIN_VALUE;
+
+        public void increment(long timestamp) {
+            long day = epochDay(timestamp);
+            if (baseDay == Long.MIN_VALUE) {
+                baseDay = day - INITIAL_DAYS / 2;
+            } else if (day < baseDay || day >= baseDay + counts.length) {
+                long newBase = Math.min(baseDay, day);
+                long newEnd = Math.max(baseDay + counts.length, day + 1);
+                int newCapacity = (int) Math.max(newEnd - newBase, counts.length * 2L);
+                if (day < baseDay) {
+                    newBase = newEnd - newCapacity;
+                }
+                int[] grown = new int[newCapacity];
+                System.arraycopy(counts, 0, grown, (int) (baseDay - newBase), counts.length);
+                counts = grown;
+                baseDay = newBase;
+            }
+            counts[(int) (day - baseDay)]++;
+            minDay = Math.min(minDay, day);
+            maxDay = Math.max(maxDay, day);
+        }
+
+        /**
+         * 输出 yyyy-MM-dd -> 计数（只包含计数大于 0 的日期）
+         */
+        public void copyTo(Map<String, Integer> target) {
+            for (long day = minDay; day <= maxDay; day++) {
+                int count = counts[(int) (day - baseDay)];
+                if (count > 0) {
+                    target.merge(formatDay(day), count, Integer::sum);
+                }
+            }
+        }
+    }
+}
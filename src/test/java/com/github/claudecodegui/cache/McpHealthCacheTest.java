@@ -0,0 +1,71 @@
+package com.github.claudecodegui.cache;
+
+import com.github.claudecodegui.util.PlatformUtils;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+
+/**
+ * stdio 探测测试：用一个永不退出、也不响应 initialize 的脚本代替 MCP 服务器
+ */
+public class McpHealthCacheTest {
+
+    private static final long PROBE_TIMEOUT_MS = 1000;
+    private static final long EXIT_WAIT_MS = 5000;
+
+    @Test
+    public void stdioProbeKillsWholeProcessTreeOnTimeout() throws Exception {
+        assumeFalse(PlatformUtils.isWindows());
+
+        Path pidFile = Files.createTempFile("mcp-probe", ".pid");
+        try {
+            // 启动器（sh）再启动一个子进程，模拟 npx / uvx 启动真正的服务器；两者都持有 stdout
+            JsonArray args = new JsonArray();
+            args.add("-c");
+            args.add("sleep 300 & echo $$ $! > \"$0\"; wait");
+            args.add(pidFile.toString());
+            JsonObject spec = new JsonObject();
+            spec.addProperty("type", "stdio");
+            spec.addProperty("command", "sh");
+            spec.add("args", args);
+
+            String error = McpHealthCache.probeStdio(spec, PROBE_TIMEOUT_MS);
+
+            assertNotNull(error);
+            assertTrue(error, error.startsWith("启动超时"));
+
+            String[] pids = new String(Files.readAllBytes(pidFile), StandardCharsets.UTF_8).trim().split("\\s+");
+            assertTrue("stand-in did not record its pids", pids.length == 2);
+            for (String pid : pids) {
+                assertFalse("process " + pid + " still alive after probe timeout", waitForExit(Long.parseLong(pid)));
+            }
+        } finally {
+            Files.deleteIfExists(pidFile);
+        }
+    }
+
+    /**
+     * 等待进程退出
+     * @return 超时后进程仍存活时返回 true
+     */
+    private static boolean waitForExit(long pid) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + EXIT_WAIT_MS;
+        while (System.currentTimeMillis() < deadline) {
+            boolean alive = ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false);
+            if (!alive) {
+                return false;
+            }
+            Thread.sleep(50);
+        }
+        return true;
+    }
+}
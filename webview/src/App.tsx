@@ -1,6 +1,5 @@
-import { useEffect, useMemo, useRef, useState } from 'react';
+import { useCallback, useEffect, useMemo, useRef, useState } from 'react';
 import { useTranslation } from 'react-i18next';
-import MarkdownBlock from './components/MarkdownBlock';
 import HistoryView from './components/history/HistoryView';
 import SettingsView from './components/settings';
 import ConfirmDialog from './components/ConfirmDialog';
@@ -9,29 +8,29 @@ import { ChatInputBox } from './components/ChatInputBox';
 import { CLAUDE_MODELS, CODEX_MODELS } from './components/ChatInputBox/types';
 import type { Attachment, PermissionMode } from './components/ChatInputBox/types';
 import { setupSlashCommandsCallback, resetSlashCommandsState, resetFileReferenceState } from './components/ChatInputBox/providers';
-import {
-  BashToolBlock,
-  EditToolBlock,
-  GenericToolBlock,
-  ReadToolBlock,
-  TaskExecutionBlock,
-  TodoListBlock,
-} from './components/toolBlocks';
 import { BackIcon } from './components/Icons';
 import { Claude, OpenAI } from '@lobehub/icons';
 import { ToastContainer, type ToastMessage } from './components/Toast';
 import WaitingIndicator from './components/WaitingIndicator';
 import { ScrollControl } from './components/ScrollControl';
+import PromptQueue from './components/PromptQueue';
+import MessageItem from './components/transcript/MessageItem';
+import VirtualTranscript from './components/transcript/VirtualTranscript';
 import { APP_VERSION } from './version/version';
 import type {
   ClaudeContentBlock,
   ClaudeMessage,
-  ClaudeRawMessage,
   HistoryData,
-  TodoItem,
-  ToolResultBlock,
+  QueuedPrompt,
 } from './types';
 import type { ProviderConfig } from './types/provider';
+import {
+  buildToolResultIndex,
+  getMessageKey,
+  getMessageText,
+  mergeMessagePatch,
+  shouldShowMessage,
+} from './utils/messageContent';
 
 type ViewMode = 'chat' | 'history' | 'settings';
 
@@ -52,24 +51,37 @@ const sendBridgeMessage = (event: string, payload = '') => {
   }
 };
 
-const formatTime = (timestamp?: string) => {
-  if (!timestamp) return '';
-  try {
-    const date = new Date(timestamp);
-    return date.toLocaleTimeString([], { hour: '2-digit', minute: '2-digit', hour12: false });
-  } catch (e) {
-    return '';
+/**
+ * bridge 已注入时立即执行，否则等待 javaBridgeReady 事件
+ * 预热的页面在 bridge 注入前就已完成启动，启动时的请求都要经由这里发送
+ * @returns 取消等待的函数
+ */
+const whenBridgeReady = (callback: () => void) => {
+  if (window.sendToJava) {
+    callback();
+    return () => {};
   }
+  window.addEventListener('javaBridgeReady', callback, { once: true });
+  return () => window.removeEventListener('javaBridgeReady', callback);
 };
 
+// 前端临时消息的本地编号
+let localMessageSeq = 0;
+const nextLocalId = () => `local-${++localMessageSeq}`;
+
 const App = () => {
   const { t } = useTranslation();
   const [messages, setMessages] = useState<ClaudeMessage[]>([]);
   const [_status, setStatus] = useState(DEFAULT_STATUS); // Internal state, displayed via toast
   const [loading, setLoading] = useState(false);
+  // 当前回复结束后待发送的提示词（由后端推送）
+  const [promptQueue, setPromptQueue] = useState<QueuedPrompt[]>([]);
   const [loadingStartTime, setLoadingStartTime] = useState<number | null>(null);
   const [isThinking, setIsThinking] = useState(false);
-  const [expandedThinking, setExpandedThinking] = useState<Record<string, boolean>>({});
+  // 思考块展开状态：消息 key -> (blockIndex -> 是否展开)
+  const [expandedThinking, setExpandedThinking] = useState<Record<string, Record<number, boolean>>>({});
+  // Java 端推送的窗口在会话中的起始下标（大于 0 表示还有更早的消息）
+  const [windowStart, setWindowStart] = useState(0);
   const [currentView, setCurrentView] = useState<ViewMode>('chat');
   const [historyData, setHistoryData] = useState<HistoryData | null>(null);
   const [showNewSessionConfirm, setShowNewSessionConfirm] = useState(false);
@@ -172,30 +184,15 @@ const App = () => {
         }
       }
 
-      // 初始化时同步模型状态到后端，确保前后端一致
-      let syncRetryCount = 0;
-      const MAX_SYNC_RETRIES = 30; // 最多重试30次（3秒）
-
-      const syncToBackend = () => {
-        if (window.sendToJava) {
-          // 先同步 provider
-          sendBridgeMessage('set_provider', restoredProvider);
-          // 再同步对应的模型
-          const modelToSync = restoredProvider === 'codex' ? restoredCodexModel : restoredClaudeModel;
-          sendBridgeMessage('set_model', modelToSync);
-          console.log('[Frontend] Synced model state to backend:', { provider: restoredProvider, model: modelToSync });
-        } else {
-          // 如果 sendToJava 还没准备好，稍后重试
-          syncRetryCount++;
-          if (syncRetryCount < MAX_SYNC_RETRIES) {
-            setTimeout(syncToBackend, 100);
-          } else {
-            console.warn('[Frontend] Failed to sync model state to backend: bridge not available after', MAX_SYNC_RETRIES, 'retries');
-          }
-        }
-      };
-      // 延迟同步，等待 bridge 准备好
-      setTimeout(syncToBackend, 200);
+      // 初始化时同步模型状态到后端，确保前后端一致（bridge 注入后再同步）
+      whenBridgeReady(() => {
+        // 先同步 provider
+        sendBridgeMessage('set_provider', restoredProvider);
+        // 再同步对应的模型
+        const modelToSync = restoredProvider === 'codex' ? restoredCodexModel : restoredClaudeModel;
+        sendBridgeMessage('set_model', modelToSync);
+        console.log('[Frontend] Synced model state to backend:', { provider: restoredProvider, model: modelToSync });
+      });
     } catch (error) {
       console.error('Failed to load model selection state:', error);
     }
@@ -228,14 +225,38 @@ const App = () => {
   };
 
   useEffect(() => {
-    window.updateMessages = (json) => {
+    // 全量同步窗口（首次推送或会话被替换）
+    window.syncMessages = (json) => {
       try {
-        const parsed = JSON.parse(json) as ClaudeMessage[];
-        setMessages(parsed);
+        const parsed = JSON.parse(json) as { start: number; messages: ClaudeMessage[] };
+        setMessages(parsed.messages);
+        setWindowStart(parsed.start);
       } catch (error) {
         console.error('[Frontend] Failed to parse messages:', error);
       }
     };
+    // 差量更新：新增或变化的消息，未变化的消息保持原对象（MessageItem 不会重新渲染）
+    window.patchMessages = (json) => {
+      try {
+        const parsed = JSON.parse(json) as { messages: ClaudeMessage[] };
+        setMessages((prev) => mergeMessagePatch(prev, parsed.messages));
+      } catch (error) {
+        console.error('[Frontend] Failed to parse message patch:', error);
+      }
+    };
+    // 滚动到顶部后补发的更早消息
+    window.prependMessages = (json) => {
+      try {
+        const parsed = JSON.parse(json) as { start: number; messages: ClaudeMessage[] };
+        setMessages((prev) => {
+          const known = new Set(prev.map((message) => message.id));
+          return [...parsed.messages.filter((message) => !known.has(message.id)), ...prev];
+        });
+        setWindowStart(parsed.start);
+      } catch (error) {
+        console.error('[Frontend] Failed to parse older messages:', error);
+      }
+    };
 
     window.updateStatus = (text) => {
       setStatus(text);
@@ -254,9 +275,21 @@ const App = () => {
     };
     window.showThinkingStatus = (value) => setIsThinking(isTruthy(value));
     window.setHistoryData = (data) => setHistoryData(data);
-    window.clearMessages = () => setMessages([]);
+    window.clearMessages = () => {
+      setMessages([]);
+      setWindowStart(0);
+      setPromptQueue([]);
+    };
+    window.updatePromptQueue = (json) => {
+      try {
+        const queue = JSON.parse(json);
+        setPromptQueue(Array.isArray(queue) ? queue : []);
+      } catch (error) {
+        console.error('[Frontend] Failed to parse prompt queue:', error);
+      }
+    };
     window.addErrorMessage = (message) =>
-      setMessages((prev) => [...prev, { type: 'error', content: message }]);
+      setMessages((prev) => [...prev, { localId: nextLocalId(), type: 'error', content: message }]);
 
     // 注册斜杠命令回调（接收 SDK 返回的命令列表）
     resetSlashCommandsState(); // 重置状态，确保首次加载时能正确触发刷新
@@ -320,7 +353,7 @@ const App = () => {
       }
     };
 
-    sendBridgeMessage('get_active_provider');
+    whenBridgeReady(() => sendBridgeMessage('get_active_provider'));
 
     // 权限弹窗回调
     window.showPermissionDialog = (json) => {
@@ -384,30 +417,7 @@ const App = () => {
       return;
     }
 
-    let historyRetryCount = 0;
-    const MAX_HISTORY_RETRIES = 30; // 最多重试30次（3秒）
-    let currentTimer: number | null = null;
-
-    const requestHistoryData = () => {
-      if (window.sendToJava) {
-        sendBridgeMessage('load_history_data');
-      } else {
-        historyRetryCount++;
-        if (historyRetryCount < MAX_HISTORY_RETRIES) {
-          currentTimer = setTimeout(requestHistoryData, 100);
-        } else {
-          console.warn('[Frontend] Failed to load history data: bridge not available after', MAX_HISTORY_RETRIES, 'retries');
-        }
-      }
-    };
-
-    currentTimer = setTimeout(requestHistoryData, 50);
-
-    return () => {
-      if (currentTimer) {
-        clearTimeout(currentTimer);
-      }
-    };
+    return whenBridgeReady(() => sendBridgeMessage('load_history_data'));
   }, [currentView]);
 
   // 定期获取使用统计
@@ -419,14 +429,18 @@ const App = () => {
       }
     };
 
-    // 初始请求
-    const initTimer = setTimeout(requestUsageStats, 500);
+    // 初始请求（bridge 尚未注入时在注入后立即请求）
+    let cancelWait = () => {};
+    const initTimer = setTimeout(() => {
+      cancelWait = whenBridgeReady(requestUsageStats);
+    }, 500);
 
     // 每 60 秒更新一次
     const intervalId = setInterval(requestUsageStats, 60000);
 
     return () => {
       clearTimeout(initTimer);
+      cancelWait();
       clearInterval(intervalId);
       window.updateActiveProvider = undefined;
     };
@@ -450,17 +464,7 @@ const App = () => {
     return () => container.removeEventListener('scroll', handleScroll);
   }, [currentView]);
 
-  useEffect(() => {
-    // 只有当用户在底部时，才自动滚动到底部
-    if (messagesContainerRef.current && isUserAtBottomRef.current) {
-      // 使用 requestAnimationFrame 确保 DOM 已完全渲染
-      requestAnimationFrame(() => {
-        if (messagesContainerRef.current) {
-          messagesContainerRef.current.scrollTop = messagesContainerRef.current.scrollHeight;
-        }
-      });
-    }
-  }, [messages]);
+  // 消息更新后的自动滚动由 VirtualTranscript 处理（用户在底部时保持贴底）
 
   // 切换回聊天视图时，自动滚动到底部
   useEffect(() => {
@@ -485,9 +489,6 @@ const App = () => {
     if (!text && !hasAttachments) {
       return;
     }
-    if (loading) {
-      return;
-    }
 
     // 构建用户消息的内容块（用于前端显示）
     const userContentBlocks: ClaudeContentBlock[] = [];
@@ -521,6 +522,7 @@ const App = () => {
 
     // 立即在前端添加用户消息（包含图片预览）
     const userMessage: ClaudeMessage = {
+      localId: nextLocalId(),
       type: 'user',
       content: text || (hasAttachments ? '[已上传附件]' : ''),
       timestamp: new Date().toISOString(),
@@ -530,7 +532,10 @@ const App = () => {
         },
       },
     };
-    setMessages((prev) => [...prev, userMessage]);
+    // 回复进行中时后端将提示词排队，轮到它发送时才出现在对话中
+    if (!loading) {
+      setMessages((prev) => [...prev, userMessage]);
+    }
 
     if (hasAttachments) {
       try {
@@ -703,16 +708,17 @@ const App = () => {
     setCurrentPermissionRequest(null);
   };
 
-  const toggleThinking = (messageIndex: number, blockIndex: number) => {
-    const key = `${messageIndex}_${blockIndex}`;
+  const toggleThinking = useCallback((messageKey: string | number, blockIndex: number) => {
+    const key = String(messageKey);
     setExpandedThinking((prev) => ({
       ...prev,
-      [key]: !prev[key],
+      [key]: { ...prev[key], [blockIndex]: !prev[key]?.[blockIndex] },
     }));
-  };
+  }, []);
 
-  const isThinkingExpanded = (messageIndex: number, blockIndex: number) =>
-    Boolean(expandedThinking[`${messageIndex}_${blockIndex}`]);
+  const loadOlderMessages = useCallback(() => {
+    sendBridgeMessage('load_older_messages');
+  }, []);
 
   const loadHistorySession = (sessionId: string) => {
     sendBridgeMessage('load_session', sessionId);
@@ -741,253 +747,26 @@ const App = () => {
     }
   };
 
-  // 文案本地化映射
-  const localizeMessage = (text: string): string => {
-    const messageMap: Record<string, string> = {
-      'Request interrupted by user': '请求已被用户中断',
-    };
-
-    // 检查是否有完全匹配的映射
-    if (messageMap[text]) {
-      return messageMap[text];
-    }
-
-    // 检查是否包含需要映射的关键词
-    for (const [key, value] of Object.entries(messageMap)) {
-      if (text.includes(key)) {
-        return text.replace(key, value);
-      }
-    }
-
-    return text;
-  };
-
-  const getMessageText = (message: ClaudeMessage) => {
-    let text = '';
-
-    if (message.content) {
-      text = message.content;
-    } else {
-      const raw = message.raw;
-      if (!raw) {
-        return '(空消息)';
-      }
-      if (typeof raw === 'string') {
-        text = raw;
-      } else if (typeof raw.content === 'string') {
-        text = raw.content;
-      } else if (Array.isArray(raw.content)) {
-        text = raw.content
-          .filter((block) => block && block.type === 'text')
-          .map((block) => block.text ?? '')
-          .join('\n');
-      } else if (raw.message?.content && Array.isArray(raw.message.content)) {
-        text = raw.message.content
-          .filter((block) => block && block.type === 'text')
-          .map((block) => block.text ?? '')
-          .join('\n');
-      } else {
-        return '(空消息)';
-      }
-    }
-
-    // 应用本地化
-    return localizeMessage(text);
-  };
-
-  const shouldShowMessage = (message: ClaudeMessage) => {
-    // 过滤 isMeta 消息（如 "Caveat: The messages below were generated..."）
-    if (message.raw && typeof message.raw === 'object' && 'isMeta' in message.raw && message.raw.isMeta === true) {
-      return false;
-    }
-
-    // 过滤命令消息（包含 <command-name> 或 <local-command-stdout> 标签）
-    const text = getMessageText(message);
-    if (text && (
-      text.includes('<command-name>') ||
-      text.includes('<local-command-stdout>') ||
-      text.includes('<local-command-stderr>') ||
-      text.includes('<command-message>') ||
-      text.includes('<command-args>')
-    )) {
-      return false;
-    }
-
-    if (message.type === 'assistant') {
-      return true;
-    }
-    if (message.type === 'user' || message.type === 'error') {
-      // 检查是否有有效的文本内容
-      if (text && text.trim() && text !== '(空消息)' && text !== '(无法解析内容)') {
-        return true;
-      }
-      // 检查是否有有效的内容块（如图片等）
-      const rawBlocks = normalizeBlocks(message.raw);
-      if (Array.isArray(rawBlocks) && rawBlocks.length > 0) {
-        // 确保至少有一个非空的内容块
-        return rawBlocks.some(block => {
-          if (block.type === 'text') {
-            return block.text && block.text.trim().length > 0;
-          }
-          // 图片、工具使用等其他类型的块都应该显示
-          return true;
-        });
-      }
-      return false;
-    }
-    return true;
-  };
-
-  const normalizeBlocks = (raw?: ClaudeRawMessage | string) => {
-    if (!raw) {
-      return null;
-    }
-    if (typeof raw === 'string') {
-      return [{ type: 'text' as const, text: raw }];
-    }
-    const buildBlocksFromArray = (entries: unknown[]): ClaudeContentBlock[] => {
-      const blocks: ClaudeContentBlock[] = [];
-      entries.forEach((entry) => {
-        if (!entry || typeof entry !== 'object') {
-          return;
-        }
-        const candidate = entry as Record<string, unknown>;
-        const type = candidate.type as string | undefined;
-        if (type === 'text') {
-          const rawText = typeof candidate.text === 'string' ? candidate.text : '';
-          blocks.push({
-            type: 'text',
-            text: localizeMessage(rawText),
-          });
-        } else if (type === 'thinking') {
-          const thinking =
-            typeof candidate.thinking === 'string'
-              ? (candidate.thinking as string)
-              : typeof candidate.text === 'string'
-                ? (candidate.text as string)
-                : '';
-          blocks.push({
-            type: 'thinking',
-            thinking,
-            text: thinking,
-          });
-        } else if (type === 'tool_use') {
-          blocks.push({
-            type: 'tool_use',
-            id: typeof candidate.id === 'string' ? (candidate.id as string) : undefined,
-            name: typeof candidate.name === 'string' ? (candidate.name as string) : '未知工具',
-            input: (candidate.input as Record<string, unknown>) ?? {},
-          });
-        } else if (type === 'image') {
-          const source = (candidate as any).source;
-          let src: string | undefined;
-          let mediaType: string | undefined;
-
-          // 支持两种格式：
-          // 1. 后端/历史格式: { type: 'image', source: { type: 'base64', media_type: '...', data: '...' } }
-          // 2. 前端直接格式: { type: 'image', src: 'data:...', mediaType: '...' }
-          if (source && typeof source === 'object') {
-            const st = source.type;
-            if (st === 'base64' && typeof source.data === 'string') {
-              const mt = typeof source.media_type === 'string' ? source.media_type : 'image/png';
-              src = `data:${mt};base64,${source.data}`;
-              mediaType = mt;
-            } else if (st === 'url' && typeof source.url === 'string') {
-              src = source.url;
-              mediaType = source.media_type;
-            }
-          } else if (typeof candidate.src === 'string') {
-            // 前端直接添加的格式
-            src = candidate.src as string;
-            mediaType = candidate.mediaType as string | undefined;
-          }
-
-          if (src) {
-            blocks.push({ type: 'image', src, mediaType });
-          }
-        }
-      });
-      return blocks;
-    };
-
-    const pickContent = (content: unknown): ClaudeContentBlock[] | null => {
-      if (!content) {
-        return null;
-      }
-      if (typeof content === 'string') {
-        // 过滤空字符串和命令消息
-        if (!content.trim() ||
-            content.includes('<command-name>') ||
-            content.includes('<local-command-stdout>')) {
-          return null;
-        }
-        return [{ type: 'text' as const, text: localizeMessage(content) }];
-      }
-      if (Array.isArray(content)) {
-        const result = buildBlocksFromArray(content);
-        return result.length ? result : null;
-      }
-      return null;
-    };
-
-    const contentBlocks = pickContent(raw.message?.content ?? raw.content);
-
-    // 如果无法解析内容，尝试从其他字段获取
-    if (!contentBlocks) {
-      // 尝试从 raw.text 或其他可能的字段获取
-      if (typeof raw === 'object') {
-        if ('text' in raw && typeof raw.text === 'string' && raw.text.trim()) {
-          return [{ type: 'text' as const, text: localizeMessage(raw.text) }];
-        }
-        // 如果实在没有内容，返回 null 而不是显示"(无法解析内容)"
-        // 这样 shouldShowMessage 会过滤掉这条消息
-      }
-      return null;
-    }
-
-    return contentBlocks;
-  };
-
-  const getContentBlocks = (message: ClaudeMessage): ClaudeContentBlock[] => {
-    const rawBlocks = normalizeBlocks(message.raw);
-    if (rawBlocks && rawBlocks.length > 0) {
-      return rawBlocks;
-    }
-    if (message.content && message.content.trim()) {
-      return [{ type: 'text', text: localizeMessage(message.content) }];
-    }
-    // 如果没有任何内容，返回空数组而不是显示"(空消息)"
-    // shouldShowMessage 会过滤掉这些消息
-    return [];
-  };
-
-  const findToolResult = (toolUseId?: string, messageIndex?: number): ToolResultBlock | null => {
-    if (!toolUseId || typeof messageIndex !== 'number') {
-      return null;
-    }
-    for (let i = messageIndex + 1; i < messages.length; i += 1) {
-      const candidate = messages[i];
-      if (candidate.type !== 'user') {
-        continue;
-      }
-      const raw = candidate.raw;
-      if (!raw || typeof raw === 'string') {
-        continue;
-      }
-      const content = raw.content;
-      if (!Array.isArray(content)) {
-        continue;
-      }
-      const resultBlock = content.find(
-        (block): block is ToolResultBlock =>
-          Boolean(block) && block.type === 'tool_result' && block.tool_use_id === toolUseId,
+  const visibleMessages = useMemo(() => messages.filter(shouldShowMessage), [messages]);
+  const toolResults = useMemo(() => buildToolResultIndex(messages), [messages]);
+  const lastMessage = messages[messages.length - 1];
+
+  const renderMessage = useCallback(
+    (message: ClaudeMessage) => {
+      const messageKey = getMessageKey(message);
+      return (
+        <MessageItem
+          message={message}
+          messageKey={messageKey}
+          thinkingActive={isThinking && message === lastMessage}
+          expandedThinking={expandedThinking[String(messageKey)]}
+          toolResults={toolResults}
+          onToggleThinking={toggleThinking}
+        />
       );
-      if (resultBlock) {
-        return resultBlock;
-      }
-    }
-    return null;
-  };
+    },
+    [isThinking, lastMessage, expandedThinking, toolResults, toggleThinking],
+  );
 
   const sessionTitle = useMemo(() => {
     if (messages.length === 0) {
@@ -1108,122 +887,15 @@ const App = () => {
             </div>
           )}
 
-          {messages.map((message, messageIndex) => {
-            if (!shouldShowMessage(message)) {
-              return null;
-            }
-
-            return (
-              <div key={messageIndex} className={`message ${message.type}`}>
-                {message.type === 'user' && message.timestamp && (
-                  <div className="message-timestamp-header">
-                    {formatTime(message.timestamp)}
-                  </div>
-                )}
-                {message.type !== 'assistant' && message.type !== 'user' && (
-                  <div className="message-role-label">
-                    {message.type}
-                  </div>
-                )}
-                <div className="message-content">
-                  {message.type === 'error' ? (
-                    <MarkdownBlock content={getMessageText(message)} />
-                  ) : (
-                    getContentBlocks(message).map((block, blockIndex) => (
-                      <div key={`${messageIndex}-${blockIndex}`} className="content-block">
-                        {block.type === 'text' && <MarkdownBlock content={block.text ?? ''} />}
-                        {block.type === 'image' && block.src && (
-                          <div
-                            className={`message-image-block ${message.type === 'user' ? 'user-image' : ''}`}
-                            onClick={() => {
-                              // 打开图片预览
-                              const previewRoot = document.getElementById('image-preview-root');
-                              if (previewRoot && block.src) {
-                                previewRoot.innerHTML = `
-                                  <div class="image-preview-overlay" onclick="this.remove()">
-                                    <img src="${block.src}" alt={t('chat.imagePreview')} class="image-preview-content" onclick="event.stopPropagation()" />
-                                    <div class="image-preview-close" onclick="this.parentElement.remove()">×</div>
-                                  </div>
-                                `;
-                              }
-                            }}
-                            style={{ cursor: 'pointer' }}
-                            title="点击预览大图"
-                          >
-                            <img
-                              src={block.src}
-                              alt="用户上传的图片"
-                              style={{
-                                maxWidth: message.type === 'user' ? '200px' : '100%',
-                                maxHeight: message.type === 'user' ? '150px' : 'auto',
-                                borderRadius: '8px',
-                                objectFit: 'contain',
-                              }}
-                            />
-                          </div>
-                        )}
-
-                        {block.type === 'thinking' && (
-                          <div className="thinking-block">
-                            <div
-                              className="thinking-header"
-                              onClick={() => toggleThinking(messageIndex, blockIndex)}
-                            >
-                              <span className="thinking-title">
-                                {isThinking && messageIndex === messages.length - 1
-                                  ? t('common.thinking')
-                                  : t('common.thinkingProcess')}
-                              </span>
-                              <span className="thinking-icon">
-                                {isThinkingExpanded(messageIndex, blockIndex) ? '▼' : '▶'}
-                              </span>
-                            </div>
-                            {isThinkingExpanded(messageIndex, blockIndex) && (
-                              <div className="thinking-content">
-                                {block.thinking ?? block.text ?? '(无思考内容)'}
-                              </div>
-                            )}
-                          </div>
-                        )}
-
-                        {block.type === 'tool_use' && (
-                          <>
-                            {block.name?.toLowerCase() === 'todowrite' &&
-                            Array.isArray((block.input as { todos?: TodoItem[] })?.todos) ? (
-                              <TodoListBlock
-                                todos={(block.input as { todos?: TodoItem[] })?.todos ?? []}
-                              />
-                            ) : block.name?.toLowerCase() === 'task' ? (
-                              <TaskExecutionBlock input={block.input} />
-                            ) : block.name &&
-                              ['read', 'read_file'].includes(block.name.toLowerCase()) ? (
-                              <ReadToolBlock input={block.input} />
-                            ) : block.name &&
-                              ['edit', 'edit_file', 'replace_string', 'write_to_file'].includes(
-                                block.name.toLowerCase(),
-                              ) ? (
-                              <EditToolBlock name={block.name} input={block.input} />
-                            ) : block.name &&
-                              ['bash', 'run_terminal_cmd', 'execute_command'].includes(
-                                block.name.toLowerCase(),
-                              ) ? (
-                              <BashToolBlock
-                                name={block.name}
-                                input={block.input}
-                                result={findToolResult(block.id, messageIndex)}
-                              />
-                            ) : (
-                              <GenericToolBlock name={block.name} input={block.input} />
-                            )}
-                          </>
-                        )}
-                      </div>
-                    ))
-                  )}
-                </div>
-              </div>
-            );
-          })}
+          <VirtualTranscript
+            items={visibleMessages}
+            getItemKey={getMessageKey}
+            renderItem={renderMessage}
+            scrollRef={messagesContainerRef}
+            stickToBottomRef={isUserAtBottomRef}
+            hasOlder={windowStart > 0}
+            onLoadOlder={loadOlderMessages}
+          />
 
           {/* Thinking indicator */}
           {/* {isThinking && !hasThinkingBlockInLastMessage && (
@@ -1252,6 +924,11 @@ const App = () => {
 
       {currentView === 'chat' && (
         <div className="input-area" ref={inputAreaRef}>
+          <PromptQueue
+            prompts={promptQueue}
+            onCancel={(id) => sendBridgeMessage('cancel_queued_prompt', String(id))}
+            onClear={() => sendBridgeMessage('clear_prompt_queue')}
+          />
           <ChatInputBox
             isLoading={loading}
             selectedModel={selectedModel}
@@ -118,15 +118,27 @@ export const ButtonArea = ({
       <div className="button-area-right">
         <div className="button-divider" />
 
-        {/* 发送/停止按钮 */}
+        {/* 发送/停止按钮（回复进行中有输入时可加入队列） */}
         {isLoading ? (
-          <button
-            className="submit-button stop-button"
-            onClick={handleStopClick}
-            title={t('chat.stopGeneration')}
-          >
-            <span className="codicon codicon-debug-stop" />
-          </button>
+          <>
+            {hasInputContent && (
+              <button
+                className="submit-button"
+                onClick={handleSubmitClick}
+                disabled={disabled}
+                title={t('chat.queueMessage')}
+              >
+                <span className="codicon codicon-list-ordered" />
+              </button>
+            )}
+            <button
+              className="submit-button stop-button"
+              onClick={handleStopClick}
+              title={t('chat.stopGeneration')}
+            >
+              <span className="codicon codicon-debug-stop" />
+            </button>
+          </>
         ) : (
           <button
             className="submit-button"
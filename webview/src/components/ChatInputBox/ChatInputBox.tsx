@@ -560,9 +560,6 @@ export const ChatInputBox = ({
     if (!content && attachments.length === 0) {
       return;
     }
-    if (isLoading) {
-      return;
-    }
 
     // 关闭补全菜单
     fileCompletion.close();
@@ -580,7 +577,6 @@ export const ChatInputBox = ({
   }, [
     getTextContent,
     attachments,
-    isLoading,
     onSubmit,
     clearInput,
     externalAttachments,
@@ -1487,8 +1483,8 @@ export const ChatInputBox = ({
 	              if (fileCompletion.isOpen || commandCompletion.isOpen) {
 	                return;
 	              }
-	              // 只有在非加载状态且非输入法组合状态时才允许提交
-              if (!isLoading && !isComposing) {
+	              // 输入法组合状态时不提交（回复进行中提交的内容由后端排队）
+              if (!isComposing) {
                 handleSubmit();
               }
             }
@@ -1,30 +1,49 @@
 import { marked } from 'marked';
 import { useMemo, useState } from 'react';
 import { openBrowser, openFile } from '../utils/bridge';
+import { RenderCache } from '../utils/renderCache';
 
 marked.setOptions({
   breaks: false,
   gfm: true,
 });
 
+// 已完成消息的 HTML 缓存（按字符数计，约 4M 字符）
+const htmlCache = new RenderCache<string>(4 * 1024 * 1024, (html) => html.length);
+
 interface MarkdownBlockProps {
   content?: string;
+  /** 内容哈希（已完成的消息才有），用于跨渲染/跨会话复用解析结果 */
+  cacheKey?: string;
 }
 
-const MarkdownBlock = ({ content = '' }: MarkdownBlockProps) => {
+const renderMarkdown = (content: string) => {
+  try {
+    // 去除内容末尾的换行符，避免产生额外空白
+    const trimmedContent = content.replace(/[\r\n]+$/, '');
+    // marked.parse 返回的 HTML 末尾可能有换行符，也需要去除
+    const parsed = marked.parse(trimmedContent);
+    return typeof parsed === 'string' ? parsed.trim() : parsed;
+  } catch (error) {
+    console.error('[MarkdownBlock] Failed to parse markdown', error);
+    return content;
+  }
+};
+
+const MarkdownBlock = ({ content = '', cacheKey }: MarkdownBlockProps) => {
   const [previewSrc, setPreviewSrc] = useState<string | null>(null);
   const html = useMemo(() => {
-    try {
-      // 去除内容末尾的换行符，避免产生额外空白
-      const trimmedContent = content.replace(/[\r\n]+$/, '');
-      // marked.parse 返回的 HTML 末尾可能有换行符，也需要去除
-      const parsed = marked.parse(trimmedContent);
-      return typeof parsed === 'string' ? parsed.trim() : parsed;
-    } catch (error) {
-      console.error('[MarkdownBlock] Failed to parse markdown', error);
-      return content;
+    const cached = cacheKey ? htmlCache.get(cacheKey) : undefined;
+    if (cached !== undefined) {
+      return cached;
+    }
+    const rendered = renderMarkdown(content);
+    // marked 同步模式返回 string，异步扩展才会返回 Promise（不缓存）
+    if (cacheKey && typeof rendered === 'string') {
+      htmlCache.set(cacheKey, rendered);
     }
-  }, [content]);
+    return rendered;
+  }, [content, cacheKey]);
 
   const handleClick = (event: React.MouseEvent<HTMLDivElement>) => {
     const target = event.target as HTMLElement;
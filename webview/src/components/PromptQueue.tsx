@@ -0,0 +1,52 @@
+import { useTranslation } from 'react-i18next';
+import type { QueuedPrompt } from '../types';
+
+interface PromptQueueProps {
+  prompts: QueuedPrompt[];
+  onCancel: (id: number) => void;
+  onClear: () => void;
+}
+
+/**
+ * 排队中的提示词列表（显示在输入框上方）
+ * 当前回复结束后按顺序发送，可逐条取消或全部清空
+ */
+export const PromptQueue = ({ prompts, onCancel, onClear }: PromptQueueProps) => {
+  const { t } = useTranslation();
+
+  if (prompts.length === 0) {
+    return null;
+  }
+
+  return (
+    <div className="prompt-queue">
+      <div className="prompt-queue-header">
+        <span className="prompt-queue-count">{t('chat.queuedCount', { count: prompts.length })}</span>
+        {prompts.length > 1 && (
+          <button className="prompt-queue-clear" onClick={onClear}>
+            {t('chat.clearQueue')}
+          </button>
+        )}
+      </div>
+      {prompts.map((prompt) => (
+        <div key={prompt.id} className="prompt-queue-item">
+          <span className="prompt-queue-text" title={prompt.text}>
+            {prompt.text || (prompt.attachmentCount > 0 ? `[${prompt.attachmentCount}]` : '')}
+          </span>
+          {prompt.attachmentCount > 0 && prompt.text && (
+            <span className="codicon codicon-file-media prompt-queue-attachment" />
+          )}
+          <button
+            className="prompt-queue-cancel"
+            onClick={() => onCancel(prompt.id)}
+            title={t('chat.cancelQueued')}
+          >
+            <span className="codicon codicon-close" />
+          </button>
+        </div>
+      ))}
+    </div>
+  );
+};
+
+export default PromptQueue;
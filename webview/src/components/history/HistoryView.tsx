@@ -1,8 +1,12 @@
-import { useEffect, useMemo, useState } from 'react';
+import { useEffect, useMemo, useRef, useState } from 'react';
 import { useTranslation } from 'react-i18next';
-import type { HistoryData, HistorySessionSummary } from '../../types';
+import type { HistoryData, HistorySearchResponse, HistorySearchResult, HistorySessionSummary } from '../../types';
+import { sendToJava } from '../../utils/bridge';
 import VirtualList from './VirtualList';
 
+// 输入停顿多久后发起搜索
+const SEARCH_DEBOUNCE_MS = 200;
+
 interface HistoryViewProps {
   historyData: HistoryData | null;
   onLoadSession: (sessionId: string) => void;
@@ -31,10 +35,65 @@ const formatTimeAgo = (timestamp: string | undefined, t: (key: string) => string
   return `${Math.max(seconds, 1)} ${t('history.timeAgo.secondsAgo')}`;
 };
 
+/**
+ * 按命中区间渲染摘要，命中部分用 <mark> 高亮
+ */
+const renderSnippet = (snippet: string, highlights: [number, number][]) => {
+  const parts: React.ReactNode[] = [];
+  let cursor = 0;
+  [...highlights].sort((a, b) => a[0] - b[0]).forEach(([start, length], index) => {
+    if (start < cursor) {
+      return;
+    }
+    if (start > cursor) {
+      parts.push(snippet.slice(cursor, start));
+    }
+    parts.push(<mark key={index}>{snippet.slice(start, start + length)}</mark>);
+    cursor = start + length;
+  });
+  parts.push(snippet.slice(cursor));
+  return parts;
+};
+
 const HistoryView = ({ historyData, onLoadSession, onDeleteSession }: HistoryViewProps) => {
   const { t } = useTranslation();
   const [viewportHeight, setViewportHeight] = useState(() => window.innerHeight || 600);
   const [deletingSessionId, setDeletingSessionId] = useState<string | null>(null); // 记录待删除的会话ID
+  const [searchQuery, setSearchQuery] = useState('');
+  const [searchResponse, setSearchResponse] = useState<HistorySearchResponse | null>(null);
+  const latestQueryRef = useRef('');
+
+  // 接收全文搜索结果（丢弃过期查询的结果）
+  useEffect(() => {
+    window.setHistorySearchResults = (json: string) => {
+      try {
+        const response = JSON.parse(json);
+        if (!response.success || !response.data) {
+          console.error('[HistoryView] Search failed:', response.error);
+          return;
+        }
+        if (response.data.query === latestQueryRef.current) {
+          setSearchResponse(response.data);
+        }
+      } catch (e) {
+        console.error('[HistoryView] Failed to parse search results:', e);
+      }
+    };
+    return () => {
+      window.setHistorySearchResults = undefined;
+    };
+  }, []);
+
+  useEffect(() => {
+    const query = searchQuery.trim();
+    latestQueryRef.current = query;
+    if (!query) {
+      setSearchResponse(null);
+      return;
+    }
+    const timer = window.setTimeout(() => sendToJava('search_history', { query }), SEARCH_DEBOUNCE_MS);
+    return () => window.clearTimeout(timer);
+  }, [searchQuery]);
 
   useEffect(() => {
     const handleResize = () => setViewportHeight(window.innerHeight || 600);
@@ -44,14 +103,24 @@ const HistoryView = ({ historyData, onLoadSession, onDeleteSession }: HistoryVie
 
   const sessions = historyData?.sessions ?? [];
 
+  const searching = searchQuery.trim().length > 0;
+
   const infoBar = useMemo(() => {
     if (!historyData) {
       return '';
     }
+    if (searching) {
+      if (!searchResponse) {
+        return t('history.searching');
+      }
+      return searchResponse.indexing
+        ? t('history.searchIndexing', { count: searchResponse.total, indexed: searchResponse.indexedSessions })
+        : t('history.searchResults', { count: searchResponse.total, ms: searchResponse.tookMs });
+    }
     const sessionCount = sessions.length;
     const messageCount = historyData.total ?? 0;
     return t('history.totalSessions', { count: sessionCount, total: messageCount });
-  }, [historyData, sessions.length, t]);
+  }, [historyData, sessions.length, searching, searchResponse, t]);
 
   if (!historyData) {
     return (
@@ -130,22 +199,64 @@ const HistoryView = ({ historyData, onLoadSession, onDeleteSession }: HistoryVie
     </div>
   );
 
+  const renderSearchResult = (result: HistorySearchResult) => (
+    <div key={result.sessionId} className="history-item" onClick={() => onLoadSession(result.sessionId)}>
+      <div className="history-item-header">
+        <div className="history-item-title">{result.title}</div>
+        <div className="history-item-time">
+          {result.timestamp > 0 ? formatTimeAgo(new Date(result.timestamp).toISOString(), t) : ''}
+        </div>
+      </div>
+      <div className="history-search-snippet">{renderSnippet(result.snippet, result.highlights)}</div>
+      <div className="history-item-meta">
+        <span>{t('history.searchMatches', { count: result.matches })}</span>
+        <span style={{ fontFamily: 'monospace', color: '#666' }}>{result.sessionId.slice(0, 8)}</span>
+      </div>
+    </div>
+  );
+
   const listHeight = Math.max(240, viewportHeight - 118);
+  const searchResults = searchResponse?.results ?? [];
 
   return (
     <div style={{ height: '100%', display: 'flex', flexDirection: 'column' }}>
-      <div style={{ padding: '16px 24px', borderBottom: '1px solid #3e3e42', flexShrink: 0 }}>
+      <div className="history-toolbar" style={{ padding: '12px 24px', borderBottom: '1px solid #3e3e42', flexShrink: 0 }}>
         <div style={{ fontSize: '12px', color: '#858585' }}>{infoBar}</div>
+        <div className="search-box history-search-box">
+          <span className="codicon codicon-search"></span>
+          <input
+            type="text"
+            className="search-input"
+            placeholder={t('history.searchPlaceholder')}
+            value={searchQuery}
+            onChange={(e) => setSearchQuery(e.target.value)}
+          />
+        </div>
       </div>
       <div style={{ flex: 1, overflow: 'hidden' }}>
-        <VirtualList
-          items={sessions}
-          itemHeight={78}
-          height={listHeight}
-          renderItem={renderHistoryItem}
-          getItemKey={(session) => session.sessionId}
-          className="messages-container"
-        />
+        {searching ? (
+          searchResponse && searchResults.length === 0 ? (
+            <div style={{ textAlign: 'center', color: '#858585', marginTop: '48px' }}>{t('history.noSearchResults')}</div>
+          ) : (
+            <VirtualList
+              items={searchResults}
+              itemHeight={112}
+              height={listHeight}
+              renderItem={renderSearchResult}
+              getItemKey={(result) => result.sessionId}
+              className="messages-container"
+            />
+          )
+        ) : (
+          <VirtualList
+            items={sessions}
+            itemHeight={78}
+            height={listHeight}
+            renderItem={renderHistoryItem}
+            getItemKey={(session) => session.sessionId}
+            className="messages-container"
+          />
+        )}
       </div>
 
       {/* 删除确认对话框 */}
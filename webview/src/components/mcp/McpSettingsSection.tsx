@@ -1,6 +1,6 @@
 import { useState, useEffect, useRef } from 'react';
 import { useTranslation } from 'react-i18next';
-import type { McpServer, McpPreset } from '../../types/mcp';
+import type { McpServer, McpPreset, McpServerHealth } from '../../types/mcp';
 import { sendToJava } from '../../utils/bridge';
 import { McpServerDialog } from './McpServerDialog';
 import { McpPresetDialog } from './McpPresetDialog';
@@ -17,6 +17,7 @@ export function McpSettingsSection() {
   const [servers, setServers] = useState<McpServer[]>([]);
   const [loading, setLoading] = useState(true);
   const [expandedServers, setExpandedServers] = useState<Set<string>>(new Set());
+  const [serverHealth, setServerHealth] = useState<Record<string, McpServerHealth>>({});
   const [showDropdown, setShowDropdown] = useState(false);
   const dropdownRef = useRef<HTMLDivElement>(null);
 
@@ -60,6 +61,13 @@ export function McpSettingsSection() {
       try {
         const serverList: McpServer[] = JSON.parse(jsonStr);
         setServers(serverList);
+        const health: Record<string, McpServerHealth> = {};
+        serverList.forEach((server) => {
+          if (server.health) {
+            health[server.id] = server.health;
+          }
+        });
+        setServerHealth(health);
         setLoading(false);
         console.log('[McpSettings] Loaded servers:', serverList);
       } catch (error) {
@@ -68,6 +76,16 @@ export function McpSettingsSection() {
       }
     };
 
+    // 后台探测完成后推送的健康状态 (id -> health)
+    window.updateMcpServerStatus = (jsonStr: string) => {
+      try {
+        const statuses: Record<string, McpServerHealth> = JSON.parse(jsonStr);
+        setServerHealth((prev) => ({ ...prev, ...statuses }));
+      } catch (error) {
+        console.error('[McpSettings] Failed to parse server status:', error);
+      }
+    };
+
     // 加载服务器
     loadServers();
 
@@ -81,6 +99,7 @@ export function McpSettingsSection() {
 
     return () => {
       window.updateMcpServers = undefined;
+      window.updateMcpServerStatus = undefined;
       document.removeEventListener('click', handleClickOutside);
     };
   }, []);
@@ -122,6 +141,16 @@ export function McpSettingsSection() {
 
   const handleRefresh = () => {
     loadServers();
+    // 忽略缓存，重新探测所有服务器
+    sendToJava('probe_mcp_servers', {});
+  };
+
+  const getHealthTitle = (health: McpServerHealth): string => {
+    if (health.status === 'checking') {
+      return '...';
+    }
+    const latency = health.latencyMs !== undefined ? `${health.latencyMs}ms` : '';
+    return health.error ? `${health.error} ${latency}`.trim() : latency;
   };
 
   // TODO: 启用/禁用开关功能 - 暂时注释掉，后续再加回
@@ -315,6 +344,14 @@ export function McpSettingsSection() {
                   <span className="server-name">{server.name || server.id}</span>
                 </div>
                 <div className="header-right-section" onClick={(e) => e.stopPropagation()}>
+                  {serverHealth[server.id] && (
+                    <span
+                      className={`status-indicator ${serverHealth[server.id].status}`}
+                      title={getHealthTitle(serverHealth[server.id])}
+                    >
+                      <span className={`codicon ${serverHealth[server.id].status === 'checking' ? 'codicon-loading codicon-modifier-spin' : 'codicon-circle-filled'}`}></span>
+                    </span>
+                  )}
                   {/* TODO: 启用/禁用开关 - 暂时隐藏，后续再加回 */}
                   {/* <label className="toggle-switch">
                     <input
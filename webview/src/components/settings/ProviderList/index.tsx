@@ -31,6 +31,7 @@ export default function ProviderList({
   const [editingCcSwitchProvider, setEditingCcSwitchProvider] = useState<ProviderConfig | null>(null);
   const [convertingProvider, setConvertingProvider] = useState<ProviderConfig | null>(null);
   const [isImporting, setIsImporting] = useState(false);
+  const [importProgress, setImportProgress] = useState<{ done: number; total: number } | null>(null);
   const importMenuRef = useRef<HTMLDivElement>(null);
 
   useEffect(() => {
@@ -55,6 +56,14 @@ export default function ProviderList({
         window.dispatchEvent(event);
     };
 
+    // 导入进度：stage 为 preview（读取数据库）或 save（保存配置），total 未知时为 -1
+    (window as any).import_progress = (stage: string, done: string, total: string) => {
+        if (stage !== 'preview') {
+            return;
+        }
+        setImportProgress({ done: Number(done) || 0, total: Number(total) });
+    };
+
     (window as any).backend_notification = (...args: any[]) => {
         console.log('[Frontend] Received backend_notification args:', args);
         let data: any = {};
@@ -85,6 +94,7 @@ export default function ProviderList({
 
     const handleImportPreview = (event: CustomEvent) => {
       setIsImporting(false); // 收到结果，关闭loading
+      setImportProgress(null);
       const data = event.detail;
       if (data && data.providers) {
         setImportPreviewData(data.providers);
@@ -94,6 +104,7 @@ export default function ProviderList({
 
     const handleBackendNotification = (event: CustomEvent) => {
       setIsImporting(false); // 收到通知（可能是错误），关闭loading
+      setImportProgress(null);
       const data = event.detail;
       if (data && data.message) {
         addToast(data.message, data.type || 'info');
@@ -111,6 +122,7 @@ export default function ProviderList({
       
       // 清理全局函数
       delete (window as any).import_preview_result;
+      delete (window as any).import_progress;
       delete (window as any).backend_notification;
     };
   }, [addToast]);
@@ -181,6 +193,9 @@ export default function ProviderList({
           <div className={styles.loadingContent}>
             <span className="codicon codicon-loading codicon-modifier-spin" />
             <span>{t('settings.provider.readingCcSwitch')}</span>
+            {importProgress && importProgress.total > 0 && (
+              <span>{importProgress.done} / {importProgress.total}</span>
+            )}
           </div>
         </div>
       )}
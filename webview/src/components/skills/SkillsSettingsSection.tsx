@@ -30,6 +30,9 @@ export function SkillsSettingsSection() {
   const [showConfirmDialog, setShowConfirmDialog] = useState(false);
   const [deletingSkill, setDeletingSkill] = useState<Skill | null>(null);
 
+  // 导入进度（null 表示没有进行中的导入）
+  const [importProgress, setImportProgress] = useState<{ done: number; total: number } | null>(null);
+
   // 操作中的 Skills（用于禁用按钮防止重复点击）
   const [togglingSkills, setTogglingSkills] = useState<Set<string>>(new Set());
 
@@ -121,8 +124,14 @@ export function SkillsSettingsSection() {
       }
     };
 
+    // 注册回调：导入进度（文件级）
+    window.skillImportProgress = (done: string, total: string) => {
+      setImportProgress({ done: Number(done) || 0, total: Number(total) || 0 });
+    };
+
     // 注册回调：导入结果
     window.skillImportResult = (jsonStr: string) => {
+      setImportProgress(null);
       try {
         const result = JSON.parse(jsonStr);
         if (result.success) {
@@ -208,6 +217,7 @@ export function SkillsSettingsSection() {
 
     return () => {
       window.updateSkills = undefined;
+      window.skillImportProgress = undefined;
       window.skillImportResult = undefined;
       window.skillDeleteResult = undefined;
       window.skillToggleResult = undefined;
@@ -362,9 +372,10 @@ export function SkillsSettingsSection() {
             <button
               className="icon-btn primary"
               onClick={() => setShowDropdown(!showDropdown)}
-              title={t('skills.importSkill')}
+              disabled={importProgress !== null}
+              title={importProgress ? `${importProgress.done} / ${importProgress.total}` : t('skills.importSkill')}
             >
-              <span className="codicon codicon-add"></span>
+              <span className={`codicon ${importProgress ? 'codicon-loading codicon-modifier-spin' : 'codicon-add'}`}></span>
             </button>
             {showDropdown && (
               <div className="dropdown-menu">
@@ -3,11 +3,14 @@ import type { ToolInput } from '../../types';
 import { openFile } from '../../utils/bridge';
 import { getFileName } from '../../utils/helpers';
 import { getFileIcon } from '../../utils/fileIcons';
+import { RenderCache } from '../../utils/renderCache';
 import GenericToolBlock from './GenericToolBlock';
 
 interface EditToolBlockProps {
   name?: string;
   input?: ToolInput;
+  /** 工具块内容哈希（已完成的消息才有），用于复用 diff 结果 */
+  cacheKey?: string;
 }
 
 type DiffLineType = 'unchanged' | 'deleted' | 'added';
@@ -83,9 +86,27 @@ function computeDiff(oldLines: string[], newLines: string[]): DiffResult {
   return { lines: diffLines, additions, deletions };
 }
 
-const EditToolBlock = ({ name, input }: EditToolBlockProps) => {
+// 已完成消息的 diff 缓存（按行内容字符数计，约 2M 字符）
+const diffCache = new RenderCache<DiffResult>(
+  2 * 1024 * 1024,
+  (diff) => diff.lines.reduce((size, line) => size + line.content.length + 16, 0),
+);
+
+const EditToolBlock = ({ name, input, cacheKey }: EditToolBlockProps) => {
   const [expanded, setExpanded] = useState(false);
 
+  const oldString = (input?.old_string as string | undefined) ?? '';
+  const newString = (input?.new_string as string | undefined) ?? '';
+
+  // 计算真正的差异（LCS 为 O(m*n)，已完成的消息按内容哈希复用结果）
+  const diff = useMemo(
+    () =>
+      diffCache.getOrCompute(cacheKey, () =>
+        computeDiff(oldString ? oldString.split('\n') : [], newString ? newString.split('\n') : []),
+      ),
+    [cacheKey, oldString, newString],
+  );
+
   if (!input) {
     return null;
   }
@@ -95,19 +116,10 @@ const EditToolBlock = ({ name, input }: EditToolBlockProps) => {
     (input.path as string | undefined) ??
     (input.target_file as string | undefined);
 
-  const oldString = (input.old_string as string | undefined) ?? '';
-  const newString = (input.new_string as string | undefined) ?? '';
-
   if (!oldString && !newString) {
     return <GenericToolBlock name={name} input={input} />;
   }
 
-  const oldLines = oldString ? oldString.split('\n') : [];
-  const newLines = newString ? newString.split('\n') : [];
-
-  // 计算真正的差异
-  const diff = useMemo(() => computeDiff(oldLines, newLines), [oldLines, newLines]);
-
   const handleFileClick = (e: React.MouseEvent) => {
     e.stopPropagation();
     if (filePath) {
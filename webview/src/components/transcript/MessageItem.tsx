@@ -0,0 +1,183 @@
+import { memo } from 'react';
+import { useTranslation } from 'react-i18next';
+import MarkdownBlock from '../MarkdownBlock';
+import {
+  BashToolBlock,
+  EditToolBlock,
+  GenericToolBlock,
+  ReadToolBlock,
+  TaskExecutionBlock,
+  TodoListBlock,
+} from '../toolBlocks';
+import type { ClaudeMessage, TodoItem, ToolResultBlock } from '../../types';
+import { getContentBlocks, getMessageText } from '../../utils/messageContent';
+
+export interface MessageItemProps {
+  message: ClaudeMessage;
+  messageKey: string | number;
+  /** 该消息是否为正在思考的最后一条消息 */
+  thinkingActive: boolean;
+  /** 该消息各思考块的展开状态（blockIndex -> 是否展开） */
+  expandedThinking?: Record<number, boolean>;
+  toolResults: Map<string, ToolResultBlock>;
+  onToggleThinking: (messageKey: string | number, blockIndex: number) => void;
+}
+
+const formatTime = (timestamp?: string | number) => {
+  if (!timestamp) return '';
+  try {
+    const date = new Date(timestamp);
+    return date.toLocaleTimeString([], { hour: '2-digit', minute: '2-digit', hour12: false });
+  } catch (e) {
+    return '';
+  }
+};
+
+const MessageItem = ({
+  message,
+  messageKey,
+  thinkingActive,
+  expandedThinking,
+  toolResults,
+  onToggleThinking,
+}: MessageItemProps) => {
+  const { t } = useTranslation();
+
+  return (
+    <div className={`message ${message.type}`}>
+      {message.type === 'user' && message.timestamp && (
+        <div className="message-timestamp-header">
+          {formatTime(message.timestamp)}
+        </div>
+      )}
+      {message.type !== 'assistant' && message.type !== 'user' && (
+        <div className="message-role-label">
+          {message.type}
+        </div>
+      )}
+      <div className="message-content">
+        {message.type === 'error' ? (
+          <MarkdownBlock content={getMessageText(message)} />
+        ) : (
+          getContentBlocks(message).map((block, blockIndex) => (
+            <div key={`${messageKey}-${blockIndex}`} className="content-block">
+              {block.type === 'text' && <MarkdownBlock content={block.text ?? ''} cacheKey={block.hash} />}
+              {block.type === 'image' && block.src && (
+                <div
+                  className={`message-image-block ${message.type === 'user' ? 'user-image' : ''}`}
+                  onClick={() => {
+                    // 打开图片预览
+                    const previewRoot = document.getElementById('image-preview-root');
+                    if (previewRoot && block.src) {
+                      previewRoot.innerHTML = `
+                        <div class="image-preview-overlay" onclick="this.remove()">
+                          <img src="${block.src}" alt={t('chat.imagePreview')} class="image-preview-content" onclick="event.stopPropagation()" />
+                          <div class="image-preview-close" onclick="this.parentElement.remove()">×</div>
+                        </div>
+                      `;
+                    }
+                  }}
+                  style={{ cursor: 'pointer' }}
+                  title="点击预览大图"
+                >
+                  <img
+                    src={block.src}
+                    alt="用户上传的图片"
+                    style={{
+                      maxWidth: message.type === 'user' ? '200px' : '100%',
+                      maxHeight: message.type === 'user' ? '150px' : 'auto',
+                      borderRadius: '8px',
+                      objectFit: 'contain',
+                    }}
+                  />
+                </div>
+              )}
+
+              {block.type === 'thinking' && (
+                <div className="thinking-block">
+                  <div
+                    className="thinking-header"
+                    onClick={() => onToggleThinking(messageKey, blockIndex)}
+                  >
+                    <span className="thinking-title">
+                      {thinkingActive
+                        ? t('common.thinking')
+                        : t('common.thinkingProcess')}
+                    </span>
+                    <span className="thinking-icon">
+                      {expandedThinking?.[blockIndex] ? '▼' : '▶'}
+                    </span>
+                  </div>
+                  {expandedThinking?.[blockIndex] && (
+                    <div className="thinking-content">
+                      {block.thinking ?? block.text ?? '(无思考内容)'}
+                    </div>
+                  )}
+                </div>
+              )}
+
+              {block.type === 'tool_use' && (
+                <>
+                  {block.name?.toLowerCase() === 'todowrite' &&
+                  Array.isArray((block.input as { todos?: TodoItem[] })?.todos) ? (
+                    <TodoListBlock
+                      todos={(block.input as { todos?: TodoItem[] })?.todos ?? []}
+                    />
+                  ) : block.name?.toLowerCase() === 'task' ? (
+                    <TaskExecutionBlock input={block.input} />
+                  ) : block.name &&
+                    ['read', 'read_file'].includes(block.name.toLowerCase()) ? (
+                    <ReadToolBlock input={block.input} />
+                  ) : block.name &&
+                    ['edit', 'edit_file', 'replace_string', 'write_to_file'].includes(
+                      block.name.toLowerCase(),
+                    ) ? (
+                    <EditToolBlock name={block.name} input={block.input} cacheKey={block.hash} />
+                  ) : block.name &&
+                    ['bash', 'run_terminal_cmd', 'execute_command'].includes(
+                      block.name.toLowerCase(),
+                    ) ? (
+                    <BashToolBlock
+                      name={block.name}
+                      input={block.input}
+                      result={block.id ? toolResults.get(block.id) ?? null : null}
+                    />
+                  ) : (
+                    <GenericToolBlock name={block.name} input={block.input} />
+                  )}
+                </>
+              )}
+            </div>
+          ))
+        )}
+      </div>
+    </div>
+  );
+};
+
+/**
+ * 只有消息本身、思考状态或其工具块对应的结果变化时才重新渲染
+ * （toolResults 每次更新都是新 Map，逐个比较本消息用到的结果）
+ */
+const areEqual = (prev: MessageItemProps, next: MessageItemProps) => {
+  if (
+    prev.message !== next.message ||
+    prev.messageKey !== next.messageKey ||
+    prev.thinkingActive !== next.thinkingActive ||
+    prev.expandedThinking !== next.expandedThinking ||
+    prev.onToggleThinking !== next.onToggleThinking
+  ) {
+    return false;
+  }
+  if (prev.toolResults === next.toolResults || next.message.type !== 'assistant') {
+    return true;
+  }
+  return getContentBlocks(next.message).every(
+    (block) =>
+      block.type !== 'tool_use' ||
+      !block.id ||
+      prev.toolResults.get(block.id) === next.toolResults.get(block.id),
+  );
+};
+
+export default memo(MessageItem, areEqual);
@@ -0,0 +1,293 @@
+import type { MutableRefObject, ReactNode, RefObject } from 'react';
+import { useCallback, useEffect, useLayoutEffect, useMemo, useRef, useState } from 'react';
+
+type ItemKey = string | number;
+
+interface VirtualTranscriptProps<T> {
+  items: T[];
+  getItemKey: (item: T) => ItemKey;
+  renderItem: (item: T, index: number) => ReactNode;
+  /** 外部滚动容器（.messages-container） */
+  scrollRef: RefObject<HTMLDivElement | null>;
+  /** 用户是否停留在底部：为 true 时内容变化后保持贴底，否则保持当前可见内容不跳动 */
+  stickToBottomRef: MutableRefObject<boolean>;
+  /** 窗口之前是否还有更早的消息 */
+  hasOlder?: boolean;
+  /** 滚动到顶部附近时请求更早的消息 */
+  onLoadOlder?: () => void;
+  /** 未测量条目的估算高度 */
+  estimatedItemHeight?: number;
+  /** 视口上下额外渲染的像素 */
+  overscan?: number;
+}
+
+interface Viewport {
+  top: number;
+  height: number;
+}
+
+// 距离顶部小于该值时请求更早的消息
+const LOAD_OLDER_THRESHOLD = 300;
+
+/**
+ * 可变高度的虚拟化聊天记录
+ *
+ * 1. 只渲染视口附近的消息，上下用占位块撑开滚动高度
+ * 2. ResizeObserver 测量实际高度并按 key 缓存，未测量的条目按估算高度计算
+ * 3. 高度变化或在顶部插入消息时，以视口第一条消息为锚点修正 scrollTop，可见内容不跳动
+ */
+const VirtualTranscript = <T,>({
+  items,
+  getItemKey,
+  renderItem,
+  scrollRef,
+  stickToBottomRef,
+  hasOlder = false,
+  onLoadOlder,
+  estimatedItemHeight = 120,
+  overscan = 800,
+}: VirtualTranscriptProps<T>) => {
+  const heightsRef = useRef(new Map<ItemKey, number>());
+  const [measureVersion, setMeasureVersion] = useState(0);
+  const [viewport, setViewport] = useState<Viewport>({ top: 0, height: 0 });
+  const topSpacerRef = useRef<HTMLDivElement | null>(null);
+  const rafRef = useRef<number | null>(null);
+  const loadingOlderRef = useRef(false);
+
+  const keys = useMemo(() => items.map(getItemKey), [items, getItemKey]);
+  const keyIndex = useMemo(() => {
+    const index = new Map<ItemKey, number>();
+    keys.forEach((key, i) => index.set(key, i));
+    return index;
+  }, [keys]);
+
+  // offsets[i] 为第 i 条消息顶部位置，offsets[items.length] 为总高度
+  const offsets = useMemo(() => {
+    const result = new Array<number>(keys.length + 1);
+    result[0] = 0;
+    for (let i = 0; i < keys.length; i += 1) {
+      result[i + 1] = result[i] + (heightsRef.current.get(keys[i]) ?? estimatedItemHeight);
+    }
+    return result;
+    // measureVersion 变化表示 heightsRef 中的测量值已更新
+    // eslint-disable-next-line react-hooks/exhaustive-deps
+  }, [keys, measureVersion, estimatedItemHeight]);
+
+  const layoutRef = useRef({ keys, keyIndex, offsets });
+  layoutRef.current = { keys, keyIndex, offsets };
+  // 锚点：视口第一条消息的 key 及其顶部位置（上一次布局中的）
+  const anchorRef = useRef<{ key: ItemKey; offset: number } | null>(null);
+
+  /**
+   * 读取视口相对于聊天记录顶部的位置
+   */
+  const readViewport = useCallback((): Viewport | null => {
+    const container = scrollRef.current;
+    const spacer = topSpacerRef.current;
+    if (!container || !spacer) {
+      return null;
+    }
+    const base = spacer.getBoundingClientRect().top - container.getBoundingClientRect().top + container.scrollTop;
+    return { top: container.scrollTop - base, height: container.clientHeight };
+  }, [scrollRef]);
+
+  const updateAnchor = useCallback((top: number) => {
+    const { keys: currentKeys, offsets: currentOffsets } = layoutRef.current;
+    if (currentKeys.length === 0) {
+      anchorRef.current = null;
+      return;
+    }
+    const index = Math.min(findIndex(currentOffsets, top), currentKeys.length - 1);
+    anchorRef.current = { key: currentKeys[index], offset: currentOffsets[index] };
+  }, []);
+
+  // 监听容器滚动与尺寸变化
+  useEffect(() => {
+    const container = scrollRef.current;
+    if (!container) {
+      return undefined;
+    }
+
+    const handleViewportChange = (scrolled: boolean) => {
+      const next = readViewport();
+      if (!next) {
+        return;
+      }
+      updateAnchor(next.top);
+      // 只在用户滚动时加载更早的消息（容器初次测量时视口还在顶部）
+      if (scrolled && next.top < LOAD_OLDER_THRESHOLD && hasOlder && onLoadOlder && !loadingOlderRef.current) {
+        loadingOlderRef.current = true;
+        onLoadOlder();
+      }
+      if (rafRef.current === null) {
+        rafRef.current = requestAnimationFrame(() => {
+          rafRef.current = null;
+          const latest = readViewport();
+          if (latest) {
+            setViewport(latest);
+          }
+        });
+      }
+    };
+
+    const handleScroll = () => handleViewportChange(true);
+    const resizeObserver = new ResizeObserver(() => handleViewportChange(false));
+    resizeObserver.observe(container);
+    container.addEventListener('scroll', handleScroll, { passive: true });
+    return () => {
+      container.removeEventListener('scroll', handleScroll);
+      resizeObserver.disconnect();
+      if (rafRef.current !== null) {
+        cancelAnimationFrame(rafRef.current);
+        rafRef.current = null;
+      }
+    };
+  }, [scrollRef, readViewport, updateAnchor, hasOlder, onLoadOlder]);
+
+  // 新的一批消息到达后允许再次请求更早的消息
+  const firstKey = keys[0];
+  useEffect(() => {
+    loadingOlderRef.current = false;
+  }, [firstKey]);
+
+  // 布局变化后修正滚动位置：贴底或保持锚点不动
+  useLayoutEffect(() => {
+    const container = scrollRef.current;
+    if (!container) {
+      return;
+    }
+    if (stickToBottomRef.current) {
+      scrollToInstant(container, container.scrollHeight);
+    } else {
+      const anchor = anchorRef.current;
+      const index = anchor ? keyIndex.get(anchor.key) : undefined;
+      if (anchor && index !== undefined) {
+        const delta = offsets[index] - anchor.offset;
+        if (delta !== 0) {
+          scrollToInstant(container, container.scrollTop + delta);
+        }
+      }
+    }
+    const next = readViewport();
+    if (next) {
+      updateAnchor(next.top);
+      setViewport((prev) => (prev.top === next.top && prev.height === next.height ? prev : next));
+    }
+  }, [offsets, keyIndex, scrollRef, stickToBottomRef, readViewport, updateAnchor]);
+
+  // 测量已渲染条目的实际高度
+  const nodeKeysRef = useRef(new Map<Element, ItemKey>());
+  const itemObserver = useMemo(
+    () =>
+      new ResizeObserver((entries) => {
+        let changed = false;
+        for (const entry of entries) {
+          const key = nodeKeysRef.current.get(entry.target);
+          if (key === undefined) {
+            continue;
+          }
+          const height = (entry.target as HTMLElement).offsetHeight;
+          if (heightsRef.current.get(key) !== height) {
+            heightsRef.current.set(key, height);
+            changed = true;
+          }
+        }
+        if (changed) {
+          setMeasureVersion((v) => v + 1);
+        }
+      }),
+    [],
+  );
+
+  useEffect(() => () => itemObserver.disconnect(), [itemObserver]);
+
+  // 每个 key 复用同一个 ref 回调，避免每次渲染都重新注册监听
+  const refCallbacksRef = useRef(new Map<ItemKey, (node: HTMLDivElement | null) => void>());
+  const measureRef = useCallback(
+    (key: ItemKey) => {
+      let callback = refCallbacksRef.current.get(key);
+      if (!callback) {
+        let current: HTMLDivElement | null = null;
+        callback = (node: HTMLDivElement | null) => {
+          if (current) {
+            itemObserver.unobserve(current);
+            nodeKeysRef.current.delete(current);
+          }
+          current = node;
+          if (node) {
+            nodeKeysRef.current.set(node, key);
+            itemObserver.observe(node);
+          } else {
+            refCallbacksRef.current.delete(key);
+          }
+        };
+        refCallbacksRef.current.set(key, callback);
+      }
+      return callback;
+    },
+    [itemObserver],
+  );
+
+  // 丢弃已不在列表中的消息的测量值（切换会话后）
+  useEffect(() => {
+    const heights = heightsRef.current;
+    if (heights.size > keys.length * 2 + 100) {
+      for (const key of Array.from(heights.keys())) {
+        if (!keyIndex.has(key)) {
+          heights.delete(key);
+        }
+      }
+    }
+  }, [keys, keyIndex]);
+
+  const total = offsets[items.length];
+  const start = Math.max(0, findIndex(offsets, viewport.top - overscan));
+  const end = Math.min(items.length, findIndex(offsets, viewport.top + viewport.height + overscan) + 1);
+
+  const rendered: ReactNode[] = [];
+  for (let i = start; i < end; i += 1) {
+    const key = keys[i];
+    rendered.push(
+      <div key={key} ref={measureRef(key)} style={{ display: 'flow-root' }}>
+        {renderItem(items[i], i)}
+      </div>,
+    );
+  }
+
+  return (
+    <>
+      <div ref={topSpacerRef} style={{ height: offsets[start] }} />
+      {rendered}
+      <div style={{ height: total - offsets[end] }} />
+    </>
+  );
+};
+
+/**
+ * 二分查找 top 所在的条目下标（offsets[i] <= top < offsets[i + 1]）
+ */
+const findIndex = (offsets: number[], top: number) => {
+  let low = 0;
+  let high = offsets.length - 2;
+  if (high < 0 || top <= 0) {
+    return 0;
+  }
+  while (low < high) {
+    const mid = (low + high + 1) >> 1;
+    if (offsets[mid] <= top) {
+      low = mid;
+    } else {
+      high = mid - 1;
+    }
+  }
+  return low;
+};
+
+/**
+ * 直接跳转到指定位置（容器设置了 scroll-behavior: smooth，修正位置时不能有动画）
+ */
+const scrollToInstant = (container: HTMLElement, top: number) => {
+  container.scrollTo({ top, behavior: 'instant' as ScrollBehavior });
+};
+
+export default VirtualTranscript;
@@ -18,9 +18,19 @@ interface Window {
   handleFilePathFromJava?: (filePath: string) => void;
 
   /**
-   * Update messages from backend
+   * 全量同步消息窗口：{ total, start, messages }
    */
-  updateMessages?: (json: string) => void;
+  syncMessages?: (json: string) => void;
+
+  /**
+   * 差量更新新增或变化的消息：{ total, messages }
+   */
+  patchMessages?: (json: string) => void;
+
+  /**
+   * 补发窗口之前的消息：{ start, messages }
+   */
+  prependMessages?: (json: string) => void;
 
   /**
    * Update status message
@@ -42,6 +52,16 @@ interface Window {
    */
   setHistoryData?: (data: any) => void;
 
+  /**
+   * Set full-text history search results (JSON string)
+   */
+  setHistorySearchResults?: (json: string) => void;
+
+  /**
+   * Update queued prompts (JSON array of { id, text, attachmentCount })
+   */
+  updatePromptQueue?: (json: string) => void;
+
   /**
    * Clear all messages
    */
@@ -114,6 +134,11 @@ interface Window {
    */
   updateMcpServers?: (json: string) => void;
 
+  /**
+   * Update MCP server health statuses (id -> health)
+   */
+  updateMcpServerStatus?: (json: string) => void;
+
   /**
    * Update providers list
    */
@@ -149,6 +174,11 @@ interface Window {
    */
   updateSkills?: (json: string) => void;
 
+  /**
+   * Skill import progress callback (files done / total)
+   */
+  skillImportProgress?: (done: string, total: string) => void;
+
   /**
    * Skill import result callback
    */
@@ -3,10 +3,10 @@ export type ClaudeRole = 'user' | 'assistant' | 'error' | string;
 export type ToolInput = Record<string, unknown>;
 
 export type ClaudeContentBlock =
-  | { type: 'text'; text?: string }
-  | { type: 'thinking'; thinking?: string; text?: string }
-  | { type: 'tool_use'; id?: string; name?: string; input?: ToolInput }
-  | { type: 'image'; src?: string; mediaType?: string; alt?: string };
+  | { type: 'text'; text?: string; hash?: string }
+  | { type: 'thinking'; thinking?: string; text?: string; hash?: string }
+  | { type: 'tool_use'; id?: string; name?: string; input?: ToolInput; hash?: string }
+  | { type: 'image'; src?: string; mediaType?: string; alt?: string; hash?: string };
 
 export interface ToolResultBlock {
   type: 'tool_result';
@@ -26,13 +26,28 @@ export interface ClaudeRawMessage {
 }
 
 export interface ClaudeMessage {
+  /** Java 端分配的稳定编号（前端临时消息没有） */
+  id?: number;
+  /** 前端临时消息的本地编号 */
+  localId?: string;
+  /** 已完成消息各内容块的哈希（与 raw 内容块一一对应） */
+  blockHashes?: string[];
+  /** 已完成消息 content 文本的哈希 */
+  contentHash?: string;
   type: ClaudeRole;
   content?: string;
   raw?: ClaudeRawMessage | string;
-  timestamp?: string;
+  timestamp?: string | number;
   [key: string]: unknown;
 }
 
+/** 排队等待当前轮次结束后发送的提示词 */
+export interface QueuedPrompt {
+  id: number;
+  text: string;
+  attachmentCount: number;
+}
+
 export interface TodoItem {
   id?: string;
   content: string;
@@ -52,3 +67,27 @@ export interface HistoryData {
   sessions?: HistorySessionSummary[];
   total?: number;
 }
+
+export interface HistorySearchResult {
+  sessionId: string;
+  projectDir: string;
+  title: string;
+  snippet: string;
+  /** 摘要中命中的区间 [start, length] */
+  highlights: [number, number][];
+  role: 'user' | 'assistant';
+  timestamp: number;
+  matches: number;
+  score: number;
+}
+
+export interface HistorySearchResponse {
+  query: string;
+  total: number;
+  results: HistorySearchResult[];
+  tookMs: number;
+  indexedSessions: number;
+  indexedMessages: number;
+  /** 首次构建索引尚未完成，结果只包含已索引的部分 */
+  indexing?: boolean;
+}
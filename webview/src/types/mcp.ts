@@ -68,6 +68,8 @@ export interface McpServer {
   docs?: string;
   /** 是否启用 (旧格式兼容) */
   enabled?: boolean;
+  /** 健康状态 (后端探测结果，只读) */
+  health?: McpServerHealth;
   /** 允许扩展字段 */
   [key: string]: any;
 }
@@ -124,6 +126,19 @@ export interface McpPreset {
  */
 export type McpServerStatus = 'connected' | 'checking' | 'error' | 'unknown';
 
+/**
+ * MCP 服务器健康探测结果
+ */
+export interface McpServerHealth {
+  status: McpServerStatus;
+  /** 探测耗时 (毫秒) */
+  latencyMs?: number;
+  /** 错误信息 */
+  error?: string;
+  /** 探测时间戳 */
+  checkedAt?: number;
+}
+
 /**
  * MCP 服务器验证结果
  */
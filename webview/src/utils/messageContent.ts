@@ -0,0 +1,303 @@
+import type {
+  ClaudeContentBlock,
+  ClaudeMessage,
+  ClaudeRawMessage,
+  ToolResultBlock,
+} from '../types';
+
+// 文案本地化映射
+const MESSAGE_MAP: Record<string, string> = {
+  'Request interrupted by user': '请求已被用户中断',
+};
+
+export const localizeMessage = (text: string): string => {
+  // 检查是否有完全匹配的映射
+  if (MESSAGE_MAP[text]) {
+    return MESSAGE_MAP[text];
+  }
+
+  // 检查是否包含需要映射的关键词
+  for (const [key, value] of Object.entries(MESSAGE_MAP)) {
+    if (text.includes(key)) {
+      return text.replace(key, value);
+    }
+  }
+
+  return text;
+};
+
+export const getMessageText = (message: ClaudeMessage) => {
+  let text = '';
+
+  if (message.content) {
+    text = message.content;
+  } else {
+    const raw = message.raw;
+    if (!raw) {
+      return '(空消息)';
+    }
+    if (typeof raw === 'string') {
+      text = raw;
+    } else if (typeof raw.content === 'string') {
+      text = raw.content;
+    } else if (Array.isArray(raw.content)) {
+      text = raw.content
+        .filter((block) => block && block.type === 'text')
+        .map((block) => block.text ?? '')
+        .join('\n');
+    } else if (raw.message?.content && Array.isArray(raw.message.content)) {
+      text = raw.message.content
+        .filter((block) => block && block.type === 'text')
+        .map((block) => block.text ?? '')
+        .join('\n');
+    } else {
+      return '(空消息)';
+    }
+  }
+
+  // 应用本地化
+  return localizeMessage(text);
+};
+
+/**
+ * 解析原始消息的内容块
+ * @param hashes Java 端计算的内容块哈希（与原始内容块一一对应），附加到解析出的块上
+ */
+export const normalizeBlocks = (raw?: ClaudeRawMessage | string, hashes?: string[]) => {
+  if (!raw) {
+    return null;
+  }
+  if (typeof raw === 'string') {
+    return [{ type: 'text' as const, text: raw }];
+  }
+  const buildBlocksFromArray = (entries: unknown[]): ClaudeContentBlock[] => {
+    const blocks: ClaudeContentBlock[] = [];
+    entries.forEach((entry, entryIndex) => {
+      if (!entry || typeof entry !== 'object') {
+        return;
+      }
+      const candidate = entry as Record<string, unknown>;
+      const type = candidate.type as string | undefined;
+      const hash = hashes?.[entryIndex];
+      if (type === 'text') {
+        const rawText = typeof candidate.text === 'string' ? candidate.text : '';
+        blocks.push({
+          type: 'text',
+          text: localizeMessage(rawText),
+          hash,
+        });
+      } else if (type === 'thinking') {
+        const thinking =
+          typeof candidate.thinking === 'string'
+            ? (candidate.thinking as string)
+            : typeof candidate.text === 'string'
+              ? (candidate.text as string)
+              : '';
+        blocks.push({
+          type: 'thinking',
+          thinking,
+          text: thinking,
+          hash,
+        });
+      } else if (type === 'tool_use') {
+        blocks.push({
+          type: 'tool_use',
+          id: typeof candidate.id === 'string' ? (candidate.id as string) : undefined,
+          name: typeof candidate.name === 'string' ? (candidate.name as string) : '未知工具',
+          input: (candidate.input as Record<string, unknown>) ?? {},
+          hash,
+        });
+      } else if (type === 'image') {
+        const source = (candidate as any).source;
+        let src: string | undefined;
+        let mediaType: string | undefined;
+
+        // 支持两种格式：
+        // 1. 后端/历史格式: { type: 'image', source: { type: 'base64', media_type: '...', data: '...' } }
+        // 2. 前端直接格式: { type: 'image', src: 'data:...', mediaType: '...' }
+        if (source && typeof source === 'object') {
+          const st = source.type;
+          if (st === 'base64' && typeof source.data === 'string') {
+            const mt = typeof source.media_type === 'string' ? source.media_type : 'image/png';
+            src = `data:${mt};base64,${source.data}`;
+            mediaType = mt;
+          } else if (st === 'url' && typeof source.url === 'string') {
+            src = source.url;
+            mediaType = source.media_type;
+          }
+        } else if (typeof candidate.src === 'string') {
+          // 前端直接添加的格式
+          src = candidate.src as string;
+          mediaType = candidate.mediaType as string | undefined;
+        }
+
+        if (src) {
+          blocks.push({ type: 'image', src, mediaType });
+        }
+      }
+    });
+    return blocks;
+  };
+
+  const pickContent = (content: unknown): ClaudeContentBlock[] | null => {
+    if (!content) {
+      return null;
+    }
+    if (typeof content === 'string') {
+      // 过滤空字符串和命令消息
+      if (!content.trim() ||
+          content.includes('<command-name>') ||
+          content.includes('<local-command-stdout>')) {
+        return null;
+      }
+      return [{ type: 'text' as const, text: localizeMessage(content), hash: hashes?.[0] }];
+    }
+    if (Array.isArray(content)) {
+      const result = buildBlocksFromArray(content);
+      return result.length ? result : null;
+    }
+    return null;
+  };
+
+  const contentBlocks = pickContent(raw.message?.content ?? raw.content);
+
+  // 如果无法解析内容，尝试从其他字段获取
+  if (!contentBlocks) {
+    // 尝试从 raw.text 或其他可能的字段获取
+    if (typeof raw === 'object') {
+      if ('text' in raw && typeof raw.text === 'string' && raw.text.trim()) {
+        return [{ type: 'text' as const, text: localizeMessage(raw.text) }];
+      }
+      // 如果实在没有内容，返回 null 而不是显示"(无法解析内容)"
+      // 这样 shouldShowMessage 会过滤掉这条消息
+    }
+    return null;
+  }
+
+  return contentBlocks;
+};
+
+// 按消息对象缓存解析结果：消息未变化时对象引用不变（Java 端只推送变化的消息）
+const contentBlocksCache = new WeakMap<ClaudeMessage, ClaudeContentBlock[]>();
+
+export const getContentBlocks = (message: ClaudeMessage): ClaudeContentBlock[] => {
+  const cached = contentBlocksCache.get(message);
+  if (cached) {
+    return cached;
+  }
+  let blocks: ClaudeContentBlock[];
+  const rawBlocks = normalizeBlocks(message.raw, message.blockHashes);
+  if (rawBlocks && rawBlocks.length > 0) {
+    blocks = rawBlocks;
+  } else if (message.content && message.content.trim()) {
+    blocks = [{ type: 'text', text: localizeMessage(message.content), hash: message.contentHash }];
+  } else {
+    // 如果没有任何内容，返回空数组而不是显示"(空消息)"
+    // shouldShowMessage 会过滤掉这些消息
+    blocks = [];
+  }
+  contentBlocksCache.set(message, blocks);
+  return blocks;
+};
+
+const visibilityCache = new WeakMap<ClaudeMessage, boolean>();
+
+export const shouldShowMessage = (message: ClaudeMessage) => {
+  let visible = visibilityCache.get(message);
+  if (visible === undefined) {
+    visible = computeVisibility(message);
+    visibilityCache.set(message, visible);
+  }
+  return visible;
+};
+
+const computeVisibility = (message: ClaudeMessage) => {
+  // 过滤 isMeta 消息（如 "Caveat: The messages below were generated..."）
+  if (message.raw && typeof message.raw === 'object' && 'isMeta' in message.raw && message.raw.isMeta === true) {
+    return false;
+  }
+
+  // 过滤命令消息（包含 <command-name> 或 <local-command-stdout> 标签）
+  const text = getMessageText(message);
+  if (text && (
+    text.includes('<command-name>') ||
+    text.includes('<local-command-stdout>') ||
+    text.includes('<local-command-stderr>') ||
+    text.includes('<command-message>') ||
+    text.includes('<command-args>')
+  )) {
+    return false;
+  }
+
+  if (message.type === 'assistant') {
+    return true;
+  }
+  if (message.type === 'user' || message.type === 'error') {
+    // 检查是否有有效的文本内容
+    if (text && text.trim() && text !== '(空消息)' && text !== '(无法解析内容)') {
+      return true;
+    }
+    // 检查是否有有效的内容块（如图片等）
+    const rawBlocks = normalizeBlocks(message.raw);
+    if (Array.isArray(rawBlocks) && rawBlocks.length > 0) {
+      // 确保至少有一个非空的内容块
+      return rawBlocks.some(block => {
+        if (block.type === 'text') {
+          return block.text && block.text.trim().length > 0;
+        }
+        // 图片、工具使用等其他类型的块都应该显示
+        return true;
+      });
+    }
+    return false;
+  }
+  return true;
+};
+
+/**
+ * 建立 tool_use_id -> tool_result 索引（一次遍历，替代每个工具块向后扫描整个列表）
+ * 同一个 id 以最早出现的结果为准
+ */
+export const buildToolResultIndex = (messages: ClaudeMessage[]): Map<string, ToolResultBlock> => {
+  const index = new Map<string, ToolResultBlock>();
+  for (const message of messages) {
+    if (message.type !== 'user') {
+      continue;
+    }
+    const raw = message.raw;
+    if (!raw || typeof raw === 'string' || !Array.isArray(raw.content)) {
+      continue;
+    }
+    for (const block of raw.content) {
+      if (block && block.type === 'tool_result' && block.tool_use_id && !index.has(block.tool_use_id)) {
+        index.set(block.tool_use_id, block as ToolResultBlock);
+      }
+    }
+  }
+  return index;
+};
+
+/**
+ * 消息的稳定 key：Java 推送的消息带有 id；前端临时添加的消息（发送中的用户消息、错误提示）使用本地编号
+ */
+export const getMessageKey = (message: ClaudeMessage) => message.id ?? message.localId ?? '';
+
+/**
+ * 合并 Java 推送的差量消息：按 id 替换已有消息，新消息追加到末尾
+ * 前端临时消息（没有 id）在收到推送后丢弃，由 Java 端的正式消息代替
+ */
+export const mergeMessagePatch = (prev: ClaudeMessage[], upserts: ClaudeMessage[]): ClaudeMessage[] => {
+  const next = prev.filter((message) => message.id !== undefined);
+  const positions = new Map<number, number>();
+  next.forEach((message, index) => positions.set(message.id as number, index));
+  for (const message of upserts) {
+    const index = positions.get(message.id as number);
+    if (index === undefined) {
+      positions.set(message.id as number, next.length);
+      next.push(message);
+    } else {
+      next[index] = message;
+    }
+  }
+  return next;
+};
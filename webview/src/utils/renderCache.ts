@@ -0,0 +1,67 @@
+/**
+ * 按内容哈希缓存渲染结果（LRU，按估算大小限制总量）
+ *
+ * key 为 Java 端为已完成消息计算的内容哈希：同样的内容在重新推送、
+ * 虚拟列表重新挂载或重新加载会话后直接复用，不再重复解析 Markdown / 计算 diff。
+ * 流式输出中的消息没有哈希，不进入缓存。
+ */
+export class RenderCache<T> {
+  // Map 保持插入顺序：最早插入（最久未使用）的在前
+  private readonly entries = new Map<string, { value: T; size: number }>();
+  private totalSize = 0;
+
+  constructor(
+    private readonly maxSize: number,
+    private readonly sizeOf: (value: T) => number,
+  ) {}
+
+  get(key: string): T | undefined {
+    const entry = this.entries.get(key);
+    if (!entry) {
+      return undefined;
+    }
+    // 移到末尾，标记为最近使用
+    this.entries.delete(key);
+    this.entries.set(key, entry);
+    return entry.value;
+  }
+
+  set(key: string, value: T) {
+    const size = this.sizeOf(value);
+    if (size > this.maxSize) {
+      return;
+    }
+    const existing = this.entries.get(key);
+    if (existing) {
+      this.totalSize -= existing.size;
+      this.entries.delete(key);
+    }
+    this.entries.set(key, { value, size });
+    this.totalSize += size;
+
+    // 淘汰最久未使用的条目
+    for (const [oldestKey, oldest] of this.entries) {
+      if (this.totalSize <= this.maxSize) {
+        break;
+      }
+      this.entries.delete(oldestKey);
+      this.totalSize -= oldest.size;
+    }
+  }
+
+  /**
+   * 有 key 时先查缓存，未命中则计算并写入；没有 key 时直接计算
+   */
+  getOrCompute(key: string | undefined, compute: () => T): T {
+    if (!key) {
+      return compute();
+    }
+    const cached = this.get(key);
+    if (cached !== undefined) {
+      return cached;
+    }
+    const value = compute();
+    this.set(key, value);
+    return value;
+  }
+}